@@ -3,6 +3,7 @@ package com.maydaymemory.mae.basic;
 import org.joml.Vector3fc;
 
 import javax.annotation.Nullable;
+import java.util.function.Supplier;
 
 /***
  * Animation interface.
@@ -53,6 +54,43 @@ public interface Animation {
      */
     Pose evaluate(float timeS);
 
+    /**
+     * Evaluates the animation at the given time, restricted to the bones contained in the mask.
+     * <p>
+     * Bones outside the mask are not sampled at all and are absent from the returned pose.
+     * The default implementation filters the result of {@link #evaluate(float)} into a pose built by the
+     * given supplier; implementations should override it to skip excluded channels before sampling.
+     * </p>
+     *
+     * @param timeS The time (in seconds) at which to evaluate the animation.
+     * @param boneMask The bones to evaluate.
+     * @param poseBuilderSupplier The supplier of the builder receiving the filtered bone transforms.
+     * @return A {@link Pose} containing only the bones of the mask.
+     */
+    default Pose evaluate(float timeS, BoneMask boneMask, Supplier<PoseBuilder> poseBuilderSupplier) {
+        return boneMask.filter(evaluate(timeS), poseBuilderSupplier);
+    }
+
+    /**
+     * Evaluates the velocity of the animation at the given time, in a single sampling pass.
+     * <p>
+     * The returned pose has the same encoding as the velocity poses expected by
+     * {@link com.maydaymemory.mae.blend.KinematicInterpolatorBlender}: translation and scale are their rate of
+     * change per second, and the rotation velocity is the quaternion logarithm per second, exposed by
+     * {@link RotationView#asEulerAngle()}.
+     * </p>
+     * <p>
+     * The default implementation returns {@code null}, in which case callers fall back to differentiating
+     * two evaluated poses.
+     * </p>
+     *
+     * @param timeS The time (in seconds) at which to evaluate the velocity.
+     * @return A velocity pose, or {@code null} if some channel has no analytic derivative.
+     */
+    default @Nullable Pose evaluateVelocity(float timeS) {
+        return null;
+    }
+
     /**
      * Set a clip channel to this animation.
      *
@@ -79,6 +117,23 @@ public interface Animation {
      */
     <T> @Nullable Iterable<Keyframe<T>> clip(String channelName, float fromTimeS, float toTimeS);
 
+    /**
+     * <p>Returns the clip channel with the given name, so that callers can walk it without
+     * allocating a clip result per query.</p>
+     *
+     * <p>The default implementation returns {@code null}, in which case callers fall back to
+     * {@link #clip(String, float, float)}.</p>
+     *
+     * <p><b>Important: </b>Type safety is not checked internally.
+     * Please ensure that the channel type specified is the same when setting and getting.</p>
+     *
+     * @param channelName name of the channel.
+     * @return the clip channel, or {@code null} if there is no channel with the given name.
+     */
+    default <T> @Nullable ClipChannel<T> getClipChannel(String channelName) {
+        return null;
+    }
+
     /**
      * Set a curve(interpolatable channel) to this animation.
      *
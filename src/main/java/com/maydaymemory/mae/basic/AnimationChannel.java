@@ -16,4 +16,18 @@ public interface AnimationChannel {
      * @return the end time in second.
      */
     float getEndTimeS();
+
+    /**
+     * Get the number of times the keyframes of this channel have been modified.
+     *
+     * <p>Structures compiled from channels, such as the notify timeline of a montage, compare it to detect that
+     * they are out of date. Channels which do not track their modifications return a constant, and their users
+     * must be told about changes explicitly.</p>
+     *
+     * @return the modification count
+     * @since 1.1.4
+     */
+    default int getModificationCount() {
+        return 0;
+    }
 }
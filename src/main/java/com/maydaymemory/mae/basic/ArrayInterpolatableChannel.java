@@ -1,6 +1,7 @@
 package com.maydaymemory.mae.basic;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 
 /**
@@ -39,6 +40,16 @@ public class ArrayInterpolatableChannel<T>
 
     @Override
     public T compute(float timeS) {
+        return evaluate(timeS, false);
+    }
+
+    @Override
+    @Nullable
+    public T computeDerivative(float timeS) {
+        return evaluate(timeS, true);
+    }
+
+    private T evaluate(float timeS, boolean derivative) {
         assertNotDirty();
         int index = findIndexBefore(timeS, false);
         int indexNext = Math.min(innerList.size() - 1, index + 1);
@@ -46,12 +57,12 @@ public class ArrayInterpolatableChannel<T>
             if (isEmpty()) {
                 return null;
             } else {
-                return get(0).getInterpolator().interpolate(this, 0, 0, 0);
+                return evaluate(get(0).getInterpolator(), 0, 0, 0, derivative);
             }
         }
         InterpolatableKeyframe<T> keyframe = get(index);
         if (index == indexNext) { // only when timeS >= endTimeS
-            return keyframe.getInterpolator().interpolate(this, index, index, 0);
+            return evaluate(keyframe.getInterpolator(), index, index, 0, derivative);
         }
         InterpolatableKeyframe<T> keyframeNext = get(indexNext);
         float alphaTime = timeS - keyframe.getTimeS();
@@ -61,13 +72,19 @@ public class ArrayInterpolatableChannel<T>
         Interpolator<T> interpolatorNext = keyframeNext.getInterpolator();
         if (interpolator.getPriority().compareTo(interpolatorNext.getPriority()) >= 0) {
             // use previous interpolator if its priority is greater than or equal to next one
-            return interpolator.interpolate(this, index, indexNext, alpha);
+            return evaluate(interpolator, index, indexNext, alpha, derivative);
         } else {
             // use next interpolator if priority is greater than previous one
-            return interpolatorNext.interpolate(this, index, indexNext, alpha);
+            return evaluate(interpolatorNext, index, indexNext, alpha, derivative);
         }
     }
 
+    private T evaluate(Interpolator<T> interpolator, int indexFrom, int indexTo, float alpha, boolean derivative) {
+        return derivative
+                ? interpolator.derivative(this, indexFrom, indexTo, alpha)
+                : interpolator.interpolate(this, indexFrom, indexTo, alpha);
+    }
+
     @Override
     public InterpolatableKeyframe<T> getKeyFrame(int index) {
         return get(index);
@@ -1,7 +1,9 @@
 package com.maydaymemory.mae.basic;
 
+import com.maydaymemory.mae.util.MathUtil;
 import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
 import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
 
@@ -32,6 +34,9 @@ public class BasicAnimation implements Animation {
     private static final Vector3f IDENTITY_TRANSLATION = new Vector3f(0, 0, 0);
     private static final Quaternionf IDENTITY_ROTATION = new Quaternionf(0, 0, 0, 1);
     private static final Vector3f IDENTITY_SCALE = new Vector3f(1, 1, 1);
+    private static final Vector3f ZERO_VELOCITY = new Vector3f(0, 0, 0);
+    /** Step (in seconds) used to map Euler angle rates to a rotation velocity */
+    private static final float EULER_RATE_STEP = 1e-3f;
 
     /**
      * Construct an animation.
@@ -75,8 +80,25 @@ public class BasicAnimation implements Animation {
 
     @Override
     public Pose evaluate(float timeS) {
+        return evaluate(timeS, BoneMask.ALL);
+    }
+
+    /**
+     * Evaluates the animation at the given time, skipping the channels of bones outside the mask before any
+     * keyframe lookup.
+     *
+     * @param timeS the time (in seconds) at which to evaluate the animation
+     * @param boneMask the bones to evaluate
+     * @return a pose containing only the bones of the mask
+     */
+    public Pose evaluate(float timeS, BoneMask boneMask) {
         PoseBuilder poseBuilder = poseBuilderSupplier.get();
+        boolean filter = !boneMask.isAll();
         for(ChannelBunch channelBunch : channels) {
+            if (filter && !boneMask.contains(channelBunch.boneIndex)) {
+                // excluded bones are skipped before any keyframe lookup
+                continue;
+            }
             InterpolatableChannel<? extends Vector3fc> translationChannel = channelBunch.translationChannel;
             InterpolatableChannel<? extends Rotation> rotationChannel = channelBunch.rotationChannel;
             InterpolatableChannel<? extends Vector3fc> scaleChannel = channelBunch.scaleChannel;
@@ -96,6 +118,68 @@ public class BasicAnimation implements Animation {
         return poseBuilder.toPose();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Excluded channels are skipped before sampling, and the pose is built by the pose builder supplier of
+     * this animation.</p>
+     */
+    @Override
+    public Pose evaluate(float timeS, BoneMask boneMask, Supplier<PoseBuilder> poseBuilderSupplier) {
+        return evaluate(timeS, boneMask);
+    }
+
+    @Override
+    @Nullable
+    public Pose evaluateVelocity(float timeS) {
+        PoseBuilder poseBuilder = poseBuilderSupplier.get();
+        for (ChannelBunch channelBunch : channels) {
+            Vector3fc translationVelocity = ZERO_VELOCITY;
+            if (channelBunch.translationChannel != null) {
+                translationVelocity = channelBunch.translationChannel.computeDerivative(timeS);
+            }
+            Vector3fc scaleVelocity = ZERO_VELOCITY;
+            if (channelBunch.scaleChannel != null) {
+                scaleVelocity = channelBunch.scaleChannel.computeDerivative(timeS);
+            }
+            Vector3fc rotationVelocity = ZERO_VELOCITY;
+            if (channelBunch.rotationChannel != null) {
+                rotationVelocity = computeRotationVelocity(channelBunch, timeS);
+            }
+            if (translationVelocity == null || scaleVelocity == null || rotationVelocity == null) {
+                return null;
+            }
+            poseBuilder.addBoneTransform(new BoneTransform(channelBunch.boneIndex, translationVelocity,
+                    new RotationVelocityRotationView(rotationVelocity), scaleVelocity));
+        }
+        return poseBuilder.toPose();
+    }
+
+    @Nullable
+    private Vector3fc computeRotationVelocity(ChannelBunch channelBunch, float timeS) {
+        InterpolatableChannel<? extends Rotation> rotationChannel = channelBunch.rotationChannel;
+        Rotation derivative = rotationChannel.computeDerivative(timeS);
+        if (derivative == null) {
+            return null;
+        }
+        if (derivative.isQuaternion()) {
+            Quaternionfc velocity = derivative.getQuaternion();
+            return new Vector3f(velocity.x(), velocity.y(), velocity.z());
+        }
+        // Euler angle rates depend on the rotation order of the bone transform factory, so they are
+        // mapped to a rotation velocity by stepping the angles along their rate.
+        Vector3fc angles = rotationChannel.compute(timeS).getEulerAngles();
+        Vector3fc rates = derivative.getEulerAngles();
+        Vector3f stepped = rates.mul(EULER_RATE_STEP, new Vector3f()).add(angles);
+        Quaternionfc q0 = transformFactory.createBoneTransform(channelBunch.boneIndex, IDENTITY_TRANSLATION, angles, IDENTITY_SCALE)
+                .rotation().asQuaternion();
+        Quaternionfc q1 = transformFactory.createBoneTransform(channelBunch.boneIndex, IDENTITY_TRANSLATION, stepped, IDENTITY_SCALE)
+                .rotation().asQuaternion();
+        Quaternionf relativeRotation = new Quaternionf();
+        q1.mul(q0.conjugate(relativeRotation), relativeRotation); // relativeRotation = q1 * q0^-1
+        return MathUtil.logUnit(relativeRotation).div(EULER_RATE_STEP);
+    }
+
     @Override
     public void setClipChannel(String channelName, ClipChannel<?> channel) {
         if (clipChannels == null) {
@@ -119,6 +203,16 @@ public class BasicAnimation implements Animation {
         return (Iterable<Keyframe<T>>) (Iterable<?>) channel.clip(fromTimeS, toTimeS);
     }
 
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> ClipChannel<T> getClipChannel(String channelName) {
+        if (clipChannels == null) {
+            return null;
+        }
+        return (ClipChannel<T>) clipChannels.get(channelName);
+    }
+
     @Override
     public void setCurve(String curveName, @Nullable InterpolatableChannel<?> curve) {
         if (curves == null) {
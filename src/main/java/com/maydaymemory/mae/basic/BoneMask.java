@@ -0,0 +1,210 @@
+package com.maydaymemory.mae.basic;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Immutable set of bone indices, used to restrict evaluation to a subset of bones.
+ *
+ * <p>Bone masks are typically used for bone-level LOD: a skeleton defines one mask per
+ * detail level (see {@link Skeleton#getLodBoneMask(int)}), each character picks the mask of its
+ * current level, and animation sampling and blending skip every bone outside the mask.</p>
+ *
+ * <p>The mask is stored as a bit set. A mask may be inverted, in which case the bits store the
+ * excluded bones instead of the included ones, so that "all bones except a few" can be
+ * represented without knowing the size of the skeleton.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class BoneMask {
+    /** Mask containing every bone */
+    public static final BoneMask ALL = new BoneMask(new long[0], true);
+
+    /** Mask containing no bone */
+    public static final BoneMask NONE = new BoneMask(new long[0], false);
+
+    /** Bit set of included bones, or of excluded bones if inverted */
+    private final long[] words;
+
+    /** Whether {@link #words} stores the excluded bones */
+    private final boolean inverted;
+
+    private BoneMask(long[] words, boolean inverted) {
+        this.words = words;
+        this.inverted = inverted;
+    }
+
+    /**
+     * Creates a mask containing exactly the given bones.
+     *
+     * @param boneIndices the bone indices to include
+     * @return the mask
+     */
+    public static BoneMask of(int... boneIndices) {
+        return new BoneMask(toWords(boneIndices), false);
+    }
+
+    /**
+     * Creates a mask containing exactly the given bones.
+     *
+     * @param boneIndices the bone indices to include
+     * @return the mask
+     */
+    public static BoneMask of(Collection<Integer> boneIndices) {
+        return of(boneIndices.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Creates a mask containing every bone except the given ones.
+     *
+     * @param boneIndices the bone indices to exclude
+     * @return the mask
+     */
+    public static BoneMask allExcept(int... boneIndices) {
+        return new BoneMask(toWords(boneIndices), true);
+    }
+
+    /**
+     * Checks whether the given bone is included.
+     *
+     * @param boneIndex the bone index
+     * @return true if the bone is included in this mask
+     */
+    public boolean contains(int boneIndex) {
+        if (boneIndex < 0) {
+            return inverted;
+        }
+        int wordIndex = boneIndex >>> 6;
+        boolean bit = wordIndex < words.length && (words[wordIndex] & (1L << boneIndex)) != 0;
+        return bit != inverted;
+    }
+
+    /**
+     * Checks whether this mask contains every bone, in which case filtering can be skipped entirely.
+     *
+     * @return true if this mask contains every bone
+     */
+    public boolean isAll() {
+        return this == ALL || inverted && isEmptyWords();
+    }
+
+    /**
+     * Keeps the transforms of a pose whose bones are included in this mask.
+     *
+     * <p>Used where the excluded bones cannot be skipped earlier, e.g. when a pose is passed through
+     * unchanged.</p>
+     *
+     * @param pose the pose to filter
+     * @param poseBuilderSupplier supplier of the builder of the filtered pose
+     * @return the pose itself if this mask contains every bone, otherwise a new pose with the included bones
+     */
+    public Pose filter(Pose pose, Supplier<PoseBuilder> poseBuilderSupplier) {
+        if (isAll()) {
+            return pose;
+        }
+        PoseBuilder builder = poseBuilderSupplier.get();
+        for (BoneTransform transform : pose.getBoneTransforms()) {
+            if (contains(transform.boneIndex())) {
+                builder.addBoneTransform(transform);
+            }
+        }
+        return builder.toPose();
+    }
+
+    /**
+     * Returns a copy of this mask with the given bones and all of their descendants removed.
+     *
+     * <p>This is the usual way to derive lower detail levels, e.g. removing the hand bones removes
+     * every finger bone as well.</p>
+     *
+     * @param skeleton the skeleton providing the hierarchy
+     * @param rootBoneIndices the roots of the subtrees to remove
+     * @return the new mask
+     */
+    public BoneMask withoutSubtrees(Skeleton skeleton, int... rootBoneIndices) {
+        long[] newWords = words.clone();
+        for (int root : rootBoneIndices) {
+            newWords = removeSubtree(newWords, skeleton, root);
+        }
+        return new BoneMask(newWords, inverted);
+    }
+
+    private long[] removeSubtree(long[] newWords, Skeleton skeleton, int boneIndex) {
+        // In an inverted mask the bits are the excluded bones, so removing a bone means setting its bit.
+        newWords = inverted ? setBit(newWords, boneIndex) : clearBit(newWords, boneIndex);
+        Collection<Integer> children = skeleton.getChildren(boneIndex);
+        if (children != null) {
+            for (int child : children) {
+                newWords = removeSubtree(newWords, skeleton, child);
+            }
+        }
+        return newWords;
+    }
+
+    private boolean isEmptyWords() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] toWords(int[] boneIndices) {
+        long[] result = new long[0];
+        for (int boneIndex : boneIndices) {
+            if (boneIndex < 0) {
+                throw new IllegalArgumentException("Bone index cannot be negative: " + boneIndex);
+            }
+            result = setBit(result, boneIndex);
+        }
+        return result;
+    }
+
+    private static long[] setBit(long[] words, int boneIndex) {
+        int wordIndex = boneIndex >>> 6;
+        if (wordIndex >= words.length) {
+            words = Arrays.copyOf(words, wordIndex + 1);
+        }
+        words[wordIndex] |= 1L << boneIndex;
+        return words;
+    }
+
+    private static long[] clearBit(long[] words, int boneIndex) {
+        int wordIndex = boneIndex >>> 6;
+        if (wordIndex < words.length) {
+            words[wordIndex] &= ~(1L << boneIndex);
+        }
+        return words;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BoneMask)) return false;
+        BoneMask other = (BoneMask) o;
+        if (inverted != other.inverted) return false;
+        int length = Math.max(words.length, other.words.length);
+        for (int i = 0; i < length; i++) {
+            long a = i < words.length ? words[i] : 0;
+            long b = i < other.words.length ? other.words[i] : 0;
+            if (a != b) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) {
+            length--;
+        }
+        int hash = Boolean.hashCode(inverted);
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Long.hashCode(words[i]);
+        }
+        return hash;
+    }
+}
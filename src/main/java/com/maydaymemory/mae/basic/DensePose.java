@@ -0,0 +1,233 @@
+package com.maydaymemory.mae.basic;
+
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+
+/**
+ * Bone transforms stored densely in flat arrays, meant to be overwritten from one evaluation to the next.
+ *
+ * <p>Each entry holds a bone index and {@link #STRIDE} floats: translation (3), rotation quaternion (4) and
+ * scale (3). Entries are expected in ascending bone index order, like the transforms of a {@link Pose}. The
+ * storage grows when needed and is kept afterwards, so filling the same instance every frame does not
+ * allocate.</p>
+ *
+ * <p>Producers writing the raw floats of {@link #getTransforms()} add the entry first with
+ * {@link #add(int)}. Use {@link #toPose} to build an independent pose from the current content, or a
+ * {@link DensePoseView} to read it as a pose without copying.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class DensePose {
+    /** Floats per entry in {@link #getTransforms()} */
+    public static final int STRIDE = 10;
+
+    private int size;
+    private int[] boneIndices;
+    private float[] transforms;
+
+    /** Incremented on every change, so that views know when to refresh */
+    private int version;
+
+    /**
+     * Constructs an empty dense pose.
+     */
+    public DensePose() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty dense pose with storage for a number of bones.
+     *
+     * @param capacity the initial number of bones
+     */
+    public DensePose(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.boneIndices = new int[capacity];
+        this.transforms = new float[capacity * STRIDE];
+    }
+
+    /**
+     * Removes all entries, keeping the storage.
+     */
+    public void clear() {
+        size = 0;
+        version++;
+    }
+
+    /**
+     * Appends an entry whose floats are then written by the caller.
+     *
+     * @param boneIndex the bone index, greater than the one of the previous entry
+     * @return the entry, whose floats start at {@code entry * STRIDE} in {@link #getTransforms()}
+     */
+    public int add(int boneIndex) {
+        if (size == boneIndices.length) {
+            grow(size * 2);
+        }
+        boneIndices[size] = boneIndex;
+        version++;
+        return size++;
+    }
+
+    /**
+     * Appends an entry.
+     *
+     * @param boneIndex the bone index, greater than the one of the previous entry
+     * @param translation the translation
+     * @param rotation the rotation
+     * @param scale the scale
+     * @return the entry
+     */
+    public int add(int boneIndex, Vector3fc translation, Quaternionfc rotation, Vector3fc scale) {
+        int entry = add(boneIndex);
+        int offset = entry * STRIDE;
+        transforms[offset] = translation.x();
+        transforms[offset + 1] = translation.y();
+        transforms[offset + 2] = translation.z();
+        transforms[offset + 3] = rotation.x();
+        transforms[offset + 4] = rotation.y();
+        transforms[offset + 5] = rotation.z();
+        transforms[offset + 6] = rotation.w();
+        transforms[offset + 7] = scale.x();
+        transforms[offset + 8] = scale.y();
+        transforms[offset + 9] = scale.z();
+        return entry;
+    }
+
+    /**
+     * Replaces the content with the transforms of a pose.
+     *
+     * @param pose the pose to copy
+     */
+    public void set(Pose pose) {
+        clear();
+        for (BoneTransform transform : pose.getBoneTransforms()) {
+            add(transform.boneIndex(), transform.translation(), transform.rotation().asQuaternion(), transform.scale());
+        }
+    }
+
+    /**
+     * Replaces the content with the content of another dense pose.
+     *
+     * @param other the dense pose to copy
+     */
+    public void set(DensePose other) {
+        if (other.size > boneIndices.length) {
+            grow(other.size);
+        }
+        System.arraycopy(other.boneIndices, 0, boneIndices, 0, other.size);
+        System.arraycopy(other.transforms, 0, transforms, 0, other.size * STRIDE);
+        size = other.size;
+        version++;
+    }
+
+    /**
+     * Builds an independent pose from the current content.
+     *
+     * @param boneTransformFactory the factory of the bone transforms
+     * @param poseBuilder the builder receiving the bone transforms
+     * @return the pose built
+     */
+    public Pose toPose(BoneTransformFactory boneTransformFactory, PoseBuilder poseBuilder) {
+        for (int i = 0; i < size; i++) {
+            int offset = i * STRIDE;
+            poseBuilder.addBoneTransform(boneTransformFactory.createBoneTransform(boneIndices[i],
+                    new Vector3f(transforms[offset], transforms[offset + 1], transforms[offset + 2]),
+                    new Quaternionf(transforms[offset + 3], transforms[offset + 4], transforms[offset + 5], transforms[offset + 6]),
+                    new Vector3f(transforms[offset + 7], transforms[offset + 8], transforms[offset + 9])));
+        }
+        return poseBuilder.toPose();
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the number of bones
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the bone index of an entry.
+     *
+     * @param entry the entry, in [0, {@link #size()})
+     * @return the bone index
+     */
+    public int getBoneIndex(int entry) {
+        return boneIndices[entry];
+    }
+
+    /**
+     * Copies the translation of an entry.
+     *
+     * @param entry the entry, in [0, {@link #size()})
+     * @param dest receives the translation
+     * @return dest
+     */
+    public Vector3f getTranslation(int entry, Vector3f dest) {
+        int offset = entry * STRIDE;
+        return dest.set(transforms[offset], transforms[offset + 1], transforms[offset + 2]);
+    }
+
+    /**
+     * Copies the rotation of an entry.
+     *
+     * @param entry the entry, in [0, {@link #size()})
+     * @param dest receives the rotation
+     * @return dest
+     */
+    public Quaternionf getRotation(int entry, Quaternionf dest) {
+        int offset = entry * STRIDE + 3;
+        return dest.set(transforms[offset], transforms[offset + 1], transforms[offset + 2], transforms[offset + 3]);
+    }
+
+    /**
+     * Copies the scale of an entry.
+     *
+     * @param entry the entry, in [0, {@link #size()})
+     * @param dest receives the scale
+     * @return dest
+     */
+    public Vector3f getScale(int entry, Vector3f dest) {
+        int offset = entry * STRIDE + 7;
+        return dest.set(transforms[offset], transforms[offset + 1], transforms[offset + 2]);
+    }
+
+    /**
+     * Gets the raw transforms, {@link #STRIDE} floats per entry. Writing them is only allowed to fill the
+     * entries just added.
+     *
+     * @return the transform buffer, valid for the first {@link #size()} entries
+     */
+    public float[] getTransforms() {
+        return transforms;
+    }
+
+    /**
+     * Gets a number which changes whenever the content changes.
+     *
+     * @return the version of the content
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Grows the storage to a number of entries. Subclasses storing more per entry override it to grow their
+     * own arrays too.
+     *
+     * @param capacity the new number of entries
+     */
+    protected void grow(int capacity) {
+        boneIndices = Arrays.copyOf(boneIndices, capacity);
+        transforms = Arrays.copyOf(transforms, capacity * STRIDE);
+    }
+}
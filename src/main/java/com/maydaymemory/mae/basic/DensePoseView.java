@@ -0,0 +1,142 @@
+package com.maydaymemory.mae.basic;
+
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.ArrayList;
+
+/**
+ * A pose reading the current content of a {@link DensePose}, without copying it into new objects.
+ *
+ * <p>The view keeps one bone transform per entry and updates its vectors and quaternion in place when the
+ * dense pose changes, so reading the view does not allocate once every bone has been seen. In exchange, the
+ * transforms of the view are only valid until the dense pose changes: a consumer keeping the pose for later
+ * must copy it, e.g. with {@link DensePose#toPose}. Euler angles are converted lazily with the bone
+ * transform factory, which allocates only when they are read.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class DensePoseView implements Pose {
+    private final DensePose source;
+    private final BoneTransformFactory boneTransformFactory;
+
+    /** Bone transforms of the entries, with their mutable components */
+    private final ArrayList<BoneTransform> transforms = new ArrayList<>();
+    private final ArrayList<BoneTransform> cache = new ArrayList<>();
+    private final ArrayList<Vector3f> translations = new ArrayList<>();
+    private final ArrayList<MutableRotationView> rotations = new ArrayList<>();
+    private final ArrayList<Vector3f> scales = new ArrayList<>();
+
+    /** Version of the source the transforms were updated to */
+    private int version;
+    private boolean updated;
+
+    /**
+     * Constructs a view of a dense pose.
+     *
+     * @param source the dense pose to read
+     * @param boneTransformFactory the factory defining the Euler angle convention of the rotations
+     */
+    public DensePoseView(DensePose source, BoneTransformFactory boneTransformFactory) {
+        this.source = source;
+        this.boneTransformFactory = boneTransformFactory;
+    }
+
+    /**
+     * Gets the dense pose read by this view.
+     *
+     * @return the source dense pose
+     */
+    public DensePose getSource() {
+        return source;
+    }
+
+    /**
+     * Creates a view of an independent copy of the current content, which later changes of the source do not
+     * affect. Allocates the copy and the new view.
+     *
+     * @return the view of the copy
+     */
+    public DensePoseView copy() {
+        DensePose copy = new DensePose(source.size());
+        copy.set(source);
+        return new DensePoseView(copy, boneTransformFactory);
+    }
+
+    @Override
+    public Iterable<BoneTransform> getBoneTransforms() {
+        if (!updated || version != source.getVersion()) {
+            update();
+        }
+        return transforms;
+    }
+
+    private void update() {
+        int size = source.size();
+        float[] data = source.getTransforms();
+        transforms.clear();
+        for (int i = 0; i < size; i++) {
+            int boneIndex = source.getBoneIndex(i);
+            if (i == cache.size()) {
+                translations.add(new Vector3f());
+                rotations.add(new MutableRotationView(boneTransformFactory));
+                scales.add(new Vector3f());
+                cache.add(null);
+            }
+            BoneTransform transform = cache.get(i);
+            if (transform == null || transform.boneIndex() != boneIndex) {
+                // The bone index of a transform is final, a new one is only needed when the bones change.
+                transform = new BoneTransform(boneIndex, translations.get(i), rotations.get(i), scales.get(i));
+                cache.set(i, transform);
+            }
+            int offset = i * DensePose.STRIDE;
+            translations.get(i).set(data[offset], data[offset + 1], data[offset + 2]);
+            rotations.get(i).set(data[offset + 3], data[offset + 4], data[offset + 5], data[offset + 6]);
+            scales.get(i).set(data[offset + 7], data[offset + 8], data[offset + 9]);
+            transforms.add(transform);
+        }
+        version = source.getVersion();
+        updated = true;
+    }
+
+    /**
+     * A rotation updated in place, converting to Euler angles on demand.
+     */
+    private static final class MutableRotationView implements RotationView {
+        private static final Vector3fc ZERO = new Vector3f();
+        private static final Vector3fc ONE = new Vector3f(1);
+
+        private final BoneTransformFactory boneTransformFactory;
+        private final Quaternionf quaternion = new Quaternionf();
+        private final Vector3f angles = new Vector3f();
+        private boolean anglesValid;
+
+        private MutableRotationView(BoneTransformFactory boneTransformFactory) {
+            this.boneTransformFactory = boneTransformFactory;
+        }
+
+        private void set(float x, float y, float z, float w) {
+            quaternion.set(x, y, z, w);
+            anglesValid = false;
+        }
+
+        @Override
+        public Vector3fc asEulerAngle() {
+            if (!anglesValid) {
+                angles.set(boneTransformFactory.createBoneTransform(0, ZERO, quaternion, ONE).rotation().asEulerAngle());
+                anglesValid = true;
+            }
+            return angles;
+        }
+
+        @Override
+        public Quaternionfc asQuaternion() {
+            return quaternion;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.maydaymemory.mae.basic;
 import org.joml.Vector3fc;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Interpolator for Rotation in Euler Angles form
@@ -24,6 +25,13 @@ public class EulerAnglesRotationInterpolator implements Interpolator<Rotation>{
         return new Rotation(interpolator.interpolate(new ChannelWrapper(channel, interpolator), indexFrom, indexTo, alpha));
     }
 
+    @Override
+    @Nullable
+    public Rotation derivative(InterpolatableChannel<Rotation> channel, int indexFrom, int indexTo, float alpha) {
+        Vector3fc derivative = interpolator.derivative(new ChannelWrapper(channel, interpolator), indexFrom, indexTo, alpha);
+        return derivative == null ? null : new Rotation(derivative);
+    }
+
     @Override
     public Priority getPriority() {
         return interpolator.getPriority();
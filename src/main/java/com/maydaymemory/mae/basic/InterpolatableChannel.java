@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.basic;
 
+import javax.annotation.Nullable;
 import java.util.RandomAccess;
 
 /**
@@ -21,6 +22,20 @@ public interface InterpolatableChannel<T> extends AnimationChannel, RandomAccess
      */
     T compute(float timeS);
 
+    /**
+     * Compute the rate of change per second of the interpolated value at the given time,
+     * see {@link Interpolator#derivative} for the encoding of rotations.
+     *
+     * <p>The default implementation returns {@code null}, meaning that no analytic derivative is available.</p>
+     *
+     * @param timeS the time at which to compute the derivative.
+     * @return the derivative per second, or {@code null} if the channel is empty or not differentiable.
+     */
+    @Nullable
+    default T computeDerivative(float timeS) {
+        return null;
+    }
+
     /**
      * Returns the keyframe at the specified index. The interpolatable channel must support indexed access
      * to allow efficient interpolation between keyframes.
@@ -1,5 +1,7 @@
 package com.maydaymemory.mae.basic;
 
+import javax.annotation.Nullable;
+
 /**
  * Defines an interpolation strategy for computing intermediate values between keyframes.
  * 
@@ -21,6 +23,30 @@ public interface Interpolator<T> {
      */
     T interpolate(InterpolatableChannel<T> channel, int indexFrom, int indexTo, float alpha);
 
+    /**
+     * Computes the rate of change, per second, of {@link #interpolate} at the given interpolation factor.
+     *
+     * <p>The span between the keyframe times is taken into account, so the result is a derivative with respect
+     * to animation time. When {@code indexFrom == indexTo} the value is held, and the derivative is zero.</p>
+     *
+     * <p>Derivatives of rotations use the same encoding as velocity poses: for quaternion rotations the result
+     * is a pure quaternion {@code (v, 0)} where {@code v} is the quaternion logarithm per second
+     * (see {@link RotationVelocityRotationView}); for Euler angle rotations it is the rate of each angle.</p>
+     *
+     * <p>The default implementation returns {@code null}, meaning that no analytic derivative is available,
+     * in which case callers fall back to finite differences.</p>
+     *
+     * @param channel the channel containing the keyframes
+     * @param indexFrom the index of the starting keyframe
+     * @param indexTo the index of the ending keyframe
+     * @param alpha the interpolation factor (0.0 to 1.0)
+     * @return the derivative per second, or {@code null} if not supported
+     */
+    @Nullable
+    default T derivative(InterpolatableChannel<T> channel, int indexFrom, int indexTo, float alpha) {
+        return null;
+    }
+
     /**
      * Get the priority of the current interpolator. When interpolating between two keyframes,
      * each keyframe specifies an interpolator, and the one with the higher priority will be used first.
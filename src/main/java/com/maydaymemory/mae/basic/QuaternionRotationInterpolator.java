@@ -1,7 +1,9 @@
 package com.maydaymemory.mae.basic;
 
+import com.maydaymemory.mae.util.MathUtil;
 import org.joml.Quaternionf;
 import org.joml.Quaternionfc;
+import org.joml.Vector3f;
 
 /**
  * Interpolator for Rotation in Quaternion form.
@@ -22,6 +24,37 @@ public class QuaternionRotationInterpolator implements Interpolator<Rotation>{
         return new Rotation(q1.slerp(q2, alpha, new Quaternionf()));
     }
 
+    /**
+     * Slerp rotates at a constant rate from {@code q1} to {@code q2}: {@code q(alpha) = (q2 * q1^-1)^alpha * q1}.
+     * So the derivative is the logarithm of {@code q2 * q1^-1} over the time span, taking the shortest path
+     * as slerp does.
+     *
+     * @return a pure quaternion holding the quaternion logarithm per second
+     */
+    @Override
+    public Rotation derivative(InterpolatableChannel<Rotation> channel, int indexFrom, int indexTo, float alpha) {
+        InterpolatableKeyframe<Rotation> k1 = channel.getKeyFrame(indexFrom);
+        InterpolatableKeyframe<Rotation> k2 = channel.getKeyFrame(indexTo);
+        float span = k2.getTimeS() - k1.getTimeS();
+        if (indexFrom == indexTo || span <= 0) {
+            return new Rotation(new Quaternionf(0, 0, 0, 0));
+        }
+        Rotation r1 = k1.getPost();
+        Rotation r2 = k2.getPre();
+        if (!r1.isQuaternion() || !r2.isQuaternion()) {
+            throw new IllegalArgumentException("Rotation must be quaternion when using quaternion interpolator");
+        }
+        Quaternionfc q1 = r1.getQuaternion();
+        Quaternionf relative = new Quaternionf(r2.getQuaternion());
+        float dot = q1.x() * relative.x() + q1.y() * relative.y() + q1.z() * relative.z() + q1.w() * relative.w();
+        if (dot < 0) {
+            relative.set(-relative.x(), -relative.y(), -relative.z(), -relative.w());
+        }
+        relative.mul(q1.conjugate(new Quaternionf())); // relative = q2 * q1^-1
+        Vector3f velocity = MathUtil.logUnit(relative).div(span);
+        return new Rotation(new Quaternionf(velocity.x, velocity.y, velocity.z, 0));
+    }
+
     @Override
     public Priority getPriority() {
         return Priority.MEDIUM;
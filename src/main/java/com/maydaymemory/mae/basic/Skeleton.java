@@ -52,5 +52,30 @@ public interface Skeleton {
      * @return the bind pose associated with this skeleton
      */
     Pose getBindPose();
+
+    /**
+     * Returns the number of bone-level LOD sets defined on this skeleton.
+     *
+     * @return the number of LOD levels, at least 1
+     */
+    default int getLodLevelCount() {
+        return 1;
+    }
+
+    /**
+     * Returns the set of bones evaluated at the given detail level.
+     * <p>
+     * Level 0 is the highest detail and normally contains every bone. Higher levels drop bones such as
+     * fingers or facial bones, see {@link BoneMask#withoutSubtrees(Skeleton, int...)}. Characters pass
+     * the mask of their current level to animation runners so that excluded bones are never sampled,
+     * blended or applied. The default implementation defines a single level containing every bone.
+     * </p>
+     *
+     * @param lodLevel the detail level, in range [0, {@link #getLodLevelCount()})
+     * @return the bone mask of that level; levels beyond the last one return the last level's mask
+     */
+    default BoneMask getLodBoneMask(int lodLevel) {
+        return BoneMask.ALL;
+    }
 }
 
@@ -34,6 +34,34 @@ public class Vector3fCubicSplineInterpolator implements Interpolator<Vector3fc>
         return new Vector3f(x, y, z);
     }
 
+    /**
+     * Computes the derivative of the cubic spline interpolation, by differentiating the Hermite basis.
+     *
+     * @param channel the channel containing the keyframes
+     * @param indexFrom the index of the starting keyframe
+     * @param indexTo the index of the ending keyframe
+     * @param alpha the interpolation factor, typically between 0 (start) and 1 (end)
+     * @return the derivative per second, zero if the keyframes are the same
+     */
+    @Override
+    public Vector3fc derivative(InterpolatableChannel<Vector3fc> channel, int indexFrom, int indexTo, float alpha) {
+        float span = channel.getKeyFrame(indexTo).getTimeS() - channel.getKeyFrame(indexFrom).getTimeS();
+        if (indexFrom == indexTo || span <= 0) {
+            return new Vector3f();
+        }
+        int size = channel.getKeyFrameCount();
+        int prev = indexFrom == 0 ? 0 : indexFrom - 1;
+        int next = indexTo == (size - 1) ? indexTo : indexTo + 1;
+        Vector3fc vecPrev = channel.getKeyFrame(prev).getPost();
+        Vector3fc vecFrom = channel.getKeyFrame(indexFrom).getPre();
+        Vector3fc vecTo = channel.getKeyFrame(indexTo).getPre();
+        Vector3fc vecNext = channel.getKeyFrame(next).getPre();
+        float x = cubicSplineDerivative(vecPrev.x(), vecFrom.x(), vecTo.x(), vecNext.x(), alpha);
+        float y = cubicSplineDerivative(vecPrev.y(), vecFrom.y(), vecTo.y(), vecNext.y(), alpha);
+        float z = cubicSplineDerivative(vecPrev.z(), vecFrom.z(), vecTo.z(), vecNext.z(), alpha);
+        return new Vector3f(x, y, z).div(span);
+    }
+
     /**
      * Returns the priority level of this interpolator.
      * <p>
@@ -58,4 +86,15 @@ public class Vector3fCubicSplineInterpolator implements Interpolator<Vector3fc>
         float h4 = t3 - t2;
         return h1 * x + h2 * y + h3 * v0 + h4 * v1;
     }
+
+    private static float cubicSplineDerivative(float p, float x, float y, float n, float alpha) {
+        float v0 = (y - p) * 0.5f;
+        float v1 = (n - x) * 0.5f;
+        float t2 = alpha * alpha;
+        float h1 = 6f * t2 - 6f * alpha;
+        float h2 = -6f * t2 + 6f * alpha;
+        float h3 = 3f * t2 - 4f * alpha + 1f;
+        float h4 = 3f * t2 - 2f * alpha;
+        return h1 * x + h2 * y + h3 * v0 + h4 * v1;
+    }
 }
@@ -27,6 +27,26 @@ public class Vector3fLinearInterpolator implements Interpolator<Vector3fc>{
         return vecFrom.lerp(vecTo, alpha, new Vector3f());
     }
 
+    /**
+     * Computes the derivative of the linear interpolation, which is constant between two keyframes.
+     *
+     * @param channel the channel containing the keyframes
+     * @param indexFrom the index of the starting keyframe
+     * @param indexTo the index of the ending keyframe
+     * @param alpha the interpolation factor, unused
+     * @return the difference of the keyframe values divided by the time span, zero if the keyframes are the same
+     */
+    @Override
+    public Vector3fc derivative(InterpolatableChannel<Vector3fc> channel, int indexFrom, int indexTo, float alpha) {
+        InterpolatableKeyframe<Vector3fc> keyFrameFrom = channel.getKeyFrame(indexFrom);
+        InterpolatableKeyframe<Vector3fc> keyFrameTo = channel.getKeyFrame(indexTo);
+        float span = keyFrameTo.getTimeS() - keyFrameFrom.getTimeS();
+        if (indexFrom == indexTo || span <= 0) {
+            return new Vector3f();
+        }
+        return keyFrameTo.getPre().sub(keyFrameFrom.getPost(), new Vector3f()).div(span);
+    }
+
     /**
      * Returns the priority level of this interpolator.
      * <p>
@@ -0,0 +1,431 @@
+package com.maydaymemory.mae.blend;
+
+import com.maydaymemory.mae.basic.BoneMask;
+import com.maydaymemory.mae.basic.BoneTransform;
+import com.maydaymemory.mae.basic.BoneTransformFactory;
+import com.maydaymemory.mae.basic.DensePose;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.PoseBuilder;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * A 1D blend space storing its samplers in arrays sorted by position.
+ *
+ * <p>Compared to {@link SimpleBlendSpace1D}, the samplers around a position are found by a binary search, or
+ * without any search when the position stays in the segment of the previous blend or moves to a neighbouring
+ * one, as slowly changing parameters do. Blending merges the sampler poses directly into a reusable
+ * {@link DensePose}. Only {@link #blendInto(float, DensePose)} is allocation-free, once the dense pose is
+ * large enough: {@link #blend(float)} builds a new pose from it, allocating a pose builder and the vectors
+ * and quaternion of every bone.</p>
+ *
+ * <p>By default, the two samplers around the position are interpolated linearly, like
+ * {@link SimpleBlendSpace1D} with nlerp rotations. With a smoothing radius (see {@link #setSmoothingRadius}),
+ * the linear weights of every sampler are averaged over the window of that radius around the position,
+ * which removes the sudden change of direction when crossing a sampler and blends every sampler within
+ * the radius, plus one on each side.</p>
+ *
+ * <p>Changing sampler positions is rare and costs O(n). This class is not thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class ArrayBlendSpace1D implements BlendSpace1D {
+    private final BoneTransformFactory boneTransformFactory;
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+
+    /** Samplers sorted by position, in parallel arrays */
+    private int count;
+    private float[] positions = new float[8];
+    private int[] samplerIndices = new int[8];
+    private Pose[] poses = new Pose[8];
+
+    /** Slot in the sorted arrays by sampler index */
+    private final Int2IntOpenHashMap slots = new Int2IntOpenHashMap();
+
+    /** Poses of samplers without a position yet */
+    private final Int2ObjectOpenHashMap<Pose> unplacedPoses = new Int2ObjectOpenHashMap<>();
+
+    /** Slot of the first sampler at or after the position of the previous blend */
+    private int lastCeiling;
+
+    private float smoothingRadius;
+
+    /** Bones outside this mask are skipped and absent from blended poses */
+    private BoneMask boneMask = BoneMask.ALL;
+
+    /** Samplers used by the current blend, as slots and weights */
+    private int activeCount;
+    private int[] activeSlots = new int[4];
+    private float[] activeWeights = new float[4];
+
+    /** Merge scratch, one entry per active sampler */
+    private Iterator<?>[] iterators = new Iterator<?>[4];
+    private BoneTransform[] heads = new BoneTransform[4];
+    private final Quaternionf reference = new Quaternionf();
+
+    /** Result of {@link #blend(float)} */
+    private final DensePose result = new DensePose();
+
+    public ArrayBlendSpace1D(BoneTransformFactory boneTransformFactory,
+                             Supplier<PoseBuilder> poseBuilderSupplier) {
+        this.boneTransformFactory = boneTransformFactory;
+        this.poseBuilderSupplier = poseBuilderSupplier;
+        this.slots.defaultReturnValue(-1);
+    }
+
+    @Override
+    public void setSamplerPosition(int index, float position) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Sampler index cannot be negative: " + index);
+        }
+        if (Float.isNaN(position)) {
+            throw new IllegalArgumentException("Sampler position cannot be NaN");
+        }
+        Pose pose;
+        int slot = slots.get(index);
+        if (slot >= 0) {
+            pose = poses[slot];
+            removeSlot(slot);
+        } else {
+            pose = unplacedPoses.remove(index);
+        }
+        if (count == positions.length) {
+            int capacity = count * 2;
+            positions = Arrays.copyOf(positions, capacity);
+            samplerIndices = Arrays.copyOf(samplerIndices, capacity);
+            poses = Arrays.copyOf(poses, capacity);
+        }
+        // After samplers at the same position, so the first one placed there keeps being used.
+        int insertion = ceiling(Math.nextUp(position));
+        System.arraycopy(positions, insertion, positions, insertion + 1, count - insertion);
+        System.arraycopy(samplerIndices, insertion, samplerIndices, insertion + 1, count - insertion);
+        System.arraycopy(poses, insertion, poses, insertion + 1, count - insertion);
+        positions[insertion] = position;
+        samplerIndices[insertion] = index;
+        poses[insertion] = pose;
+        count++;
+        rebuildSlots();
+    }
+
+    @Override
+    public void setSamplerPose(int index, Pose pose) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Sampler index cannot be negative: " + index);
+        }
+        int slot = slots.get(index);
+        if (slot >= 0) {
+            poses[slot] = pose;
+        } else {
+            unplacedPoses.put(index, pose);
+        }
+    }
+
+    /**
+     * Gets the smoothing radius.
+     *
+     * @return the smoothing radius, in position units
+     */
+    public float getSmoothingRadius() {
+        return smoothingRadius;
+    }
+
+    /**
+     * Sets the radius of the window the sampler weights are averaged over. Zero, the default, interpolates
+     * the two samplers around the position linearly.
+     *
+     * @param smoothingRadius the smoothing radius in position units, cannot be negative
+     */
+    public void setSmoothingRadius(float smoothingRadius) {
+        if (!(smoothingRadius >= 0)) {
+            throw new IllegalArgumentException("Smoothing radius cannot be negative: " + smoothingRadius);
+        }
+        this.smoothingRadius = smoothingRadius;
+    }
+
+    @Override
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
+    @Override
+    public Pose blend(float position) {
+        computeActiveSamplers(position);
+        if (activeCount == 1) {
+            Pose pose = poses[activeSlots[0]];
+            return pose == null ? DummyPose.INSTANCE : boneMask.filter(pose, poseBuilderSupplier);
+        }
+        merge(result);
+        return toPose(result);
+    }
+
+    /**
+     * Blends the sampler poses at the given position into a result, overwriting it.
+     *
+     * @param position the position to perform blending
+     * @param result receives the blended transform of every bone
+     */
+    public void blendInto(float position, DensePose result) {
+        computeActiveSamplers(position);
+        merge(result);
+    }
+
+    /**
+     * Builds a pose from a result.
+     *
+     * @param result the result of {@link #blendInto}
+     * @return a pose holding the transforms of the result
+     */
+    public Pose toPose(DensePose result) {
+        return result.toPose(boneTransformFactory, poseBuilderSupplier.get());
+    }
+
+    @Override
+    public boolean computeWeights(float position, SamplerWeights dest) {
+        computeActiveSamplers(position);
+        dest.clear();
+        for (int i = 0; i < activeCount; i++) {
+            dest.add(samplerIndices[activeSlots[i]], activeWeights[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the samplers used at a position and their weights.
+     */
+    private void computeActiveSamplers(float position) {
+        if (count == 0) {
+            throw new IllegalStateException("There is no sample point");
+        }
+        activeCount = 0;
+        if (smoothingRadius > 0) {
+            computeSmoothedSamplers(position);
+            return;
+        }
+        int right = cachedCeiling(position);
+        if (right == 0) {
+            addActive(0, 1);
+        } else if (right == count) {
+            addActive(count - 1, 1);
+        } else {
+            int left = right - 1;
+            float alpha = (position - positions[left]) / (positions[right] - positions[left]);
+            addActive(left, 1 - alpha);
+            addActive(right, alpha);
+        }
+    }
+
+    /**
+     * Averages the linear weights over [position - radius, position + radius]. Below the first sampler and
+     * above the last one, their weight is 1.
+     */
+    private void computeSmoothedSamplers(float position) {
+        float low = position - smoothingRadius;
+        float high = position + smoothingRadius;
+        int first = Math.max(0, ceiling(low) - 1);
+        int last = Math.min(count - 1, ceiling(high));
+        for (int slot = first; slot <= last; slot++) {
+            float x = positions[slot];
+            float integral = 0;
+            if (slot == 0) {
+                integral += Math.max(0, Math.min(high, x) - low);
+            }
+            if (slot == count - 1) {
+                integral += Math.max(0, high - Math.max(low, x));
+            }
+            if (slot > 0) {
+                // Rising half of the hat function, on the segment before the sampler.
+                float start = positions[slot - 1];
+                float width = x - start;
+                float u = Math.max(low, start);
+                float v = Math.min(high, x);
+                if (width > 0 && v > u) {
+                    integral += ((v - start) * (v - start) - (u - start) * (u - start)) / (2 * width);
+                }
+            }
+            if (slot < count - 1) {
+                // Falling half, on the segment after the sampler.
+                float end = positions[slot + 1];
+                float width = end - x;
+                float u = Math.max(low, x);
+                float v = Math.min(high, end);
+                if (width > 0 && v > u) {
+                    integral += ((end - u) * (end - u) - (end - v) * (end - v)) / (2 * width);
+                }
+            }
+            if (integral > 0) {
+                addActive(slot, integral / (2 * smoothingRadius));
+            }
+        }
+        if (activeCount == 0) {
+            // The window is too narrow for float precision.
+            int right = Math.min(count - 1, ceiling(position));
+            addActive(right, 1);
+        }
+    }
+
+    private void addActive(int slot, float weight) {
+        if (activeCount == activeSlots.length) {
+            int capacity = activeCount * 2;
+            activeSlots = Arrays.copyOf(activeSlots, capacity);
+            activeWeights = Arrays.copyOf(activeWeights, capacity);
+            iterators = Arrays.copyOf(iterators, capacity);
+            heads = Arrays.copyOf(heads, capacity);
+        }
+        activeSlots[activeCount] = slot;
+        activeWeights[activeCount] = weight;
+        activeCount++;
+    }
+
+    /**
+     * Merges the poses of the active samplers by bone index. A bone missing from a pose is taken as the
+     * identity transform. Rotations are summed along the shortest path to the first one and normalized.
+     */
+    private void merge(DensePose result) {
+        BoneMask mask = boneMask.isAll() ? null : boneMask;
+        result.clear();
+        for (int i = 0; i < activeCount; i++) {
+            Pose pose = poses[activeSlots[i]];
+            iterators[i] = (pose == null ? DummyPose.INSTANCE : pose).getBoneTransforms().iterator();
+            heads[i] = next(i);
+        }
+        while (true) {
+            int bone = Integer.MAX_VALUE;
+            for (int i = 0; i < activeCount; i++) {
+                if (heads[i] != null) {
+                    bone = Math.min(bone, heads[i].boneIndex());
+                }
+            }
+            if (bone == Integer.MAX_VALUE) {
+                break;
+            }
+            if (mask != null && !mask.contains(bone)) {
+                for (int i = 0; i < activeCount; i++) {
+                    if (heads[i] != null && heads[i].boneIndex() == bone) {
+                        heads[i] = next(i);
+                    }
+                }
+                continue;
+            }
+            int offset = result.add(bone) * DensePose.STRIDE;
+            float[] data = result.getTransforms();
+            Arrays.fill(data, offset, offset + DensePose.STRIDE, 0);
+            for (int i = 0; i < activeCount; i++) {
+                BoneTransform head = heads[i];
+                BoneTransform transform = head != null && head.boneIndex() == bone ? head : BoneTransform.IDENTITY_TRANSFORM;
+                float weight = activeWeights[i];
+                Vector3fc translation = transform.translation();
+                Quaternionfc rotation = transform.rotation().asQuaternion();
+                Vector3fc scale = transform.scale();
+                if (i == 0) {
+                    reference.set(rotation);
+                }
+                float rotationWeight = reference.x * rotation.x() + reference.y * rotation.y()
+                        + reference.z * rotation.z() + reference.w * rotation.w() < 0 ? -weight : weight;
+                data[offset] += translation.x() * weight;
+                data[offset + 1] += translation.y() * weight;
+                data[offset + 2] += translation.z() * weight;
+                data[offset + 3] += rotation.x() * rotationWeight;
+                data[offset + 4] += rotation.y() * rotationWeight;
+                data[offset + 5] += rotation.z() * rotationWeight;
+                data[offset + 6] += rotation.w() * rotationWeight;
+                data[offset + 7] += scale.x() * weight;
+                data[offset + 8] += scale.y() * weight;
+                data[offset + 9] += scale.z() * weight;
+                if (transform == head) {
+                    heads[i] = next(i);
+                }
+            }
+            float x = data[offset + 3];
+            float y = data[offset + 4];
+            float z = data[offset + 5];
+            float w = data[offset + 6];
+            float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+            if (length > 0) {
+                data[offset + 3] = x / length;
+                data[offset + 4] = y / length;
+                data[offset + 5] = z / length;
+                data[offset + 6] = w / length;
+            } else {
+                data[offset + 6] = 1;
+            }
+        }
+        for (int i = 0; i < activeCount; i++) {
+            iterators[i] = null;
+            heads[i] = null;
+        }
+    }
+
+    /**
+     * Advances the merged stream of an active sampler.
+     */
+    private BoneTransform next(int active) {
+        Iterator<?> iterator = iterators[active];
+        return iterator.hasNext() ? (BoneTransform) iterator.next() : null;
+    }
+
+    /**
+     * Finds the first slot at or after the position, starting from the segment of the previous blend.
+     */
+    private int cachedCeiling(float position) {
+        int ceiling = lastCeiling;
+        if (!isCeiling(ceiling, position)) {
+            if (isCeiling(ceiling + 1, position)) {
+                ceiling++;
+            } else if (isCeiling(ceiling - 1, position)) {
+                ceiling--;
+            } else {
+                ceiling = ceiling(position);
+            }
+            lastCeiling = ceiling;
+        }
+        return ceiling;
+    }
+
+    private boolean isCeiling(int slot, float position) {
+        return slot >= 0 && slot <= count
+                && (slot == 0 || positions[slot - 1] < position)
+                && (slot == count || positions[slot] >= position);
+    }
+
+    /**
+     * Finds the first slot at or after the position by binary search.
+     */
+    private int ceiling(float position) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (positions[middle] >= position) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private void removeSlot(int slot) {
+        System.arraycopy(positions, slot + 1, positions, slot, count - slot - 1);
+        System.arraycopy(samplerIndices, slot + 1, samplerIndices, slot, count - slot - 1);
+        System.arraycopy(poses, slot + 1, poses, slot, count - slot - 1);
+        count--;
+        poses[count] = null;
+    }
+
+    private void rebuildSlots() {
+        slots.clear();
+        for (int slot = 0; slot < count; slot++) {
+            slots.put(samplerIndices[slot], slot);
+        }
+        lastCeiling = 0;
+    }
+}
@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.BoneTransform;
 import com.maydaymemory.mae.basic.Pose;
 import com.maydaymemory.mae.basic.PoseBuilder;
@@ -13,14 +14,30 @@ import java.util.function.Supplier;
  */
 public class BiPoseCombiner {
     private final Supplier<PoseBuilder> poseBuilderSupplier;
+    /** Bones outside this mask are skipped and absent from combined poses */
+    private BoneMask boneMask = BoneMask.ALL;
 
     public BiPoseCombiner(Supplier<PoseBuilder> poseBuilderSupplier) {
         this.poseBuilderSupplier = poseBuilderSupplier;
     }
 
+    public BoneMask getBoneMask() {
+        return boneMask;
+    }
+
+    /**
+     * Sets the bones to combine. Bones outside the mask are skipped without invoking the combiner function.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to combine every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
     public Pose combine(Pose pose1, Pose pose2,
                          BiFunction<BoneTransform, BoneTransform, BoneTransform> combiner) {
         PoseBuilder poseBuilder = poseBuilderSupplier.get();
+        BoneMask mask = boneMask.isAll() ? null : boneMask;
 
         Iterator<BoneTransform> it1 = pose1.getBoneTransforms().iterator();
         Iterator<BoneTransform> it2 = pose2.getBoneTransforms().iterator();
@@ -31,7 +48,14 @@ public class BiPoseCombiner {
         while (t1 != null || t2 != null) {
             if (t1 != null && t2 != null) {
                 int cmp = t1.compareTo(t2);
-                if (cmp == 0) {
+                if (mask != null && !mask.contains(cmp <= 0 ? t1.boneIndex() : t2.boneIndex())) {
+                    if (cmp <= 0) {
+                        t1 = it1.hasNext() ? it1.next() : null;
+                    }
+                    if (cmp >= 0) {
+                        t2 = it2.hasNext() ? it2.next() : null;
+                    }
+                } else if (cmp == 0) {
                     poseBuilder.addBoneTransform(combiner.apply(t1, t2));
                     t1 = it1.hasNext() ? it1.next() : null;
                     t2 = it2.hasNext() ? it2.next() : null;
@@ -43,10 +67,14 @@ public class BiPoseCombiner {
                     t2 = it2.hasNext() ? it2.next() : null;
                 }
             } else if (t1 != null) {
-                poseBuilder.addBoneTransform(combiner.apply(t1, BoneTransform.IDENTITY_TRANSFORM));
+                if (mask == null || mask.contains(t1.boneIndex())) {
+                    poseBuilder.addBoneTransform(combiner.apply(t1, BoneTransform.IDENTITY_TRANSFORM));
+                }
                 t1 = it1.hasNext() ? it1.next() : null;
             } else {
-                poseBuilder.addBoneTransform(combiner.apply(BoneTransform.IDENTITY_TRANSFORM, t2));
+                if (mask == null || mask.contains(t2.boneIndex())) {
+                    poseBuilder.addBoneTransform(combiner.apply(BoneTransform.IDENTITY_TRANSFORM, t2));
+                }
                 t2 = it2.hasNext() ? it2.next() : null;
             }
         }
@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.Pose;
 
 /**
@@ -48,4 +49,38 @@ public interface BlendSpace1D {
      * @return the blended pose
      */
     Pose blend(float position);
+
+    /**
+     * Computes which samplers {@link #blend(float)} uses at the given position, and their weights, without
+     * blending.
+     *
+     * <p>Only the poses of these samplers need to be set before blending at the same position, so callers
+     * evaluating sampler poses on demand can skip the others. Samplers with a zero weight may be listed.</p>
+     *
+     * @param position the position to perform blending
+     * @param dest receives the samplers and their weights, cleared first
+     * @return true if dest was filled, false if this blend space does not support it and every sampler pose
+     *         must be set
+     * @since 1.1.4
+     */
+    default boolean computeWeights(float position, SamplerWeights dest) {
+        return false;
+    }
+
+    /**
+     * Restricts {@link #blend(float)} to the bones of the mask, typically the active LOD bone set of the character.
+     * Excluded bones are skipped and absent from the blended pose.
+     *
+     * <p>The default implementation only accepts {@link BoneMask#ALL}.</p>
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     * @throws UnsupportedOperationException if this blend space cannot restrict blending and the mask
+     *                                       excludes bones
+     * @since 1.1.4
+     */
+    default void setBoneMask(BoneMask boneMask) {
+        if (!boneMask.isAll()) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support bone masks");
+        }
+    }
 }
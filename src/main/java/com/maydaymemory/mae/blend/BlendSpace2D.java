@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.Pose;
 
 /**
@@ -28,7 +29,8 @@ import com.maydaymemory.mae.basic.Pose;
  * Pose blendedPose = blendSpace.blend(playerDirection.x, playerDirection.z);
  * }</pre>
  *
- * <p>ClampToEdgeBlendSpace2D is a typical implementation for this scenario.</p>
+ * <p>ClampToEdgeBlendSpace2D is a typical implementation for this scenario. DynamicBlendSpace2D accepts
+ * samplers added, moved or removed while blending.</p>
  */
 public interface BlendSpace2D {
     /**
@@ -59,4 +61,39 @@ public interface BlendSpace2D {
      * @return the interpolated pose at the given (x, y) position
      */
     Pose blend(float x, float y);
+
+    /**
+     * Computes which samplers {@link #blend(float, float)} uses at the given coordinates, and their weights,
+     * without blending.
+     *
+     * <p>Only the poses of these samplers need to be set before blending at the same coordinates, so callers
+     * evaluating sampler poses on demand can skip the others. Samplers with a zero weight may be listed.</p>
+     *
+     * @param x the X coordinate of the blend input
+     * @param y the Y coordinate of the blend input
+     * @param dest receives the samplers and their weights, cleared first
+     * @return true if dest was filled, false if this blend space does not support it and every sampler pose
+     *         must be set
+     * @since 1.1.4
+     */
+    default boolean computeWeights(float x, float y, SamplerWeights dest) {
+        return false;
+    }
+
+    /**
+     * Restricts {@link #blend(float, float)} to the bones of the mask, typically the active LOD bone set of the character.
+     * Excluded bones are skipped and absent from the blended pose.
+     *
+     * <p>The default implementation only accepts {@link BoneMask#ALL}.</p>
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     * @throws UnsupportedOperationException if this blend space cannot restrict blending and the mask
+     *                                       excludes bones
+     * @since 1.1.4
+     */
+    default void setBoneMask(BoneMask boneMask) {
+        if (!boneMask.isAll()) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support bone masks");
+        }
+    }
 }
@@ -4,7 +4,7 @@ import com.maydaymemory.mae.basic.*;
 import com.maydaymemory.mae.util.triangulation.DelaunayTriangulator;
 import com.maydaymemory.mae.util.triangulation.NotEnoughPointsException;
 import com.maydaymemory.mae.util.triangulation.SamplerPoint;
-import com.maydaymemory.mae.util.triangulation.WeightCalculatingResult;
+import com.maydaymemory.mae.util.triangulation.TriangleLocator;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.joml.*;
 
@@ -16,6 +16,11 @@ import java.util.function.Supplier;
  * An implementation of BlendSpace2D that uses Delaunay triangulation to interpolate between sample poses.
  * When the input position is outside the convex hull of sample points, the blend result is clamped to the nearest edge.
  *
+ * <p>Blend positions usually move continuously, so the triangle of a blend is searched starting from the
+ * triangle of the previous blend, see {@link TriangleLocator}. At an unchanged position, e.g. when
+ * {@link #computeWeights(float, float, SamplerWeights)} is followed by {@link #blend(float, float)},
+ * the previous triangle and weights are reused without searching.</p>
+ *
  * <p>Typical usage: blending walk animations based on player velocity (see BlendSpace2D for example).</p>
  *
  * <b>Important:</b> You <b>must</b> call {@link #triangulate()} after setting all sample points and before calling {@link #blend(float, float)}.
@@ -23,14 +28,51 @@ import java.util.function.Supplier;
  */
 public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
     private DelaunayTriangulator<MySamplerPoint> triangulator;
-    private final Int2ObjectOpenHashMap<MySamplerPoint> pointMap = new Int2ObjectOpenHashMap<>();
+    /** Sampler positions, shared with blend spaces created by {@link #share()} and immutable once triangulated */
+    private final Int2ObjectOpenHashMap<MySamplerPoint> pointMap;
+    /** Sampler poses of this blend space */
+    private final Int2ObjectOpenHashMap<Pose> poseMap = new Int2ObjectOpenHashMap<>();
     private final Supplier<PoseBuilder> poseBuilderSupplier;
     private final BoneTransformFactory boneTransformFactory;
+    /** Triangle found by the last blend, where the next point location starts */
+    private int lastTriangle = -1;
+    /** Barycentric weights of the last blend */
+    private final Vector3f weights = new Vector3f();
+    /** Position of the last blend, whose triangle and weights are reused while it does not change */
+    private float lastX;
+    private float lastY;
+    /** Bones outside this mask are skipped and absent from blended poses */
+    private BoneMask boneMask = BoneMask.ALL;
 
     public ClampToEdgeBlendSpace2D(BoneTransformFactory boneTransformFactory,
                                    Supplier<PoseBuilder> poseBuilderSupplier) {
         this.boneTransformFactory = boneTransformFactory;
         this.poseBuilderSupplier = poseBuilderSupplier;
+        this.pointMap = new Int2ObjectOpenHashMap<>();
+    }
+
+    private ClampToEdgeBlendSpace2D(ClampToEdgeBlendSpace2D shared) {
+        this.boneTransformFactory = shared.boneTransformFactory;
+        this.poseBuilderSupplier = shared.poseBuilderSupplier;
+        this.pointMap = shared.pointMap;
+        this.triangulator = shared.triangulator;
+    }
+
+    /**
+     * Creates a blend space sharing the sampler positions and the triangulation of this one, with its own sampler poses.
+     *
+     * <p>Triangulating is by far the most expensive part of setting up a blend space, and its result only
+     * depends on the sampler positions. Characters using the same blend space design can thus triangulate
+     * one blend space once and share it with this method, which copies nothing.</p>
+     *
+     * @return a new blend space without sampler poses
+     * @throws IllegalStateException if triangulation has not been performed
+     */
+    public ClampToEdgeBlendSpace2D share() {
+        if (triangulator == null) {
+            throw new IllegalStateException("This Blend Space 2D has NOT been triangulated.");
+        }
+        return new ClampToEdgeBlendSpace2D(this);
     }
 
     /**
@@ -51,7 +93,7 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
             if (point != null) {
                 point.setPosition(new Vector2f(x, y));
             } else {
-                point = new MySamplerPoint(new Vector2f(x, y));
+                point = new MySamplerPoint(i, new Vector2f(x, y));
             }
             return point;
         });
@@ -84,13 +126,7 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
      */
     @Override
     public void setSamplerPose(int index, Pose pose) {
-        pointMap.compute(index, (i, point) -> {
-            if (point == null) {
-                point = new MySamplerPoint(null);
-            }
-            point.setPose(pose);
-            return point;
-        });
+        poseMap.put(index, pose);
     }
 
     /**
@@ -104,13 +140,11 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
      */
     @Override
     public Pose blend(float x, float y) {
-        if (triangulator == null) {
-            throw new IllegalStateException("This Blend Space 2D has NOT been triangulated.");
-        }
-        WeightCalculatingResult<MySamplerPoint> result = triangulator.calculateWeightsClampToEdge(new Vector2f(x, y));
-        Pose pose1 = result.a().getPose();
-        Pose pose2 = result.b().getPose();
-        Pose pose3 = result.c().getPose();
+        int triangle = locate(x, y);
+        TriangleLocator locator = triangulator.getLocator();
+        Pose pose1 = poseMap.get(((MySamplerPoint) locator.getVertex(triangle, 0)).getIndex());
+        Pose pose2 = poseMap.get(((MySamplerPoint) locator.getVertex(triangle, 1)).getIndex());
+        Pose pose3 = poseMap.get(((MySamplerPoint) locator.getVertex(triangle, 2)).getIndex());
         if (pose1 == null) {
             pose1 = DummyPose.INSTANCE;
         }
@@ -120,12 +154,51 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
         if (pose3 == null) {
             pose3 = DummyPose.INSTANCE;
         }
-        float alpha = result.alpha();
-        float beta = result.beta();
-        float gamma = result.gamma();
+        return blendTriangle(pose1, pose2, pose3, weights.x, weights.y, weights.z, boneMask,
+                poseBuilderSupplier.get(), boneTransformFactory);
+    }
 
-        PoseBuilder poseBuilder = poseBuilderSupplier.get();
+    @Override
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
+    @Override
+    public boolean computeWeights(float x, float y, SamplerWeights dest) {
+        int triangle = locate(x, y);
+        TriangleLocator locator = triangulator.getLocator();
+        dest.clear();
+        for (int vertex = 0; vertex < 3; vertex++) {
+            dest.add(((MySamplerPoint) locator.getVertex(triangle, vertex)).getIndex(), weights.get(vertex));
+        }
+        return true;
+    }
+
+    /**
+     * Finds the triangle of a position and its barycentric weights in {@link #weights}, reusing the previous
+     * result if the position did not change.
+     *
+     * @return the triangle index
+     */
+    private int locate(float x, float y) {
+        if (triangulator == null) {
+            throw new IllegalStateException("This Blend Space 2D has NOT been triangulated.");
+        }
+        if (lastTriangle >= 0 && x == lastX && y == lastY) {
+            return lastTriangle;
+        }
+        lastTriangle = triangulator.getLocator().locate(x, y, lastTriangle, weights);
+        lastX = x;
+        lastY = y;
+        return lastTriangle;
+    }
 
+    /**
+     * Blends three poses with barycentric weights, bone by bone, missing bones counting as identity.
+     */
+    static Pose blendTriangle(Pose pose1, Pose pose2, Pose pose3, float alpha, float beta, float gamma,
+                              BoneMask boneMask, PoseBuilder poseBuilder, BoneTransformFactory boneTransformFactory) {
+        BoneMask mask = boneMask.isAll() ? null : boneMask;
         Iterator<BoneTransform> it1 = pose1.getBoneTransforms().iterator();
         Iterator<BoneTransform> it2 = pose2.getBoneTransforms().iterator();
         Iterator<BoneTransform> it3 = pose3.getBoneTransforms().iterator();
@@ -142,6 +215,18 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
             index2 = t2 == null ? Integer.MAX_VALUE : t2.boneIndex();
             index3 = t3 == null ? Integer.MAX_VALUE : t3.boneIndex();
             minIndex = Math.min(index1, Math.min(index2, index3));
+            if (mask != null && !mask.contains(minIndex)) {
+                if (index1 == minIndex) {
+                    t1 = it1.hasNext() ? it1.next() : null;
+                }
+                if (index2 == minIndex) {
+                    t2 = it2.hasNext() ? it2.next() : null;
+                }
+                if (index3 == minIndex) {
+                    t3 = it3.hasNext() ? it3.next() : null;
+                }
+                continue;
+            }
             BoneTransform transform1 = index1 == minIndex ? t1 : identityTransform;
             BoneTransform transform2 = index2 == minIndex ? t2 : identityTransform;
             BoneTransform transform3 = index3 == minIndex ? t3 : identityTransform;
@@ -170,7 +255,7 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
         return poseBuilder.toPose();
     }
 
-    private Vector3f blendScalar(Vector3fc a, Vector3fc b, Vector3fc c,
+    private static Vector3f blendScalar(Vector3fc a, Vector3fc b, Vector3fc c,
                                  float alpha, float beta, float gamma) {
         Vector3f result = new Vector3f();
         a.mul(alpha, result);
@@ -179,7 +264,7 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
         return result;
     }
 
-    private Quaternionf blendQuaternion(Quaternionfc a, Quaternionfc b, Quaternionfc c,
+    private static Quaternionf blendQuaternion(Quaternionfc a, Quaternionfc b, Quaternionfc c,
                                         float alpha, float beta, float gamma) {
         float ax = a.x();
         float ay = a.y();
@@ -221,19 +306,16 @@ public class ClampToEdgeBlendSpace2D implements BlendSpace2D {
     }
 
     private static class MySamplerPoint implements SamplerPoint {
+        private final int index;
         private Vector2fc position;
-        private Pose pose;
 
-        public MySamplerPoint(Vector2fc position) {
+        public MySamplerPoint(int index, Vector2fc position) {
+            this.index = index;
             this.position = position;
         }
 
-        public Pose getPose() {
-            return pose;
-        }
-
-        public void setPose(Pose pose) {
-            this.pose = pose;
+        public int getIndex() {
+            return index;
         }
 
         @Override
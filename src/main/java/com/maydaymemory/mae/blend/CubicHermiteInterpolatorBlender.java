@@ -7,23 +7,69 @@ import org.joml.Quaternionfc;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.function.Supplier;
 
+/**
+ * Cubic Hermite interpolation between two poses and their velocities.
+ *
+ * <p>{@link #blend} and {@link #blendVelocity} return the position and the velocity of the curve as poses.
+ * When both are needed for the same inputs, {@link #blendFused} computes them in one merge pass over the four
+ * input poses and writes them into a dense {@link Result}, without allocating.</p>
+ *
+ * <p>Instances keep scratch storage for the merge, so they are not thread-safe.</p>
+ */
 public class CubicHermiteInterpolatorBlender implements KinematicInterpolatorBlender{
     private final BoneTransformFactory boneTransformFactory;
     private final Supplier<PoseBuilder> poseBuilderSupplier;
 
+    /** Merge state, reused across blends. Streams are base, base velocity, target, target velocity */
+    private final Iterator<?>[] iterators = new Iterator<?>[4];
+    private final BoneTransform[] heads = new BoneTransform[4];
+    private final BoneTransform[] transformsToCalculate = new BoneTransform[4];
+
+    /** Scratch storage for the rotation of one bone */
+    private final Quaternionf relativeRotation = new Quaternionf();
+    private final Vector3f relativeRotationVector = new Vector3f();
+    private final Vector3f blendedRotationVector = new Vector3f();
+    private final Quaternionf blendedRotation = new Quaternionf();
+
+    /** Output of {@link #blend} and {@link #blendVelocity}, converted to a pose afterwards */
+    private final Result poseResult = new Result();
+
+    /** Bones outside this mask are skipped and absent from the results */
+    private BoneMask boneMask = BoneMask.ALL;
+
     public CubicHermiteInterpolatorBlender(BoneTransformFactory boneTransformFactory,
                                            Supplier<PoseBuilder> poseBuilderSupplier) {
         this.boneTransformFactory = boneTransformFactory;
         this.poseBuilderSupplier = poseBuilderSupplier;
     }
 
+    /**
+     * Gets the bones blended by this blender.
+     *
+     * @return the bone mask
+     */
+    public BoneMask getBoneMask() {
+        return boneMask;
+    }
+
+    /**
+     * Restricts blending to the bones of the mask. Excluded bones are skipped before any computation and are
+     * absent from the output.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
     /**
      * Computes the analytical velocity (derivative) of the Hermite curve at the given time.
      * This is the CORRECT way to get velocity during interpolation, rather than finite differencing.
-     * 
+     *
      * @param base the starting pose
      * @param baseVelocity the velocity at the starting pose
      * @param target the ending pose
@@ -33,185 +79,197 @@ public class CubicHermiteInterpolatorBlender implements KinematicInterpolatorBle
      * @return the analytical velocity at the current time
      */
     public Pose blendVelocity(Pose base, Pose baseVelocity, Pose target, Pose targetVelocity, float time, float duration) {
+        merge(base, baseVelocity, target, targetVelocity, time, duration, poseResult, false, true);
+        return toVelocityPose(poseResult);
+    }
+
+    @Override
+    public Pose blend(Pose base, Pose baseVelocity, Pose target, Pose targetVelocity, float time, float duration) {
+        merge(base, baseVelocity, target, targetVelocity, time, duration, poseResult, true, false);
+        return toPose(poseResult);
+    }
+
+    /**
+     * Computes both the position and the velocity of the Hermite curve at the given time, in one pass.
+     *
+     * <p>The result is overwritten, its storage grows when needed and is kept afterwards, so blending into the
+     * same result every frame does not allocate. Use {@link #toPose(Result)} and {@link #toVelocityPose(Result)}
+     * to convert it to poses.</p>
+     *
+     * @param base the starting pose
+     * @param baseVelocity the velocity at the starting pose
+     * @param target the ending pose
+     * @param targetVelocity the velocity at the ending pose
+     * @param time current time
+     * @param duration total duration
+     * @param result receives the position and velocity of every bone
+     */
+    public void blendFused(Pose base, Pose baseVelocity, Pose target, Pose targetVelocity, float time, float duration,
+                           Result result) {
+        merge(base, baseVelocity, target, targetVelocity, time, duration, result, true, true);
+    }
+
+    /**
+     * Builds the position pose of a result.
+     *
+     * @param result the result of a blend
+     * @return a pose holding the positions of the result
+     */
+    public Pose toPose(Result result) {
+        return result.toPose(boneTransformFactory, poseBuilderSupplier.get());
+    }
+
+    /**
+     * Builds the velocity pose of a result.
+     *
+     * @param result the result of {@link #blendFused} or {@link #blendVelocity}
+     * @return a pose holding the velocities of the result
+     */
+    public Pose toVelocityPose(Result result) {
+        PoseBuilder builder = poseBuilderSupplier.get();
+        float[] velocities = result.getVelocities();
+        for (int i = 0; i < result.size(); i++) {
+            int offset = i * Result.VELOCITY_STRIDE;
+            builder.addBoneTransform(new BoneTransform(result.getBoneIndex(i),
+                    new Vector3f(velocities[offset], velocities[offset + 1], velocities[offset + 2]),
+                    new RotationVelocityRotationView(new Vector3f(velocities[offset + 3], velocities[offset + 4], velocities[offset + 5])),
+                    new Vector3f(velocities[offset + 6], velocities[offset + 7], velocities[offset + 8])));
+        }
+        return builder.toPose();
+    }
+
+    /**
+     * Merges the four input poses by bone index and evaluates the curve for every bone.
+     * A bone missing from a pose is taken as the identity transform, or the zero velocity.
+     */
+    private void merge(Pose base, Pose baseVelocity, Pose target, Pose targetVelocity, float time, float duration,
+                       Result result, boolean computePosition, boolean computeVelocity) {
         float weight = time / duration;
         float w2 = weight * weight;
-        
+        float w3 = w2 * weight;
+        // Hermite basis functions
+        float h1 = 2 * w3 - 3 * w2 + 1;
+        float h2 = w3 - 2 * w2 + weight;
+        float h3 = -2 * w3 + 3 * w2;
+        float h4 = w3 - w2;
         // Derivatives of Hermite basis functions with respect to weight
         // h1' = 6w² - 6w
         // h2' = 3w² - 4w + 1
         // h3' = -6w² + 6w
         // h4' = 3w² - 2w
+        // Note: dP/dt = (dP/dw) * (dw/dt) = (dP/dw) / duration
         float dh1 = 6 * w2 - 6 * weight;
         float dh2 = 3 * w2 - 4 * weight + 1;
         float dh3 = -6 * w2 + 6 * weight;
         float dh4 = 3 * w2 - 2 * weight;
-        
-        // Note: dP/dt = (dP/dw) * (dw/dt) = (dP/dw) / duration
-        // So we need to divide by duration, which is handled in blendVelocity() helper
-        
-        @SuppressWarnings("unchecked")
-        Iterator<BoneTransform>[] iterators = new Iterator[] {
-                base.getBoneTransforms().iterator(),
-                baseVelocity.getBoneTransforms().iterator(),
-                target.getBoneTransforms().iterator(),
-                targetVelocity.getBoneTransforms().iterator()
-        };
-        boolean[] nextFlag = new boolean[]{true, true, true, true};
-        BoneTransform[] transforms = new BoneTransform[4];
-        BoneTransform[] transformsToCalculate = new BoneTransform[4];
-        PoseBuilder builder = poseBuilderSupplier.get();
-        while (iterators[0].hasNext() || iterators[1].hasNext() || iterators[2].hasNext() || iterators[3].hasNext()) {
-            for (int i = 0; i < 4; i++) {
-                if (nextFlag[i]) {
-                    transforms[i] = iterators[i].hasNext() ? iterators[i].next() : null;
-                }
-            }
-            int index = Integer.MAX_VALUE;
-            for (BoneTransform transform : transforms) {
-                if (transform == null) {
-                    continue;
-                }
-                index = Math.min(index, transform.boneIndex());
-            }
-            for (int i = 0; i < 4; i++) {
-                BoneTransform transform = transforms[i];
-                if (transform != null && transform.boneIndex() == index) {
-                    transformsToCalculate[i] = transform;
-                    nextFlag[i] = true;
-                } else {
-                    transformsToCalculate[i] = (i & 1) == 0 ? BoneTransform.IDENTITY_TRANSFORM : BoneTransform.IDENTITY_VELOCITY;
-                    nextFlag[i] = false;
-                }
-            }
 
-            Vector3f velocityTranslation = blendVelocity(
-                    transformsToCalculate[0].translation(),
-                    transformsToCalculate[1].translation(),
-                    transformsToCalculate[2].translation(),
-                    transformsToCalculate[3].translation(),
-                    dh1, dh2, dh3, dh4, duration
-            );
-            Vector3f velocityScale = blendVelocity(
-                    transformsToCalculate[0].scale(),
-                    transformsToCalculate[1].scale(),
-                    transformsToCalculate[2].scale(),
-                    transformsToCalculate[3].scale(),
-                    dh1, dh2, dh3, dh4, duration
-            );
-
-            Vector3f velocityRotation = blendVelocity(
-                    BoneTransform.ZERO_VECTOR,
-                    transformsToCalculate[1].rotation().asEulerAngle(),
-                    MathUtil.logUnit(
-                        transformsToCalculate[2].rotation().asQuaternion().mul(
-                            transformsToCalculate[0].rotation().asQuaternion().conjugate(new Quaternionf()), 
-                            new Quaternionf()
-                        )
-                    ),
-                    transformsToCalculate[3].rotation().asEulerAngle(),
-                    dh1, dh2, dh3, dh4, duration
-            );
-            
-            builder.addBoneTransform(new BoneTransform(
-                    index, 
-                    velocityTranslation, 
-                    new RotationVelocityRotationView(velocityRotation), 
-                    velocityScale
-            ));
+        iterators[0] = base.getBoneTransforms().iterator();
+        iterators[1] = baseVelocity.getBoneTransforms().iterator();
+        iterators[2] = target.getBoneTransforms().iterator();
+        iterators[3] = targetVelocity.getBoneTransforms().iterator();
+        for (int i = 0; i < 4; i++) {
+            heads[i] = next(i);
         }
-        return builder.toPose();
-    }
-
-    @Override
-    public Pose blend(Pose base, Pose baseVelocity, Pose target, Pose targetVelocity, float time, float duration) {
-        float weight = time / duration;
-        float w2 = weight * weight;
-        float w3 = w2 * weight;
-        float h1 = 2 * w3 - 3 * w2 + 1;
-        float h2 = w3 - 2 * w2 + weight;
-        float h3 = -2 * w3 + 3 * w2;
-        float h4 = w3 - w2;
-        @SuppressWarnings("unchecked")
-        Iterator<BoneTransform>[] iterators = new Iterator[] {
-                base.getBoneTransforms().iterator(),
-                baseVelocity.getBoneTransforms().iterator(),
-                target.getBoneTransforms().iterator(),
-                targetVelocity.getBoneTransforms().iterator()
-        };
-        boolean[] nextFlag = new boolean[]{true, true, true, true};
-        BoneTransform[] transforms = new BoneTransform[4];
-        BoneTransform[] transformsToCalculate = new BoneTransform[4];
-        PoseBuilder builder = poseBuilderSupplier.get();
-        while (iterators[0].hasNext() || iterators[1].hasNext() || iterators[2].hasNext() || iterators[3].hasNext()) {
-            for (int i = 0; i < 4; i++) {
-                if (nextFlag[i]) {
-                    transforms[i] = iterators[i].hasNext() ? iterators[i].next() : null;
-                }
-            }
+        BoneMask mask = boneMask.isAll() ? null : boneMask;
+        result.clear();
+        while (true) {
             int index = Integer.MAX_VALUE;
-            for (BoneTransform transform : transforms) {
-                if (transform == null) {
-                    continue;
+            for (BoneTransform head : heads) {
+                if (head != null) {
+                    index = Math.min(index, head.boneIndex());
                 }
-                index = Math.min(index, transform.boneIndex());
+            }
+            if (index == Integer.MAX_VALUE) {
+                break;
             }
             for (int i = 0; i < 4; i++) {
-                BoneTransform transform = transforms[i];
-                if (transform != null && transform.boneIndex() == index) {
-                    transformsToCalculate[i] = transform;
-                    nextFlag[i] = true;
+                BoneTransform head = heads[i];
+                if (head != null && head.boneIndex() == index) {
+                    transformsToCalculate[i] = head;
+                    heads[i] = next(i);
                 } else {
                     transformsToCalculate[i] = (i & 1) == 0 ? BoneTransform.IDENTITY_TRANSFORM : BoneTransform.IDENTITY_VELOCITY;
-                    nextFlag[i] = false;
                 }
             }
+            if (mask != null && !mask.contains(index)) {
+                continue;
+            }
 
-            Vector3f newTransition = blend(
-                    transformsToCalculate[0].translation(),
-                    transformsToCalculate[1].translation(),
-                    transformsToCalculate[2].translation(),
-                    transformsToCalculate[3].translation(),
-                    h1, h2, h3, h4, duration
-            );
-            Vector3f newScale = blend(
-                    transformsToCalculate[0].scale(),
-                    transformsToCalculate[1].scale(),
-                    transformsToCalculate[2].scale(),
-                    transformsToCalculate[3].scale(),
-                    h1, h2, h3, h4, duration
-            );
-
-            Quaternionfc q0 = transformsToCalculate[0].rotation().asQuaternion();
-            Quaternionfc q1 = transformsToCalculate[2].rotation().asQuaternion();
-            Quaternionf relativeRotation = new Quaternionf();
+            int slot = result.add(index);
+            BoneTransform p0 = transformsToCalculate[0];
+            BoneTransform v0 = transformsToCalculate[1];
+            BoneTransform p1 = transformsToCalculate[2];
+            BoneTransform v1 = transformsToCalculate[3];
+
+            Quaternionfc q0 = p0.rotation().asQuaternion();
+            Quaternionfc q1 = p1.rotation().asQuaternion();
             q1.mul(q0.conjugate(relativeRotation), relativeRotation); // relativeRotation = q1 * q0^-1
-            Vector3f relativeRotationVector = MathUtil.logUnit(relativeRotation);
-            Vector3f blendedRotationVector = blend(
-                    BoneTransform.ZERO_VECTOR,
-                    transformsToCalculate[1].rotation().asEulerAngle(),
-                    relativeRotationVector,
-                    transformsToCalculate[3].rotation().asEulerAngle(),
-                    h1, h2, h3, h4, duration
-            );
-            Quaternionf blendedRotation = MathUtil.exp(blendedRotationVector).mul(q0);
-            builder.addBoneTransform(boneTransformFactory.createBoneTransform(index, newTransition, blendedRotation, newScale));
+            MathUtil.logUnit(relativeRotation, relativeRotationVector);
+            Vector3fc rotationVelocity0 = v0.rotation().asEulerAngle();
+            Vector3fc rotationVelocity1 = v1.rotation().asEulerAngle();
+
+            if (computePosition) {
+                float[] out = result.getTransforms();
+                int offset = slot * DensePose.STRIDE;
+                blend(p0.translation(), v0.translation(), p1.translation(), v1.translation(), h1, h2, h3, h4, duration, out, offset);
+                blend(p0.scale(), v0.scale(), p1.scale(), v1.scale(), h1, h2, h3, h4, duration, out, offset + 7);
+                blendedRotationVector.set(
+                        hermite(0, rotationVelocity0.x(), relativeRotationVector.x, rotationVelocity1.x(), h1, h2, h3, h4, duration),
+                        hermite(0, rotationVelocity0.y(), relativeRotationVector.y, rotationVelocity1.y(), h1, h2, h3, h4, duration),
+                        hermite(0, rotationVelocity0.z(), relativeRotationVector.z, rotationVelocity1.z(), h1, h2, h3, h4, duration));
+                MathUtil.exp(blendedRotationVector, blendedRotation).mul(q0);
+                out[offset + 3] = blendedRotation.x;
+                out[offset + 4] = blendedRotation.y;
+                out[offset + 5] = blendedRotation.z;
+                out[offset + 6] = blendedRotation.w;
+            }
+            if (computeVelocity) {
+                float[] out = result.getVelocities();
+                int offset = slot * Result.VELOCITY_STRIDE;
+                blendVelocity(p0.translation(), v0.translation(), p1.translation(), v1.translation(), dh1, dh2, dh3, dh4, duration, out, offset);
+                out[offset + 3] = hermiteVelocity(0, rotationVelocity0.x(), relativeRotationVector.x, rotationVelocity1.x(), dh1, dh2, dh3, dh4, duration);
+                out[offset + 4] = hermiteVelocity(0, rotationVelocity0.y(), relativeRotationVector.y, rotationVelocity1.y(), dh1, dh2, dh3, dh4, duration);
+                out[offset + 5] = hermiteVelocity(0, rotationVelocity0.z(), relativeRotationVector.z, rotationVelocity1.z(), dh1, dh2, dh3, dh4, duration);
+                blendVelocity(p0.scale(), v0.scale(), p1.scale(), v1.scale(), dh1, dh2, dh3, dh4, duration, out, offset + 6);
+            }
         }
-        return builder.toPose();
+        Arrays.fill(iterators, null);
+        Arrays.fill(transformsToCalculate, null);
+    }
+
+    /**
+     * Advances one of the merged streams.
+     */
+    private BoneTransform next(int stream) {
+        Iterator<?> iterator = iterators[stream];
+        return iterator.hasNext() ? (BoneTransform) iterator.next() : null;
+    }
+
+    private static void blend(Vector3fc p0, Vector3fc v0, Vector3fc p1, Vector3fc v1,
+                              float h1, float h2, float h3, float h4, float duration, float[] out, int offset) {
+        out[offset] = hermite(p0.x(), v0.x(), p1.x(), v1.x(), h1, h2, h3, h4, duration);
+        out[offset + 1] = hermite(p0.y(), v0.y(), p1.y(), v1.y(), h1, h2, h3, h4, duration);
+        out[offset + 2] = hermite(p0.z(), v0.z(), p1.z(), v1.z(), h1, h2, h3, h4, duration);
+    }
+
+    /**
+     * Computes the derivative of the Hermite blend function, for each component of a vector.
+     */
+    private static void blendVelocity(Vector3fc p0, Vector3fc v0, Vector3fc p1, Vector3fc v1,
+                                      float dh1, float dh2, float dh3, float dh4, float duration, float[] out, int offset) {
+        out[offset] = hermiteVelocity(p0.x(), v0.x(), p1.x(), v1.x(), dh1, dh2, dh3, dh4, duration);
+        out[offset + 1] = hermiteVelocity(p0.y(), v0.y(), p1.y(), v1.y(), dh1, dh2, dh3, dh4, duration);
+        out[offset + 2] = hermiteVelocity(p0.z(), v0.z(), p1.z(), v1.z(), dh1, dh2, dh3, dh4, duration);
     }
 
-    private static Vector3f blend(Vector3fc p0, Vector3fc v0, Vector3fc p1, Vector3fc v1,
-                                  float h1, float h2, float h3, float h4, float duration) {
-        Vector3f adjustedV0 = new Vector3f(v0).mul(duration);
-        Vector3f adjustedV1 = new Vector3f(v1).mul(duration);
-        float x = p0.x() * h1 + adjustedV0.x * h2 + p1.x() * h3 + adjustedV1.x * h4;
-        float y = p0.y() * h1 + adjustedV0.y * h2 + p1.y() * h3 + adjustedV1.y * h4;
-        float z = p0.z() * h1 + adjustedV0.z * h2 + p1.z() * h3 + adjustedV1.z * h4;
-        return new Vector3f(x, y, z);
+    private static float hermite(float p0, float v0, float p1, float v1,
+                                 float h1, float h2, float h3, float h4, float duration) {
+        return p0 * h1 + v0 * duration * h2 + p1 * h3 + v1 * duration * h4;
     }
-    
+
     /**
-     * Computes the derivative of the Hermite blend function.
-     * 
+     * Computes the derivative of the Hermite blend function for one component.
+     *
      * @param p0 starting position
      * @param v0 starting velocity
      * @param p1 ending position
@@ -221,17 +279,94 @@ public class CubicHermiteInterpolatorBlender implements KinematicInterpolatorBle
      * @param dh3 derivative of h3 with respect to weight
      * @param dh4 derivative of h4 with respect to weight
      * @param duration total duration
-     * @return velocity vector (dP/dt)
+     * @return velocity (dP/dt)
      */
-    private static Vector3f blendVelocity(Vector3fc p0, Vector3fc v0, Vector3fc p1, Vector3fc v1,
-                                          float dh1, float dh2, float dh3, float dh4, float duration) {
+    private static float hermiteVelocity(float p0, float v0, float p1, float v1,
+                                         float dh1, float dh2, float dh3, float dh4, float duration) {
         // dP/dw = dh1*p0 + dh2*v0*duration + dh3*p1 + dh4*v1*duration
         // dP/dt = (dP/dw) / duration
-        Vector3f adjustedV0 = new Vector3f(v0).mul(duration);
-        Vector3f adjustedV1 = new Vector3f(v1).mul(duration);
-        float x = (p0.x() * dh1 + adjustedV0.x * dh2 + p1.x() * dh3 + adjustedV1.x * dh4) / duration;
-        float y = (p0.y() * dh1 + adjustedV0.y * dh2 + p1.y() * dh3 + adjustedV1.y * dh4) / duration;
-        float z = (p0.z() * dh1 + adjustedV0.z * dh2 + p1.z() * dh3 + adjustedV1.z * dh4) / duration;
-        return new Vector3f(x, y, z);
+        return (p0 * dh1 + v0 * duration * dh2 + p1 * dh3 + v1 * duration * dh4) / duration;
+    }
+
+    /**
+     * Dense output of {@link #blendFused}, one entry per bone in ascending bone index order.
+     *
+     * <p>Positions are the transforms of the {@link DensePose}. Velocities are stored alongside as translation
+     * velocity (3), rotation velocity (3) and scale velocity (3) floats per entry, where the rotation velocity
+     * is the quaternion logarithm per unit of time, as in velocity poses.</p>
+     */
+    public static final class Result extends DensePose {
+        /** Floats per entry in {@link #getVelocities()} */
+        public static final int VELOCITY_STRIDE = 9;
+
+        private float[] velocities;
+
+        /**
+         * Constructs an empty result.
+         */
+        public Result() {
+            this(16);
+        }
+
+        /**
+         * Constructs an empty result with storage for a number of bones.
+         *
+         * @param capacity the initial number of bones
+         */
+        public Result(int capacity) {
+            super(capacity);
+            this.velocities = new float[Math.max(1, capacity) * VELOCITY_STRIDE];
+        }
+
+        /**
+         * Copies the translation velocity of an entry.
+         *
+         * @param entry the entry, in [0, {@link #size()})
+         * @param dest receives the translation velocity
+         * @return dest
+         */
+        public Vector3f getTranslationVelocity(int entry, Vector3f dest) {
+            int offset = entry * VELOCITY_STRIDE;
+            return dest.set(velocities[offset], velocities[offset + 1], velocities[offset + 2]);
+        }
+
+        /**
+         * Copies the rotation velocity of an entry, the quaternion logarithm per unit of time.
+         *
+         * @param entry the entry, in [0, {@link #size()})
+         * @param dest receives the rotation velocity
+         * @return dest
+         */
+        public Vector3f getRotationVelocity(int entry, Vector3f dest) {
+            int offset = entry * VELOCITY_STRIDE + 3;
+            return dest.set(velocities[offset], velocities[offset + 1], velocities[offset + 2]);
+        }
+
+        /**
+         * Copies the scale velocity of an entry.
+         *
+         * @param entry the entry, in [0, {@link #size()})
+         * @param dest receives the scale velocity
+         * @return dest
+         */
+        public Vector3f getScaleVelocity(int entry, Vector3f dest) {
+            int offset = entry * VELOCITY_STRIDE + 6;
+            return dest.set(velocities[offset], velocities[offset + 1], velocities[offset + 2]);
+        }
+
+        /**
+         * Gets the raw velocities, {@link #VELOCITY_STRIDE} floats per entry. Must not be modified.
+         *
+         * @return the velocity buffer, valid for the first {@link #size()} entries
+         */
+        public float[] getVelocities() {
+            return velocities;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            super.grow(capacity);
+            velocities = Arrays.copyOf(velocities, capacity * VELOCITY_STRIDE);
+        }
     }
 }
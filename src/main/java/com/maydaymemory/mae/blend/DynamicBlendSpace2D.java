@@ -0,0 +1,241 @@
+package com.maydaymemory.mae.blend;
+
+import com.maydaymemory.mae.basic.BoneMask;
+import com.maydaymemory.mae.basic.BoneTransformFactory;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.PoseBuilder;
+import com.maydaymemory.mae.util.triangulation.IncrementalDelaunay;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.joml.Vector3f;
+
+import java.util.function.Supplier;
+
+/**
+ * A 2D blend space whose samplers can be added, moved and removed at any time, clamping positions outside the
+ * convex hull of the samplers to its nearest edge like {@link ClampToEdgeBlendSpace2D}.
+ *
+ * <p>Sampler positions are kept in an {@link IncrementalDelaunay}, so that adding, moving or removing a
+ * sampler only re-triangulates the triangles around it, instead of the whole blend space. No
+ * {@code triangulate()} call is needed: blending works as soon as one sampler is placed, and interpolates
+ * along a line while all samplers are collinear.</p>
+ *
+ * <p>Blends locate their position in an immutable snapshot of the triangulation, taken after the sampler
+ * positions change and shared by all blends until they change again. Sampler positions can thus be edited
+ * from one thread while blend spaces created by {@link #share()} blend on others: a blend sees the samplers
+ * either before or after an edit, never in between. Each blend space must still be used by one thread at a
+ * time, like the other blend spaces.</p>
+ *
+ * <p>The snapshot copies the whole triangulation, so the first blend after a batch of edits costs O(n) in the
+ * number of samplers, however few samplers changed. Edits between two blends are batched into one copy; edit
+ * sampler positions in batches rather than interleaved with blends when there are many samplers.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class DynamicBlendSpace2D implements BlendSpace2D {
+    /** Sampler positions, shared with blend spaces created by {@link #share()} */
+    private final Triangulation triangulation;
+    /** Sampler poses of this blend space */
+    private final Int2ObjectOpenHashMap<Pose> poseMap = new Int2ObjectOpenHashMap<>();
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+    private final BoneTransformFactory boneTransformFactory;
+
+    /** Snapshot located in by the last blend, and the triangle found in it */
+    private IncrementalDelaunay.Snapshot lastSnapshot;
+    private int lastTriangle = -1;
+    /** Samplers and barycentric weights of the last blend */
+    private final int[] samplers = new int[3];
+    private final Vector3f weights = new Vector3f();
+    /** Bones outside this mask are skipped and absent from blended poses */
+    private BoneMask boneMask = BoneMask.ALL;
+
+    public DynamicBlendSpace2D(BoneTransformFactory boneTransformFactory,
+                               Supplier<PoseBuilder> poseBuilderSupplier) {
+        this.boneTransformFactory = boneTransformFactory;
+        this.poseBuilderSupplier = poseBuilderSupplier;
+        this.triangulation = new Triangulation();
+    }
+
+    private DynamicBlendSpace2D(DynamicBlendSpace2D shared) {
+        this.boneTransformFactory = shared.boneTransformFactory;
+        this.poseBuilderSupplier = shared.poseBuilderSupplier;
+        this.triangulation = shared.triangulation;
+    }
+
+    /**
+     * Creates a blend space sharing the sampler positions of this one, with its own sampler poses.
+     *
+     * <p>Sampler positions edited through any of the sharing blend spaces apply to all of them.</p>
+     *
+     * @return a new blend space without sampler poses
+     */
+    public DynamicBlendSpace2D share() {
+        return new DynamicBlendSpace2D(this);
+    }
+
+    /**
+     * Places a sampler, or moves it if it is placed already. Only the triangles around its old and new
+     * positions are re-triangulated.
+     *
+     * @param index the index of the sample point
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @throws IndexOutOfBoundsException if the index is negative number
+     * @throws IllegalArgumentException if another sampler is placed at the same position, or a coordinate is NaN
+     */
+    @Override
+    public void setSamplerPosition(int index, float x, float y) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Sampler index cannot be negative: " + index);
+        }
+        if (Float.isNaN(x) || Float.isNaN(y)) {
+            throw new IllegalArgumentException("Sampler position cannot be NaN");
+        }
+        triangulation.setPosition(index, x, y);
+    }
+
+    /**
+     * Removes a sampler. Only the triangles around its position are re-triangulated.
+     *
+     * @param index the index of the sample point
+     * @return true if the sampler was placed
+     */
+    public boolean removeSampler(int index) {
+        poseMap.remove(index);
+        return triangulation.remove(index);
+    }
+
+    /**
+     * Sets the pose for a sample point at the given index.
+     *
+     * @param index the index of the sample point
+     * @param pose the pose to assign
+     */
+    @Override
+    public void setSamplerPose(int index, Pose pose) {
+        poseMap.put(index, pose);
+    }
+
+    /**
+     * Blends poses based on the input (x, y) position.
+     * If the input is outside the convex hull, the result is clamped to the nearest edge.
+     *
+     * @param x the X coordinate of the blend input
+     * @param y the Y coordinate of the blend input
+     * @return the blended pose
+     * @throws IllegalStateException if no sampler is placed
+     */
+    @Override
+    public Pose blend(float x, float y) {
+        locate(x, y);
+        Pose pose1 = poseMap.get(samplers[0]);
+        Pose pose2 = poseMap.get(samplers[1]);
+        Pose pose3 = poseMap.get(samplers[2]);
+        if (pose1 == null) {
+            pose1 = DummyPose.INSTANCE;
+        }
+        if (pose2 == null) {
+            pose2 = DummyPose.INSTANCE;
+        }
+        if (pose3 == null) {
+            pose3 = DummyPose.INSTANCE;
+        }
+        return ClampToEdgeBlendSpace2D.blendTriangle(pose1, pose2, pose3, weights.x, weights.y, weights.z,
+                boneMask, poseBuilderSupplier.get(), boneTransformFactory);
+    }
+
+    @Override
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
+    @Override
+    public boolean computeWeights(float x, float y, SamplerWeights dest) {
+        locate(x, y);
+        dest.clear();
+        for (int vertex = 0; vertex < 3; vertex++) {
+            if (vertex == 0 || !dest.contains(samplers[vertex])) {
+                dest.add(samplers[vertex], weights.get(vertex));
+            }
+        }
+        return true;
+    }
+
+    private void locate(float x, float y) {
+        IncrementalDelaunay.Snapshot snapshot = triangulation.snapshot();
+        if (snapshot != lastSnapshot) {
+            // Triangle indices of another snapshot mean nothing in this one.
+            lastSnapshot = snapshot;
+            lastTriangle = -1;
+        }
+        lastTriangle = snapshot.locate(x, y, lastTriangle, samplers, weights);
+    }
+
+    /**
+     * Sampler positions and their triangulation, edited under the lock of this object and published to
+     * blends as immutable snapshots.
+     */
+    private static final class Triangulation {
+        private final IncrementalDelaunay delaunay = new IncrementalDelaunay();
+        /** Vertex of each placed sampler */
+        private final Int2IntOpenHashMap vertices = new Int2IntOpenHashMap();
+        /** Snapshot of the current positions, null until a blend needs it after an edit */
+        private volatile IncrementalDelaunay.Snapshot snapshot;
+
+        private Triangulation() {
+            vertices.defaultReturnValue(-1);
+        }
+
+        synchronized void setPosition(int index, float x, float y) {
+            int vertex = vertices.get(index);
+            if (vertex >= 0) {
+                if (delaunay.getX(vertex) == x && delaunay.getY(vertex) == y) {
+                    return;
+                }
+                double oldX = delaunay.getX(vertex);
+                double oldY = delaunay.getY(vertex);
+                delaunay.remove(vertex);
+                int moved = delaunay.insert(x, y, index);
+                if (moved < 0) {
+                    vertices.put(index, delaunay.insert(oldX, oldY, index));
+                    snapshot = null;
+                    throw new IllegalArgumentException("Another sampler is placed at (" + x + ", " + y + ")");
+                }
+                vertices.put(index, moved);
+            } else {
+                vertex = delaunay.insert(x, y, index);
+                if (vertex < 0) {
+                    throw new IllegalArgumentException("Another sampler is placed at (" + x + ", " + y + ")");
+                }
+                vertices.put(index, vertex);
+            }
+            snapshot = null;
+        }
+
+        synchronized boolean remove(int index) {
+            int vertex = vertices.remove(index);
+            if (vertex < 0) {
+                return false;
+            }
+            delaunay.remove(vertex);
+            snapshot = null;
+            return true;
+        }
+
+        IncrementalDelaunay.Snapshot snapshot() {
+            IncrementalDelaunay.Snapshot result = snapshot;
+            if (result == null) {
+                synchronized (this) {
+                    result = snapshot;
+                    if (result == null) {
+                        result = delaunay.snapshot();
+                        snapshot = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
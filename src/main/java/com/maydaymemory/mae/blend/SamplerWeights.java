@@ -0,0 +1,86 @@
+package com.maydaymemory.mae.blend;
+
+import java.util.Arrays;
+
+/**
+ * The samplers a blend space uses at a position, with their weights.
+ *
+ * <p>Filled by {@link BlendSpace1D#computeWeights(float, SamplerWeights)} and
+ * {@link BlendSpace2D#computeWeights(float, float, SamplerWeights)}, so that the poses of the other samplers
+ * do not need to be evaluated. Instances are meant to be reused from one evaluation to the next.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class SamplerWeights {
+    private int size;
+    private int[] indices = new int[4];
+    private float[] weights = new float[4];
+
+    /**
+     * Removes all samplers.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a sampler.
+     *
+     * @param index the index of the sampler
+     * @param weight the weight of the sampler, may be zero
+     */
+    public void add(int index, float weight) {
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+        }
+        indices[size] = index;
+        weights[size] = weight;
+        size++;
+    }
+
+    /**
+     * Gets the number of samplers.
+     *
+     * @return the number of samplers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the index of a sampler.
+     *
+     * @param i the position of the sampler in this list
+     * @return the sampler index
+     */
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    /**
+     * Gets the weight of a sampler.
+     *
+     * @param i the position of the sampler in this list
+     * @return the sampler weight
+     */
+    public float getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * Tests whether a sampler is in this list.
+     *
+     * @param index the index of the sampler
+     * @return true if the sampler is used
+     */
+    public boolean contains(int index) {
+        for (int i = 0; i < size; i++) {
+            if (indices[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,5 +1,7 @@
 package com.maydaymemory.mae.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
+import com.maydaymemory.mae.basic.BoneTransform;
 import com.maydaymemory.mae.basic.BoneTransformFactory;
 import com.maydaymemory.mae.basic.Pose;
 import com.maydaymemory.mae.basic.PoseBuilder;
@@ -21,17 +23,38 @@ public class SimpleAdditiveBlender implements AdditiveBlender {
 
     @Override
     public Pose blend(Pose basePose, Pose additivePose) {
-        return combiner.combine(basePose, additivePose, (transform1, transform2) -> {
-            if (transform1.boneIndex() == -1) { // means it is identity transform
-                return transform2;
-            }
-            if (transform2.boneIndex() == -1) {
-                return transform1;
-            }
-            Vector3fc newTranslation = transform1.translation().add(transform2.translation(), new Vector3f());
-            Quaternionf newRotation = transform2.rotation().asQuaternion().mul(transform1.rotation().asQuaternion(), new Quaternionf());
-            Vector3fc newScale = transform1.scale().mul(transform2.scale(), new Vector3f());
-            return boneTransformFactory.createBoneTransform(transform1.boneIndex(), newTranslation, newRotation, newScale);
-        });
+        return combiner.combine(basePose, additivePose,
+                (transform1, transform2) -> addTransforms(transform1, transform2, boneTransformFactory));
+    }
+
+    /**
+     * Applies an additive transform on top of a base transform.
+     *
+     * @param baseTransform the base transform, or the identity transform if the bone is absent from the base pose
+     * @param additiveTransform the additive transform, or the identity transform if the bone is absent from the additive pose
+     * @param boneTransformFactory factory for the result
+     * @return the combined transform
+     */
+    public static BoneTransform addTransforms(BoneTransform baseTransform, BoneTransform additiveTransform,
+                                              BoneTransformFactory boneTransformFactory) {
+        if (baseTransform.boneIndex() == -1) { // means it is identity transform
+            return additiveTransform;
+        }
+        if (additiveTransform.boneIndex() == -1) {
+            return baseTransform;
+        }
+        Vector3fc newTranslation = baseTransform.translation().add(additiveTransform.translation(), new Vector3f());
+        Quaternionf newRotation = additiveTransform.rotation().asQuaternion().mul(baseTransform.rotation().asQuaternion(), new Quaternionf());
+        Vector3fc newScale = baseTransform.scale().mul(additiveTransform.scale(), new Vector3f());
+        return boneTransformFactory.createBoneTransform(baseTransform.boneIndex(), newTranslation, newRotation, newScale);
+    }
+
+    /**
+     * Restricts blending to the bones of the mask. Excluded bones are skipped and absent from the output.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        combiner.setBoneMask(boneMask);
     }
 }
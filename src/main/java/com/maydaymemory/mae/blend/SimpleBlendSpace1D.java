@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.BoneTransformFactory;
 import com.maydaymemory.mae.basic.DummyPose;
 import com.maydaymemory.mae.basic.Pose;
@@ -16,17 +17,30 @@ public class SimpleBlendSpace1D implements BlendSpace1D {
     private final TreeSet<SamplerPoint> points = new TreeSet<>();
     private final Int2ObjectOpenHashMap<SamplerPoint> pointMap = new Int2ObjectOpenHashMap<>();
     private final SimpleInterpolatorBlender interpolatorBlender;
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+    /** Bones outside this mask are absent from blended poses */
+    private BoneMask boneMask = BoneMask.ALL;
+    /** Point at the looked up position, never part of {@link #points} */
+    private final SamplerPoint probe = new SamplerPoint(-1, 0);
+    /** Nearest point below the last looked up position, or null */
+    private SamplerPoint left;
+    /** Nearest point at or above the last looked up position, or null */
+    private SamplerPoint right;
 
     public SimpleBlendSpace1D(BoneTransformFactory boneTransformFactory,
                               Supplier<PoseBuilder> poseBuilderSupplier) {
         this.interpolatorBlender = new SimpleInterpolatorBlender(boneTransformFactory, poseBuilderSupplier);
+        this.poseBuilderSupplier = poseBuilderSupplier;
     }
 
     private static class SamplerPoint implements Comparable<SamplerPoint> {
-        private final float position;
+        private final int index;
+        /** Only changes for the probe */
+        private float position;
         private Pose pose;
 
-        public SamplerPoint(float position){
+        public SamplerPoint(int index, float position){
+            this.index = index;
             this.position = position;
         }
 
@@ -51,7 +65,7 @@ public class SimpleBlendSpace1D implements BlendSpace1D {
     @Override
     public void setSamplerPosition(int index, float position) {
         pointMap.compute(index, (i, oldPoint) -> {
-            SamplerPoint newPoint = new SamplerPoint(position);
+            SamplerPoint newPoint = new SamplerPoint(i, position);
             if (oldPoint != null) {
                 points.remove(oldPoint);
                 newPoint.pose = oldPoint.pose;
@@ -65,7 +79,7 @@ public class SimpleBlendSpace1D implements BlendSpace1D {
     public void setSamplerPose(int index, Pose pose) {
         pointMap.compute(index, (i, point) -> {
             if (point == null) {
-                point = new SamplerPoint(0); // position doesn't matter here because it is not into the TreeMap points
+                point = new SamplerPoint(i, 0); // position doesn't matter here because it is not into the TreeMap points
             }
             point.setPose(pose);
             return point;
@@ -74,14 +88,9 @@ public class SimpleBlendSpace1D implements BlendSpace1D {
 
     @Override
     public Pose blend(float position) {
-        if (points.isEmpty()) {
-            throw new IllegalStateException("There is no sample point");
-        }
-
-        SamplerPoint dummy = new SamplerPoint(position);
-        SamplerPoint right = points.ceiling(dummy);
-        SamplerPoint left = points.lower(dummy);
-
+        locate(position);
+        SamplerPoint left = this.left;
+        SamplerPoint right = this.right;
         if (left != null && right != null) {
             Pose p1 = left.getPose();
             Pose p2 = right.getPose();
@@ -97,11 +106,47 @@ public class SimpleBlendSpace1D implements BlendSpace1D {
 
             return interpolatorBlender.blend(p1, p2, alpha);
         } else if (left != null) {
-            return left.getPose();
+            return boneMask.filter(left.getPose(), poseBuilderSupplier);
         } else if (right != null) {
-            return right.getPose();
+            return boneMask.filter(right.getPose(), poseBuilderSupplier);
         }
 
         throw new IllegalStateException("This code should never be reached.");
     }
+
+    @Override
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+        interpolatorBlender.setBoneMask(boneMask);
+    }
+
+    @Override
+    public boolean computeWeights(float position, SamplerWeights dest) {
+        locate(position);
+        SamplerPoint left = this.left;
+        SamplerPoint right = this.right;
+        dest.clear();
+        if (left != null && right != null) {
+            float alpha = (position - left.getPosition()) / (right.getPosition() - left.getPosition());
+            dest.add(left.index, 1 - alpha);
+            dest.add(right.index, alpha);
+        } else if (left != null) {
+            dest.add(left.index, 1);
+        } else if (right != null) {
+            dest.add(right.index, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Find the points around a position, without allocating.
+     */
+    private void locate(float position) {
+        if (points.isEmpty()) {
+            throw new IllegalStateException("There is no sample point");
+        }
+        probe.position = position;
+        right = points.ceiling(probe);
+        left = points.lower(probe);
+    }
 }
@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.BoneTransformFactory;
 import com.maydaymemory.mae.basic.Pose;
 import com.maydaymemory.mae.basic.PoseBuilder;
@@ -37,4 +38,13 @@ public class SimpleEulerAdditiveBlender implements EulerAdditiveBlender {
             return boneTransformFactory.createBoneTransform(transform1.boneIndex(), newTranslation, newRotation, newScale);
         });
     }
+
+    /**
+     * Restricts blending to the bones of the mask. Excluded bones are skipped and absent from the output.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        combiner.setBoneMask(boneMask);
+    }
 }
@@ -1,6 +1,7 @@
 package com.maydaymemory.mae.blend;
 
 import com.maydaymemory.mae.basic.BoneTransform;
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.BoneTransformFactory;
 import com.maydaymemory.mae.basic.Pose;
 import com.maydaymemory.mae.basic.PoseBuilder;
@@ -32,6 +33,15 @@ public class SimpleInterpolatorBlender implements InterpolatorBlender{
         });
     }
 
+    /**
+     * Restricts blending to the bones of the mask. Excluded bones are skipped and absent from the output.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        combiner.setBoneMask(boneMask);
+    }
+
     public static BoneTransform leanerLerpTransforms(BoneTransform baseTransform, BoneTransform inputTransform,
                                                      float weight, int boneIndex, BoneTransformFactory transformFactory) {
         Vector3fc newTranslation = baseTransform.translation().lerp(inputTransform.translation(), weight, new Vector3f());
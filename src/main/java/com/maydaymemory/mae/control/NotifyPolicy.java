@@ -0,0 +1,40 @@
+package com.maydaymemory.mae.control;
+
+/**
+ * Enumeration of the ways notifies and clip events are handled when seeking.
+ *
+ * <p>A seek jumps from the current progress directly to a target progress. The
+ * policy decides what happens to the notifies, notify states and clip events lying
+ * in the skipped time span.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public enum NotifyPolicy {
+    /**
+     * Skip silently.
+     *
+     * <p>No notify is fired and no clip plan is produced for the skipped span. Notify states
+     * ending in the span are dropped without callbacks, and notify states starting in the span
+     * are not tracked.</p>
+     */
+    SILENT,
+
+    /**
+     * Fire everything.
+     *
+     * <p>The skipped span is processed exactly as if it had been covered by a single tick:
+     * every notify fires in order and every notify state receives its callbacks.</p>
+     */
+    FIRE_ALL,
+
+    /**
+     * Fire only what is still relevant at the target, and summarize the rest.
+     *
+     * <p>Notifies in the span are not fired but counted. Notify states both started and ended
+     * within the span are not called but counted as completed pairs. Notify states active
+     * before the seek and ended in the span receive their end callbacks, and notify states
+     * started in the span and still active at the target receive their start callbacks.</p>
+     */
+    SUMMARIZE
+}
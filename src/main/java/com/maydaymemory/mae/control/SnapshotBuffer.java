@@ -0,0 +1,246 @@
+package com.maydaymemory.mae.control;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Preallocated storage for one snapshot of runtime state, see {@link Snapshotable}.
+ *
+ * <p>Primitive values are written to a fixed-size byte buffer, references to immutable objects to a
+ * fixed-size reference table. Neither ever grows, so writing and reading a snapshot never allocates;
+ * writing more than the capacity throws an {@link IllegalStateException}. Values must be read in the
+ * order they were written, and reading past the written snapshot throws an {@link IllegalStateException} too.</p>
+ *
+ * <p>A typical rollback setup keeps one buffer per saved frame and reuses them in a ring:</p>
+ * <pre>{@code
+ * SnapshotBuffer snapshot = snapshots[frame % snapshots.length];
+ * snapshot.beginWrite();
+ * graph.writeSnapshot(snapshot);
+ * ...
+ * snapshot.beginRead();
+ * graph.readSnapshot(snapshot);
+ * }</pre>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class SnapshotBuffer {
+    /** Primitive values */
+    private final ByteBuffer data;
+
+    /** Object references */
+    private final Object[] references;
+
+    /** Number of bytes written */
+    private int dataSize;
+
+    /** Number of references written */
+    private int referenceCount;
+
+    /** Index of the next reference to read */
+    private int referencePosition;
+
+    /** Whether the buffer is being read rather than written */
+    private boolean reading;
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param dataCapacity the capacity for primitive values in bytes
+     * @param referenceCapacity the capacity for object references
+     */
+    public SnapshotBuffer(int dataCapacity, int referenceCapacity) {
+        if (dataCapacity < 0 || referenceCapacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        this.data = ByteBuffer.allocate(dataCapacity);
+        this.references = new Object[referenceCapacity];
+    }
+
+    /**
+     * Discards the content of this buffer and starts writing a new snapshot.
+     */
+    public void beginWrite() {
+        Arrays.fill(references, 0, referenceCount, null);
+        data.clear();
+        dataSize = 0;
+        referenceCount = 0;
+        reading = false;
+    }
+
+    /**
+     * Starts reading the snapshot from its beginning. Can be called any number of times to restore
+     * the same snapshot again.
+     */
+    public void beginRead() {
+        if (!reading) {
+            dataSize = data.position();
+            reading = true;
+        }
+        data.position(0);
+        data.limit(dataSize);
+        referencePosition = 0;
+    }
+
+    /**
+     * Writes a long value, taking 8 bytes of the data capacity.
+     *
+     * @param value the value
+     * @throws IllegalStateException if the buffer is being read, or fewer than 8 bytes of data capacity remain
+     */
+    public void writeLong(long value) {
+        ensureData(Long.BYTES);
+        data.putLong(value);
+    }
+
+    /**
+     * Writes an int value, taking 4 bytes of the data capacity.
+     *
+     * @param value the value
+     * @throws IllegalStateException if the buffer is being read, or fewer than 4 bytes of data capacity remain
+     */
+    public void writeInt(int value) {
+        ensureData(Integer.BYTES);
+        data.putInt(value);
+    }
+
+    /**
+     * Writes a float value, taking 4 bytes of the data capacity.
+     *
+     * @param value the value
+     * @throws IllegalStateException if the buffer is being read, or fewer than 4 bytes of data capacity remain
+     */
+    public void writeFloat(float value) {
+        ensureData(Float.BYTES);
+        data.putFloat(value);
+    }
+
+    /**
+     * Writes a boolean value, taking 1 byte of the data capacity.
+     *
+     * @param value the value
+     * @throws IllegalStateException if the buffer is being read, or no data capacity remains
+     */
+    public void writeBoolean(boolean value) {
+        ensureData(1);
+        data.put(value ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Writes a reference to an object, which must not be modified as long as the snapshot is kept.
+     *
+     * @param value the object, can be null
+     */
+    public void writeReference(@Nullable Object value) {
+        checkWriting();
+        if (referenceCount == references.length) {
+            throw new IllegalStateException("Snapshot reference capacity exceeded: " + references.length);
+        }
+        references[referenceCount++] = value;
+    }
+
+    /**
+     * Reads the next value, which must have been written by {@link #writeLong(long)}.
+     *
+     * @return the value
+     * @throws IllegalStateException if the buffer is being written, or fewer than 8 bytes of the snapshot remain
+     */
+    public long readLong() {
+        ensureReadable(Long.BYTES);
+        return data.getLong();
+    }
+
+    /**
+     * Reads the next value, which must have been written by {@link #writeInt(int)}.
+     *
+     * @return the value
+     * @throws IllegalStateException if the buffer is being written, or fewer than 4 bytes of the snapshot remain
+     */
+    public int readInt() {
+        ensureReadable(Integer.BYTES);
+        return data.getInt();
+    }
+
+    /**
+     * Reads the next value, which must have been written by {@link #writeFloat(float)}.
+     *
+     * @return the value
+     * @throws IllegalStateException if the buffer is being written, or fewer than 4 bytes of the snapshot remain
+     */
+    public float readFloat() {
+        ensureReadable(Float.BYTES);
+        return data.getFloat();
+    }
+
+    /**
+     * Reads the next value, which must have been written by {@link #writeBoolean(boolean)}.
+     *
+     * @return the value
+     * @throws IllegalStateException if the buffer is being written, or no data of the snapshot remains
+     */
+    public boolean readBoolean() {
+        ensureReadable(1);
+        return data.get() != 0;
+    }
+
+    /**
+     * Reads a reference written by {@link #writeReference(Object)}.
+     *
+     * @param <E> the type of the object
+     * @return the object, can be null
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <E> E readReference() {
+        checkReading();
+        if (referencePosition == referenceCount) {
+            throw new IllegalStateException("No more references in snapshot");
+        }
+        return (E) references[referencePosition++];
+    }
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return the size of the primitive data
+     */
+    public int getDataSize() {
+        return reading ? dataSize : data.position();
+    }
+
+    /**
+     * Gets the number of references written.
+     *
+     * @return the number of references
+     */
+    public int getReferenceCount() {
+        return referenceCount;
+    }
+
+    private void ensureData(int bytes) {
+        checkWriting();
+        if (data.remaining() < bytes) {
+            throw new IllegalStateException("Snapshot data capacity exceeded: " + data.capacity() + " bytes");
+        }
+    }
+
+    private void ensureReadable(int bytes) {
+        checkReading();
+        if (data.remaining() < bytes) {
+            throw new IllegalStateException("No more data in snapshot");
+        }
+    }
+
+    private void checkWriting() {
+        if (reading) {
+            throw new IllegalStateException("Snapshot buffer is being read, call beginWrite() first");
+        }
+    }
+
+    private void checkReading() {
+        if (!reading) {
+            throw new IllegalStateException("Snapshot buffer is being written, call beginRead() first");
+        }
+    }
+}
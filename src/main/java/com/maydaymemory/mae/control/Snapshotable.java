@@ -0,0 +1,33 @@
+package com.maydaymemory.mae.control;
+
+/**
+ * Interface for objects whose runtime state can be saved to and restored from a {@link SnapshotBuffer}.
+ *
+ * <p>A snapshot holds only what changes while animating, such as progress, timestamps, current states
+ * and histories, not the configuration of the object. Restoring a snapshot puts the object back into
+ * exactly the state it had when the snapshot was written, without invoking any callback, so that e.g.
+ * rollback netcode can rewind and re-simulate frames.</p>
+ *
+ * <p>Writing and restoring never allocate. Immutable objects which are part of the state, like poses,
+ * animation states or montage sections, are stored by reference, so a snapshot can only be restored in
+ * the process which wrote it.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public interface Snapshotable {
+    /**
+     * Appends the runtime state of this object to a snapshot.
+     *
+     * @param buffer the snapshot being written
+     */
+    void writeSnapshot(SnapshotBuffer buffer);
+
+    /**
+     * Restores the runtime state of this object from a snapshot, reading exactly what
+     * {@link #writeSnapshot(SnapshotBuffer)} wrote.
+     *
+     * @param buffer the snapshot being read
+     */
+    void readSnapshot(SnapshotBuffer buffer);
+}
@@ -1,7 +1,9 @@
 package com.maydaymemory.mae.control.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.Pose;
 import com.maydaymemory.mae.blend.BlendSpace1D;
+import com.maydaymemory.mae.blend.SamplerWeights;
 import com.maydaymemory.mae.control.OutputPort;
 import com.maydaymemory.mae.control.Slot;
 
@@ -17,6 +19,13 @@ import java.util.Objects;
  * (position). The node manages a collection of pose samplers and a position input,
  * providing an output port that delivers the interpolated pose result.</p>
  * 
+ * <p>If the blend space supports {@link BlendSpace1D#computeWeights(float, SamplerWeights)}, only the
+ * samplers it uses at the current position are asked for their pose, so samplers created with
+ * {@link PoseSampler#lazy(int, OutputPort)} evaluate two animations per blend however many feed the space.
+ * Every sampler slot is still read on each evaluation, since the index of a sampler is part of the slot
+ * value. A sampler holding a pose, or a slot connected to a port which evaluates a pose to build its sampler,
+ * costs that evaluation whatever its weight; only {@link PoseSampler#lazy(int, OutputPort)} samplers defer it.</p>
+ *
  * <p>The blend space concept is commonly used in animation systems for creating
  * smooth transitions between different poses based on continuous parameters
  * such as speed, direction, or other game state variables.</p>
@@ -37,6 +46,9 @@ public class BlendSpace1DNode{
     /** Output port that provides the interpolated pose result */
     private final OutputPort<Pose> outputPort = this::getPose;
 
+    /** Samplers used at the current position */
+    private final SamplerWeights weights = new SamplerWeights();
+
     /**
      * Constructs a new BlendSpace1DNode with the specified blend space.
      * 
@@ -55,6 +67,19 @@ public class BlendSpace1DNode{
         return blendSpace;
     }
 
+    /**
+     * Restricts blending to the bones of the mask, e.g. the mask of the character's current detail level
+     * from {@link com.maydaymemory.mae.basic.Skeleton#getLodBoneMask(int)}.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     * @throws UnsupportedOperationException if the blend space does not support bone masks
+     * @see BlendSpace1D#setBoneMask(BoneMask)
+     * @since 1.1.4
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        blendSpace.setBoneMask(boneMask);
+    }
+
     /**
      * Gets the list of sampler slots that provide poses to the blend space.
      * 
@@ -86,20 +111,22 @@ public class BlendSpace1DNode{
      * Performs the interpolation operation using the current pose samplers and position.
      * 
      * <p>This method iterates through all sampler slots, updates the blend space with
-     * the current poses, and then performs the interpolation based on the position
-     * parameter.</p>
+     * the current poses of the samplers used at the position, and then performs the
+     * interpolation based on the position parameter.</p>
      * 
      * @return the interpolated pose result
      */
     public Pose getPose() {
+        float position = Objects.requireNonNull(positionSlot.get());
+        boolean filtered = blendSpace.computeWeights(position, weights);
         for (Slot<PoseSampler> samplerSlot : samplerSlots) {
             PoseSampler poseSampler = samplerSlot.get();
-            if (poseSampler == null) {
+            if (poseSampler == null || filtered && !weights.contains(poseSampler.getIndex())) {
                 continue;
             }
             blendSpace.setSamplerPose(poseSampler.getIndex(), poseSampler.getPose());
         }
-        return blendSpace.blend(Objects.requireNonNull(positionSlot.get()));
+        return blendSpace.blend(position);
     }
 
    
@@ -108,9 +135,31 @@ public class BlendSpace1DNode{
         
         private final Pose pose;
 
+        /** Source of the pose if it is evaluated on demand */
+        private final OutputPort<Pose> poseSource;
+
         public PoseSampler(int index, Pose pose) {
             this.index = index;
             this.pose = pose;
+            this.poseSource = null;
+        }
+
+        private PoseSampler(int index, OutputPort<Pose> poseSource) {
+            this.index = index;
+            this.pose = null;
+            this.poseSource = poseSource;
+        }
+
+        /**
+         * Creates a sampler whose pose is only evaluated when a blend space node uses it.
+         *
+         * @param index the index of the sampler in the blend space
+         * @param poseSource the source of the pose, usually the output port of an animation node
+         * @return the sampler
+         * @since 1.1.4
+         */
+        public static PoseSampler lazy(int index, OutputPort<Pose> poseSource) {
+            return new PoseSampler(index, poseSource);
         }
 
         public int getIndex() {
@@ -118,7 +167,7 @@ public class BlendSpace1DNode{
         }
 
         public Pose getPose() {
-            return pose;
+            return poseSource != null ? poseSource.get() : pose;
         }
     }
 }
@@ -1,7 +1,9 @@
 package com.maydaymemory.mae.control.blend;
 
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.Pose;
 import com.maydaymemory.mae.blend.BlendSpace2D;
+import com.maydaymemory.mae.blend.SamplerWeights;
 import com.maydaymemory.mae.control.OutputPort;
 import com.maydaymemory.mae.control.Slot;
 
@@ -18,6 +20,13 @@ import java.util.Objects;
  * and two position inputs, providing an output port that delivers the interpolated
  * pose result.</p>
  * 
+ * <p>If the blend space supports {@link BlendSpace2D#computeWeights(float, float, SamplerWeights)}, only
+ * the samplers it uses at the current position are asked for their pose, so samplers created with
+ * {@link BlendSpace1DNode.PoseSampler#lazy} evaluate three animations per blend however many feed the
+ * space. Every sampler slot is still read on each evaluation, since the index of a sampler is part of the
+ * slot value. A sampler holding a pose, or a slot connected to a port which evaluates a pose to build its
+ * sampler, costs that evaluation whatever its weight; only lazy samplers defer it.</p>
+ *
  * <p>Two-dimensional blend spaces are commonly used in animation systems for creating
  * smooth transitions between different poses based on two continuous parameters
  * such as speed and direction, or other two-dimensional game state variables.</p>
@@ -41,6 +50,9 @@ public class BlendSpace2DNode {
     /** Output port that provides the interpolated pose result */
     private final OutputPort<Pose> outputPort = this::getPose;
 
+    /** Samplers used at the current position */
+    private final SamplerWeights weights = new SamplerWeights();
+
     /**
      * Constructs a new BlendSpace2DNode with the specified blend space.
      * 
@@ -59,6 +71,19 @@ public class BlendSpace2DNode {
         return blendSpace;
     }
 
+    /**
+     * Restricts blending to the bones of the mask, e.g. the mask of the character's current detail level
+     * from {@link com.maydaymemory.mae.basic.Skeleton#getLodBoneMask(int)}.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     * @throws UnsupportedOperationException if the blend space does not support bone masks
+     * @see BlendSpace2D#setBoneMask(BoneMask)
+     * @since 1.1.4
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        blendSpace.setBoneMask(boneMask);
+    }
+
     /**
      * Gets the list of sampler slots that provide poses to the blend space.
      * 
@@ -99,19 +124,22 @@ public class BlendSpace2DNode {
      * Performs the interpolation operation using the current pose samplers and positions.
      * 
      * <p>This method iterates through all sampler slots, updates the blend space with
-     * the current poses, and then performs the interpolation based on the X and Y
-     * position parameters.</p>
+     * the current poses of the samplers used at the position, and then performs the
+     * interpolation based on the X and Y position parameters.</p>
      * 
      * @return the interpolated pose result
      */
     public Pose getPose() {
+        float x = Objects.requireNonNull(positionXSlot.get());
+        float y = Objects.requireNonNull(positionYSlot.get());
+        boolean filtered = blendSpace.computeWeights(x, y, weights);
         for (Slot<BlendSpace1DNode.PoseSampler> samplerSlot : samplerSlots) {
             BlendSpace1DNode.PoseSampler poseSampler = samplerSlot.get();
-            if (poseSampler == null) {
+            if (poseSampler == null || filtered && !weights.contains(poseSampler.getIndex())) {
                 continue;
             }
             blendSpace.setSamplerPose(poseSampler.getIndex(), poseSampler.getPose());
         }
-        return blendSpace.blend(Objects.requireNonNull(positionXSlot.get()), Objects.requireNonNull(positionYSlot.get()));
+        return blendSpace.blend(x, y);
     }
 }
@@ -0,0 +1,116 @@
+package com.maydaymemory.mae.control.command;
+
+import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.montage.AnimationMontageRunner;
+import com.maydaymemory.mae.control.runner.IAdjustableSpeedState;
+import com.maydaymemory.mae.control.runner.IAnimationContext;
+import com.maydaymemory.mae.control.runner.IAnimationState;
+
+/**
+ * A pooled, mutable command record stored in an {@link AnimationCommandQueue} slot.
+ *
+ * <p>Command records are preallocated by the queue and reused for the whole lifetime of the
+ * queue, so enqueueing a command never allocates. A record is written by exactly one producer
+ * thread after it has claimed the slot, and is read and cleared by the consumer thread after the
+ * slot has been published. Records are therefore never exposed outside the queue.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+final class AnimationCommand {
+    /** Type of the command, or null if the record is free */
+    Type type;
+
+    /** The object the command operates on */
+    Object target;
+
+    /** Object argument (section name, state, parameter value or runnable) */
+    Object objectValue;
+
+    /** Long argument (progress in nanoseconds) */
+    long longValue;
+
+    /** Float argument (speed) */
+    float floatValue;
+
+    /**
+     * Fills this record.
+     *
+     * @param type the command type
+     * @param target the object the command operates on
+     * @param objectValue the object argument
+     * @param longValue the long argument
+     * @param floatValue the float argument
+     */
+    void set(Type type, Object target, Object objectValue, long longValue, float floatValue) {
+        this.type = type;
+        this.target = target;
+        this.objectValue = objectValue;
+        this.longValue = longValue;
+        this.floatValue = floatValue;
+    }
+
+    /**
+     * Releases references held by this record so that the targets can be garbage collected.
+     */
+    void clear() {
+        this.type = null;
+        this.target = null;
+        this.objectValue = null;
+    }
+
+    /**
+     * Applies this command to its target. Must be called on the animation thread.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void execute() {
+        switch (type) {
+            case MONTAGE_START:
+                ((AnimationMontageRunner<?>) target).start((String) objectValue);
+                break;
+            case MONTAGE_STOP:
+                ((AnimationMontageRunner<?>) target).stop();
+                break;
+            case MONTAGE_SET_SPEED:
+                ((AnimationMontageRunner<?>) target).setSpeed(floatValue);
+                break;
+            case MONTAGE_SET_PROGRESS:
+                ((AnimationMontageRunner<?>) target).setProgress(longValue);
+                break;
+            case MONTAGE_SET_SECTION:
+                ((AnimationMontageRunner<?>) target).setSection((String) objectValue);
+                break;
+            case CONTEXT_SET_STATE:
+                ((IAnimationContext) target).setState((IAnimationState) objectValue);
+                break;
+            case CONTEXT_SET_PROGRESS:
+                ((IAnimationContext) target).setProgress(longValue);
+                break;
+            case STATE_SET_SPEED:
+                ((IAdjustableSpeedState) target).setSpeed(floatValue);
+                break;
+            case SET_PARAMETER:
+                ((Slot) target).setDefaultValue(objectValue);
+                break;
+            case RUN:
+                ((Runnable) target).run();
+                break;
+        }
+    }
+
+    /**
+     * Command types supported by {@link AnimationCommandQueue}.
+     */
+    enum Type {
+        MONTAGE_START,
+        MONTAGE_STOP,
+        MONTAGE_SET_SPEED,
+        MONTAGE_SET_PROGRESS,
+        MONTAGE_SET_SECTION,
+        CONTEXT_SET_STATE,
+        CONTEXT_SET_PROGRESS,
+        STATE_SET_SPEED,
+        SET_PARAMETER,
+        RUN
+    }
+}
@@ -0,0 +1,277 @@
+package com.maydaymemory.mae.control.command;
+
+import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.Tickable;
+import com.maydaymemory.mae.control.montage.AnimationMontageRunner;
+import com.maydaymemory.mae.control.runner.IAdjustableSpeedState;
+import com.maydaymemory.mae.control.runner.IAnimationContext;
+import com.maydaymemory.mae.control.runner.IAnimationState;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer command queue for controlling
+ * animation components from other threads.
+ *
+ * <p>Runners, montage runners, contexts and states are not thread-safe. Instead of calling their
+ * mutators directly, gameplay threads enqueue commands into the per-character queue, and the
+ * animation thread applies them in enqueue order when the queue is drained. Draining happens at the
+ * start of {@link com.maydaymemory.mae.control.runner.AnimationRunner#tick()} and
+ * {@link AnimationMontageRunner#tick()} when the queue is attached to those runners, or whenever
+ * {@link #tick()} / {@link #drain()} is called explicitly.</p>
+ *
+ * <p>All command records are preallocated in a ring of fixed capacity, so enqueueing never
+ * allocates and never blocks. When the ring is full the enqueue methods return {@code false} and
+ * the command is dropped; the caller decides whether to retry or discard.</p>
+ *
+ * <p>Any number of threads may enqueue concurrently, but {@link #drain()} must only ever be called
+ * from the single animation thread that owns the controlled components.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class AnimationCommandQueue implements Tickable {
+    /** Preallocated command records, one per slot */
+    private final AnimationCommand[] commands;
+
+    /**
+     * Per-slot sequence numbers. A slot at position {@code p} is free for producers when its
+     * sequence equals {@code p}, and readable for the consumer when it equals {@code p + 1}.
+     */
+    private final AtomicLongArray sequences;
+
+    /** Index mask, capacity - 1 */
+    private final int mask;
+
+    /** Next position to be claimed by producers */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next position to be consumed, only accessed by the consumer thread */
+    private long head;
+
+    /**
+     * Constructs a command queue with a capacity of 256 commands.
+     */
+    public AnimationCommandQueue() {
+        this(256);
+    }
+
+    /**
+     * Constructs a command queue with the specified capacity.
+     *
+     * @param capacity the maximum number of pending commands, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is not positive or too large
+     */
+    public AnimationCommandQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be in range [1, 2^30], got " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.commands = new AnimationCommand[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            commands[i] = new AnimationCommand();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Gets the number of commands this queue can hold.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return commands.length;
+    }
+
+    /**
+     * Enqueues {@link AnimationMontageRunner#start(String)}.
+     *
+     * @param runner the montage runner
+     * @param sectionName the section to play
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean startMontage(AnimationMontageRunner<?> runner, String sectionName) {
+        return offer(AnimationCommand.Type.MONTAGE_START, runner, sectionName, 0L, 0f);
+    }
+
+    /**
+     * Enqueues {@link AnimationMontageRunner#stop()}.
+     *
+     * @param runner the montage runner
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean stopMontage(AnimationMontageRunner<?> runner) {
+        return offer(AnimationCommand.Type.MONTAGE_STOP, runner, null, 0L, 0f);
+    }
+
+    /**
+     * Enqueues {@link AnimationMontageRunner#setSpeed(float)}.
+     *
+     * @param runner the montage runner
+     * @param speed the playback speed
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean setMontageSpeed(AnimationMontageRunner<?> runner, float speed) {
+        return offer(AnimationCommand.Type.MONTAGE_SET_SPEED, runner, null, 0L, speed);
+    }
+
+    /**
+     * Enqueues {@link AnimationMontageRunner#setProgress(long)}.
+     *
+     * @param runner the montage runner
+     * @param progress the progress in nanoseconds
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean setMontageProgress(AnimationMontageRunner<?> runner, long progress) {
+        return offer(AnimationCommand.Type.MONTAGE_SET_PROGRESS, runner, null, progress, 0f);
+    }
+
+    /**
+     * Enqueues {@link AnimationMontageRunner#setSection(String)}.
+     *
+     * @param runner the montage runner
+     * @param sectionName the section name
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean setMontageSection(AnimationMontageRunner<?> runner, String sectionName) {
+        return offer(AnimationCommand.Type.MONTAGE_SET_SECTION, runner, sectionName, 0L, 0f);
+    }
+
+    /**
+     * Enqueues {@link IAnimationContext#setState(IAnimationState)}.
+     *
+     * @param context the animation context
+     * @param state the new state
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean setState(IAnimationContext context, @Nullable IAnimationState state) {
+        return offer(AnimationCommand.Type.CONTEXT_SET_STATE, context, state, 0L, 0f);
+    }
+
+    /**
+     * Enqueues {@link IAnimationContext#setProgress(long)}.
+     *
+     * @param context the animation context
+     * @param progress the progress in nanoseconds
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean setProgress(IAnimationContext context, long progress) {
+        return offer(AnimationCommand.Type.CONTEXT_SET_PROGRESS, context, null, progress, 0f);
+    }
+
+    /**
+     * Enqueues {@link IAdjustableSpeedState#setSpeed(float)}, e.g. for a
+     * {@link com.maydaymemory.mae.control.runner.LoopingState}.
+     *
+     * @param state the state whose speed is adjusted
+     * @param speed the speed multiplier
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean setSpeed(IAdjustableSpeedState state, float speed) {
+        return offer(AnimationCommand.Type.STATE_SET_SPEED, state, null, 0L, speed);
+    }
+
+    /**
+     * Enqueues {@link Slot#setDefaultValue(Object)}, which is how unconnected graph parameters are set.
+     *
+     * @param slot the parameter slot
+     * @param value the new value
+     * @param <T> the slot value type
+     * @return true if enqueued, false if the queue is full
+     */
+    public <T> boolean setParameter(Slot<T> slot, @Nullable T value) {
+        return offer(AnimationCommand.Type.SET_PARAMETER, slot, value, 0L, 0f);
+    }
+
+    /**
+     * Enqueues an arbitrary action to run on the animation thread.
+     *
+     * <p>To keep enqueueing allocation-free, pass a preallocated runnable rather than a capturing lambda.</p>
+     *
+     * @param action the action to run
+     * @return true if enqueued, false if the queue is full
+     */
+    public boolean run(Runnable action) {
+        return offer(AnimationCommand.Type.RUN, action, null, 0L, 0f);
+    }
+
+    /**
+     * Checks whether there is no command ready to be drained.
+     *
+     * @return true if no command is pending
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * Applies all pending commands in enqueue order. Must be called on the consumer thread.
+     *
+     * <p>At most {@link #getCapacity()} commands are applied per call, so producers that keep
+     * enqueueing cannot starve the caller.</p>
+     *
+     * @return the number of commands applied
+     */
+    public int drain() {
+        int count = 0;
+        while (count < commands.length) {
+            long position = head;
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            AnimationCommand command = commands[index];
+            head = position + 1;
+            count++;
+            try {
+                command.execute();
+            } finally {
+                command.clear();
+                sequences.lazySet(index, position + commands.length);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Drains the queue.
+     */
+    @Override
+    public void tick() {
+        drain();
+    }
+
+    private boolean offer(AnimationCommand.Type type, Object target, @Nullable Object objectValue,
+                          long longValue, float floatValue) {
+        if (target == null) {
+            throw new IllegalArgumentException("Command target cannot be null");
+        }
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // The slot still holds a command from the previous lap: the queue is full.
+                return false;
+            }
+            // Otherwise another producer claimed this position, retry with the new tail.
+        }
+        commands[index].set(type, target, objectValue, longValue, floatValue);
+        // Publishing the sequence makes the record fields visible to the consumer.
+        sequences.set(index, position + 1);
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package com.maydaymemory.mae.control.graph;
+
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.control.OutputPort;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
+import com.maydaymemory.mae.control.Tickable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Animation graph of one character, created by {@link AnimationGraphTemplate#instantiate(Object)}.
+ *
+ * <p>Ticking the graph ticks its {@link Tickable} nodes in the order they were added to the template.
+ * The output pose is read from the output node declared in the template.</p>
+ *
+ * <p>A snapshot of the graph is the snapshots of all its {@link Snapshotable} nodes, in node order,
+ * which makes it the whole runtime state of a character as long as the context holds none. If it does,
+ * snapshot the context separately.</p>
+ *
+ * @param <C> Context type
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class AnimationGraph<C> implements Tickable, Snapshotable {
+    /** Template this graph was created from */
+    private final AnimationGraphTemplate<C> template;
+
+    /** Context of this graph */
+    private final C context;
+
+    /** Nodes, by node index */
+    private final Object[] nodes;
+
+    /** Nodes ticked by this graph, in order of addition */
+    private final Tickable[] tickables;
+
+    /** Output port of the output node, or null */
+    @Nullable
+    private final OutputPort<Pose> output;
+
+    /** Output port of this graph */
+    private final OutputPort<Pose> outputPort = this::getPose;
+
+    AnimationGraph(AnimationGraphTemplate<C> template, C context, Object[] nodes, Tickable[] tickables,
+                   @Nullable OutputPort<Pose> output) {
+        this.template = template;
+        this.context = context;
+        this.nodes = nodes;
+        this.tickables = tickables;
+        this.output = output;
+    }
+
+    @Override
+    public void tick() {
+        for (Tickable tickable : tickables) {
+            tickable.tick();
+        }
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        for (Object node : nodes) {
+            if (node instanceof Snapshotable) {
+                ((Snapshotable) node).writeSnapshot(buffer);
+            }
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        for (Object node : nodes) {
+            if (node instanceof Snapshotable) {
+                ((Snapshotable) node).readSnapshot(buffer);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the output pose of the graph.
+     *
+     * @return Output pose, or {@link DummyPose#INSTANCE} if the template declares no output
+     */
+    public Pose getPose() {
+        if (output == null) {
+            return DummyPose.INSTANCE;
+        }
+        Pose pose = output.get();
+        return pose == null ? DummyPose.INSTANCE : pose;
+    }
+
+    /**
+     * Get the output port of the graph.
+     *
+     * @return Output port providing the output pose
+     */
+    public OutputPort<Pose> getOutputPort() {
+        return outputPort;
+    }
+
+    /**
+     * Get a node of this graph.
+     *
+     * @param node Node handle from the template
+     * @param <N> Node type
+     * @return Node
+     */
+    @SuppressWarnings("unchecked")
+    public <N> N getNode(AnimationGraphTemplate.Node<N> node) {
+        return (N) nodes[template.checkNode(node)];
+    }
+
+    /**
+     * Get a node of this graph by index.
+     *
+     * @param index Node index
+     * @return Node
+     */
+    public Object getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Get the template this graph was created from.
+     *
+     * @return Template
+     */
+    public AnimationGraphTemplate<C> getTemplate() {
+        return template;
+    }
+
+    /**
+     * Get the context of this graph.
+     *
+     * @return Context
+     */
+    public C getContext() {
+        return context;
+    }
+}
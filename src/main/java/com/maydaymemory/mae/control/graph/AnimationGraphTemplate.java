@@ -0,0 +1,384 @@
+package com.maydaymemory.mae.control.graph;
+
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.control.OutputPort;
+import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.Tickable;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Declarative description of an animation graph, instantiated once per character.
+ *
+ * <p>A template lists the nodes of a graph as factories, and the connections between their output
+ * ports and slots. It is built once, then {@link #instantiate(Object)} creates the nodes of one
+ * character and wires them, without any lookup or reflection:</p>
+ * <pre>{@code
+ * AnimationGraphTemplate<Character> template = AnimationGraphTemplate.<Character>builder()
+ *     .add("locomotion", c -> new BlendSpace2DNode(sharedBlendSpace.share()))
+ *     ...
+ *     .build();
+ * AnimationGraph<Character> graph = template.instantiate(character);
+ * }</pre>
+ *
+ * <p>Everything the factories and connections capture is shared by all instances. Capture immutable parts
+ * such as animations, layer masks, blenders without per-call state, {@link com.maydaymemory.mae.control.statemachine.StateMachineDefinition}s
+ * and triangulated blend spaces (see {@link com.maydaymemory.mae.blend.ClampToEdgeBlendSpace2D#share()}), and
+ * create only the per-character parts in the factories. The context passed to {@link #instantiate(Object)}
+ * gives factories access to per-character data, e.g. the clock or the parameters.</p>
+ *
+ * <p>Templates are immutable and can be instantiated from any thread.</p>
+ *
+ * @param <C> Context type
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class AnimationGraphTemplate<C> {
+    /** Identity of the builder, to check that node handles belong to this template */
+    private final Object token;
+
+    /** Node names, by node index */
+    private final String[] names;
+
+    /** Node factories, by node index */
+    private final NodeFactory<? super C, ?>[] factories;
+
+    /** Whether each node is ticked by the graph if it is {@link Tickable} */
+    private final boolean[] ticked;
+
+    /** Connections, applied in declaration order */
+    private final Binding<? super C>[] bindings;
+
+    /** Node providing the graph output, or -1 */
+    private final int outputNode;
+
+    /** Accessor of the graph output port on the output node */
+    @Nullable
+    private final Function<Object, OutputPort<Pose>> outputAccessor;
+
+    @SuppressWarnings("unchecked")
+    private AnimationGraphTemplate(Builder<C> builder) {
+        this.token = builder.token;
+        this.names = builder.names.toArray(new String[0]);
+        this.factories = (NodeFactory<? super C, ?>[]) builder.factories.toArray(new NodeFactory<?, ?>[0]);
+        this.ticked = new boolean[builder.ticked.size()];
+        for (int i = 0; i < ticked.length; i++) {
+            ticked[i] = builder.ticked.get(i);
+        }
+        this.bindings = (Binding<? super C>[]) builder.bindings.toArray(new Binding<?>[0]);
+        this.outputNode = builder.outputNode;
+        this.outputAccessor = builder.outputAccessor;
+    }
+
+    /**
+     * Create a builder for a new template.
+     *
+     * @param <C> Context type
+     * @return New builder
+     */
+    public static <C> Builder<C> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Create the nodes of one graph and wire them.
+     *
+     * <p>Nodes are created in the order they were added, then all connections are applied in the order
+     * they were declared.</p>
+     *
+     * @param context Per-character context, passed to the factories and connections
+     * @return New graph
+     */
+    public AnimationGraph<C> instantiate(C context) {
+        int size = factories.length;
+        Object[] nodes = new Object[size];
+        int tickableCount = 0;
+        for (int i = 0; i < size; i++) {
+            Object node = factories[i].create(context);
+            if (node == null) {
+                throw new IllegalStateException("Factory of node '" + names[i] + "' returned null");
+            }
+            nodes[i] = node;
+            if (ticked[i] && node instanceof Tickable) {
+                tickableCount++;
+            }
+        }
+        Tickable[] tickables = new Tickable[tickableCount];
+        for (int i = 0, t = 0; i < size; i++) {
+            if (ticked[i] && nodes[i] instanceof Tickable) {
+                tickables[t++] = (Tickable) nodes[i];
+            }
+        }
+        for (Binding<? super C> binding : bindings) {
+            binding.apply(nodes, context);
+        }
+        OutputPort<Pose> output = outputNode < 0 ? null : outputAccessor.apply(nodes[outputNode]);
+        return new AnimationGraph<>(this, context, nodes, tickables, output);
+    }
+
+    /**
+     * Get the number of nodes of each graph.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return factories.length;
+    }
+
+    /**
+     * Get the name of a node.
+     *
+     * @param index Node index
+     * @return Node name
+     */
+    public String getNodeName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Find a node by name.
+     *
+     * @param name Node name
+     * @return Node index, or -1 if no node has that name
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int checkNode(Node<?> node) {
+        return checkNode(node, token, factories.length);
+    }
+
+    /**
+     * Check that a node handle was created by the builder with the given token, among its first nodes.
+     *
+     * @return Node index
+     */
+    private static int checkNode(Node<?> node, Object token, int nodeCount) {
+        if (node.token != token || node.index >= nodeCount) {
+            throw new IllegalArgumentException("Node '" + node.name + "' belongs to another template");
+        }
+        return node.index;
+    }
+
+    /**
+     * Factory creating one node of a graph.
+     *
+     * @param <C> Context type
+     * @param <N> Node type
+     */
+    @FunctionalInterface
+    public interface NodeFactory<C, N> {
+        /**
+         * Create a node for one graph.
+         *
+         * @param context Context of the graph
+         * @return New node, not null
+         */
+        N create(C context);
+    }
+
+    /**
+     * Typed handle of a node in a template, used to declare connections and to look up the node in a graph.
+     *
+     * @param <N> Node type
+     */
+    public static final class Node<N> {
+        private final Object token;
+        private final int index;
+        private final String name;
+
+        private Node(Object token, int index, String name) {
+            this.token = token;
+            this.index = index;
+            this.name = name;
+        }
+
+        /**
+         * Get the index of the node.
+         *
+         * @return Node index, in order of addition
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the name of the node.
+         *
+         * @return Node name
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * One connection step, applied to the nodes of every new graph.
+     */
+    @FunctionalInterface
+    private interface Binding<C> {
+        void apply(Object[] nodes, C context);
+    }
+
+    /**
+     * Builder of {@link AnimationGraphTemplate}s.
+     *
+     * @param <C> Context type
+     */
+    public static final class Builder<C> {
+        private final Object token = new Object();
+        private final List<String> names = new ArrayList<>();
+        private final List<NodeFactory<? super C, ?>> factories = new ArrayList<>();
+        private final List<Boolean> ticked = new ArrayList<>();
+        private final List<Binding<? super C>> bindings = new ArrayList<>();
+        private int outputNode = -1;
+        private Function<Object, OutputPort<Pose>> outputAccessor;
+
+        private Builder() {
+        }
+
+        /**
+         * Add a node. If the created node is {@link Tickable}, the graph ticks it, in order of addition.
+         *
+         * @param name Node name, unique within the template
+         * @param factory Factory creating the node of each graph
+         * @param <N> Node type
+         * @return Handle of the node
+         */
+        public <N> Node<N> add(String name, NodeFactory<? super C, N> factory) {
+            return add(name, factory, true);
+        }
+
+        /**
+         * Add a node.
+         *
+         * @param name Node name, unique within the template
+         * @param factory Factory creating the node of each graph
+         * @param ticked Whether the graph ticks the node if it is {@link Tickable}. Pass false for nodes
+         *               ticked by another node, e.g. upstream of a {@link com.maydaymemory.mae.control.lod.LodPoseNode}
+         * @param <N> Node type
+         * @return Handle of the node
+         */
+        public <N> Node<N> add(String name, NodeFactory<? super C, N> factory, boolean ticked) {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate node name: " + name);
+            }
+            Node<N> node = new Node<>(token, names.size(), name);
+            names.add(name);
+            factories.add(factory);
+            this.ticked.add(ticked);
+            return node;
+        }
+
+        /**
+         * Connect an output port of a node to a slot of another node.
+         *
+         * @param source Node providing the value
+         * @param output Accessor of the output port on the source node
+         * @param target Node receiving the value
+         * @param slot Accessor of the slot on the target node
+         * @param <V> Value type
+         * @param <S> Source node type
+         * @param <D> Target node type
+         * @return This builder
+         */
+        public <V, S, D> Builder<C> connect(Node<S> source, Function<? super S, ? extends OutputPort<V>> output,
+                                            Node<D> target, Function<? super D, ? extends Slot<V>> slot) {
+            return link(source, target, (s, d) -> slot.apply(d).connect(output.apply(s)));
+        }
+
+        /**
+         * Connect a value of the context to a slot of a node, e.g. a parameter of the character.
+         *
+         * @param output Creates the output port providing the value from the context of each graph
+         * @param target Node receiving the value
+         * @param slot Accessor of the slot on the target node
+         * @param <V> Value type
+         * @param <D> Target node type
+         * @return This builder
+         */
+        @SuppressWarnings("unchecked")
+        public <V, D> Builder<C> connectContext(Function<? super C, ? extends OutputPort<V>> output,
+                                                Node<D> target, Function<? super D, ? extends Slot<V>> slot) {
+            int targetIndex = checkNode(target);
+            bindings.add((nodes, context) ->
+                    slot.apply((D) nodes[targetIndex]).connect(output.apply(context)));
+            return this;
+        }
+
+        /**
+         * Set the default value of a slot of a node. The value is shared by all graphs.
+         *
+         * @param target Node owning the slot
+         * @param slot Accessor of the slot on the target node
+         * @param value Default value
+         * @param <V> Value type
+         * @param <D> Target node type
+         * @return This builder
+         */
+        @SuppressWarnings("unchecked")
+        public <V, D> Builder<C> setDefault(Node<D> target, Function<? super D, ? extends Slot<V>> slot, V value) {
+            int targetIndex = checkNode(target);
+            bindings.add((nodes, context) -> slot.apply((D) nodes[targetIndex]).setDefaultValue(value));
+            return this;
+        }
+
+        /**
+         * Apply an arbitrary wiring step to two nodes of every graph, e.g. registering a node as a
+         * pre-sample tickable of a {@link com.maydaymemory.mae.control.lod.LodPoseNode}.
+         *
+         * @param first First node
+         * @param second Second node
+         * @param action Wiring step
+         * @param <A> First node type
+         * @param <B> Second node type
+         * @return This builder
+         */
+        @SuppressWarnings("unchecked")
+        public <A, B> Builder<C> link(Node<A> first, Node<B> second, BiConsumer<? super A, ? super B> action) {
+            int firstIndex = checkNode(first);
+            int secondIndex = checkNode(second);
+            bindings.add((nodes, context) -> action.accept((A) nodes[firstIndex], (B) nodes[secondIndex]));
+            return this;
+        }
+
+        /**
+         * Set the node providing the output pose of the graph.
+         *
+         * @param source Output node
+         * @param output Accessor of the pose output port on the output node
+         * @param <S> Output node type
+         * @return This builder
+         */
+        @SuppressWarnings("unchecked")
+        public <S> Builder<C> output(Node<S> source, Function<? super S, ? extends OutputPort<Pose>> output) {
+            this.outputNode = checkNode(source);
+            this.outputAccessor = node -> output.apply((S) node);
+            return this;
+        }
+
+        /**
+         * Build the template. The builder can be used further, later changes do not affect built templates.
+         *
+         * @return New template
+         */
+        public AnimationGraphTemplate<C> build() {
+            return new AnimationGraphTemplate<>(this);
+        }
+
+        private int checkNode(Node<?> node) {
+            return AnimationGraphTemplate.checkNode(node, token, names.size());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.maydaymemory.mae.control.lod;
+
+/**
+ * Counters of full evaluations and skipped evaluations performed under level-of-detail policies.
+ *
+ * <p>A metrics instance can be owned by a single {@link LodPoseNode}, or shared by the nodes of
+ * many characters to measure the savings of a whole world. Like the nodes themselves, it is not
+ * thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class LodMetrics {
+    /** Number of frames in which the full animation was evaluated */
+    private long evaluatedFrames;
+
+    /** Number of frames in which the evaluation was skipped and the pose was synthesized */
+    private long skippedFrames;
+
+    /**
+     * Records a frame with a full evaluation.
+     */
+    public void recordEvaluated() {
+        evaluatedFrames++;
+    }
+
+    /**
+     * Records a frame whose evaluation was skipped.
+     */
+    public void recordSkipped() {
+        skippedFrames++;
+    }
+
+    /**
+     * Gets the number of frames with a full evaluation.
+     *
+     * @return the evaluated frame count
+     */
+    public long getEvaluatedFrames() {
+        return evaluatedFrames;
+    }
+
+    /**
+     * Gets the number of frames whose evaluation was skipped.
+     *
+     * @return the skipped frame count
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Gets the fraction of frames whose evaluation was skipped.
+     *
+     * @return the saving ratio in [0, 1], or 0 if no frame has been recorded
+     */
+    public float getSavingRatio() {
+        long total = evaluatedFrames + skippedFrames;
+        return total == 0 ? 0 : (float) skippedFrames / total;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        evaluatedFrames = 0;
+        skippedFrames = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LodMetrics{" +
+                "evaluatedFrames=" + evaluatedFrames +
+                ", skippedFrames=" + skippedFrames +
+                ", savingRatio=" + getSavingRatio() +
+                '}';
+    }
+}
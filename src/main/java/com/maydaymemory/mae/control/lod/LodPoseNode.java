@@ -0,0 +1,527 @@
+package com.maydaymemory.mae.control.lod;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.control.OutputPort;
+import com.maydaymemory.mae.control.PoseSlot;
+import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
+import com.maydaymemory.mae.control.Tickable;
+import com.maydaymemory.mae.util.LongSupplier;
+import com.maydaymemory.mae.util.MathUtil;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Level-of-detail node which evaluates the upstream animation graph only every N frames.
+ *
+ * <p>Each tick of this node is one frame. On a full-evaluation frame (every
+ * {@link LodUpdateRate#getDivisor()} frames) the node ticks the registered upstream
+ * {@link Tickable}s, samples the input pose once, then ticks the registered post-sample tickables.
+ * On the frames in between nothing upstream is ticked or evaluated, and the output pose is
+ * synthesized from the retained samples according to the {@link FillMode}.</p>
+ *
+ * <p>To extrapolate with a {@link com.maydaymemory.mae.control.misc.RealtimeVelocityEstimatorNode},
+ * connect its pose slot to {@link #getSampleOutputPort()}, its output port to
+ * {@link #getVelocitySlot()}, and register it with {@link #addPostSampleTickable(Tickable)} so that
+ * it only records fully evaluated poses.</p>
+ *
+ * <p>Characters using the same update rate can be spread across frames with {@link #setPhase(int)},
+ * so that their full evaluations do not all land on the same frame.</p>
+ *
+ * <p>Samples are copied into buffers owned by the node, and the output pose of skipped frames is
+ * synthesized into another one with scratch vectors, so a skipped frame does not allocate once the
+ * buffers hold every bone. The poses returned by {@link #getPose()} and {@link #getLastSample()} are
+ * views of these buffers: they are only valid until the next tick or snapshot restore, and consumers
+ * keeping them longer must copy them.</p>
+ *
+ * <p>A snapshot of the node holds its frame counter and a copy of the retained samples, not the
+ * registered tickables, which are snapshotted on their own.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class LodPoseNode implements Tickable, Snapshotable {
+    /** Input slot for the fully evaluated pose */
+    private final PoseSlot poseSlot = new PoseSlot();
+
+    /** Input slot for the velocity pose of the latest sample, used by {@link FillMode#EXTRAPOLATE} */
+    private final Slot<Pose> velocitySlot = new Slot<>();
+
+    /** Output port for the pose of the current frame */
+    private final OutputPort<Pose> outputPort = this::getPose;
+
+    /** Output port for the latest fully evaluated pose */
+    private final OutputPort<Pose> sampleOutputPort = this::getLastSample;
+
+    /** Tickables ticked before sampling on full-evaluation frames */
+    private final List<Tickable> preSampleTickables = new ArrayList<>();
+
+    /** Tickables ticked after sampling on full-evaluation frames */
+    private final List<Tickable> postSampleTickables = new ArrayList<>();
+
+    private final LongSupplier currentNanosSupplier;
+
+    private LodUpdateRate updateRate = LodUpdateRate.EVERY_FRAME;
+    private FillMode fillMode = FillMode.EXTRAPOLATE;
+    private LodMetrics metrics = new LodMetrics();
+
+    /** Frame offset used to stagger characters sharing the same update rate */
+    private int phase;
+
+    /** Number of frames ticked so far */
+    private long frame;
+
+    /** Time of the current frame in nanoseconds */
+    private long frameTime;
+
+    /** Whether the current frame is a full-evaluation frame */
+    private boolean fullEvaluationFrame;
+
+    /** Copy of the latest fully evaluated pose, valid once {@link #hasLastSample} is set */
+    private final DensePose lastSample = new DensePose();
+    private final Pose lastSampleView;
+    private boolean hasLastSample;
+    private long lastSampleTime;
+
+    /** Copy of the fully evaluated pose before {@link #lastSample}, valid if {@link #hasPreviousSample} is set */
+    private final DensePose previousSample = new DensePose();
+    private boolean hasPreviousSample;
+    private long previousSampleTime;
+
+    /**
+     * Velocity of {@link #lastSample}, pulled on the first extrapolated frame after a sample. The rotation
+     * of each entry holds the rotation velocity in x, y and z.
+     */
+    private final DensePose velocity = new DensePose();
+    private boolean hasVelocity;
+
+    /** Output pose of skipped frames, valid if {@link #outputComputed} is set */
+    private final DensePose output = new DensePose();
+    private final Pose outputView;
+    private boolean outputComputed;
+
+    /** Scratch objects of the fill modes */
+    private final Vector3f vector = new Vector3f();
+    private final Vector3f otherVector = new Vector3f();
+    private final Quaternionf rotation = new Quaternionf();
+    private final Quaternionf otherRotation = new Quaternionf();
+
+    /**
+     * Constructs a new LodPoseNode.
+     *
+     * @param boneTransformFactory factory for the synthesized bone transforms
+     * @param currentNanosSupplier supplier for current time in nanoseconds
+     */
+    public LodPoseNode(BoneTransformFactory boneTransformFactory, LongSupplier currentNanosSupplier) {
+        this.lastSampleView = new DensePoseView(lastSample, boneTransformFactory);
+        this.outputView = new DensePoseView(output, boneTransformFactory);
+        this.currentNanosSupplier = currentNanosSupplier;
+    }
+
+    /**
+     * Gets the slot receiving the fully evaluated pose, pulled once per full-evaluation frame.
+     *
+     * @return the pose slot
+     */
+    public PoseSlot getPoseSlot() {
+        return poseSlot;
+    }
+
+    /**
+     * Gets the slot receiving the velocity of the latest sample, pulled on the first extrapolated frame
+     * after each full evaluation.
+     *
+     * @return the velocity slot
+     */
+    public Slot<Pose> getVelocitySlot() {
+        return velocitySlot;
+    }
+
+    /**
+     * Gets the port providing the pose of the current frame, see {@link #getPose()}.
+     *
+     * @return the output port
+     */
+    public OutputPort<Pose> getOutputPort() {
+        return outputPort;
+    }
+
+    /**
+     * Gets the port providing the latest fully evaluated pose, see {@link #getLastSample()}.
+     *
+     * @return the sample output port
+     */
+    public OutputPort<Pose> getSampleOutputPort() {
+        return sampleOutputPort;
+    }
+
+    /**
+     * Registers a tickable which is only ticked on full-evaluation frames, before the input pose is
+     * sampled. Typically animation runners, montage runners and state machines feeding this node.
+     *
+     * @param tickable the upstream tickable
+     */
+    public void addPreSampleTickable(Tickable tickable) {
+        preSampleTickables.add(tickable);
+    }
+
+    /**
+     * Registers a tickable which is only ticked on full-evaluation frames, after the input pose is
+     * sampled. Typically a velocity estimator connected to {@link #getSampleOutputPort()}.
+     *
+     * @param tickable the tickable consuming the sample
+     */
+    public void addPostSampleTickable(Tickable tickable) {
+        postSampleTickables.add(tickable);
+    }
+
+    /**
+     * Gets how often the upstream graph is evaluated.
+     *
+     * @return the update rate, {@link LodUpdateRate#EVERY_FRAME} by default
+     */
+    public LodUpdateRate getUpdateRate() {
+        return updateRate;
+    }
+
+    /**
+     * Sets how often the upstream graph is evaluated. The new rate applies from the next tick.
+     *
+     * @param updateRate the update rate
+     */
+    public void setUpdateRate(LodUpdateRate updateRate) {
+        this.updateRate = updateRate;
+    }
+
+    /**
+     * Gets how the output pose is synthesized on frames without full evaluation.
+     *
+     * @return the fill mode, {@link FillMode#EXTRAPOLATE} by default
+     */
+    public FillMode getFillMode() {
+        return fillMode;
+    }
+
+    /**
+     * Sets how the output pose is synthesized on frames without full evaluation.
+     *
+     * @param fillMode the fill mode
+     */
+    public void setFillMode(FillMode fillMode) {
+        this.fillMode = fillMode;
+        this.outputComputed = false;
+    }
+
+    /**
+     * Gets the frame offset of full evaluations.
+     *
+     * @return the frame offset, 0 by default
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    /**
+     * Sets the frame offset of full evaluations.
+     *
+     * @param phase the frame offset, any non-negative value
+     */
+    public void setPhase(int phase) {
+        if (phase < 0) {
+            throw new IllegalArgumentException("Phase cannot be negative: " + phase);
+        }
+        this.phase = phase;
+    }
+
+    /**
+     * Gets the metrics receiving the evaluation counters of this node.
+     *
+     * @return the metrics
+     */
+    public LodMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics receiving the evaluation counters, which may be shared by many nodes.
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(LodMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Checks whether the current frame is a full-evaluation frame.
+     *
+     * @return true if the input pose was sampled this frame
+     */
+    public boolean isFullEvaluationFrame() {
+        return fullEvaluationFrame;
+    }
+
+    /**
+     * Advances one frame, performing a full evaluation if the update rate requires it.
+     */
+    @Override
+    public void tick() {
+        frameTime = currentNanosSupplier.getAsLong();
+        outputComputed = false;
+        fullEvaluationFrame = !hasLastSample || (frame + phase) % updateRate.getDivisor() == 0;
+        frame++;
+        if (!fullEvaluationFrame) {
+            metrics.recordSkipped();
+            return;
+        }
+        for (Tickable tickable : preSampleTickables) {
+            tickable.tick();
+        }
+        if (hasLastSample) {
+            previousSample.set(lastSample);
+            previousSampleTime = lastSampleTime;
+            hasPreviousSample = true;
+        }
+        Pose sample = poseSlot.get();
+        if (sample == null) {
+            lastSample.clear();
+        } else {
+            lastSample.set(sample);
+        }
+        lastSampleTime = frameTime;
+        hasLastSample = true;
+        hasVelocity = false;
+        for (Tickable tickable : postSampleTickables) {
+            tickable.tick();
+        }
+        metrics.recordEvaluated();
+    }
+
+    /**
+     * Gets the latest fully evaluated pose. The pose is a view of a buffer of this node, only valid until
+     * the next tick or snapshot restore.
+     *
+     * @return the latest sample, or an empty pose before the first evaluation
+     */
+    public Pose getLastSample() {
+        return hasLastSample ? lastSampleView : DummyPose.INSTANCE;
+    }
+
+    /**
+     * Gets the pose of the current frame. The pose is a view of a buffer of this node, only valid until the
+     * next tick or snapshot restore.
+     *
+     * @return the sampled pose on full-evaluation frames, otherwise the pose synthesized by the fill mode
+     */
+    public Pose getPose() {
+        if (!hasLastSample) {
+            return DummyPose.INSTANCE;
+        }
+        if (fullEvaluationFrame) {
+            return lastSampleView;
+        }
+        switch (fillMode) {
+            case EXTRAPOLATE:
+                if (!outputComputed) {
+                    extrapolate(MathUtil.toSecond(frameTime - lastSampleTime));
+                    outputComputed = true;
+                }
+                return outputView;
+            case INTERPOLATE:
+                if (!hasPreviousSample || lastSampleTime == previousSampleTime) {
+                    return lastSampleView;
+                }
+                float alpha = (float) (frameTime - lastSampleTime) / (lastSampleTime - previousSampleTime);
+                if (alpha >= 1) {
+                    return lastSampleView;
+                }
+                if (!outputComputed) {
+                    interpolate(Math.max(alpha, 0));
+                    outputComputed = true;
+                }
+                return outputView;
+            case HOLD:
+            default:
+                return lastSampleView;
+        }
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeLong(frame);
+        buffer.writeLong(frameTime);
+        buffer.writeBoolean(fullEvaluationFrame);
+        buffer.writeBoolean(hasLastSample);
+        buffer.writeLong(lastSampleTime);
+        writeDensePose(buffer, lastSample);
+        buffer.writeBoolean(hasPreviousSample);
+        buffer.writeLong(previousSampleTime);
+        writeDensePose(buffer, previousSample);
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        frame = buffer.readLong();
+        frameTime = buffer.readLong();
+        fullEvaluationFrame = buffer.readBoolean();
+        hasLastSample = buffer.readBoolean();
+        lastSampleTime = buffer.readLong();
+        readDensePose(buffer, lastSample);
+        hasPreviousSample = buffer.readBoolean();
+        previousSampleTime = buffer.readLong();
+        readDensePose(buffer, previousSample);
+        // Both are derived from the restored state and recomputed on demand.
+        hasVelocity = false;
+        outputComputed = false;
+    }
+
+    private static void writeDensePose(SnapshotBuffer buffer, DensePose pose) {
+        int size = pose.size();
+        float[] transforms = pose.getTransforms();
+        buffer.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.writeInt(pose.getBoneIndex(i));
+            int offset = i * DensePose.STRIDE;
+            for (int j = 0; j < DensePose.STRIDE; j++) {
+                buffer.writeFloat(transforms[offset + j]);
+            }
+        }
+    }
+
+    private static void readDensePose(SnapshotBuffer buffer, DensePose pose) {
+        int size = buffer.readInt();
+        pose.clear();
+        for (int i = 0; i < size; i++) {
+            int offset = pose.add(buffer.readInt()) * DensePose.STRIDE;
+            float[] transforms = pose.getTransforms();
+            for (int j = 0; j < DensePose.STRIDE; j++) {
+                transforms[offset + j] = buffer.readFloat();
+            }
+        }
+    }
+
+    /**
+     * Advances every bone of the latest sample by its velocity into {@link #output}. Bones without velocity
+     * are held.
+     */
+    private void extrapolate(float deltaTime) {
+        if (!hasVelocity) {
+            velocity.clear();
+            Pose velocityPose = velocitySlot.get();
+            if (velocityPose != null) {
+                for (BoneTransform transform : velocityPose.getBoneTransforms()) {
+                    // Rotation velocity is the quaternion logarithm per second, see RealtimeVelocityEstimatorNode
+                    Vector3fc rotationVelocity = transform.rotation().asEulerAngle();
+                    rotation.set(rotationVelocity.x(), rotationVelocity.y(), rotationVelocity.z(), 0);
+                    velocity.add(transform.boneIndex(), transform.translation(), rotation, transform.scale());
+                }
+            }
+            hasVelocity = true;
+        }
+        output.set(lastSample);
+        float[] transforms = output.getTransforms();
+        int velocityEntry = 0;
+        for (int i = 0; i < output.size(); i++) {
+            int boneIndex = output.getBoneIndex(i);
+            while (velocityEntry < velocity.size() && velocity.getBoneIndex(velocityEntry) < boneIndex) {
+                velocityEntry++;
+            }
+            if (velocityEntry == velocity.size() || velocity.getBoneIndex(velocityEntry) != boneIndex) {
+                continue;
+            }
+            int offset = i * DensePose.STRIDE;
+            velocity.getTranslation(velocityEntry, vector).mul(deltaTime);
+            transforms[offset] += vector.x;
+            transforms[offset + 1] += vector.y;
+            transforms[offset + 2] += vector.z;
+            velocity.getScale(velocityEntry, vector).mul(deltaTime);
+            transforms[offset + 7] += vector.x;
+            transforms[offset + 8] += vector.y;
+            transforms[offset + 9] += vector.z;
+            velocity.getRotation(velocityEntry, rotation);
+            vector.set(rotation.x, rotation.y, rotation.z).mul(deltaTime);
+            MathUtil.exp(vector, rotation).mul(output.getRotation(i, otherRotation));
+            transforms[offset + 3] = rotation.x;
+            transforms[offset + 4] = rotation.y;
+            transforms[offset + 5] = rotation.z;
+            transforms[offset + 6] = rotation.w;
+        }
+    }
+
+    /**
+     * Interpolates from the previous sample to the latest one into {@link #output}, like a
+     * {@link com.maydaymemory.mae.blend.SimpleInterpolatorBlender}: bones missing from one sample are
+     * interpolated from the identity transform.
+     */
+    private void interpolate(float alpha) {
+        output.clear();
+        int previousSize = previousSample.size();
+        int lastSize = lastSample.size();
+        int previousEntry = 0;
+        int lastEntry = 0;
+        while (previousEntry < previousSize || lastEntry < lastSize) {
+            int previousBone = previousEntry < previousSize ? previousSample.getBoneIndex(previousEntry) : Integer.MAX_VALUE;
+            int lastBone = lastEntry < lastSize ? lastSample.getBoneIndex(lastEntry) : Integer.MAX_VALUE;
+            int boneIndex = Math.min(previousBone, lastBone);
+            int from = previousBone == boneIndex ? previousEntry++ : -1;
+            int to = lastBone == boneIndex ? lastEntry++ : -1;
+            int offset = output.add(boneIndex) * DensePose.STRIDE;
+            float[] transforms = output.getTransforms();
+
+            translation(previousSample, from, vector).lerp(translation(lastSample, to, otherVector), alpha);
+            transforms[offset] = vector.x;
+            transforms[offset + 1] = vector.y;
+            transforms[offset + 2] = vector.z;
+            scale(previousSample, from, vector).lerp(scale(lastSample, to, otherVector), alpha);
+            transforms[offset + 7] = vector.x;
+            transforms[offset + 8] = vector.y;
+            transforms[offset + 9] = vector.z;
+            rotation(previousSample, from, rotation);
+            rotation(lastSample, to, otherRotation);
+            if (rotation.dot(otherRotation) < 0) {
+                otherRotation.set(-otherRotation.x, -otherRotation.y, -otherRotation.z, -otherRotation.w);
+            }
+            rotation.nlerp(otherRotation, alpha);
+            transforms[offset + 3] = rotation.x;
+            transforms[offset + 4] = rotation.y;
+            transforms[offset + 5] = rotation.z;
+            transforms[offset + 6] = rotation.w;
+        }
+    }
+
+    private static Vector3f translation(DensePose pose, int entry, Vector3f dest) {
+        return entry < 0 ? dest.zero() : pose.getTranslation(entry, dest);
+    }
+
+    private static Vector3f scale(DensePose pose, int entry, Vector3f dest) {
+        return entry < 0 ? dest.set(1) : pose.getScale(entry, dest);
+    }
+
+    private static Quaternionf rotation(DensePose pose, int entry, Quaternionf dest) {
+        return entry < 0 ? dest.identity() : pose.getRotation(entry, dest);
+    }
+
+    /**
+     * Strategies to synthesize the output pose on frames without full evaluation.
+     */
+    public enum FillMode {
+        /** Output the latest sample unchanged. */
+        HOLD,
+
+        /**
+         * Extrapolate the latest sample with the velocity pose from {@link #getVelocitySlot()}.
+         * Bones missing from the velocity pose are held.
+         */
+        EXTRAPOLATE,
+
+        /**
+         * Interpolate between the last two samples. The output lags one update interval behind
+         * the evaluated animation, but never overshoots.
+         */
+        INTERPOLATE
+    }
+}
@@ -0,0 +1,41 @@
+package com.maydaymemory.mae.control.lod;
+
+/**
+ * Enumeration of update rates used by level-of-detail policies.
+ *
+ * <p>An update rate specifies how often a character performs a full animation
+ * evaluation. Frames in between full evaluations are filled with a synthesized
+ * pose, see {@link LodPoseNode.FillMode}.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public enum LodUpdateRate {
+    /** Evaluate every frame, no level-of-detail reduction. */
+    EVERY_FRAME(1),
+
+    /** Evaluate every 2 frames. */
+    EVERY_2_FRAMES(2),
+
+    /** Evaluate every 4 frames. */
+    EVERY_4_FRAMES(4),
+
+    /** Evaluate every 8 frames. */
+    EVERY_8_FRAMES(8);
+
+    /** Number of frames between two full evaluations */
+    private final int divisor;
+
+    LodUpdateRate(int divisor) {
+        this.divisor = divisor;
+    }
+
+    /**
+     * Gets the number of frames between two full evaluations.
+     *
+     * @return the update divisor, 1, 2, 4 or 8
+     */
+    public int getDivisor() {
+        return divisor;
+    }
+}
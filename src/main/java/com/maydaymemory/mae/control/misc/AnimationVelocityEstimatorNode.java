@@ -40,7 +40,10 @@ public class AnimationVelocityEstimatorNode {
     }
 
     /**
-     * Calculates the speed in seconds and returns it
+     * Calculates the speed in seconds and returns it.
+     *
+     * <p>Animations providing {@link Animation#evaluateVelocity(float) analytic velocities} are sampled once.
+     * Others are sampled twice and differentiated over the sampling interval.</p>
      *
      * @return speed in seconds
      */
@@ -50,6 +53,10 @@ public class AnimationVelocityEstimatorNode {
             return DummyPose.INSTANCE;
         }
         float time = Objects.requireNonNull(timeSlot.get());
+        Pose velocity = animation.evaluateVelocity(time);
+        if (velocity != null) {
+            return velocity;
+        }
         float samplingInterval = Objects.requireNonNull(samplingIntervalSlot.get());
         if (samplingInterval <= 0) {
             throw new IllegalArgumentException(String.format("Sampling interval must be positive. Input interval: %f", samplingInterval));
@@ -66,6 +73,7 @@ public class AnimationVelocityEstimatorNode {
      * The animation speed is estimated by sampling the animation at two points,
      * calculating the difference, and dividing it by the interval. The default value is 0.016s.
      * This value should not be too large or too small.
+     * It is only used for animations without {@link Animation#evaluateVelocity(float) analytic velocities}.
      * </p>
      *
      * @return sampling interval slot
@@ -0,0 +1,376 @@
+package com.maydaymemory.mae.control.misc;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.control.PoseSlot;
+import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.Tickable;
+import com.maydaymemory.mae.util.LongSupplier;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.function.Supplier;
+
+/**
+ * Fixed-capacity history of recent poses, for queries such as server-side lag compensation.
+ *
+ * <p>Poses are stored densely in preallocated primitive arrays, one sample per record: translation and
+ * scale as floats, rotation as a unit quaternion quantized to 16 bits per component. Recording a pose
+ * therefore never allocates, and the history holds no reference to the recorded poses. When the history
+ * is full, the oldest sample is overwritten.</p>
+ *
+ * <p>Queries return the pose at an arbitrary time, interpolated between the two samples around it, and
+ * clamped to the oldest or newest sample outside the recorded span. Queries can be restricted to a few
+ * bones, e.g. the hitbox bones, so that only those are decoded.</p>
+ *
+ * <p>As a graph sink, connect {@link #getPoseSlot()} to any pose output port and tick the history after
+ * the graph: every tick records the input pose at the current time.</p>
+ *
+ * <p>Not thread-safe: queries use scratch storage of the history.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class PoseHistory implements Tickable {
+    /** Quantization scale of rotation components */
+    private static final float ROTATION_SCALE = Short.MAX_VALUE;
+
+    /** Input slot for the pose recorded on tick */
+    private final PoseSlot poseSlot = new PoseSlot();
+
+    private final BoneTransformFactory boneTransformFactory;
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+    private final LongSupplier currentNanosSupplier;
+
+    /** Number of bones per sample, bone indices are {@code [0, boneCount)} */
+    private final int boneCount;
+
+    /** Maximum number of samples */
+    private final int capacity;
+
+    /** Sample times in nanoseconds, by slot */
+    private final long[] times;
+
+    /** Translations, 3 floats per bone per slot */
+    private final float[] translations;
+
+    /** Quantized rotation quaternions (x, y, z, w), 4 shorts per bone per slot */
+    private final short[] rotations;
+
+    /** Scales, 3 floats per bone per slot */
+    private final float[] scales;
+
+    /** Whether each bone was present in the recorded pose, per bone per slot */
+    private final boolean[] present;
+
+    /** Slot of the oldest sample */
+    private int head;
+
+    /** Number of samples */
+    private int size;
+
+    /** Scratch storage for interpolation */
+    private final Vector3f scratchVector = new Vector3f();
+    private final Quaternionf scratchRotation = new Quaternionf();
+
+    /**
+     * Constructs an empty history.
+     *
+     * @param boneCount the number of bones of the skeleton, bones with greater indices are not recorded
+     * @param capacity the maximum number of samples, e.g. the tick rate times the time span to keep
+     * @param boneTransformFactory factory for the bone transforms of queried poses
+     * @param poseBuilderSupplier supplier for the builders of queried poses
+     * @param currentNanosSupplier supplier for the current time in nanoseconds, used on tick
+     */
+    public PoseHistory(int boneCount, int capacity, BoneTransformFactory boneTransformFactory,
+                       Supplier<PoseBuilder> poseBuilderSupplier, LongSupplier currentNanosSupplier) {
+        if (boneCount < 0) {
+            throw new IllegalArgumentException("Bone count cannot be negative: " + boneCount);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.boneCount = boneCount;
+        this.capacity = capacity;
+        this.boneTransformFactory = boneTransformFactory;
+        this.poseBuilderSupplier = poseBuilderSupplier;
+        this.currentNanosSupplier = currentNanosSupplier;
+        this.times = new long[capacity];
+        this.translations = new float[capacity * boneCount * 3];
+        this.rotations = new short[capacity * boneCount * 4];
+        this.scales = new float[capacity * boneCount * 3];
+        this.present = new boolean[capacity * boneCount];
+    }
+
+    /**
+     * Gets the input slot for the pose recorded on each tick.
+     *
+     * @return the pose slot
+     */
+    public Slot<Pose> getPoseSlot() {
+        return poseSlot;
+    }
+
+    @Override
+    public void tick() {
+        record(poseSlot.get(), currentNanosSupplier.getAsLong());
+    }
+
+    /**
+     * Records a pose.
+     *
+     * <p>Samples are kept in time order. Recording at a time before the newest sample first discards
+     * all samples after that time, which is what re-simulating frames after a rollback needs.</p>
+     *
+     * @param pose the pose to record
+     * @param timeNanos the time of the pose in nanoseconds
+     */
+    public void record(Pose pose, long timeNanos) {
+        while (size > 0 && times[slot(size - 1)] > timeNanos) {
+            size--;
+        }
+        int slot;
+        if (size < capacity) {
+            slot = slot(size++);
+        } else {
+            slot = head;
+            head = (head + 1) % capacity;
+        }
+        times[slot] = timeNanos;
+        int base = slot * boneCount;
+        for (int bone = 0; bone < boneCount; bone++) {
+            present[base + bone] = false;
+        }
+        for (BoneTransform transform : pose.getBoneTransforms()) {
+            int bone = transform.boneIndex();
+            if (bone < 0 || bone >= boneCount) {
+                continue;
+            }
+            int index = base + bone;
+            present[index] = true;
+            Vector3fc translation = transform.translation();
+            translations[index * 3] = translation.x();
+            translations[index * 3 + 1] = translation.y();
+            translations[index * 3 + 2] = translation.z();
+            Quaternionfc rotation = transform.rotation().asQuaternion();
+            rotations[index * 4] = quantize(rotation.x());
+            rotations[index * 4 + 1] = quantize(rotation.y());
+            rotations[index * 4 + 2] = quantize(rotation.z());
+            rotations[index * 4 + 3] = quantize(rotation.w());
+            Vector3fc scale = transform.scale();
+            scales[index * 3] = scale.x();
+            scales[index * 3 + 1] = scale.y();
+            scales[index * 3 + 2] = scale.z();
+        }
+    }
+
+    /**
+     * Samples one bone at a time, without allocating.
+     *
+     * @param timeNanos the query time in nanoseconds
+     * @param boneIndex the bone index
+     * @param translation receives the translation
+     * @param rotation receives the rotation
+     * @param scale receives the scale
+     * @return true if the bone is recorded around that time, otherwise the outputs are untouched
+     */
+    public boolean sampleBone(long timeNanos, int boneIndex, Vector3f translation, Quaternionf rotation, Vector3f scale) {
+        if (size == 0 || boneIndex < 0 || boneIndex >= boneCount) {
+            return false;
+        }
+        int after = upperBound(timeNanos);
+        int before = after - 1;
+        if (before < 0) {
+            return decode(slot(0), boneIndex, translation, rotation, scale);
+        }
+        if (after == size) {
+            return decode(slot(size - 1), boneIndex, translation, rotation, scale);
+        }
+        int slotA = slot(before);
+        int slotB = slot(after);
+        boolean inA = present[slotA * boneCount + boneIndex];
+        boolean inB = present[slotB * boneCount + boneIndex];
+        if (!inA || !inB) {
+            // Absent on one side, so there is nothing to interpolate with.
+            return decode(inA ? slotA : slotB, boneIndex, translation, rotation, scale);
+        }
+        float alpha = (float) ((double) (timeNanos - times[slotA]) / (double) (times[slotB] - times[slotA]));
+        decode(slotA, boneIndex, translation, rotation, scale);
+        int indexB = slotB * boneCount + boneIndex;
+        translation.lerp(scratchVector.set(translations[indexB * 3], translations[indexB * 3 + 1], translations[indexB * 3 + 2]), alpha);
+        scale.lerp(scratchVector.set(scales[indexB * 3], scales[indexB * 3 + 1], scales[indexB * 3 + 2]), alpha);
+        decodeRotation(indexB, scratchRotation);
+        rotation.slerp(scratchRotation, alpha);
+        return true;
+    }
+
+    /**
+     * Gets the pose at a time, with all recorded bones.
+     *
+     * @param timeNanos the query time in nanoseconds
+     * @return the interpolated pose, or {@link DummyPose#INSTANCE} if the history is empty
+     */
+    public Pose getPose(long timeNanos) {
+        return getPose(timeNanos, BoneMask.ALL);
+    }
+
+    /**
+     * Gets the pose at a time, with the bones of a mask only.
+     *
+     * @param timeNanos the query time in nanoseconds
+     * @param boneMask the bones to include
+     * @return the interpolated pose, or {@link DummyPose#INSTANCE} if the history is empty
+     */
+    public Pose getPose(long timeNanos, BoneMask boneMask) {
+        if (size == 0) {
+            return DummyPose.INSTANCE;
+        }
+        PoseBuilder builder = poseBuilderSupplier.get();
+        for (int bone = 0; bone < boneCount; bone++) {
+            if (boneMask.contains(bone)) {
+                addBone(builder, timeNanos, bone);
+            }
+        }
+        return builder.toPose();
+    }
+
+    /**
+     * Gets the pose at a time, with the given bones only. Only those bones are decoded, which makes this
+     * the cheapest query for a handful of bones, such as hitboxes.
+     *
+     * @param timeNanos the query time in nanoseconds
+     * @param boneIndices the bones to include, in ascending order
+     * @return the interpolated pose, or {@link DummyPose#INSTANCE} if the history is empty
+     */
+    public Pose getPose(long timeNanos, int... boneIndices) {
+        if (size == 0) {
+            return DummyPose.INSTANCE;
+        }
+        PoseBuilder builder = poseBuilderSupplier.get();
+        for (int bone : boneIndices) {
+            addBone(builder, timeNanos, bone);
+        }
+        return builder.toPose();
+    }
+
+    private void addBone(PoseBuilder builder, long timeNanos, int bone) {
+        Vector3f translation = new Vector3f();
+        Quaternionf rotation = new Quaternionf();
+        Vector3f scale = new Vector3f();
+        if (sampleBone(timeNanos, bone, translation, rotation, scale)) {
+            builder.addBoneTransform(boneTransformFactory.createBoneTransform(bone, translation, rotation, scale));
+        }
+    }
+
+    /**
+     * Gets the number of samples.
+     *
+     * @return the number of samples
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the history holds no sample.
+     *
+     * @return true if there is no sample
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the maximum number of samples. Recording more discards the oldest ones.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of bones recorded per sample. Bones with an index outside {@code [0, boneCount)} are ignored.
+     *
+     * @return the number of bones
+     */
+    public int getBoneCount() {
+        return boneCount;
+    }
+
+    /**
+     * Gets the time of the oldest sample.
+     *
+     * @return the time in nanoseconds
+     * @throws IllegalStateException if the history is empty
+     */
+    public long getOldestTime() {
+        if (size == 0) {
+            throw new IllegalStateException("Pose history is empty");
+        }
+        return times[slot(0)];
+    }
+
+    /**
+     * Gets the time of the newest sample.
+     *
+     * @return the time in nanoseconds
+     * @throws IllegalStateException if the history is empty
+     */
+    public long getNewestTime() {
+        if (size == 0) {
+            throw new IllegalStateException("Pose history is empty");
+        }
+        return times[slot(size - 1)];
+    }
+
+    /**
+     * Removes all samples, keeping the allocated storage.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int slot(int i) {
+        return (head + i) % capacity;
+    }
+
+    /**
+     * Finds the first sample whose time is greater than the given time.
+     */
+    private int upperBound(long timeNanos) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[slot(mid)] <= timeNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean decode(int slot, int bone, Vector3f translation, Quaternionf rotation, Vector3f scale) {
+        int index = slot * boneCount + bone;
+        if (!present[index]) {
+            return false;
+        }
+        translation.set(translations[index * 3], translations[index * 3 + 1], translations[index * 3 + 2]);
+        decodeRotation(index, rotation);
+        scale.set(scales[index * 3], scales[index * 3 + 1], scales[index * 3 + 2]);
+        return true;
+    }
+
+    private void decodeRotation(int index, Quaternionf rotation) {
+        rotation.set(rotations[index * 4] / ROTATION_SCALE, rotations[index * 4 + 1] / ROTATION_SCALE,
+                rotations[index * 4 + 2] / ROTATION_SCALE, rotations[index * 4 + 3] / ROTATION_SCALE).normalize();
+    }
+
+    private static short quantize(float component) {
+        return (short) Math.round(Math.max(-1f, Math.min(1f, component)) * ROTATION_SCALE);
+    }
+}
@@ -4,15 +4,17 @@ import com.maydaymemory.mae.basic.*;
 import com.maydaymemory.mae.control.OutputPort;
 import com.maydaymemory.mae.control.PoseSlot;
 import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
 import com.maydaymemory.mae.control.Tickable;
 import com.maydaymemory.mae.util.LongSupplier;
 import com.maydaymemory.mae.util.MathUtil;
-import it.unimi.dsi.fastutil.ints.Int2ObjectAVLTreeMap;
 import org.joml.Quaternionf;
 import org.joml.Quaternionfc;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
-import java.util.*;
+import java.util.Arrays;
 import java.util.function.Supplier;
 
 /**
@@ -28,8 +30,23 @@ import java.util.function.Supplier;
  * <p>This approach significantly improves velocity estimation accuracy compared to simple two-frame differentiation,
  * However, due to its experimental nature, users should be prepared for potential API changes and behavior modifications
  * in future versions.</p>
+ *
+ * <p>History is kept in a fixed-capacity ring of dense per-bone float arrays, so ticking copies the
+ * input pose into preallocated storage and holds no reference to it. The frame weights depend only on
+ * the frame times, so they are computed once per tick and shared by all bones; evaluating the velocity
+ * only allocates the output pose.</p>
+ *
+ * <p>Evaluating costs O(bones &times; frames): each bone sums the velocities of all consecutive frame pairs,
+ * one quaternion product and logarithm each, and the weights cost one {@code erf} per pair after every tick.
+ * With the default 8 frames this is 7 pairs per bone. Running sums cannot replace these loops, because the
+ * Gaussian window is measured from the oldest frame: evicting it moves the origin of the window and changes
+ * the weight of every remaining pair, and unlike an exponential window the change is not a common factor
+ * which could rescale a running sum.</p>
  */
-public class RealtimeVelocityEstimatorNode implements Tickable {
+public class RealtimeVelocityEstimatorNode implements Tickable, Snapshotable {
+    /** Floats per bone per frame: translation (3), rotation quaternion (4), scale (3) */
+    private static final int STRIDE = 10;
+
     private final Slot<Pose> poseSlot = new PoseSlot();
     private final OutputPort<Pose> outputPort = this::getVelocityPose;
     private final Supplier<PoseBuilder> poseBuilderSupplier;
@@ -38,13 +55,46 @@ public class RealtimeVelocityEstimatorNode implements Tickable {
     // Configuration parameters
     private final int maxHistoryFrames;
 
-    // Historical data storage
-    private final Queue<HistoricalFrame> frameHistory;
+    // Historical data storage, a ring of frames indexed by slot
+    /** Bone data of each frame, {@link #STRIDE} floats per bone */
+    private final float[][] frameData;
+
+    /** Whether each bone is present in each frame */
+    private final boolean[][] framePresent;
+
+    /** Time since the previous frame in seconds, 0 for the first frame */
+    private final float[] frameDeltaTimes;
+
+    /** Number of frames in the history containing each bone */
+    private int[] boneFrameCounts = new int[0];
+
+    /** Number of bones each frame can hold, grows with the highest bone index seen */
+    private int boneCapacity;
+
+    /** Slot of the oldest frame */
+    private int head;
+
+    /** Number of frames */
+    private int size;
+
+    /** Weight of the velocity between frames i and i + 1, oldest first */
+    private final float[] weights;
+
+    /** Sum of the weights */
+    private float totalWeight;
+
+    /** Whether the weights must be recomputed from the frame times */
+    private boolean weightsDirty = true;
 
     // Current state
     private long lastTickTime;
     private boolean isInitialized;
 
+    /** Scratch storage for rotation differences */
+    private final Quaternionf previousRotation = new Quaternionf();
+    private final Quaternionf relativeRotation = new Quaternionf();
+    private final Vector3f scratchVelocity = new Vector3f();
+
     /**
      * Creates a new velocity estimator with default parameters.
      * 
@@ -67,11 +117,17 @@ public class RealtimeVelocityEstimatorNode implements Tickable {
      * @param maxHistoryFrames       maximum number of historical frames to keep (typically 4-12)
      */
     public RealtimeVelocityEstimatorNode(Supplier<PoseBuilder> poseBuilderSupplier, LongSupplier currentNanosSupplier, int maxHistoryFrames) {
+        if (maxHistoryFrames <= 0) {
+            throw new IllegalArgumentException("Max history frames must be positive: " + maxHistoryFrames);
+        }
         this.poseBuilderSupplier = poseBuilderSupplier;
         this.currentNanosSupplier = currentNanosSupplier;
         this.maxHistoryFrames = maxHistoryFrames;
 
-        this.frameHistory = new LinkedList<>();
+        this.frameData = new float[maxHistoryFrames][0];
+        this.framePresent = new boolean[maxHistoryFrames][0];
+        this.frameDeltaTimes = new float[maxHistoryFrames];
+        this.weights = new float[maxHistoryFrames];
     }
 
     public Slot<Pose> getPoseSlot() {
@@ -103,7 +159,7 @@ public class RealtimeVelocityEstimatorNode implements Tickable {
      * @return estimated velocity pose with improved stability (experimental)
      */
     public Pose getVelocityPose() {
-        if (!isInitialized || frameHistory.size() < 2) {
+        if (!isInitialized || size < 2) {
             return DummyPose.INSTANCE;
         }
 
@@ -120,158 +176,252 @@ public class RealtimeVelocityEstimatorNode implements Tickable {
             return;
         }
 
-        // Add current frame to history
-        HistoricalFrame frame = new HistoricalFrame(currentPose, deltaTime);
-        frameHistory.offer(frame);
-
-        // Maintain history size
-        while (frameHistory.size() > maxHistoryFrames) {
-            frameHistory.poll();
+        int slot = appendFrame(deltaTime);
+        float[] data = frameData[slot];
+        boolean[] present = framePresent[slot];
+        for (BoneTransform transform : currentPose.getBoneTransforms()) {
+            int bone = transform.boneIndex();
+            if (bone < 0) {
+                continue;
+            }
+            if (bone >= boneCapacity) {
+                ensureBoneCapacity(bone + 1);
+                data = frameData[slot];
+                present = framePresent[slot];
+            }
+            if (!present[bone]) {
+                present[bone] = true;
+                boneFrameCounts[bone]++;
+            }
+            int offset = bone * STRIDE;
+            Vector3fc translation = transform.translation();
+            data[offset] = translation.x();
+            data[offset + 1] = translation.y();
+            data[offset + 2] = translation.z();
+            Quaternionfc rotation = transform.rotation().asQuaternion();
+            data[offset + 3] = rotation.x();
+            data[offset + 4] = rotation.y();
+            data[offset + 5] = rotation.z();
+            data[offset + 6] = rotation.w();
+            Vector3fc scale = transform.scale();
+            data[offset + 7] = scale.x();
+            data[offset + 8] = scale.y();
+            data[offset + 9] = scale.z();
         }
 
         lastTickTime = currentTime;
         isInitialized = true;
     }
 
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeLong(lastTickTime);
+        buffer.writeBoolean(isInitialized);
+        buffer.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            float[] data = frameData[slot];
+            boolean[] present = framePresent[slot];
+            int presentCount = 0;
+            for (int bone = 0; bone < boneCapacity; bone++) {
+                if (present[bone]) {
+                    presentCount++;
+                }
+            }
+            buffer.writeFloat(frameDeltaTimes[slot]);
+            buffer.writeInt(presentCount);
+            for (int bone = 0; bone < boneCapacity; bone++) {
+                if (!present[bone]) {
+                    continue;
+                }
+                buffer.writeInt(bone);
+                for (int offset = bone * STRIDE, end = offset + STRIDE; offset < end; offset++) {
+                    buffer.writeFloat(data[offset]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        lastTickTime = buffer.readLong();
+        isInitialized = buffer.readBoolean();
+        clearHistory();
+        for (int count = buffer.readInt(); count > 0; count--) {
+            int slot = appendFrame(buffer.readFloat());
+            for (int bones = buffer.readInt(); bones > 0; bones--) {
+                int bone = buffer.readInt();
+                if (bone >= boneCapacity) {
+                    ensureBoneCapacity(bone + 1);
+                }
+                framePresent[slot][bone] = true;
+                boneFrameCounts[bone]++;
+                float[] data = frameData[slot];
+                for (int offset = bone * STRIDE, end = offset + STRIDE; offset < end; offset++) {
+                    data[offset] = buffer.readFloat();
+                }
+            }
+        }
+    }
+
     /**
      * Calculates smoothed velocity using multi-frame analysis and filtering.
      */
     private Pose calculateSmoothedVelocity() {
-        if (frameHistory.size() < 2) {
-            return DummyPose.INSTANCE;
+        if (weightsDirty) {
+            updateWeights();
         }
 
         PoseBuilder builder = poseBuilderSupplier.get();
-        HistoricalFrame[] frames = frameHistory.toArray(new HistoricalFrame[0]);
-
-        // Group bone transforms by bone index
-        Map<Integer, BoneTransform[]> boneTransformsMap = new Int2ObjectAVLTreeMap<>();
-        for (int i = 0; i < frames.length; i++) {
-            HistoricalFrame frame = frames[i];
-            for (BoneTransform transform : frame.pose.getBoneTransforms()) {
-                boneTransformsMap.computeIfAbsent(transform.boneIndex(), k -> {
-                    BoneTransform[] array = new BoneTransform[frames.length];
-                    for (int j = 0; j < frames.length; j++) {
-                        array[j] = BoneTransform.IDENTITY_TRANSFORM;
-                    }
-                    return array;
-                })[i] = transform;
+        // Bones are visited in ascending order, covering every bone present in at least one frame.
+        for (int bone = 0; bone < boneCapacity; bone++) {
+            if (boneFrameCounts[bone] > 0) {
+                builder.addBoneTransform(calculateBoneSmoothedVelocity(bone));
             }
         }
 
-        // Calculate smoothed velocity for each bone
-        for (Map.Entry<Integer, BoneTransform[]> entry : boneTransformsMap.entrySet()) {
-            SmoothedVelocity smoothedVelocity = calculateBoneSmoothedVelocity(entry.getValue(), frames);
-            BoneTransform velocityTransform = createVelocityTransform(entry.getKey(), smoothedVelocity);
-            builder.addBoneTransform(velocityTransform);
-        }
-
         return builder.toPose();
     }
 
     /**
-     * Calculates smoothed velocity for a specific bone using multi-frame analysis.
+     * Calculates the weighted average of the velocities of a bone between consecutive frames.
+     * A bone missing from a frame is treated as the identity transform in that frame.
      */
-    private SmoothedVelocity calculateBoneSmoothedVelocity(BoneTransform[] transforms, HistoricalFrame[] frames) {
-        // Calculate instantaneous velocities from multiple frame pairs
-        Vector3f[] translationVelocities = new Vector3f[frames.length - 1];
-        Vector3f[] rotationVelocities = new Vector3f[frames.length - 1];
-        Vector3f[] scaleVelocities = new Vector3f[frames.length - 1];
-
-        for (int i = 1; i < frames.length; i++) {
-            HistoricalFrame currFrame = frames[i];
-
-            BoneTransform prevTransform = transforms[i - 1];
-            BoneTransform currTransform = transforms[i];
-
-            float intervalTime = currFrame.deltaTime;
-
-            // Calculate instantaneous velocities
-            Vector3f translationVelocity = currTransform.translation().sub(prevTransform.translation(), new Vector3f()).div(intervalTime);
-            Vector3f scaleVelocity = currTransform.scale().sub(prevTransform.scale(), new Vector3f()).div(intervalTime);
-
-            // Calculate rotation velocity using quaternion difference
-            Quaternionfc q0 = prevTransform.rotation().asQuaternion();
-            Quaternionfc q1 = currTransform.rotation().asQuaternion();
-            Quaternionf relativeRotation = new Quaternionf();
-            q1.mul(q0.conjugate(relativeRotation), relativeRotation);
-            Vector3f rotationVelocity = MathUtil.logUnit(relativeRotation).div(intervalTime);
-
-            translationVelocities[i - 1] = translationVelocity;
-            rotationVelocities[i - 1] = rotationVelocity;
-            scaleVelocities[i - 1] = scaleVelocity;
-        }
+    private BoneTransform calculateBoneSmoothedVelocity(int bone) {
+        int offset = bone * STRIDE;
+        float tx = 0, ty = 0, tz = 0;
+        float rx = 0, ry = 0, rz = 0;
+        float sx = 0, sy = 0, sz = 0;
+
+        int previousSlot = head;
+        for (int i = 1; i < size; i++) {
+            int currentSlot = slot(i);
+            float weight = weights[i - 1];
+            float inverseInterval = 1.0f / frameDeltaTimes[currentSlot];
+            float[] prev = frameData[previousSlot];
+            float[] curr = frameData[currentSlot];
+            boolean hasPrev = framePresent[previousSlot][bone];
+            boolean hasCurr = framePresent[currentSlot][bone];
+
+            // Translation: identity is 0
+            float dx = (hasCurr ? curr[offset] : 0) - (hasPrev ? prev[offset] : 0);
+            float dy = (hasCurr ? curr[offset + 1] : 0) - (hasPrev ? prev[offset + 1] : 0);
+            float dz = (hasCurr ? curr[offset + 2] : 0) - (hasPrev ? prev[offset + 2] : 0);
+            tx += dx * inverseInterval * weight;
+            ty += dy * inverseInterval * weight;
+            tz += dz * inverseInterval * weight;
+
+            // Scale: identity is 1
+            dx = (hasCurr ? curr[offset + 7] : 1) - (hasPrev ? prev[offset + 7] : 1);
+            dy = (hasCurr ? curr[offset + 8] : 1) - (hasPrev ? prev[offset + 8] : 1);
+            dz = (hasCurr ? curr[offset + 9] : 1) - (hasPrev ? prev[offset + 9] : 1);
+            sx += dx * inverseInterval * weight;
+            sy += dy * inverseInterval * weight;
+            sz += dz * inverseInterval * weight;
+
+            // Rotation: logarithm of the quaternion difference q1 * q0^-1
+            if (hasPrev) {
+                previousRotation.set(prev[offset + 3], prev[offset + 4], prev[offset + 5], prev[offset + 6]).conjugate();
+            } else {
+                previousRotation.identity();
+            }
+            if (hasCurr) {
+                relativeRotation.set(curr[offset + 3], curr[offset + 4], curr[offset + 5], curr[offset + 6]);
+            } else {
+                relativeRotation.identity();
+            }
+            relativeRotation.mul(previousRotation);
+            MathUtil.logUnit(relativeRotation, scratchVelocity);
+            rx += scratchVelocity.x * inverseInterval * weight;
+            ry += scratchVelocity.y * inverseInterval * weight;
+            rz += scratchVelocity.z * inverseInterval * weight;
 
-        SmoothedVelocity smoothedVelocity = new SmoothedVelocity();
-        // Calculate weighted average (more recent frames have higher weight)
-        smoothedVelocity.translationVelocity = calculateWeightedAverage(translationVelocities, frames);
-        smoothedVelocity.rotationVelocity = calculateWeightedAverage(rotationVelocities, frames);
-        smoothedVelocity.scaleVelocity = calculateWeightedAverage(scaleVelocities, frames);
+            previousSlot = currentSlot;
+        }
 
-        return smoothedVelocity;
+        Vector3f translationVelocity = new Vector3f(tx, ty, tz);
+        Vector3f rotationVelocity = new Vector3f(rx, ry, rz);
+        Vector3f scaleVelocity = new Vector3f(sx, sy, sz);
+        if (totalWeight > 0) {
+            translationVelocity.div(totalWeight);
+            rotationVelocity.div(totalWeight);
+            scaleVelocity.div(totalWeight);
+        }
+        return new BoneTransform(bone, translationVelocity, new RotationVelocityRotationView(rotationVelocity), scaleVelocity);
     }
 
     /**
-     * Calculates weighted average of velocity vectors (more recent = higher weight).
+     * Computes the weight of each frame pair from the frame times (more recent = higher weight).
      * The Gaussian weighted model is used to calculate the weight of each sampled velocity,
-     * which equivalent to an approximate low-pass filter.
+     * which equivalent to an approximate low-pass filter. The weights are the same for all bones,
+     * so they are computed once per change of the history. Every weight depends on the time since the
+     * oldest frame, so all of them change whenever a frame is appended.
      */
-    private Vector3f calculateWeightedAverage(Vector3f[] velocities, HistoricalFrame[] frames) {
-        Vector3f result = new Vector3f(0, 0, 0);
+    private void updateWeights() {
         float baselineWeight = 0.0f;
         float cumulativeTime = 0.0f;
 
-        for (int i = 0; i < velocities.length; i++) {
-            cumulativeTime += frames[i].deltaTime;
+        for (int i = 0; i < size - 1; i++) {
+            cumulativeTime += frameDeltaTimes[slot(i)];
             float cumulativeWeight = gaussianIntegral(cumulativeTime);
-            float weight = cumulativeWeight - baselineWeight;
+            weights[i] = cumulativeWeight - baselineWeight;
             baselineWeight = cumulativeWeight;
-            Vector3f velocity = velocities[i];
-            result.add(velocity.x() * weight, velocity.y() * weight, velocity.z() * weight);
-        }
-
-        if (baselineWeight > 0) {
-            result.div(baselineWeight);
         }
 
-        return result;
+        totalWeight = baselineWeight;
+        weightsDirty = false;
     }
 
     /**
-     * Creates a velocity transform from smoothed velocity data.
+     * Appends an empty frame, evicting the oldest frame if the history is full.
+     *
+     * @return the slot of the new frame
      */
-    private BoneTransform createVelocityTransform(int boneIndex, SmoothedVelocity velocity) {
-        return new BoneTransform(
-                boneIndex,
-                velocity.translationVelocity,
-                new RotationVelocityRotationView(velocity.rotationVelocity),
-                velocity.scaleVelocity
-        );
+    private int appendFrame(float deltaTime) {
+        int slot;
+        if (size < maxHistoryFrames) {
+            slot = slot(size++);
+        } else {
+            slot = head;
+            head = (head + 1) % maxHistoryFrames;
+        }
+        boolean[] present = framePresent[slot];
+        for (int bone = 0; bone < boneCapacity; bone++) {
+            if (present[bone]) {
+                present[bone] = false;
+                boneFrameCounts[bone]--;
+            }
+        }
+        frameDeltaTimes[slot] = deltaTime;
+        weightsDirty = true;
+        return slot;
     }
 
-    private static float gaussianIntegral(double t) {
-        return (float) (0.5 * (1 + MathUtil.erf(t / (0.046 * Math.sqrt(2)))));
+    private void clearHistory() {
+        head = 0;
+        size = 0;
+        Arrays.fill(boneFrameCounts, 0);
+        for (boolean[] present : framePresent) {
+            Arrays.fill(present, false);
+        }
+        weightsDirty = true;
     }
 
-    /**
-     * Historical frame data for multi-frame analysis.
-     */
-    private static class HistoricalFrame {
-        final Pose pose;
-        final float deltaTime;
-
-        HistoricalFrame(Pose pose, float deltaTime) {
-            this.pose = pose;
-            this.deltaTime = deltaTime;
+    private void ensureBoneCapacity(int required) {
+        int capacity = Math.max(required, boneCapacity * 2);
+        for (int i = 0; i < maxHistoryFrames; i++) {
+            frameData[i] = Arrays.copyOf(frameData[i], capacity * STRIDE);
+            framePresent[i] = Arrays.copyOf(framePresent[i], capacity);
         }
+        boneFrameCounts = Arrays.copyOf(boneFrameCounts, capacity);
+        boneCapacity = capacity;
     }
 
-    /**
-     * Smoothed velocity data for a bone.
-     */
-    private static class SmoothedVelocity {
-        Vector3f translationVelocity = new Vector3f(0, 0, 0);
-        Vector3f rotationVelocity = new Vector3f(0, 0, 0);
-        Vector3f scaleVelocity = new Vector3f(0, 0, 0);
+    private int slot(int i) {
+        return (head + i) % maxHistoryFrames;
+    }
+
+    private static float gaussianIntegral(double t) {
+        return (float) (0.5 * (1 + MathUtil.erf(t / (0.046 * Math.sqrt(2)))));
     }
 }
@@ -40,6 +40,18 @@ public class AnimationMontage<T> {
     /** Animation section mapping table, for managing different sections of animation */
     private @Nullable Map<String, AnimationMontageSection> sections;
 
+    /** Compiled segment index, null until first requested or after the tracks changed */
+    private @Nullable MontageSegmentIndex segmentIndex;
+
+    /** Tracks the segment index was compiled from */
+    private final ChannelStamp segmentIndexStamp = new ChannelStamp();
+
+    /** Compiled notify timeline, null until first requested or after the channels changed */
+    private @Nullable NotifyTimeline<T> notifyTimeline;
+
+    /** Channels the notify timeline was compiled from */
+    private final ChannelStamp notifyTimelineStamp = new ChannelStamp();
+
     /**
      * Get the animation track list.
      * 
@@ -57,6 +69,33 @@ public class AnimationMontage<T> {
      */
     public void setTracks(@Nullable List<AnimationMontageTrack> tracks) {
         this.tracks = tracks;
+        this.segmentIndex = null;
+    }
+
+    /**
+     * Get the compiled segment index of the tracks, compiling it on first use.
+     *
+     * <p>The index is recompiled whenever the track list or the segments of the tracks changed since it was
+     * compiled, which is detected with {@link AnimationMontageTrack#getModificationCount()}. Checking costs one
+     * comparison per track.</p>
+     *
+     * @return Compiled segment index
+     */
+    public MontageSegmentIndex getSegmentIndex() {
+        MontageSegmentIndex index = segmentIndex;
+        if (index == null || !segmentIndexStamp.matches(tracks, null)) {
+            index = MontageSegmentIndex.compile(tracks);
+            segmentIndexStamp.record(tracks, null);
+            segmentIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Discard the compiled segment index, so that it is recompiled from the tracks on next use.
+     */
+    public void invalidateSegmentIndex() {
+        this.segmentIndex = null;
     }
 
     /**
@@ -76,6 +115,7 @@ public class AnimationMontage<T> {
      */
     public void setNotifyChannels(@Nullable List<ClipChannel<IAnimationNotify<T>>> notifyChannels) {
         this.notifyChannels = notifyChannels;
+        this.notifyTimeline = null;
     }
 
     /**
@@ -95,6 +135,34 @@ public class AnimationMontage<T> {
      */
     public void setNotifyStateChannels(@Nullable List<ClipChannel<AnimationNotifyStateMarker<T>>> notifyStateChannels) {
         this.notifyStateChannels = notifyStateChannels;
+        this.notifyTimeline = null;
+    }
+
+    /**
+     * Get the compiled notify timeline, compiling it on first use.
+     *
+     * <p>The timeline is recompiled whenever the channel lists or the keyframes of the channels changed since it
+     * was compiled, which is detected with {@link com.maydaymemory.mae.basic.AnimationChannel#getModificationCount()}.
+     * Checking costs one comparison per channel. Only changes to channels which do not count their modifications
+     * require a call to {@link #invalidateNotifyTimeline()}.</p>
+     *
+     * @return Compiled notify timeline
+     */
+    public NotifyTimeline<T> getNotifyTimeline() {
+        NotifyTimeline<T> timeline = notifyTimeline;
+        if (timeline == null || !notifyTimelineStamp.matches(notifyChannels, notifyStateChannels)) {
+            timeline = NotifyTimeline.compile(notifyChannels, notifyStateChannels);
+            notifyTimelineStamp.record(notifyChannels, notifyStateChannels);
+            notifyTimeline = timeline;
+        }
+        return timeline;
+    }
+
+    /**
+     * Discard the compiled notify timeline, so that it is recompiled from the channels on next use.
+     */
+    public void invalidateNotifyTimeline() {
+        this.notifyTimeline = null;
     }
 
     /**
@@ -1,19 +1,21 @@
 package com.maydaymemory.mae.control.montage;
 
 import com.maydaymemory.mae.basic.*;
-import com.maydaymemory.mae.blend.*;
+import com.maydaymemory.mae.control.NotifyPolicy;
 import com.maydaymemory.mae.control.OutputPort;
 import com.maydaymemory.mae.control.PoseSlot;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
 import com.maydaymemory.mae.control.Tickable;
-import com.maydaymemory.mae.util.Iterables;
+import com.maydaymemory.mae.control.command.AnimationCommandQueue;
 import com.maydaymemory.mae.util.LongSupplier;
 import com.maydaymemory.mae.util.MathUtil;
 import com.maydaymemory.mae.util.MergedSortedIterable;
-import it.unimi.dsi.fastutil.floats.FloatFloatImmutablePair;
-import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -32,34 +34,42 @@ import java.util.function.Supplier;
  * </ul>
  *
  * <p><b>Important: </b>
- * Montage Runner is not thread-safe, please do not call it asynchronously
+ * Montage Runner is not thread-safe, please do not call it asynchronously.
+ * To control it from other threads, enqueue commands into an attached {@link AnimationCommandQueue}.
  * </p>
+ *
+ * <p>A snapshot of the runner holds its playback state, section, speed, active notify states and
+ * the clip ranges of the last tick. Notify events buffered but not yet drained are not part of it.</p>
  * 
  * @param <T> Context type
  * 
  * @author MaydayMemory
  * @since 1.0.4
  */
-public class AnimationMontageRunner<T> implements Tickable {
+public class AnimationMontageRunner<T> implements Tickable, Snapshotable {
     /** Base pose slot, for inputting base pose */
     private final PoseSlot basePoseSlot = new PoseSlot();
     
     /** Output port, for outputting blended pose */
     private final OutputPort<Pose> outputPort = this::getPose;
 
-    /** Layered blender, for animation layered blending */
-    private final LayeredBlender layeredBlender;
-    
-    /** Additional blender, for handling additive animation blending */
-    private final AdditiveBlender additiveBlender;
-    
-    /** Merge blender, for merging multiple poses */
-    private final MergeBlender mergeBlender;
+    /** Fused blender, for layered and additive blending of all tracks onto the base pose in one pass */
+    private final FusedMontageBlender fusedBlender;
+
+    /** Pose builder supplier, for track poses filtered by the bone mask */
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
 
     /** Animation montage instance */
     private final AnimationMontage<T> montage;
 
-    private final ArrayList<FloatFloatImmutablePair> clipPlans = new ArrayList<>();
+    /** Whether a range has been ticked, so that {@link #clipPlanFrom} and {@link #clipPlanTo} are set */
+    private boolean hasClipPlan;
+
+    /** Start of the range covered by the last tick (seconds) */
+    private float clipPlanFrom;
+
+    /** End of the range covered by the last tick (seconds) */
+    private float clipPlanTo;
     
     /** Context object */
     private final T context;
@@ -67,11 +77,21 @@ public class AnimationMontageRunner<T> implements Tickable {
     /** Nanosecond time supplier, for time calculation */
     private final LongSupplier nanoTimeSupplier;
 
-    /**
-     * Notification state control block mapping table.
-     * Uses array map since notify states usually less than 100, in this case array map is more efficient.
-     */
-    private final Object2ObjectArrayMap<IAnimationNotifyState<T>, NotifyStateControlBlock> notifyStates = new Object2ObjectArrayMap<>();
+    /** Compiled notify timeline of the montage the active state bits refer to, null before the first tick */
+    @Nullable
+    private NotifyTimeline<T> timeline;
+
+    /** Reusable cursor over the notify timeline */
+    private final NotifyTimeline.Cursor timelineCursor = new NotifyTimeline.Cursor();
+
+    /** Sweep cursor over the segments playing at the current progress */
+    private final MontageSegmentIndex.Cursor segmentCursor = new MontageSegmentIndex.Cursor();
+
+    /** Active notify states, by timeline state index */
+    private BitSet activeStates = new BitSet();
+
+    /** Active notify states which have been updated at least once, by timeline state index */
+    private BitSet updatedStates = new BitSet();
 
     /** Whether animation is playing */
     private boolean isPlaying = false;
@@ -88,6 +108,30 @@ public class AnimationMontageRunner<T> implements Tickable {
     /** Playback speed, 1.0 is normal speed. Cannot be negative. */
     private float speed = 1.0f;
 
+    /** Queue of commands enqueued by other threads, drained at the start of each tick */
+    @Nullable
+    private AnimationCommandQueue commandQueue;
+
+    /** Bones sampled and blended by this runner, typically the active LOD bone set of the character */
+    private BoneMask boneMask = BoneMask.ALL;
+
+    /** Buffer recording notify callbacks instead of invoking them, null to invoke them synchronously */
+    @Nullable
+    private NotifyEventBuffer<T> notifyEventBuffer;
+
+    /** Whether pose sampling and blending are skipped entirely */
+    private boolean headless = false;
+
+    /** How notifies are handled by {@link #tickRange(float, float)}, only differs from FIRE_ALL during a seek */
+    private NotifyPolicy notifyPolicy = NotifyPolicy.FIRE_ALL;
+
+    /** Summary filled during a seek with {@link NotifyPolicy#SUMMARIZE}, null otherwise */
+    @Nullable
+    private SeekSummary<T> seekSummary;
+
+    /** Notify states started during a summarizing seek, whose start callbacks are deferred to the target */
+    private final BitSet deferredStates = new BitSet();
+
     /**
      * Construct a new animation montage runner.
      * 
@@ -101,9 +145,8 @@ public class AnimationMontageRunner<T> implements Tickable {
                                   Supplier<PoseBuilder> poseBuilderSupplier, LongSupplier nanoTimeSupplier) {
         this.montage = montage;
         this.context = context;
-        this.layeredBlender = new SimpleLayeredBlender(boneTransformFactory, poseBuilderSupplier);
-        this.additiveBlender = new SimpleAdditiveBlender(boneTransformFactory, poseBuilderSupplier);
-        this.mergeBlender = new NoAllocMergeBlender();
+        this.fusedBlender = new FusedMontageBlender(boneTransformFactory, poseBuilderSupplier);
+        this.poseBuilderSupplier = poseBuilderSupplier;
         this.nanoTimeSupplier = nanoTimeSupplier;
     }
 
@@ -143,6 +186,90 @@ public class AnimationMontageRunner<T> implements Tickable {
         return basePoseSlot;
     }
 
+    /**
+     * Get the command queue drained by this runner.
+     *
+     * @return Command queue, or null if none is attached
+     */
+    @Nullable
+    public AnimationCommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * Attach a command queue, which will be drained at the start of every {@link #tick()}.
+     *
+     * @param commandQueue Command queue, or null to detach
+     */
+    public void setCommandQueue(@Nullable AnimationCommandQueue commandQueue) {
+        this.commandQueue = commandQueue;
+    }
+
+    /**
+     * Get the buffer recording notify callbacks.
+     *
+     * @return Notify event buffer, or null if callbacks are invoked synchronously
+     */
+    @Nullable
+    public NotifyEventBuffer<T> getNotifyEventBuffer() {
+        return notifyEventBuffer;
+    }
+
+    /**
+     * Record notify and notify state callbacks into a buffer instead of invoking them during {@link #tick()}.
+     *
+     * <p>Callbacks are recorded in the order they would have been invoked, with the current time, and are
+     * invoked when the buffer is drained, see {@link NotifyEventBuffer} and {@link NotifyEventDispatcher}.</p>
+     *
+     * @param notifyEventBuffer Notify event buffer, or null to invoke callbacks synchronously
+     */
+    public void setNotifyEventBuffer(@Nullable NotifyEventBuffer<T> notifyEventBuffer) {
+        this.notifyEventBuffer = notifyEventBuffer;
+    }
+
+    /**
+     * Check if this runner is in headless mode.
+     *
+     * @return Returns true if pose sampling and blending are skipped
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Enable or disable headless mode.
+     *
+     * <p>In headless mode, ticking still advances progress and sections, triggers notifies and
+     * notify states, and updates clip plans; curves can still be evaluated. Only {@link #getPose()}
+     * changes: it returns {@link DummyPose#INSTANCE} without pulling the base pose, sampling tracks or blending.</p>
+     *
+     * @param headless true to skip all pose sampling and blending
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Get the bones sampled and blended by this runner.
+     *
+     * @return Bone mask
+     */
+    public BoneMask getBoneMask() {
+        return boneMask;
+    }
+
+    /**
+     * Restrict track sampling and blending to the given bones, e.g. the mask of the character's current
+     * detail level from {@link Skeleton#getLodBoneMask(int)}. Excluded bones are never sampled or blended,
+     * and are absent from the output pose.
+     *
+     * @param boneMask Bone mask, {@link BoneMask#ALL} to evaluate every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+        fusedBlender.setBoneMask(boneMask);
+    }
+
     /**
      * Set playback speed.
      * 
@@ -271,13 +398,184 @@ public class AnimationMontageRunner<T> implements Tickable {
         handleProgressChange(newProgress);
     }
 
+    /**
+     * Jump to the given montage time, handling the skipped notifies according to the policy.
+     *
+     * <p>The target is first looked up along the chain of next sections, starting from the current
+     * progress, exactly as ticks would reach it. If it is reachable, every section range in between is
+     * processed in one pass. If the chain ends and the target lies at or after the end of its last section, the
+     * montage is played to the end of the chain and stops, as a tick would. Otherwise, e.g. when seeking backwards, the runner
+     * teleports to the section containing the target: notify states still active receive their end callbacks
+     * (unless the policy is {@link NotifyPolicy#SILENT}), and nothing else is fired.</p>
+     *
+     * <p>If the runner is not playing, only the section containing the target is selected, the runner does
+     * not start.</p>
+     *
+     * @param targetNanos Target montage time in nanoseconds
+     * @param policy How skipped notifies and notify states are handled
+     * @return Summary of the skipped notifies, empty unless the policy is {@link NotifyPolicy#SUMMARIZE}
+     * @throws IllegalArgumentException if the target can be neither reached nor teleported to, i.e. no section
+     *                                  contains it and, if the runner is playing, it does not lie after the end
+     *                                  of the chain of next sections
+     */
+    public SeekSummary<T> seek(long targetNanos, NotifyPolicy policy) {
+        SeekSummary<T> summary = new SeekSummary<>();
+        if (!isPlaying || section == null) {
+            AnimationMontageSection containing = findSectionContaining(targetNanos);
+            if (containing == null) {
+                throw new IllegalArgumentException("No section contains the seek target: " + targetNanos);
+            }
+            lastUpdateTime = nanoTimeSupplier.getAsLong();
+            section = containing;
+            progress = targetNanos;
+            return summary;
+        }
+        lastUpdateTime = nanoTimeSupplier.getAsLong();
+        NotifyTimeline<T> timeline = syncTimeline();
+        notifyPolicy = policy;
+        seekSummary = policy == NotifyPolicy.SUMMARIZE ? summary : null;
+        try {
+            int hops = countHops(targetNanos);
+            if (hops >= 0) {
+                seekAlongChain(targetNanos, hops);
+            } else {
+                long chainEnd = chainEndProgress(targetNanos);
+                if (chainEnd >= 0) {
+                    // At or past the end of the last section of the chain: play to its end, which stops the montage.
+                    handleProgressChange(chainEnd);
+                } else {
+                    AnimationMontageSection containing = findSectionContaining(targetNanos);
+                    if (containing == null) {
+                        throw new IllegalArgumentException("No section contains the seek target: " + targetNanos);
+                    }
+                    teleport(containing, targetNanos, policy);
+                }
+            }
+            if (policy == NotifyPolicy.SUMMARIZE) {
+                for (int i = deferredStates.nextSetBit(0); i >= 0; i = deferredStates.nextSetBit(i + 1)) {
+                    fireState(NotifyEventType.STATE_START, timeline.getState(i));
+                    activeStates.set(i);
+                    updatedStates.clear(i);
+                }
+                updateActiveStates(timeline);
+            }
+        } finally {
+            deferredStates.clear();
+            notifyPolicy = NotifyPolicy.FIRE_ALL;
+            seekSummary = null;
+        }
+        return summary;
+    }
+
+    /**
+     * Count how many next-section hops are needed to reach the target from the current progress.
+     *
+     * @return Number of hops, or -1 if the target cannot be reached along the chain
+     */
+    private int countHops(long targetNanos) {
+        AnimationMontageSection current = section;
+        long from = progress;
+        Map<String, AnimationMontageSection> sections = montage.getSections();
+        int maxHops = sections == null ? 0 : sections.size();
+        for (int hops = 0; hops <= maxHops && current != null; hops++) {
+            if (targetNanos >= from && targetNanos < MathUtil.toNanos(current.getEndTime())) {
+                return hops;
+            }
+            String nextSectionName = current.getNextSection();
+            current = nextSectionName == null ? null : montage.getSection(nextSectionName);
+            if (current != null) {
+                from = MathUtil.toNanos(current.getStartTime());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compute the progress which, passed to {@link #handleProgressChange(long)}, plays the chain of next
+     * sections from the current progress to its end.
+     *
+     * @param targetNanos Target montage time in nanoseconds
+     * @return The progress ending the chain, or -1 if the chain loops or the target lies before the end of
+     * its last section
+     */
+    private long chainEndProgress(long targetNanos) {
+        AnimationMontageSection current = section;
+        long endProgress = MathUtil.toNanos(current.getEndTime());
+        Map<String, AnimationMontageSection> sections = montage.getSections();
+        int maxHops = sections == null ? 0 : sections.size();
+        for (int hops = 0; hops <= maxHops; hops++) {
+            String nextSectionName = current.getNextSection();
+            AnimationMontageSection next = nextSectionName == null ? null : montage.getSection(nextSectionName);
+            if (next == null) {
+                return targetNanos >= MathUtil.toNanos(current.getEndTime()) ? endProgress : -1;
+            }
+            current = next;
+            // Measured as handleProgressChange consumes the overshoot, section by section.
+            endProgress += MathUtil.toNanos(current.getLength());
+        }
+        return -1;
+    }
+
+    private void seekAlongChain(long targetNanos, int hops) {
+        if (hops == 0) {
+            tickRange(MathUtil.toSecond(progress), MathUtil.toSecond(targetNanos));
+            progress = targetNanos;
+            return;
+        }
+        tickRange(MathUtil.toSecond(progress), section.getEndTime() + Math.ulp(section.getEndTime()));
+        for (int i = 0; i < hops; i++) {
+            section = montage.getSection(section.getNextSection());
+            if (i < hops - 1) {
+                tickRange(section.getStartTime(), section.getEndTime() + Math.ulp(section.getEndTime()));
+            }
+        }
+        tickRange(section.getStartTime(), MathUtil.toSecond(targetNanos));
+        progress = targetNanos;
+    }
+
+    private void teleport(AnimationMontageSection target, long targetNanos, NotifyPolicy policy) {
+        if (policy != NotifyPolicy.SILENT) {
+            NotifyTimeline<T> timeline = syncTimeline();
+            for (int i = activeStates.nextSetBit(0); i >= 0; i = activeStates.nextSetBit(i + 1)) {
+                IAnimationNotifyState<T> notify = timeline.getState(i);
+                if (!updatedStates.get(i)) {
+                    fireState(NotifyEventType.STATE_UPDATE, notify);
+                }
+                fireState(NotifyEventType.STATE_END, notify);
+            }
+        }
+        activeStates.clear();
+        updatedStates.clear();
+        section = target;
+        progress = targetNanos;
+    }
+
+    @Nullable
+    private AnimationMontageSection findSectionContaining(long targetNanos) {
+        Map<String, AnimationMontageSection> sections = montage.getSections();
+        if (sections == null) {
+            return null;
+        }
+        for (AnimationMontageSection candidate : sections.values()) {
+            if (targetNanos >= MathUtil.toNanos(candidate.getStartTime())
+                    && targetNanos <= MathUtil.toNanos(candidate.getEndTime())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
     /**
      * Update animation playback state.
      *
-     * <p>This method updates playback progress, handles section transitions, and triggers corresponding notifications.</p>
+     * <p>This method applies pending commands from the attached command queue first, then updates playback
+     * progress, handles section transitions, and triggers corresponding notifications.</p>
      */
     @Override
     public void tick() {
+        if (commandQueue != null) {
+            commandQueue.drain();
+        }
         tickForward((long) ((nanoTimeSupplier.getAsLong() - lastUpdateTime) * speed));
     }
 
@@ -286,34 +584,28 @@ public class AnimationMontageRunner<T> implements Tickable {
      * 
      * <p>This method calculates the blended pose of all enabled tracks, including additive animation processing.</p>
      * 
-     * @return Current blended pose
+     * @return Current blended pose, or {@link DummyPose#INSTANCE} in headless mode
      */
     public Pose getPose() {
+        if (headless) {
+            return DummyPose.INSTANCE;
+        }
         Pose basePose = basePoseSlot.get();
-        List<AnimationMontageTrack> tracks = montage.getTracks();
-        if (tracks == null) {
+        if (montage.getTracks() == null) {
             return basePose;
         }
-        List<Pose> blendedPoses = new ArrayList<>();
-        for (AnimationMontageTrack track : tracks) {
+        float progressS = MathUtil.toSecond(progress);
+        MontageSegmentIndex.Cursor cursor = segmentCursor.moveTo(montage.getSegmentIndex(), progressS);
+        fusedBlender.begin(basePose);
+        for (int i = 0; i < cursor.size(); i++) {
+            AnimationMontageTrack track = cursor.getTrack(i);
             if (!track.isEnabled()) {
                 continue;
             }
-            Pose animationPose = track.evaluate(MathUtil.toSecond(progress));
-            if (animationPose == null) {
-                continue;
-            }
-            if (track.isAdditive()) {
-                Pose addtivePose = layeredBlender.blend(DummyPose.INSTANCE, animationPose, track.getLayer());
-                blendedPoses.add(additiveBlender.blend(basePose, addtivePose));
-            } else {
-                blendedPoses.add(layeredBlender.blend(basePose, animationPose, track.getLayer()));
-            }
-        }
-        if (blendedPoses.isEmpty()) {
-            return basePose;
+            Pose animationPose = track.evaluateSegment(cursor.getSegmentIndex(i), progressS, boneMask, poseBuilderSupplier);
+            fusedBlender.addTrack(animationPose, track.getLayer(), track.isAdditive());
         }
-        return mergeBlender.blend(blendedPoses);
+        return fusedBlender.finish();
     }
 
     public <E> List<E> evaluateCurves(String curveName) {
@@ -321,12 +613,13 @@ public class AnimationMontageRunner<T> implements Tickable {
         if (tracks == null || tracks.isEmpty()) {
             return Collections.emptyList();
         }
-        ArrayList<E> arrayList = new ArrayList<>();
-        for (AnimationMontageTrack track : tracks) {
-            if (!track.isEnabled()) {
-                arrayList.add(null);
-            } else {
-                arrayList.add(track.evaluateCurve(curveName, MathUtil.toSecond(progress)));
+        ArrayList<E> arrayList = new ArrayList<>(Collections.nCopies(tracks.size(), null));
+        float progressS = MathUtil.toSecond(progress);
+        MontageSegmentIndex.Cursor cursor = segmentCursor.moveTo(montage.getSegmentIndex(), progressS);
+        for (int i = 0; i < cursor.size(); i++) {
+            AnimationMontageTrack track = cursor.getTrack(i);
+            if (track.isEnabled()) {
+                arrayList.set(cursor.getTrackIndex(i), track.evaluateSegmentCurve(cursor.getSegmentIndex(i), curveName, progressS));
             }
         }
         return arrayList;
@@ -338,25 +631,22 @@ public class AnimationMontageRunner<T> implements Tickable {
         if (tracks == null || tracks.isEmpty()) {
             return Collections.emptyList();
         }
-        Iterable<Keyframe<E>> result = null;
-        for (FloatFloatImmutablePair clipPlan : clipPlans) {
-            float first = clipPlan.firstFloat();
-            float second = clipPlan.secondFloat();
-            ArrayList<Iterable<Keyframe<E>>> clips = new ArrayList<>();
-            for (AnimationMontageTrack track : tracks) {
-                if (track.isEnabled()) {
-                    Iterable<Keyframe<E>> clip = track.clip(channelName, first, second);
-                    if (clip != null && clip.iterator().hasNext()) {
-                        clips.add(clip);
-                    }
+        if (!hasClipPlan) {
+            return Collections.emptyList();
+        }
+        ArrayList<Iterable<Keyframe<E>>> clips = new ArrayList<>();
+        for (AnimationMontageTrack track : tracks) {
+            if (track.isEnabled()) {
+                Iterable<Keyframe<E>> clip = track.clip(channelName, clipPlanFrom, clipPlanTo);
+                if (clip != null && clip.iterator().hasNext()) {
+                    clips.add(clip);
                 }
             }
-            if (!clips.isEmpty()) {
-                Iterable<Keyframe<E>> mergedClip = new MergedSortedIterable<>(clips, Keyframe<E>::compareTo);
-                result = result == null ? mergedClip : Iterables.concat(result, mergedClip);
-            }
         }
-        return result == null ? Collections.emptyList() : result;
+        if (clips.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new MergedSortedIterable<>(clips, Keyframe<E>::compareTo);
     }
 
     private void handleProgressChange(long newProgress) {
@@ -398,61 +688,209 @@ public class AnimationMontageRunner<T> implements Tickable {
      * @param toTime End time (seconds)
      */
     private void tickRange(float fromTime, float toTime) {
-        clipPlans.clear();
-        clipPlans.add(new FloatFloatImmutablePair(fromTime, toTime));
-        triggerNotifies(fromTime, toTime);
-        updateNotifyStateSet(fromTime, toTime);
-        for (Map.Entry<IAnimationNotifyState<T>, NotifyStateControlBlock> entry : notifyStates.entrySet()) {
-            entry.getKey().onUpdate(context);
-            entry.getValue().isUpdated = true;
+        hasClipPlan = true;
+        clipPlanFrom = fromTime;
+        clipPlanTo = toTime;
+        NotifyTimeline<T> timeline = syncTimeline();
+        timelineCursor.reset(timeline, fromTime, toTime);
+        triggerNotifies(timeline);
+        timelineCursor.rewind();
+        updateNotifyStateSet(timeline);
+        if (notifyPolicy != NotifyPolicy.FIRE_ALL) {
+            // Silent seeks update nothing, summarizing seeks update once at the target.
+            return;
         }
+        updateActiveStates(timeline);
     }
 
     /**
-     * Trigger notifications within the specified time range.
-     * 
-     * @param fromTime Start time (seconds)
-     * @param toTime End time (seconds)
+     * Trigger the notifications of the range walked by the timeline cursor.
+     *
+     * @param timeline Notify timeline
      */
-    private void triggerNotifies(float fromTime, float toTime) {
-        for (Keyframe<IAnimationNotify<T>> keyframe : montage.clipNotify(fromTime, toTime)) {
-            keyframe.getValue().onNotify(context);
+    private void triggerNotifies(NotifyTimeline<T> timeline) {
+        while (timelineCursor.hasNext()) {
+            int index = timelineCursor.nextIndex();
+            if (!timeline.isNotify(index)) {
+                continue;
+            }
+            if (notifyPolicy == NotifyPolicy.FIRE_ALL) {
+                fireNotify(timeline.getNotify(index));
+            } else if (seekSummary != null) {
+                seekSummary.addNotify(timeline.getNotify(index));
+            }
         }
     }
 
     /**
-     * Update notification state set within the specified time range.
-     * 
-     * @param fromTime Start time (seconds)
-     * @param toTime End time (seconds)
+     * Update notification state set with the markers of the range walked by the timeline cursor.
+     *
+     * @param timeline Notify timeline
      */
-    private void updateNotifyStateSet(float fromTime, float toTime) {
-        for (Keyframe<AnimationNotifyStateMarker<T>> keyframe : montage.clipNotifyState(fromTime, toTime)) {
-            AnimationNotifyStateMarker<T> marker = keyframe.getValue();
-            if (marker.getMarkerType() == AnimationNotifyStateMarker.MarkerType.START) {
-                IAnimationNotifyState<T> notify = marker.getNotify();
-                notify.onStart(context);
-                notifyStates.put(notify, new NotifyStateControlBlock());
-            } else if (marker.getMarkerType() == AnimationNotifyStateMarker.MarkerType.END) {
-                notifyStates.compute(marker.getNotify(), (notify, controlBlock) -> {
-                    if (controlBlock != null) {
-                        if (!controlBlock.isUpdated) {
-                            // At lease update notify state once
-                            notify.onUpdate(context);
-                        }
-                        notify.onEnd(context);
-                    }
-                    return null;
-                });
+    private void updateNotifyStateSet(NotifyTimeline<T> timeline) {
+        while (timelineCursor.hasNext()) {
+            int index = timelineCursor.nextIndex();
+            if (timeline.isNotify(index)) {
+                continue;
             }
+            int stateIndex = timeline.getStateIndex(index);
+            if (notifyPolicy != NotifyPolicy.FIRE_ALL) {
+                updateNotifyStateSetSeeking(timeline, stateIndex, timeline.isStart(index));
+                continue;
+            }
+            IAnimationNotifyState<T> notify = timeline.getState(stateIndex);
+            if (timeline.isStart(index)) {
+                fireState(NotifyEventType.STATE_START, notify);
+                activeStates.set(stateIndex);
+                updatedStates.clear(stateIndex);
+            } else if (activeStates.get(stateIndex)) {
+                if (!updatedStates.get(stateIndex)) {
+                    // At lease update notify state once
+                    fireState(NotifyEventType.STATE_UPDATE, notify);
+                }
+                fireState(NotifyEventType.STATE_END, notify);
+                activeStates.clear(stateIndex);
+            }
+        }
+    }
+
+    /**
+     * Update every active notification state.
+     *
+     * @param timeline Notify timeline
+     */
+    private void updateActiveStates(NotifyTimeline<T> timeline) {
+        for (int i = activeStates.nextSetBit(0); i >= 0; i = activeStates.nextSetBit(i + 1)) {
+            fireState(NotifyEventType.STATE_UPDATE, timeline.getState(i));
+            updatedStates.set(i);
+        }
+    }
+
+    /**
+     * Apply a notify state marker passed during a silent or summarizing seek.
+     *
+     * @param timeline Notify timeline
+     * @param stateIndex Notify state index
+     * @param start Whether the marker is a start marker
+     */
+    private void updateNotifyStateSetSeeking(NotifyTimeline<T> timeline, int stateIndex, boolean start) {
+        if (start) {
+            if (notifyPolicy == NotifyPolicy.SUMMARIZE) {
+                deferredStates.set(stateIndex);
+            }
+            return;
+        }
+        IAnimationNotifyState<T> notify = timeline.getState(stateIndex);
+        if (deferredStates.get(stateIndex)) {
+            deferredStates.clear(stateIndex);
+            seekSummary.addCompletedState(notify);
+            return;
+        }
+        if (activeStates.get(stateIndex)) {
+            activeStates.clear(stateIndex);
+            if (notifyPolicy == NotifyPolicy.SUMMARIZE) {
+                // Started before the seek, so its end still matters.
+                if (!updatedStates.get(stateIndex)) {
+                    fireState(NotifyEventType.STATE_UPDATE, notify);
+                }
+                fireState(NotifyEventType.STATE_END, notify);
+            }
+        }
+    }
+
+    /**
+     * Invoke or record a notification.
+     *
+     * @param notify Notification
+     */
+    private void fireNotify(IAnimationNotify<T> notify) {
+        if (notifyEventBuffer != null) {
+            notifyEventBuffer.record(NotifyEventType.NOTIFY, notify, context, nanoTimeSupplier.getAsLong());
+        } else {
+            notify.onNotify(context);
+        }
+    }
+
+    /**
+     * Invoke or record a notification state callback.
+     *
+     * @param type Callback type
+     * @param notify Notification state
+     */
+    private void fireState(NotifyEventType type, IAnimationNotifyState<T> notify) {
+        if (notifyEventBuffer != null) {
+            notifyEventBuffer.record(type, notify, context, nanoTimeSupplier.getAsLong());
+        } else {
+            type.dispatch(notify, context);
+        }
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeBoolean(isPlaying);
+        buffer.writeLong(progress);
+        buffer.writeLong(lastUpdateTime);
+        buffer.writeFloat(speed);
+        buffer.writeReference(section);
+        // Active state bits are only meaningful with the timeline they index.
+        buffer.writeReference(timeline);
+        buffer.writeInt(activeStates.cardinality());
+        for (int i = activeStates.nextSetBit(0); i >= 0; i = activeStates.nextSetBit(i + 1)) {
+            buffer.writeInt(i);
+            buffer.writeBoolean(updatedStates.get(i));
+        }
+        buffer.writeBoolean(hasClipPlan);
+        buffer.writeFloat(clipPlanFrom);
+        buffer.writeFloat(clipPlanTo);
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        isPlaying = buffer.readBoolean();
+        progress = buffer.readLong();
+        lastUpdateTime = buffer.readLong();
+        speed = buffer.readFloat();
+        section = buffer.readReference();
+        // If the montage was recompiled since, the next tick remaps the bits to the current timeline.
+        timeline = buffer.readReference();
+        activeStates.clear();
+        updatedStates.clear();
+        for (int count = buffer.readInt(); count > 0; count--) {
+            int stateIndex = buffer.readInt();
+            activeStates.set(stateIndex);
+            updatedStates.set(stateIndex, buffer.readBoolean());
         }
+        hasClipPlan = buffer.readBoolean();
+        clipPlanFrom = buffer.readFloat();
+        clipPlanTo = buffer.readFloat();
     }
 
     /**
-     * Notification state control block, for tracking notification state update status.
+     * Get the notify timeline of the montage, carrying the active notify states over if it was recompiled.
+     *
+     * <p>Active states without any marker in the new timeline can never end, so they are dropped without callbacks.</p>
+     *
+     * @return Current notify timeline
      */
-    private static class NotifyStateControlBlock {
-        /** Update flag */
-        boolean isUpdated = false;
+    private NotifyTimeline<T> syncTimeline() {
+        NotifyTimeline<T> current = montage.getNotifyTimeline();
+        if (current == timeline) {
+            return current;
+        }
+        BitSet newActiveStates = new BitSet(current.getStateCount());
+        BitSet newUpdatedStates = new BitSet(current.getStateCount());
+        if (timeline != null) {
+            for (int i = activeStates.nextSetBit(0); i >= 0; i = activeStates.nextSetBit(i + 1)) {
+                int newIndex = current.indexOf(timeline.getState(i));
+                if (newIndex >= 0) {
+                    newActiveStates.set(newIndex);
+                    newUpdatedStates.set(newIndex, updatedStates.get(i));
+                }
+            }
+        }
+        activeStates = newActiveStates;
+        updatedStates = newUpdatedStates;
+        timeline = current;
+        return current;
     }
 }
@@ -1,8 +1,11 @@
 package com.maydaymemory.mae.control.montage;
 
+import com.maydaymemory.mae.basic.Animation;
 import com.maydaymemory.mae.basic.ArrayAnimationChannelBase;
+import com.maydaymemory.mae.basic.BoneMask;
 import com.maydaymemory.mae.basic.Keyframe;
 import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.PoseBuilder;
 import com.maydaymemory.mae.blend.DummyLayerBlend;
 import com.maydaymemory.mae.blend.LayerBlend;
 import com.maydaymemory.mae.util.Iterables;
@@ -10,6 +13,7 @@ import com.maydaymemory.mae.util.Iterables;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 /**
  * Animation Montage Track, for managing an animation track in animation montage.
@@ -82,17 +86,36 @@ public class AnimationMontageTrack extends ArrayAnimationChannelBase<Keyframe<An
      */
     @Nullable
     public Keyframe<AnimationSegment> getSegmentKeyframe(float timeS) {
+        int index = getSegmentIndex(timeS);
+        return index == -1 ? null : get(index);
+    }
+
+    /**
+     * Get the index of the animation segment keyframe at the specified time point.
+     *
+     * @param timeS Query time (seconds)
+     * @return Index of the segment keyframe playing at the specified time point, or -1 if no segment is playing
+     */
+    public int getSegmentIndex(float timeS) {
         int index = findIndexBefore(timeS, false);
         if (index == -1) {
-            return null;
+            return -1;
         }
+        return covers(index, timeS) ? index : -1;
+    }
+
+    /**
+     * Check whether the segment at the given index is playing at the specified time point,
+     * assuming no later segment starts before that time.
+     *
+     * @param index Segment keyframe index
+     * @param timeS Query time (seconds)
+     * @return Returns true if the segment has started and not ended yet
+     */
+    boolean covers(int index, float timeS) {
         Keyframe<AnimationSegment> keyframe = get(index);
         float timePassed = timeS - keyframe.getTimeS();
-        if (timePassed < keyframe.getValue().getLength()) {
-            return keyframe;
-        } else {
-            return null;
-        }
+        return timePassed >= 0 && timePassed < keyframe.getValue().getLength();
     }
 
     /**
@@ -104,13 +127,46 @@ public class AnimationMontageTrack extends ArrayAnimationChannelBase<Keyframe<An
      */
     @Nullable
     public Pose evaluate(float progressTimeS) {
-        Keyframe<AnimationSegment> segmentKeyframe = this.getSegmentKeyframe(progressTimeS);
-        if (segmentKeyframe == null) {
+        int index = getSegmentIndex(progressTimeS);
+        if (index == -1) {
             return null;
         }
+        Keyframe<AnimationSegment> segmentKeyframe = get(index);
+        AnimationSegment segment = segmentKeyframe.getValue();
+        return segment.getAnimation().evaluate(segment.getStartTime() + progressTimeS - segmentKeyframe.getTimeS());
+    }
+
+    /**
+     * Evaluate the track at the specified progress time, sampling only the bones of the mask.
+     * If there is no segment playing at the specified time point, returns null.
+     *
+     * @param progressTimeS the progress time (seconds)
+     * @param boneMask the bones to evaluate
+     * @param poseBuilderSupplier supplier of the builder of poses filtered by the mask
+     * @return evaluated pose, or null if there is no segment playing at the specified time point
+     * @see Animation#evaluate(float, BoneMask, Supplier)
+     */
+    @Nullable
+    public Pose evaluate(float progressTimeS, BoneMask boneMask, Supplier<PoseBuilder> poseBuilderSupplier) {
+        int index = getSegmentIndex(progressTimeS);
+        return index == -1 ? null : evaluateSegment(index, progressTimeS, boneMask, poseBuilderSupplier);
+    }
+
+    /**
+     * Evaluate a known segment of the track at the specified progress time, skipping the segment lookup.
+     *
+     * @param segmentIndex the index of the segment keyframe playing at the progress time
+     * @param progressTimeS the progress time (seconds)
+     * @param boneMask the bones to evaluate
+     * @param poseBuilderSupplier supplier of the builder of poses filtered by the mask
+     * @return evaluated pose
+     */
+    public Pose evaluateSegment(int segmentIndex, float progressTimeS, BoneMask boneMask,
+                                Supplier<PoseBuilder> poseBuilderSupplier) {
+        Keyframe<AnimationSegment> segmentKeyframe = get(segmentIndex);
         float localProgress = progressTimeS - segmentKeyframe.getTimeS();
         AnimationSegment segment = segmentKeyframe.getValue();
-        return segment.getAnimation().evaluate(segment.getStartTime() + localProgress);
+        return segment.getAnimation().evaluate(segment.getStartTime() + localProgress, boneMask, poseBuilderSupplier);
     }
 
     /**
@@ -126,10 +182,22 @@ public class AnimationMontageTrack extends ArrayAnimationChannelBase<Keyframe<An
      */
     @Nullable
     public <T> T evaluateCurve(String curveName, float progressTimeS) {
-        Keyframe<AnimationSegment> segmentKeyframe = this.getSegmentKeyframe(progressTimeS);
-        if (segmentKeyframe == null) {
-            return null;
-        }
+        int index = getSegmentIndex(progressTimeS);
+        return index == -1 ? null : evaluateSegmentCurve(index, curveName, progressTimeS);
+    }
+
+    /**
+     * Evaluate the curve of a known segment of the track at the specified progress time, skipping the segment lookup.
+     *
+     * @param segmentIndex the index of the segment keyframe playing at the progress time
+     * @param curveName the name of the curve to evaluate
+     * @param progressTimeS the progress time (seconds)
+     * @return evaluated curve value, or null if the curve is not found
+     * @param <T> the type of the curve value
+     */
+    @Nullable
+    public <T> T evaluateSegmentCurve(int segmentIndex, String curveName, float progressTimeS) {
+        Keyframe<AnimationSegment> segmentKeyframe = get(segmentIndex);
         float localProgress = progressTimeS - segmentKeyframe.getTimeS();
         AnimationSegment segment = segmentKeyframe.getValue();
         return segment.getAnimation().evaluateCurve(curveName, segment.getStartTime() + localProgress);
@@ -159,40 +227,29 @@ public class AnimationMontageTrack extends ArrayAnimationChannelBase<Keyframe<An
         } else {
             fromIndex = 0;
         }
-        if (fromIndex == toIndex) {
-            Keyframe<AnimationSegment> keyframe = get(fromIndex);
+        if (fromIndex > toIndex) {
+            return null;
+        }
+        // Collect the parts first and concatenate them flat, instead of nesting one concat per segment.
+        ArrayList<Iterable<Keyframe<T>>> parts = new ArrayList<>(toIndex - fromIndex + 1);
+        for (int i = fromIndex; i <= toIndex; i++) {
+            Keyframe<AnimationSegment> keyframe = get(i);
             float keyframeTime = keyframe.getTimeS();
             AnimationSegment segment = keyframe.getValue();
             float segmentEndTime = segment.getEndTime();
-            float clipStartTime = fromTimeS > keyframeTime ? segment.getStartTime() + fromTimeS - keyframeTime : segment.getStartTime();
-            float clipEndTime = toTimeS <= keyframeTime + segment.getLength() ? segment.getStartTime() + toTimeS - keyframeTime : segmentEndTime + Math.ulp(segmentEndTime);
-            return segment.getAnimation().clip(channelName, clipStartTime, clipEndTime);
-        }
-        if (fromIndex < toIndex) {
-            Keyframe<AnimationSegment> firstKeyframe = get(fromIndex);
-            float firstKeyframeTime = firstKeyframe.getTimeS();
-            AnimationSegment firstSegment = firstKeyframe.getValue();
-            float firstClipLeft = fromTimeS > firstKeyframeTime ? firstSegment.getStartTime() + fromTimeS - firstKeyframeTime : firstSegment.getStartTime();
-            float firstClipRight = firstSegment.getEndTime();
-            Iterable<Keyframe<T>> clip = firstSegment.getAnimation().clip(channelName, firstClipLeft, firstClipRight + Math.ulp(firstClipRight));
-            for (int i = fromIndex + 1; i <= toIndex - 1; i++) {
-                AnimationSegment segment = get(i).getValue();
-                float endTime = segment.getEndTime();
-                Iterable<Keyframe<T>> newClip = segment.getAnimation().clip(channelName, segment.getStartTime(), endTime + Math.ulp(endTime));
-                if (newClip != null) {
-                    clip = clip == null ? newClip : Iterables.concat(clip, newClip);
-                }
+            float clipStartTime = i == fromIndex && fromTimeS > keyframeTime
+                    ? segment.getStartTime() + fromTimeS - keyframeTime : segment.getStartTime();
+            float clipEndTime = i == toIndex && toTimeS <= keyframeTime + segment.getLength()
+                    ? segment.getStartTime() + toTimeS - keyframeTime : segmentEndTime + Math.ulp(segmentEndTime);
+            Iterable<Keyframe<T>> part = segment.getAnimation().clip(channelName, clipStartTime, clipEndTime);
+            if (part != null) {
+                parts.add(part);
             }
-            Keyframe<AnimationSegment> lastKeyframe = get(toIndex);
-            AnimationSegment lastSegment = lastKeyframe.getValue();
-            float lastSegmentStartTime = lastSegment.getStartTime();
-            Iterable<Keyframe<T>> lastClip = lastSegment.getAnimation().clip(channelName, lastSegmentStartTime, lastSegmentStartTime + toTimeS - lastKeyframe.getTimeS());
-            if (lastClip != null) {
-                clip = clip == null ? lastClip : Iterables.concat(clip, lastClip);
-            }
-            return clip;
         }
-        return null;
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return parts.size() == 1 ? parts.get(0) : Iterables.concat(parts);
     }
 
     /**
@@ -0,0 +1,73 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.AnimationChannel;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * The channels a compiled structure of a montage was built from, with their modification counts.
+ *
+ * <p>Comparing it to the current channels detects when the structure is out of date: the lists were changed
+ * in place, or the keyframes of a channel were modified, see {@link AnimationChannel#getModificationCount()}.
+ * Checking does not allocate.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+final class ChannelStamp {
+    private static final AnimationChannel[] EMPTY_CHANNELS = new AnimationChannel[0];
+
+    /** Recorded channels, those of the first list followed by those of the second one */
+    private AnimationChannel[] channels = EMPTY_CHANNELS;
+
+    /** Modification count of each recorded channel */
+    private int[] counts = new int[0];
+
+    /** Size of the first list */
+    private int firstSize;
+
+    /**
+     * Record the channels of the lists and their current modification counts.
+     *
+     * @param first First channel list, can be null
+     * @param second Second channel list, can be null
+     */
+    void record(@Nullable List<? extends AnimationChannel> first, @Nullable List<? extends AnimationChannel> second) {
+        firstSize = size(first);
+        int size = firstSize + size(second);
+        if (channels.length != size) {
+            channels = new AnimationChannel[size];
+            counts = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            AnimationChannel channel = i < firstSize ? first.get(i) : second.get(i - firstSize);
+            channels[i] = channel;
+            counts[i] = channel.getModificationCount();
+        }
+    }
+
+    /**
+     * Check whether the lists still hold the recorded channels, unmodified since they were recorded.
+     *
+     * @param first First channel list, can be null
+     * @param second Second channel list, can be null
+     * @return Returns true if nothing changed
+     */
+    boolean matches(@Nullable List<? extends AnimationChannel> first, @Nullable List<? extends AnimationChannel> second) {
+        if (size(first) != firstSize || firstSize + size(second) != channels.length) {
+            return false;
+        }
+        for (int i = 0; i < channels.length; i++) {
+            AnimationChannel channel = i < firstSize ? first.get(i) : second.get(i - firstSize);
+            if (channel != channels[i] || channel.getModificationCount() != counts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int size(@Nullable List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+}
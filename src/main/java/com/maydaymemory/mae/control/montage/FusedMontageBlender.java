@@ -0,0 +1,197 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.BoneMask;
+import com.maydaymemory.mae.basic.BoneTransform;
+import com.maydaymemory.mae.basic.BoneTransformFactory;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.PoseBuilder;
+import com.maydaymemory.mae.blend.LayerBlend;
+import com.maydaymemory.mae.blend.SimpleAdditiveBlender;
+import com.maydaymemory.mae.blend.SimpleInterpolatorBlender;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Single-pass blender composing the base pose with the poses of all playing montage tracks.
+ *
+ * <p>The reference composition blends every track against the base pose on its own
+ * ({@link com.maydaymemory.mae.blend.SimpleLayeredBlender}, plus
+ * {@link com.maydaymemory.mae.blend.SimpleAdditiveBlender} for additive tracks) and merges the results
+ * with {@link com.maydaymemory.mae.blend.NoAllocMergeBlender}, which keeps, for each bone, the result of
+ * the last track containing that bone. Every track result contains all bones of the base pose, so only one
+ * track contribution per bone ever reaches the output.</p>
+ *
+ * <p>This blender produces identical results in one merge pass over the base pose and all track poses: for
+ * each bone it finds the track whose result would win the merge, and computes only that contribution,
+ * directly into one output pose. No intermediate pose is built.</p>
+ *
+ * <p>Usage: {@link #begin(Pose)}, then {@link #addTrack(Pose, LayerBlend, boolean)} for each playing track in
+ * montage order, then {@link #finish()}. Instances are reused and not thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class FusedMontageBlender {
+    private final BoneTransformFactory boneTransformFactory;
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+
+    /** Bones outside this mask are skipped and absent from the output */
+    private BoneMask boneMask = BoneMask.ALL;
+
+    private Pose basePose;
+    private int trackCount;
+    private Pose[] trackPoses = new Pose[4];
+    private LayerBlend[] layers = new LayerBlend[4];
+    private boolean[] additive = new boolean[4];
+
+    /** Merge state, reused across blends. The iterators are over bone transforms, see {@link #advance(int)} */
+    private Iterator<?>[] iterators = new Iterator<?>[4];
+    private BoneTransform[] heads = new BoneTransform[4];
+
+    /**
+     * Constructs a new FusedMontageBlender.
+     *
+     * @param boneTransformFactory factory for the blended bone transforms
+     * @param poseBuilderSupplier supplier for the output pose builder
+     */
+    public FusedMontageBlender(BoneTransformFactory boneTransformFactory, Supplier<PoseBuilder> poseBuilderSupplier) {
+        this.boneTransformFactory = boneTransformFactory;
+        this.poseBuilderSupplier = poseBuilderSupplier;
+    }
+
+    /**
+     * Restricts blending to the bones of the mask. Excluded bones are skipped and absent from the output.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to blend every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
+    /**
+     * Starts a new blend.
+     *
+     * @param basePose the base pose
+     */
+    public void begin(Pose basePose) {
+        this.basePose = basePose;
+        Arrays.fill(trackPoses, 0, trackCount, null);
+        Arrays.fill(layers, 0, trackCount, null);
+        this.trackCount = 0;
+    }
+
+    /**
+     * Adds the pose of a playing track. Tracks must be added in montage order.
+     *
+     * @param trackPose the evaluated track pose
+     * @param layer the layer weights of the track
+     * @param isAdditive whether the track is additive
+     */
+    public void addTrack(Pose trackPose, LayerBlend layer, boolean isAdditive) {
+        if (trackCount == trackPoses.length) {
+            int capacity = trackCount * 2;
+            trackPoses = Arrays.copyOf(trackPoses, capacity);
+            layers = Arrays.copyOf(layers, capacity);
+            additive = Arrays.copyOf(additive, capacity);
+        }
+        trackPoses[trackCount] = trackPose;
+        layers[trackCount] = layer;
+        additive[trackCount] = isAdditive;
+        trackCount++;
+    }
+
+    /**
+     * Blends the base pose with every added track.
+     *
+     * @return the blended pose, or the base pose itself if no track was added
+     */
+    public Pose finish() {
+        if (trackCount == 0) {
+            return basePose;
+        }
+        int streams = trackCount + 1;
+        if (iterators.length < streams) {
+            iterators = Arrays.copyOf(iterators, streams * 2);
+            heads = new BoneTransform[streams * 2];
+        }
+        // Stream 0 is the base pose, stream i + 1 is track i.
+        iterators[0] = basePose.getBoneTransforms().iterator();
+        for (int i = 0; i < trackCount; i++) {
+            iterators[i + 1] = trackPoses[i].getBoneTransforms().iterator();
+        }
+        for (int s = 0; s < streams; s++) {
+            heads[s] = advance(s);
+        }
+        BoneMask mask = boneMask.isAll() ? null : boneMask;
+        PoseBuilder builder = poseBuilderSupplier.get();
+        while (true) {
+            int boneIndex = Integer.MAX_VALUE;
+            for (int s = 0; s < streams; s++) {
+                if (heads[s] != null && heads[s].boneIndex() < boneIndex) {
+                    boneIndex = heads[s].boneIndex();
+                }
+            }
+            if (boneIndex == Integer.MAX_VALUE) {
+                break;
+            }
+            if (mask == null || mask.contains(boneIndex)) {
+                BoneTransform baseTransform = at(0, boneIndex);
+                // The merge keeps the last track result containing the bone. Every result contains the
+                // bones of the base pose, otherwise a result contains the bone if its track pose does.
+                int winner = trackCount - 1;
+                if (baseTransform == null) {
+                    while (at(winner + 1, boneIndex) == null) {
+                        winner--;
+                    }
+                }
+                builder.addBoneTransform(contribution(winner, baseTransform, at(winner + 1, boneIndex), boneIndex));
+            }
+            for (int s = 0; s < streams; s++) {
+                if (heads[s] != null && heads[s].boneIndex() == boneIndex) {
+                    heads[s] = advance(s);
+                }
+            }
+        }
+        Arrays.fill(iterators, 0, streams, null);
+        Arrays.fill(heads, 0, streams, null);
+        return builder.toPose();
+    }
+
+    private BoneTransform at(int stream, int boneIndex) {
+        BoneTransform head = heads[stream];
+        return head != null && head.boneIndex() == boneIndex ? head : null;
+    }
+
+    /**
+     * Computes the result of one track for one bone, as the reference composition would.
+     */
+    private BoneTransform contribution(int track, BoneTransform baseTransform, BoneTransform trackTransform, int boneIndex) {
+        float weight = layers[track].getWeight(boneIndex);
+        if (!additive[track]) {
+            return SimpleInterpolatorBlender.leanerLerpTransforms(
+                    baseTransform == null ? BoneTransform.IDENTITY_TRANSFORM : baseTransform,
+                    trackTransform == null ? BoneTransform.IDENTITY_TRANSFORM : trackTransform,
+                    weight, boneIndex, boneTransformFactory);
+        }
+        if (trackTransform == null) {
+            return baseTransform;
+        }
+        BoneTransform weighted = SimpleInterpolatorBlender.leanerLerpTransforms(BoneTransform.IDENTITY_TRANSFORM,
+                trackTransform, weight, boneIndex, boneTransformFactory);
+        return baseTransform == null ? weighted
+                : SimpleAdditiveBlender.addTransforms(baseTransform, weighted, boneTransformFactory);
+    }
+
+    /**
+     * Moves a stream to its next bone transform.
+     *
+     * @param stream the stream index
+     * @return the next bone transform of the stream, or null at its end
+     */
+    private BoneTransform advance(int stream) {
+        Iterator<?> iterator = iterators[stream];
+        return iterator.hasNext() ? (BoneTransform) iterator.next() : null;
+    }
+}
@@ -0,0 +1,254 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.Keyframe;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled interval index over the segments of all tracks of a montage.
+ *
+ * <p>Every segment of every track is one interval {@code [start, start + length)}. Intervals are stored
+ * in one array sorted by start time, so that a {@link Cursor} can sweep them while the montage plays
+ * forward: advancing the cursor only touches the segments which start or end in between, and the active
+ * set it maintains holds only the segments playing at the current time. Evaluating a montage with dozens
+ * of tracks and hundreds of segments therefore costs time proportional to the segments actually playing.</p>
+ *
+ * <p>The index is a snapshot of the tracks, see {@link AnimationMontage#getSegmentIndex()}.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class MontageSegmentIndex {
+    /** Indexed tracks */
+    private final List<AnimationMontageTrack> tracks;
+
+    /** Track index of each interval, intervals sorted by start time */
+    private final int[] trackIndices;
+
+    /** Segment keyframe index of each interval within its track */
+    private final int[] segmentIndices;
+
+    /** Start time of each interval in seconds, ascending */
+    private final float[] starts;
+
+    /** Length of each interval in seconds */
+    private final float[] lengths;
+
+    private MontageSegmentIndex(List<AnimationMontageTrack> tracks, int[] trackIndices, int[] segmentIndices,
+                                float[] starts, float[] lengths) {
+        this.tracks = tracks;
+        this.trackIndices = trackIndices;
+        this.segmentIndices = segmentIndices;
+        this.starts = starts;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Compile an index over the segments of the given tracks.
+     *
+     * @param tracks Montage tracks, can be null
+     * @return Compiled index
+     */
+    public static MontageSegmentIndex compile(@Nullable List<AnimationMontageTrack> tracks) {
+        if (tracks == null) {
+            tracks = Collections.emptyList();
+        }
+        List<int[]> intervals = new ArrayList<>();
+        for (int trackIndex = 0; trackIndex < tracks.size(); trackIndex++) {
+            AnimationMontageTrack track = tracks.get(trackIndex);
+            for (int segmentIndex = 0; segmentIndex < track.size(); segmentIndex++) {
+                intervals.add(new int[]{trackIndex, segmentIndex});
+            }
+        }
+        final List<AnimationMontageTrack> finalTracks = tracks;
+        // List.sort is stable, so intervals with equal start times stay in track order.
+        intervals.sort((a, b) -> Float.compare(finalTracks.get(a[0]).get(a[1]).getTimeS(),
+                finalTracks.get(b[0]).get(b[1]).getTimeS()));
+        int size = intervals.size();
+        int[] trackIndices = new int[size];
+        int[] segmentIndices = new int[size];
+        float[] starts = new float[size];
+        float[] lengths = new float[size];
+        for (int i = 0; i < size; i++) {
+            int[] interval = intervals.get(i);
+            Keyframe<AnimationSegment> keyframe = tracks.get(interval[0]).get(interval[1]);
+            trackIndices[i] = interval[0];
+            segmentIndices[i] = interval[1];
+            starts[i] = keyframe.getTimeS();
+            lengths[i] = keyframe.getValue().getLength();
+        }
+        return new MontageSegmentIndex(tracks, trackIndices, segmentIndices, starts, lengths);
+    }
+
+    /**
+     * Get the indexed tracks.
+     *
+     * @return Tracks, in montage order
+     */
+    public List<AnimationMontageTrack> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * Get the number of indexed segments.
+     *
+     * @return Number of intervals
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    private boolean covers(int interval, float timeS) {
+        // Same comparison as AnimationMontageTrack#getSegmentIndex, to select exactly the same segments.
+        float timePassed = timeS - starts[interval];
+        return timePassed >= 0 && timePassed < lengths[interval];
+    }
+
+    /**
+     * Find the first interval starting after the given time.
+     */
+    private int upperBound(float timeS) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= timeS) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reusable sweep cursor maintaining the segments playing at the current time, one cursor per runner.
+     *
+     * <p>Moving the cursor forward adds the segments started since the last time and drops the ones which
+     * ended. Moving it backward, or to another index, rebuilds the active set with one binary search per track.
+     * Active segments are kept in track order, at most one per track.</p>
+     */
+    public static final class Cursor {
+        /** Index the active set refers to */
+        @Nullable
+        private MontageSegmentIndex index;
+
+        /** Time of the active set in seconds */
+        private float time;
+
+        /** Number of intervals whose start is not after {@link #time} */
+        private int startPointer;
+
+        /** Active intervals, in track order */
+        private final IntArrayList active = new IntArrayList();
+
+        /**
+         * Move the cursor to the given time.
+         *
+         * @param index Index to query
+         * @param timeS Montage time (seconds)
+         * @return This cursor
+         */
+        public Cursor moveTo(MontageSegmentIndex index, float timeS) {
+            if (this.index != index || !(timeS >= time)) {
+                rebuild(index, timeS);
+                return this;
+            }
+            if (timeS == time) {
+                return this;
+            }
+            while (startPointer < index.starts.length && index.starts[startPointer] <= timeS) {
+                insert(startPointer++);
+            }
+            int kept = 0;
+            for (int i = 0; i < active.size(); i++) {
+                int interval = active.getInt(i);
+                if (index.covers(interval, timeS)) {
+                    active.set(kept++, interval);
+                }
+            }
+            active.size(kept);
+            time = timeS;
+            return this;
+        }
+
+        private void rebuild(MontageSegmentIndex index, float timeS) {
+            this.index = index;
+            this.time = timeS;
+            this.startPointer = index.upperBound(timeS);
+            active.clear();
+            // Cold path: look the segment up in each track, then find its interval among those with the same start.
+            List<AnimationMontageTrack> tracks = index.tracks;
+            for (int trackIndex = 0; trackIndex < tracks.size(); trackIndex++) {
+                int segmentIndex = tracks.get(trackIndex).getSegmentIndex(timeS);
+                if (segmentIndex == -1) {
+                    continue;
+                }
+                float start = tracks.get(trackIndex).get(segmentIndex).getTimeS();
+                for (int interval = index.upperBound(start) - 1; interval >= 0 && index.starts[interval] == start; interval--) {
+                    if (index.trackIndices[interval] == trackIndex && index.segmentIndices[interval] == segmentIndex) {
+                        active.add(interval);
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void insert(int interval) {
+            int trackIndex = index.trackIndices[interval];
+            int position = active.size();
+            while (position > 0 && index.trackIndices[active.getInt(position - 1)] > trackIndex) {
+                position--;
+            }
+            if (position > 0 && index.trackIndices[active.getInt(position - 1)] == trackIndex) {
+                // A later segment of the same track replaces the earlier one, as in a track lookup.
+                active.set(position - 1, interval);
+            } else {
+                active.add(position, interval);
+            }
+        }
+
+        /**
+         * Get the number of segments playing at the current time.
+         *
+         * @return Number of active segments
+         */
+        public int size() {
+            return active.size();
+        }
+
+        /**
+         * Get the track index of an active segment.
+         *
+         * @param i Active segment index, in {@code [0, size())}
+         * @return Track index in the montage
+         */
+        public int getTrackIndex(int i) {
+            return index.trackIndices[active.getInt(i)];
+        }
+
+        /**
+         * Get the track of an active segment.
+         *
+         * @param i Active segment index, in {@code [0, size())}
+         * @return Track
+         */
+        public AnimationMontageTrack getTrack(int i) {
+            return index.tracks.get(getTrackIndex(i));
+        }
+
+        /**
+         * Get the segment keyframe index of an active segment within its track.
+         *
+         * @param i Active segment index, in {@code [0, size())}
+         * @return Segment keyframe index
+         */
+        public int getSegmentIndex(int i) {
+            return index.segmentIndices[active.getInt(i)];
+        }
+    }
+}
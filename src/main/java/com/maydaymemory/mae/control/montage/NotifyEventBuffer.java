@@ -0,0 +1,226 @@
+package com.maydaymemory.mae.control.montage;
+
+import java.util.Arrays;
+
+/**
+ * Per-character ring buffer of recorded notify events, for dispatching notifies outside the animation phase.
+ *
+ * <p>When a buffer is attached to a montage runner (see {@link AnimationMontageRunner#setNotifyEventBuffer}),
+ * the runner no longer invokes notify and notify state callbacks itself. It records each callback with a
+ * timestamp instead, so that slow gameplay handlers (audio, VFX, networking) do not stall animation. After
+ * the animation phase, the gameplay thread drains the buffer, which invokes the callbacks in recording order.
+ * Many buffers are drained together with a {@link NotifyEventDispatcher}.</p>
+ *
+ * <p>A buffer belongs to one character, identified by its character ID. Several runners of the same
+ * character may share it. Recording and draining must not overlap: record during the animation phase, from
+ * the single thread animating the character, and drain after all animation threads are done.</p>
+ *
+ * <p>The event storage is preallocated. If a phase records more events than the capacity, the buffer grows to
+ * twice its size rather than dropping events.</p>
+ *
+ * @param <T> Context type
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class NotifyEventBuffer<T> {
+    /** ID of the character this buffer belongs to */
+    private final long characterId;
+
+    private NotifyEventType[] types;
+    private Object[] notifies;
+    private Object[] contexts;
+    private long[] timestamps;
+
+    /** Index mask, capacity - 1 */
+    private int mask;
+
+    /** Position of the oldest event */
+    private long head;
+
+    /** Position after the newest event */
+    private long tail;
+
+    /**
+     * Construct a notify event buffer with a capacity of 64 events.
+     *
+     * @param characterId ID of the character this buffer belongs to
+     */
+    public NotifyEventBuffer(long characterId) {
+        this(characterId, 64);
+    }
+
+    /**
+     * Construct a notify event buffer with the specified initial capacity.
+     *
+     * @param characterId ID of the character this buffer belongs to
+     * @param capacity Initial capacity, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is not positive or too large
+     */
+    public NotifyEventBuffer(long characterId, int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be in range [1, 2^30], got " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.characterId = characterId;
+        this.types = new NotifyEventType[size];
+        this.notifies = new Object[size];
+        this.contexts = new Object[size];
+        this.timestamps = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the ID of the character this buffer belongs to.
+     *
+     * @return Character ID
+     */
+    public long getCharacterId() {
+        return characterId;
+    }
+
+    /**
+     * Get the number of recorded events not drained yet.
+     *
+     * @return Number of pending events
+     */
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * Check whether no event is pending.
+     *
+     * @return Returns true if there is nothing to drain
+     */
+    public boolean isEmpty() {
+        return tail == head;
+    }
+
+    /**
+     * Get the current capacity.
+     *
+     * @return Number of events the buffer holds without growing
+     */
+    public int getCapacity() {
+        return types.length;
+    }
+
+    /**
+     * Record a callback.
+     *
+     * @param type Callback type
+     * @param notify The notify for {@link NotifyEventType#NOTIFY}, otherwise the notify state
+     * @param context Context to pass to the callback
+     * @param timestampNanos Time of the event in nanoseconds
+     */
+    public void record(NotifyEventType type, Object notify, T context, long timestampNanos) {
+        if (tail - head == types.length) {
+            grow();
+        }
+        int index = (int) (tail & mask);
+        types[index] = type;
+        notifies[index] = notify;
+        contexts[index] = context;
+        timestamps[index] = timestampNanos;
+        tail++;
+    }
+
+    /**
+     * Invoke the callbacks of all pending events in recording order.
+     *
+     * @return Number of events dispatched
+     */
+    public int drain() {
+        return drain(Handler.dispatching());
+    }
+
+    /**
+     * Pass all pending events in recording order to a handler.
+     *
+     * @param handler Event handler
+     * @return Number of events handled
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Handler<T> handler) {
+        int count = 0;
+        while (head != tail) {
+            int index = (int) (head & mask);
+            NotifyEventType type = types[index];
+            Object notify = notifies[index];
+            T context = (T) contexts[index];
+            long timestamp = timestamps[index];
+            // Release the slot before handling, so that a failing handler does not replay the event.
+            notifies[index] = null;
+            contexts[index] = null;
+            head++;
+            count++;
+            handler.handle(characterId, timestamp, type, notify, context);
+        }
+        return count;
+    }
+
+    /**
+     * Discard all pending events without dispatching them.
+     */
+    public void clear() {
+        Arrays.fill(notifies, null);
+        Arrays.fill(contexts, null);
+        head = tail;
+    }
+
+    private void grow() {
+        int size = types.length;
+        int newSize = size << 1;
+        NotifyEventType[] newTypes = new NotifyEventType[newSize];
+        Object[] newNotifies = new Object[newSize];
+        Object[] newContexts = new Object[newSize];
+        long[] newTimestamps = new long[newSize];
+        for (int i = 0; i < size; i++) {
+            int index = (int) ((head + i) & mask);
+            newTypes[i] = types[index];
+            newNotifies[i] = notifies[index];
+            newContexts[i] = contexts[index];
+            newTimestamps[i] = timestamps[index];
+        }
+        types = newTypes;
+        notifies = newNotifies;
+        contexts = newContexts;
+        timestamps = newTimestamps;
+        mask = newSize - 1;
+        tail = size;
+        head = 0;
+    }
+
+    /**
+     * Handler of drained notify events.
+     *
+     * @param <T> Context type
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        /**
+         * Handle one event.
+         *
+         * @param characterId ID of the character the event belongs to
+         * @param timestampNanos Time of the event in nanoseconds
+         * @param type Callback type
+         * @param notify The notify for {@link NotifyEventType#NOTIFY}, otherwise the notify state
+         * @param context Context to pass to the callback
+         */
+        void handle(long characterId, long timestampNanos, NotifyEventType type, Object notify, T context);
+
+        /**
+         * Get a handler which invokes the recorded callbacks.
+         *
+         * @param <T> Context type
+         * @return Dispatching handler
+         */
+        static <T> Handler<T> dispatching() {
+            return (characterId, timestampNanos, type, notify, context) -> type.dispatch(notify, context);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.maydaymemory.mae.control.montage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Drains the notify event buffers of many characters, sequentially or in parallel.
+ *
+ * <p>Events of one character are always dispatched in recording order, on one thread. With parallel
+ * draining, different characters are dispatched concurrently, so handlers must be safe to call from
+ * several threads for different characters.</p>
+ *
+ * <p>Buffers must not be registered or unregistered while draining.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class NotifyEventDispatcher {
+    private final List<NotifyEventBuffer<?>> buffers = new ArrayList<>();
+
+    /**
+     * Register a character buffer.
+     *
+     * @param buffer Notify event buffer
+     */
+    public void register(NotifyEventBuffer<?> buffer) {
+        buffers.add(buffer);
+    }
+
+    /**
+     * Unregister a character buffer. Its pending events are not dispatched.
+     *
+     * @param buffer Notify event buffer
+     * @return Returns true if the buffer was registered
+     */
+    public boolean unregister(NotifyEventBuffer<?> buffer) {
+        return buffers.remove(buffer);
+    }
+
+    /**
+     * Dispatch the pending events of every buffer on the calling thread, one character after another,
+     * in registration order.
+     *
+     * @return Number of events dispatched
+     */
+    public int drain() {
+        int count = 0;
+        for (NotifyEventBuffer<?> buffer : buffers) {
+            count += buffer.drain();
+        }
+        return count;
+    }
+
+    /**
+     * Dispatch the pending events of every buffer in the common fork-join pool, one task per character,
+     * and wait for all of them.
+     *
+     * @return Number of events dispatched
+     */
+    public int drainParallel() {
+        return drainParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Dispatch the pending events of every buffer in the given pool, one task per character,
+     * and wait for all of them.
+     *
+     * <p>If a handler throws, the remaining tasks still complete and the first exception is rethrown.</p>
+     *
+     * @param pool Pool running the dispatch tasks
+     * @return Number of events dispatched
+     */
+    public int drainParallel(ForkJoinPool pool) {
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>(buffers.size());
+        for (NotifyEventBuffer<?> buffer : buffers) {
+            if (!buffer.isEmpty()) {
+                tasks.add(pool.submit((Callable<Integer>) buffer::drain));
+            }
+        }
+        int count = 0;
+        RuntimeException failure = null;
+        for (ForkJoinTask<Integer> task : tasks) {
+            try {
+                count += task.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return count;
+    }
+}
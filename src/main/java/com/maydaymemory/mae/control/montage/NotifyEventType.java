@@ -0,0 +1,46 @@
+package com.maydaymemory.mae.control.montage;
+
+/**
+ * Enumeration of the notify callbacks that can be recorded into a {@link NotifyEventBuffer}.
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public enum NotifyEventType {
+    /** {@link IAnimationNotify#onNotify(Object)} */
+    NOTIFY,
+
+    /** {@link IAnimationNotifyState#onStart(Object)} */
+    STATE_START,
+
+    /** {@link IAnimationNotifyState#onUpdate(Object)} */
+    STATE_UPDATE,
+
+    /** {@link IAnimationNotifyState#onEnd(Object)} */
+    STATE_END;
+
+    /**
+     * Invoke the callback this event type stands for.
+     *
+     * @param notify The notify for {@link #NOTIFY}, otherwise the notify state
+     * @param context Context passed to the callback
+     * @param <T> Context type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void dispatch(Object notify, T context) {
+        switch (this) {
+            case NOTIFY:
+                ((IAnimationNotify<T>) notify).onNotify(context);
+                break;
+            case STATE_START:
+                ((IAnimationNotifyState<T>) notify).onStart(context);
+                break;
+            case STATE_UPDATE:
+                ((IAnimationNotifyState<T>) notify).onUpdate(context);
+                break;
+            case STATE_END:
+                ((IAnimationNotifyState<T>) notify).onEnd(context);
+                break;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.ClipChannel;
+import com.maydaymemory.mae.basic.Keyframe;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compiled, immutable timeline of all notify and notify state marker events of a montage.
+ *
+ * <p>Instead of clipping every channel and merging the clips on every tick, the events of all
+ * channels are merged once into a single time-sorted array. A range query is then two binary
+ * searches, and iterating it through a {@link Cursor} visits only the events in the range, so the
+ * cost of a tick is proportional to the events that actually fire rather than to the size of the montage.</p>
+ *
+ * <p>Every distinct notify state is assigned a dense index in order of first appearance, so that
+ * runners can track active states in a bit set instead of a map.</p>
+ *
+ * <p>The timeline is a snapshot: it does not observe later changes to the channels. Montages compile it
+ * lazily and recompile it when their channels change, see {@link AnimationMontage#getNotifyTimeline()}.</p>
+ *
+ * @param <T> Context type
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class NotifyTimeline<T> {
+    /** Event times in seconds, ascending */
+    private final float[] times;
+
+    /** Notify of each event, or null for notify state markers */
+    private final IAnimationNotify<T>[] notifies;
+
+    /** Notify state index of each marker event, or -1 for notifies */
+    private final int[] stateIndices;
+
+    /** Whether each marker event is a start marker */
+    private final boolean[] starts;
+
+    /** Distinct notify states, by index */
+    private final IAnimationNotifyState<T>[] states;
+
+    /** Index of each distinct notify state */
+    private final Object2IntOpenHashMap<IAnimationNotifyState<T>> stateIndexMap;
+
+    @SuppressWarnings("unchecked")
+    private NotifyTimeline(List<Event<T>> events, List<IAnimationNotifyState<T>> states,
+                           Object2IntOpenHashMap<IAnimationNotifyState<T>> stateIndexMap) {
+        int size = events.size();
+        this.times = new float[size];
+        this.notifies = (IAnimationNotify<T>[]) new IAnimationNotify<?>[size];
+        this.stateIndices = new int[size];
+        this.starts = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Event<T> event = events.get(i);
+            times[i] = event.time;
+            notifies[i] = event.notify;
+            stateIndices[i] = event.stateIndex;
+            starts[i] = event.start;
+        }
+        this.states = (IAnimationNotifyState<T>[]) states.toArray(new IAnimationNotifyState<?>[0]);
+        this.stateIndexMap = stateIndexMap;
+    }
+
+    /**
+     * Compile a timeline from notify and notify state channels.
+     *
+     * <p>Events with equal times keep the order of their channels in the lists, then their order within the channel.</p>
+     *
+     * @param notifyChannels Notify channels, can be null
+     * @param notifyStateChannels Notify state channels, can be null
+     * @param <T> Context type
+     * @return Compiled timeline
+     */
+    public static <T> NotifyTimeline<T> compile(@Nullable List<ClipChannel<IAnimationNotify<T>>> notifyChannels,
+                                                @Nullable List<ClipChannel<AnimationNotifyStateMarker<T>>> notifyStateChannels) {
+        List<Event<T>> events = new ArrayList<>();
+        List<IAnimationNotifyState<T>> states = new ArrayList<>();
+        Object2IntOpenHashMap<IAnimationNotifyState<T>> stateIndexMap = new Object2IntOpenHashMap<>();
+        stateIndexMap.defaultReturnValue(-1);
+        if (notifyChannels != null) {
+            for (ClipChannel<IAnimationNotify<T>> channel : notifyChannels) {
+                for (Keyframe<IAnimationNotify<T>> keyframe : clipAll(channel)) {
+                    events.add(new Event<>(keyframe.getTimeS(), keyframe.getValue(), -1, false));
+                }
+            }
+        }
+        if (notifyStateChannels != null) {
+            for (ClipChannel<AnimationNotifyStateMarker<T>> channel : notifyStateChannels) {
+                for (Keyframe<AnimationNotifyStateMarker<T>> keyframe : clipAll(channel)) {
+                    AnimationNotifyStateMarker<T> marker = keyframe.getValue();
+                    IAnimationNotifyState<T> state = marker.getNotify();
+                    int stateIndex = stateIndexMap.getInt(state);
+                    if (stateIndex < 0) {
+                        stateIndex = states.size();
+                        states.add(state);
+                        stateIndexMap.put(state, stateIndex);
+                    }
+                    boolean start = marker.getMarkerType() == AnimationNotifyStateMarker.MarkerType.START;
+                    events.add(new Event<>(keyframe.getTimeS(), null, stateIndex, start));
+                }
+            }
+        }
+        // List.sort is stable, so events with equal times keep the channel order.
+        events.sort((a, b) -> Float.compare(a.time, b.time));
+        return new NotifyTimeline<>(events, states, stateIndexMap);
+    }
+
+    private static <E> Iterable<Keyframe<E>> clipAll(ClipChannel<E> channel) {
+        return channel.clip(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Get the number of events.
+     *
+     * @return Number of notify and marker events
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Get the time of an event.
+     *
+     * @param index Event index
+     * @return Event time in seconds
+     */
+    public float getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Check whether an event is a notify rather than a notify state marker.
+     *
+     * @param index Event index
+     * @return Returns true for notifies
+     */
+    public boolean isNotify(int index) {
+        return stateIndices[index] < 0;
+    }
+
+    /**
+     * Get the notify of an event.
+     *
+     * @param index Event index
+     * @return Notify, or null if the event is a notify state marker
+     */
+    @Nullable
+    public IAnimationNotify<T> getNotify(int index) {
+        return notifies[index];
+    }
+
+    /**
+     * Get the notify state index of a marker event.
+     *
+     * @param index Event index
+     * @return Notify state index, or -1 if the event is a notify
+     */
+    public int getStateIndex(int index) {
+        return stateIndices[index];
+    }
+
+    /**
+     * Check whether a marker event starts its notify state.
+     *
+     * @param index Event index
+     * @return Returns true for start markers, false for end markers and notifies
+     */
+    public boolean isStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * Get the number of distinct notify states.
+     *
+     * @return Number of notify states
+     */
+    public int getStateCount() {
+        return states.length;
+    }
+
+    /**
+     * Get a notify state by index.
+     *
+     * @param stateIndex Notify state index
+     * @return Notify state
+     */
+    public IAnimationNotifyState<T> getState(int stateIndex) {
+        return states[stateIndex];
+    }
+
+    /**
+     * Get the index of a notify state.
+     *
+     * @param state Notify state
+     * @return Notify state index, or -1 if the state has no marker in this timeline
+     */
+    public int indexOf(IAnimationNotifyState<T> state) {
+        return stateIndexMap.getInt(state);
+    }
+
+    /**
+     * Find the first event whose time is not less than the given time.
+     */
+    private int lowerBound(float timeS) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timeS) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the first event whose time is greater than the given time.
+     */
+    private int upperBound(float timeS) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= timeS) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reusable cursor over the events of a timeline within a time range.
+     *
+     * <p>Ranges follow {@link ClipChannel#clip(float, float)}: a forward range {@code [from, to)} is walked in
+     * ascending order, a backward range {@code (to, from]} in descending order. The cursor returns event indices,
+     * so iterating generates no garbage.</p>
+     */
+    public static final class Cursor {
+        /** Next event index */
+        private int index;
+
+        /** Event index where the range ends (exclusive) */
+        private int end;
+
+        /** +1 when walking forward, -1 when walking backward */
+        private int step = 1;
+
+        /** Range start, kept for {@link #rewind()} */
+        private int begin;
+
+        /**
+         * Reset this cursor to walk the events of a timeline within a time range.
+         *
+         * @param timeline Timeline to walk
+         * @param fromTimeS Start time (seconds)
+         * @param toTimeS End time (seconds)
+         * @return This cursor
+         */
+        public Cursor reset(NotifyTimeline<?> timeline, float fromTimeS, float toTimeS) {
+            if (fromTimeS == toTimeS) {
+                begin = end = 0;
+                step = 1;
+            } else if (fromTimeS < toTimeS) {
+                begin = timeline.lowerBound(fromTimeS);
+                end = timeline.lowerBound(toTimeS);
+                step = 1;
+            } else {
+                begin = timeline.upperBound(fromTimeS) - 1;
+                end = timeline.upperBound(toTimeS) - 1;
+                step = -1;
+            }
+            index = begin;
+            return this;
+        }
+
+        /**
+         * Walk the same range again from its start.
+         *
+         * @return This cursor
+         */
+        public Cursor rewind() {
+            index = begin;
+            return this;
+        }
+
+        /**
+         * Check whether the range has more events.
+         *
+         * @return Returns true if {@link #nextIndex()} can be called
+         */
+        public boolean hasNext() {
+            return index != end;
+        }
+
+        /**
+         * Get the next event index.
+         *
+         * @return Event index in the timeline
+         * @throws NoSuchElementException if the range has no more events
+         */
+        public int nextIndex() {
+            if (index == end) {
+                throw new NoSuchElementException();
+            }
+            int result = index;
+            index += step;
+            return result;
+        }
+    }
+
+    private static final class Event<T> {
+        final float time;
+        final IAnimationNotify<T> notify;
+        final int stateIndex;
+        final boolean start;
+
+        Event(float time, @Nullable IAnimationNotify<T> notify, int stateIndex, boolean start) {
+            this.time = time;
+            this.notify = notify;
+            this.stateIndex = stateIndex;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.maydaymemory.mae.control.montage;
+
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+
+/**
+ * Summary of the notifies skipped by a seek with {@link com.maydaymemory.mae.control.NotifyPolicy#SUMMARIZE}.
+ *
+ * <p>Notifies are counted per instance, in order of first occurrence, so that callers can
+ * replay the consequences of skipped events once, e.g. add up the damage of every skipped hit.</p>
+ *
+ * @param <T> Context type
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class SeekSummary<T> {
+    /** Number of times each skipped notify was passed */
+    private final Object2IntLinkedOpenHashMap<IAnimationNotify<T>> notifyCounts = new Object2IntLinkedOpenHashMap<>();
+
+    /** Number of times each notify state was both started and ended within the skipped span */
+    private final Object2IntLinkedOpenHashMap<IAnimationNotifyState<T>> completedStateCounts = new Object2IntLinkedOpenHashMap<>();
+
+    /**
+     * Get the number of times each skipped notify was passed.
+     *
+     * @return Unmodifiable map from notify to count
+     */
+    public Object2IntMap<IAnimationNotify<T>> getNotifyCounts() {
+        return Object2IntMaps.unmodifiable(notifyCounts);
+    }
+
+    /**
+     * Get the number of times each notify state was both started and ended within the skipped span.
+     *
+     * @return Unmodifiable map from notify state to count
+     */
+    public Object2IntMap<IAnimationNotifyState<T>> getCompletedStateCounts() {
+        return Object2IntMaps.unmodifiable(completedStateCounts);
+    }
+
+    /**
+     * Check whether nothing was summarized.
+     *
+     * @return Returns true if no notify or notify state was skipped
+     */
+    public boolean isEmpty() {
+        return notifyCounts.isEmpty() && completedStateCounts.isEmpty();
+    }
+
+    void addNotify(IAnimationNotify<T> notify) {
+        notifyCounts.addTo(notify, 1);
+    }
+
+    void addCompletedState(IAnimationNotifyState<T> notifyState) {
+        completedStateCounts.addTo(notifyState, 1);
+    }
+}
@@ -4,10 +4,12 @@ import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
 
 import javax.annotation.Nullable;
 
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
 import com.maydaymemory.mae.util.MathUtil;
 
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Implementation of {@link IAnimationContext} that manages animation execution state.
@@ -16,11 +18,14 @@ import java.util.Iterator;
  * maintaining the current progress, timing information, animation state, and
  * clip plan queue. It serves as the central coordination point for animation
  * execution.</p>
+ *
+ * <p>A snapshot of the context holds its progress, last update time, state and clip plans,
+ * plus the speed of the state if it is {@link IAdjustableSpeedState}.</p>
  * 
  * @author MaydayMemory
  * @since 1.0.1
  */
-public class AnimationContext implements IAnimationContext {
+public class AnimationContext implements IAnimationContext, Snapshotable {
     /** Current animation progress in nanoseconds */
     private long progress;
     
@@ -33,8 +38,8 @@ public class AnimationContext implements IAnimationContext {
     /** Current animation state */
     private IAnimationState state;
     
-    /** List for storing clip plans (time range pairs) */
-    private final ArrayList<LongLongImmutablePair> clipPlans = new ArrayList<>();
+    /** Buffer for storing clip plans (time ranges) */
+    private final ClipPlanBuffer clipPlans = new ClipPlanBuffer();
 
     /**
      * Constructs a new AnimationContext with the specified maximum progress.
@@ -81,12 +86,50 @@ public class AnimationContext implements IAnimationContext {
 
     @Override
     public void enqueueClipPlan(LongLongImmutablePair plan) {
-        clipPlans.add(plan);
+        clipPlans.add(plan.leftLong(), plan.rightLong());
     }
 
+    @Override
+    public void enqueueClipPlan(long from, long to) {
+        clipPlans.add(from, to);
+    }
+
+    @Override
+    public void enqueueClipPlan(long from, long to, long repeat) {
+        clipPlans.add(from, to, repeat);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Pairs are created on the fly and carry no repeat count; prefer {@link #getClipPlans()}
+     * to read plans without allocating.</p>
+     */
     @Override
     public Iterator<? extends LongLongImmutablePair> clipPlanIterator() {
-        return clipPlans.iterator();
+        return new Iterator<LongLongImmutablePair>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < clipPlans.size();
+            }
+
+            @Override
+            public LongLongImmutablePair next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                LongLongImmutablePair pair = new LongLongImmutablePair(clipPlans.getFrom(index), clipPlans.getTo(index));
+                index++;
+                return pair;
+            }
+        };
+    }
+
+    @Override
+    public ClipPlanBuffer getClipPlans() {
+        return clipPlans;
     }
 
     @Override
@@ -120,4 +163,27 @@ public class AnimationContext implements IAnimationContext {
             setState(state.update(this));
         }
     }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeLong(progress);
+        buffer.writeLong(lastUpdateTime);
+        buffer.writeReference(state);
+        if (state instanceof IAdjustableSpeedState) {
+            buffer.writeFloat(((IAdjustableSpeedState) state).getSpeed());
+        }
+        clipPlans.writeSnapshot(buffer);
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        progress = buffer.readLong();
+        lastUpdateTime = buffer.readLong();
+        // Restored as is, without entering the state again.
+        state = buffer.readReference();
+        if (state instanceof IAdjustableSpeedState) {
+            ((IAdjustableSpeedState) state).setSpeed(buffer.readFloat());
+        }
+        clipPlans.readSnapshot(buffer);
+    }
 }
@@ -1,16 +1,23 @@
 package com.maydaymemory.mae.control.runner;
 
 import com.maydaymemory.mae.basic.Animation;
+import com.maydaymemory.mae.basic.ArrayPoseBuilder;
+import com.maydaymemory.mae.basic.BoneMask;
+import com.maydaymemory.mae.basic.ClipChannel;
+import com.maydaymemory.mae.basic.DummyPose;
 import com.maydaymemory.mae.basic.Keyframe;
 import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.PoseBuilder;
 import com.maydaymemory.mae.control.OutputPort;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
 import com.maydaymemory.mae.control.Tickable;
+import com.maydaymemory.mae.control.command.AnimationCommandQueue;
 import com.maydaymemory.mae.util.Iterables;
 import com.maydaymemory.mae.util.MathUtil;
-import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
 
 import javax.annotation.Nullable;
-import java.util.Iterator;
+import java.util.function.Supplier;
 
 /**
  * Implementation of {@link IAnimationRunner} that manages animation execution.
@@ -23,11 +30,14 @@ import java.util.Iterator;
  * <p>The runner implements the {@link Tickable} interface, allowing it to be
  * integrated into game loops or update systems. It maintains an output port
  * for pose evaluation, enabling easy integration with animation control systems.</p>
+ *
+ * <p>The runtime state of a runner is its context, so snapshots of the runner are snapshots of
+ * its context, which must be {@link Snapshotable} like {@link AnimationContext}.</p>
  * 
  * @author MaydayMemory
  * @since 1.0.1
  */
-public class AnimationRunner implements Tickable, IAnimationRunner {
+public class AnimationRunner implements Tickable, IAnimationRunner, Snapshotable {
     /** The animation data to be executed */
     private final Animation animation;
     
@@ -37,6 +47,19 @@ public class AnimationRunner implements Tickable, IAnimationRunner {
     /** Output port for pose evaluation */
     private final OutputPort<Pose> outputPort = this::evaluate;
 
+    /** Queue of commands enqueued by other threads, drained at the start of each tick */
+    @Nullable
+    private AnimationCommandQueue commandQueue;
+
+    /** Bones sampled by {@link #evaluate()}, typically the active LOD bone set of the character */
+    private BoneMask boneMask = BoneMask.ALL;
+
+    /** Supplier of the builders of poses filtered by {@link #boneMask} */
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+
+    /** Whether pose sampling is skipped entirely */
+    private boolean headless = false;
+
     /**
      * Constructs a new AnimationRunner with the specified animation and context.
      * 
@@ -44,8 +67,23 @@ public class AnimationRunner implements Tickable, IAnimationRunner {
      * @param context the animation context
      */
     public AnimationRunner(Animation animation, IAnimationContext context) {
+        this(animation, context, ArrayPoseBuilder::new);
+    }
+
+    /**
+     * Constructs a new AnimationRunner with the specified animation and context.
+     *
+     * @param animation the animation to execute
+     * @param context the animation context
+     * @param poseBuilderSupplier the supplier of pose builders, used when an animation can only filter its
+     *                            pose by the bone mask after sampling, see
+     *                            {@link Animation#evaluate(float, BoneMask, Supplier)}
+     * @since 1.1.4
+     */
+    public AnimationRunner(Animation animation, IAnimationContext context, Supplier<PoseBuilder> poseBuilderSupplier) {
         this.animation = animation;
         this.context = context;
+        this.poseBuilderSupplier = poseBuilderSupplier;
     }
 
     /**
@@ -67,29 +105,107 @@ public class AnimationRunner implements Tickable, IAnimationRunner {
         return animation;
     }
 
+    /**
+     * Gets the command queue drained by this runner.
+     *
+     * @return the command queue, or null if none is attached
+     */
+    @Nullable
+    public AnimationCommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * Attaches a command queue, which will be drained at the start of every {@link #tick()}.
+     *
+     * @param commandQueue the command queue, or null to detach
+     */
+    public void setCommandQueue(@Nullable AnimationCommandQueue commandQueue) {
+        this.commandQueue = commandQueue;
+    }
+
+    /**
+     * Checks whether this runner is in headless mode.
+     *
+     * @return true if pose sampling is skipped
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Enables or disables headless mode.
+     *
+     * <p>In headless mode the context still advances and clip plans, clips and curves are
+     * available as usual, but {@link #evaluate()} returns {@link DummyPose#INSTANCE} without sampling.</p>
+     *
+     * @param headless true to skip all pose sampling
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Gets the bones sampled by this runner.
+     *
+     * @return the bone mask
+     */
+    public BoneMask getBoneMask() {
+        return boneMask;
+    }
+
+    /**
+     * Restricts pose evaluation to the given bones, e.g. the mask of the character's current
+     * detail level from {@link com.maydaymemory.mae.basic.Skeleton#getLodBoneMask(int)}.
+     * Excluded bones are not sampled at all.
+     *
+     * @param boneMask the bone mask, {@link BoneMask#ALL} to evaluate every bone
+     */
+    public void setBoneMask(BoneMask boneMask) {
+        this.boneMask = boneMask;
+    }
+
     @Override
     public Pose evaluate() {
-        return animation.evaluate(MathUtil.toSecond(context.getProgress()));
+        if (headless) {
+            return DummyPose.INSTANCE;
+        }
+        return animation.evaluate(MathUtil.toSecond(context.getProgress()), boneMask, poseBuilderSupplier);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The result stays valid after the next tick, so each call copies the clip plans and every iteration
+     * creates a cursor.</p>
+     *
+     * @deprecated Allocates on every call. Use {@link #clip(String, ClipCursor)} with a cursor owned by the
+     * caller, which walks the same keyframes without allocating.
+     */
     @Override
     @Nullable
+    @Deprecated
     public <T> Iterable<Keyframe<T>> clip(String channelName) {
-        Iterator<? extends LongLongImmutablePair> iterator = context.clipPlanIterator();
-        if (!iterator.hasNext()) {
+        ClipChannel<T> channel = animation.getClipChannel(channelName);
+        if (channel != null) {
+            // Snapshot the plans so that the result stays valid after the next update, as before.
+            ClipPlanBuffer plans = new ClipPlanBuffer(Math.max(1, context.getClipPlans().size()));
+            plans.copyFrom(context.getClipPlans());
+            return () -> new ClipCursor<T>().reset(channel, plans);
+        }
+        ClipPlanBuffer plans = context.getClipPlans();
+        if (plans.isEmpty()) {
             // Returning clip(name, 0, 0) is to maintain logical consistency:
             // if the channel exists, return an empty set; if not, return null.
             return animation.clip(channelName, 0, 0);
         }
-        LongLongImmutablePair pair = iterator.next();
-        Iterable<Keyframe<T>> result = animation.clip(channelName, MathUtil.toSecond(pair.leftLong()), MathUtil.toSecond(pair.rightLong()));
+        Iterable<Keyframe<T>> result = animation.clip(channelName, MathUtil.toSecond(plans.getFrom(0)), MathUtil.toSecond(plans.getTo(0)));
         if (result == null) {
             return  null;
         }
         Iterable<Keyframe<T>> clip;
-        while (iterator.hasNext()) {
-            pair = iterator.next();
-            clip = animation.clip(channelName, MathUtil.toSecond(pair.leftLong()), MathUtil.toSecond(pair.rightLong()));
+        for (int i = 1; i < plans.size(); i++) {
+            clip = animation.clip(channelName, MathUtil.toSecond(plans.getFrom(i)), MathUtil.toSecond(plans.getTo(i)));
             if (clip != null && clip.iterator().hasNext()) {
                 result = Iterables.concat(result, clip);
             }
@@ -97,6 +213,23 @@ public class AnimationRunner implements Tickable, IAnimationRunner {
         return result;
     }
 
+    /**
+     * Resets the given cursor to walk the clip channel with the given name over the clip plans of the last update.
+     *
+     * <p>This is the garbage-free alternative to {@link #clip(String)}: the cursor is owned and reused by the
+     * caller, and no iterable is created per plan. The cursor must be consumed before the next tick.</p>
+     *
+     * @param channelName name of the clip channel
+     * @param cursor the cursor to reset
+     * @param <T> the type of keyframe value
+     * @return true if the channel exists, false otherwise (the cursor is then empty)
+     */
+    public <T> boolean clip(String channelName, ClipCursor<T> cursor) {
+        ClipChannel<T> channel = animation.getClipChannel(channelName);
+        cursor.reset(channel, context.getClipPlans());
+        return channel != null;
+    }
+
     @Override
     @Nullable
     public <T> T evaluateCurve(String curveName) {
@@ -110,6 +243,26 @@ public class AnimationRunner implements Tickable, IAnimationRunner {
 
     @Override
     public void tick() {
+        if (commandQueue != null) {
+            commandQueue.drain();
+        }
         context.update();
     }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        snapshotableContext().writeSnapshot(buffer);
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        snapshotableContext().readSnapshot(buffer);
+    }
+
+    private Snapshotable snapshotableContext() {
+        if (!(context instanceof Snapshotable)) {
+            throw new IllegalStateException("Animation context does not support snapshots: " + context.getClass().getName());
+        }
+        return (Snapshotable) context;
+    }
 }
@@ -0,0 +1,227 @@
+package com.maydaymemory.mae.control.runner;
+
+import com.maydaymemory.mae.basic.ArrayClipChannel;
+import com.maydaymemory.mae.basic.ClipChannel;
+import com.maydaymemory.mae.basic.Keyframe;
+import com.maydaymemory.mae.util.MathUtil;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reusable flat iterator over the keyframes of a clip channel within many clip plans.
+ *
+ * <p>Instead of building one iterable per plan and concatenating them, a cursor walks the plans
+ * of a {@link ClipPlanBuffer} one after another. For {@link ArrayClipChannel}s it walks keyframe
+ * indices directly, so that iterating generates no garbage. Other channel implementations are
+ * supported through {@link ClipChannel#clip(float, float)}, one iterator per plan.</p>
+ *
+ * <p>A cursor is meant to be owned by the consumer and reset every frame:</p>
+ * <pre>{@code
+ * if (runner.clip("events", cursor)) {
+ *     while (cursor.hasNext()) {
+ *         handle(cursor.next());
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The cursor reads the plan buffer lazily, so it must be consumed before the context is updated again.</p>
+ *
+ * <p>Plans with a repeat count greater than 1 (several full loops skipped by one update) are handled
+ * according to the {@link RepeatPolicy}. By default they are collapsed: their keyframes are returned once,
+ * and {@link #getRepeatCount()} tells how many times each of them was actually passed.</p>
+ *
+ * @param <T> the type of keyframe value
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class ClipCursor<T> implements Iterator<Keyframe<T>> {
+    /** Channel walked by index, or null */
+    @Nullable
+    private ArrayClipChannel<T> arrayChannel;
+
+    /** Channel walked through clip iterables when it is not array-backed, or null */
+    @Nullable
+    private ClipChannel<T> channel;
+
+    /** Plans to walk */
+    @Nullable
+    private ClipPlanBuffer plans;
+
+    /** Index of the next plan to open */
+    private int planIndex;
+
+    /** Next keyframe index of the current plan, for array channels */
+    private int index;
+
+    /** Keyframe index where the current plan ends (exclusive), for array channels */
+    private int end;
+
+    /** +1 when walking forward, -1 when walking backward */
+    private int step;
+
+    /** Iterator of the current plan, for other channels */
+    @Nullable
+    private Iterator<Keyframe<T>> planIterator;
+
+    /** How plans with a repeat count are walked */
+    private RepeatPolicy repeatPolicy = RepeatPolicy.COLLAPSE;
+
+    /** Repeat count of the current plan */
+    private long repeat;
+
+    /** Number of times the current plan still has to be walked after the current pass */
+    private long remainingPasses;
+
+    /**
+     * Resets this cursor to walk the given channel within the given plans.
+     *
+     * @param channel the clip channel, or null to make the cursor empty
+     * @param plans the clip plans in nanoseconds
+     * @return this cursor
+     */
+    public ClipCursor<T> reset(@Nullable ClipChannel<T> channel, ClipPlanBuffer plans) {
+        if (channel instanceof ArrayClipChannel) {
+            this.arrayChannel = (ArrayClipChannel<T>) channel;
+            this.channel = null;
+        } else {
+            this.arrayChannel = null;
+            this.channel = channel;
+        }
+        this.plans = plans;
+        this.planIndex = 0;
+        this.index = 0;
+        this.end = 0;
+        this.planIterator = null;
+        this.repeat = 0;
+        this.remainingPasses = 0;
+        return this;
+    }
+
+    /**
+     * Gets the policy for plans with a repeat count.
+     *
+     * @return the repeat policy
+     */
+    public RepeatPolicy getRepeatPolicy() {
+        return repeatPolicy;
+    }
+
+    /**
+     * Sets the policy for plans with a repeat count. Takes effect from the next plan.
+     *
+     * @param repeatPolicy the repeat policy
+     */
+    public void setRepeatPolicy(RepeatPolicy repeatPolicy) {
+        this.repeatPolicy = repeatPolicy;
+    }
+
+    /**
+     * Gets how many times the last returned keyframe was passed.
+     *
+     * <p>With {@link RepeatPolicy#COLLAPSE} this is the repeat count of its plan, so that e.g. a footstep
+     * notify can be fired once with a count instead of once per skipped loop. With
+     * {@link RepeatPolicy#EXPAND} every pass is returned separately and this is always 1.</p>
+     *
+     * @return the repeat count of the last returned keyframe
+     */
+    public long getRepeatCount() {
+        return repeatPolicy == RepeatPolicy.EXPAND ? 1 : repeat;
+    }
+
+    /**
+     * Gets the index of the plan the last returned keyframe belongs to.
+     *
+     * @return the plan index, or -1 if no keyframe was returned yet
+     */
+    public int getPlanIndex() {
+        return planIndex - 1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (plans == null || (arrayChannel == null && channel == null)) {
+            return false;
+        }
+        while (true) {
+            if (arrayChannel != null) {
+                if (index != end) {
+                    return true;
+                }
+            } else if (planIterator != null && planIterator.hasNext()) {
+                return true;
+            }
+            if (remainingPasses > 0) {
+                remainingPasses--;
+                openRange(planIndex - 1);
+                continue;
+            }
+            if (planIndex >= plans.size()) {
+                return false;
+            }
+            openPlan(planIndex++);
+        }
+    }
+
+    @Override
+    public Keyframe<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (arrayChannel != null) {
+            Keyframe<T> keyframe = arrayChannel.get(index);
+            index += step;
+            return keyframe;
+        }
+        return planIterator.next();
+    }
+
+    private void openPlan(int i) {
+        repeat = plans.getRepeat(i);
+        remainingPasses = repeatPolicy == RepeatPolicy.EXPAND ? repeat - 1 : 0;
+        openRange(i);
+        if (arrayChannel != null && index == end) {
+            // Nothing to return in this range, so further passes would be empty as well.
+            remainingPasses = 0;
+        }
+    }
+
+    private void openRange(int i) {
+        float fromTimeS = MathUtil.toSecond(plans.getFrom(i));
+        float toTimeS = MathUtil.toSecond(plans.getTo(i));
+        if (arrayChannel == null) {
+            planIterator = channel.clip(fromTimeS, toTimeS).iterator();
+            return;
+        }
+        // Same bounds as ArrayClipChannel#clip, without creating a sub list.
+        if (fromTimeS == toTimeS) {
+            index = end = 0;
+        } else if (fromTimeS > toTimeS) {
+            index = arrayChannel.findIndexBefore(fromTimeS, false);
+            end = arrayChannel.findIndexBefore(toTimeS, false);
+            step = -1;
+        } else {
+            index = arrayChannel.findIndexBefore(fromTimeS, true) + 1;
+            end = arrayChannel.findIndexBefore(toTimeS, true) + 1;
+            step = 1;
+        }
+    }
+
+    /**
+     * Policies for walking plans which were covered several times in a row.
+     */
+    public enum RepeatPolicy {
+        /**
+         * Walk the plan once, regardless of its repeat count. The count is reported by
+         * {@link #getRepeatCount()}. Costs O(1) in the number of repeats.
+         */
+        COLLAPSE,
+
+        /**
+         * Walk the plan as many times as its repeat count, returning every pass.
+         * Costs O(k) for k repeats, so only use it when every single event matters.
+         */
+        EXPAND
+    }
+}
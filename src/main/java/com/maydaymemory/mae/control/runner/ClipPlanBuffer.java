@@ -0,0 +1,186 @@
+package com.maydaymemory.mae.control.runner;
+
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive buffer of clip plans.
+ *
+ * <p>A clip plan is a time range {@code [from, to)} in nanoseconds that was covered by the
+ * animation during the last update, see {@link IAnimationContext#enqueueClipPlan(long, long)}.
+ * Ranges are stored flat in a {@code long[]}, so that enqueueing and reading plans never
+ * allocates once the buffer has grown to its working size.</p>
+ *
+ * <p>As with single clip queries, {@code from > to} means the range was played backwards.</p>
+ *
+ * <p>Each plan also carries a repeat count, the number of times the range was covered in a row.
+ * This lets a looping state describe any number of full loops skipped by a long update with a
+ * single plan, and lets consumers handle them in constant time instead of one plan per loop,
+ * see {@link ClipCursor.RepeatPolicy}.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class ClipPlanBuffer implements Snapshotable {
+    /** Number of longs per plan */
+    private static final int STRIDE = 3;
+
+    /** Flat storage, plan {@code i} occupies {@code [i * STRIDE, (i + 1) * STRIDE)} */
+    private long[] ranges;
+
+    /** Number of plans */
+    private int size;
+
+    /**
+     * Constructs an empty buffer.
+     */
+    public ClipPlanBuffer() {
+        this(4);
+    }
+
+    /**
+     * Constructs an empty buffer with the specified initial capacity.
+     *
+     * @param initialCapacity the number of plans that can be stored without growing
+     */
+    public ClipPlanBuffer(int initialCapacity) {
+        this.ranges = new long[Math.max(1, initialCapacity) * STRIDE];
+    }
+
+    /**
+     * Appends a plan.
+     *
+     * @param from start of the range in nanoseconds (inclusive)
+     * @param to end of the range in nanoseconds (exclusive)
+     */
+    public void add(long from, long to) {
+        add(from, to, 1);
+    }
+
+    /**
+     * Appends a plan which was covered several times in a row.
+     *
+     * @param from start of the range in nanoseconds (inclusive)
+     * @param to end of the range in nanoseconds (exclusive)
+     * @param repeat number of times the range was covered, must be positive
+     * @throws IllegalArgumentException if repeat is not positive
+     */
+    public void add(long from, long to, long repeat) {
+        if (repeat <= 0) {
+            throw new IllegalArgumentException("Repeat count must be positive, got " + repeat);
+        }
+        int offset = size * STRIDE;
+        if (offset + STRIDE > ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[offset] = from;
+        ranges[offset + 1] = to;
+        ranges[offset + 2] = repeat;
+        size++;
+    }
+
+    /**
+     * Gets the number of plans.
+     *
+     * @return the number of plans
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the buffer is empty.
+     *
+     * @return true if there is no plan
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the start of a plan.
+     *
+     * @param index the plan index
+     * @return start of the range in nanoseconds (inclusive)
+     */
+    public long getFrom(int index) {
+        checkIndex(index);
+        return ranges[index * STRIDE];
+    }
+
+    /**
+     * Gets the end of a plan.
+     *
+     * @param index the plan index
+     * @return end of the range in nanoseconds (exclusive)
+     */
+    public long getTo(int index) {
+        checkIndex(index);
+        return ranges[index * STRIDE + 1];
+    }
+
+    /**
+     * Gets the number of times a plan was covered in a row.
+     *
+     * @param index the plan index
+     * @return the repeat count, 1 for ordinary plans
+     */
+    public long getRepeat(int index) {
+        checkIndex(index);
+        return ranges[index * STRIDE + 2];
+    }
+
+    /**
+     * Removes all plans, keeping the allocated storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Replaces the content of this buffer with the plans of another buffer.
+     *
+     * @param other the buffer to copy
+     */
+    public void copyFrom(ClipPlanBuffer other) {
+        if (ranges.length < other.size * STRIDE) {
+            ranges = new long[other.ranges.length];
+        }
+        System.arraycopy(other.ranges, 0, ranges, 0, other.size * STRIDE);
+        size = other.size;
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeInt(size);
+        for (int i = 0; i < size * STRIDE; i++) {
+            buffer.writeLong(ranges[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Like {@link #add(long, long, long)}, this grows the storage if the snapshot holds more plans than
+     * fit, at least doubling it. Pass the working size to {@link #ClipPlanBuffer(int)} to never allocate.</p>
+     */
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        int newSize = buffer.readInt();
+        if (ranges.length < newSize * STRIDE) {
+            ranges = new long[Math.max(ranges.length * 2, newSize * STRIDE)];
+        }
+        for (int i = 0; i < newSize * STRIDE; i++) {
+            ranges[i] = buffer.readLong();
+        }
+        size = newSize;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
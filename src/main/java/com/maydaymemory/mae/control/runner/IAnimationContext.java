@@ -1,5 +1,6 @@
 package com.maydaymemory.mae.control.runner;
 
+import com.maydaymemory.mae.control.NotifyPolicy;
 import com.maydaymemory.mae.util.MathUtil;
 import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
 
@@ -68,6 +69,33 @@ public interface IAnimationContext {
      */
     void enqueueClipPlan(LongLongImmutablePair plan);
 
+    /**
+     * Enqueues a clip plan for processing without allocating a pair.
+     *
+     * <p>The default implementation delegates to {@link #enqueueClipPlan(LongLongImmutablePair)}.</p>
+     *
+     * @param from start of the time range in nanoseconds (inclusive)
+     * @param to end of the time range in nanoseconds (exclusive)
+     */
+    default void enqueueClipPlan(long from, long to) {
+        enqueueClipPlan(new LongLongImmutablePair(from, to));
+    }
+
+    /**
+     * Enqueues a clip plan which was covered several times in a row, e.g. the full loops skipped
+     * by a single long update of a looping animation.
+     *
+     * <p>The default implementation enqueues the range once, since pair-based plans cannot carry
+     * a repeat count. Implementations backed by a {@link ClipPlanBuffer} should store the count.</p>
+     *
+     * @param from start of the time range in nanoseconds (inclusive)
+     * @param to end of the time range in nanoseconds (exclusive)
+     * @param repeat number of times the range was covered, must be positive
+     */
+    default void enqueueClipPlan(long from, long to, long repeat) {
+        enqueueClipPlan(from, to);
+    }
+
     /**
      * Gets an iterator over the current clip plans.
      * 
@@ -75,6 +103,71 @@ public interface IAnimationContext {
      */
     Iterator<? extends LongLongImmutablePair> clipPlanIterator();
 
+    /**
+     * Gets the current clip plans as a primitive buffer.
+     *
+     * <p>The returned buffer must be treated as read-only. The default implementation copies
+     * the plans of {@link #clipPlanIterator()} into a new buffer; implementations should return
+     * their backing buffer so that reading plans does not allocate.</p>
+     *
+     * @return the clip plans of the last update
+     */
+    default ClipPlanBuffer getClipPlans() {
+        ClipPlanBuffer buffer = new ClipPlanBuffer();
+        Iterator<? extends LongLongImmutablePair> iterator = clipPlanIterator();
+        while (iterator.hasNext()) {
+            LongLongImmutablePair plan = iterator.next();
+            buffer.add(plan.leftLong(), plan.rightLong());
+        }
+        return buffer;
+    }
+
+    /**
+     * Jumps to the given progress, handling the skipped span according to the policy.
+     *
+     * <p>If the state is a {@link LoopingState}, a target outside {@code [0, getMaxProgress())} wraps around
+     * the loop as an update covering the same distance would, and the full loops in between are described by
+     * one repeated range. Otherwise the target is clamped to {@code [0, getMaxProgress()]}, and a backward
+     * seek skips a backward range.</p>
+     *
+     * <p>With {@link NotifyPolicy#SILENT} only the progress changes. With {@link NotifyPolicy#FIRE_ALL} the
+     * skipped ranges are enqueued as clip plans, appended to the plans of the last update, so that clip
+     * consumers see every skipped keyframe. With {@link NotifyPolicy#SUMMARIZE} they are not enqueued, so the
+     * skipped keyframes are not seen as events, but returned instead: walking them with a {@link ClipCursor}
+     * in {@link ClipCursor.RepeatPolicy#COLLAPSE} mode gives each skipped keyframe once per range with the
+     * repeat count of the range, from which the caller can sum up how often every keyframe was passed.</p>
+     *
+     * <p>The state is not updated, so a state which ends at a given progress only notices it on the next update.</p>
+     *
+     * @param targetNanos the target progress in nanoseconds
+     * @param policy how the skipped span is handled
+     * @return the skipped ranges with {@link NotifyPolicy#SUMMARIZE}, otherwise an empty buffer
+     */
+    default ClipPlanBuffer seek(long targetNanos, NotifyPolicy policy) {
+        ClipPlanBuffer skipped = new ClipPlanBuffer(1);
+        long maxProgress = getMaxProgress();
+        long progress = getProgress();
+        long target;
+        if (getState() instanceof LoopingState && maxProgress > 0) {
+            target = LoopingState.wrap(progress, targetNanos, maxProgress, skipped);
+        } else {
+            target = Math.max(0, Math.min(targetNanos, maxProgress));
+            if (target != progress) {
+                skipped.add(progress, target);
+            }
+        }
+        setProgress(target);
+        if (policy == NotifyPolicy.FIRE_ALL) {
+            for (int i = 0; i < skipped.size(); i++) {
+                enqueueClipPlan(skipped.getFrom(i), skipped.getTo(i), skipped.getRepeat(i));
+            }
+        }
+        if (policy != NotifyPolicy.SUMMARIZE) {
+            skipped.clear();
+        }
+        return skipped;
+    }
+
     /**
      * Sets the current animation state.
      * 
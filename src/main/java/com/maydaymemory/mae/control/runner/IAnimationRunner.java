@@ -2,6 +2,7 @@ package com.maydaymemory.mae.control.runner;
 
 import com.maydaymemory.mae.basic.Keyframe;
 import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.control.NotifyPolicy;
 
 import javax.annotation.Nullable;
 
@@ -97,6 +98,20 @@ public interface IAnimationRunner {
         getAnimationContext().setProgress(progress);
     }
 
+    /**
+     * Jumps to the given progress, handling the skipped span according to the policy.
+     *
+     * <p>This is a convenience method that delegates to the animation context.</p>
+     *
+     * @param targetNanos the target progress in nanoseconds
+     * @param policy how the skipped span is handled
+     * @return the skipped ranges with {@link NotifyPolicy#SUMMARIZE}, otherwise an empty buffer
+     * @see IAnimationContext#seek(long, NotifyPolicy)
+     */
+    default ClipPlanBuffer seek(long targetNanos, NotifyPolicy policy) {
+        return getAnimationContext().seek(targetNanos, policy);
+    }
+
     /**
      * Sets the current animation progress in seconds.
      * 
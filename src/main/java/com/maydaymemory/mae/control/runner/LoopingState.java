@@ -1,7 +1,6 @@
 package com.maydaymemory.mae.control.runner;
 
 import com.maydaymemory.mae.util.LongSupplier;
-import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
 
 /**
  * Animation state that represents looping animation playback.
@@ -10,6 +9,9 @@ import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
  * the progress around when it reaches the animation boundaries. The state
  * handles both forward and backward looping, maintaining proper clip plan
  * generation for seamless loop transitions.</p>
+ *
+ * <p>When a single update covers several loops, the loops in between are enqueued
+ * as one clip plan with a repeat count, see {@link IAnimationContext#enqueueClipPlan(long, long, long)}.</p>
  * 
  * <p>The looping state is designed for animations that should play continuously,
  * such as idle animations, walking cycles, or other repetitive motion patterns.</p>
@@ -64,31 +66,64 @@ public class LoopingState implements IAnimationState, IAdjustableSpeedState {
         }
         long progress = ctx.getProgress() + (long) ((currentNanos - ctx.getLastUpdateTime()) * speed);
         if (progress >= maxProgress) {
+            // Loops fully covered between the first wrap and the last one are enqueued as a single
+            // repeated plan, so that a long stall costs O(1) instead of one plan per loop.
+            long fullLoops = progress / maxProgress - 1;
             progress = progress % maxProgress;
-            long times = progress / maxProgress;
-            times--;
-            ctx.enqueueClipPlan(new LongLongImmutablePair(ctx.getProgress(), Long.MAX_VALUE));
-            for (int i = 0; i < times; i++) {
-                ctx.enqueueClipPlan(new LongLongImmutablePair(0, Long.MAX_VALUE));
+            ctx.enqueueClipPlan(ctx.getProgress(), Long.MAX_VALUE);
+            if (fullLoops > 0) {
+                ctx.enqueueClipPlan(0, Long.MAX_VALUE, fullLoops);
             }
-            ctx.enqueueClipPlan(new LongLongImmutablePair(0, progress));
+            ctx.enqueueClipPlan(0, progress);
         } else if (progress < 0) {
-            progress = progress % maxProgress + maxProgress;
-            long times = progress / maxProgress;
-            times = -times;
-            ctx.enqueueClipPlan(new LongLongImmutablePair(ctx.getProgress(), -Long.MAX_VALUE));
-            for (int i = 0; i < times; i++) {
-                ctx.enqueueClipPlan(new LongLongImmutablePair(maxProgress, -Long.MAX_VALUE));
+            long fullLoops = (-progress - 1) / maxProgress;
+            progress = Math.floorMod(progress, maxProgress);
+            ctx.enqueueClipPlan(ctx.getProgress(), -Long.MAX_VALUE);
+            if (fullLoops > 0) {
+                ctx.enqueueClipPlan(maxProgress, -Long.MAX_VALUE, fullLoops);
             }
-            ctx.enqueueClipPlan(new LongLongImmutablePair(maxProgress, progress));
+            ctx.enqueueClipPlan(maxProgress, progress);
         } else {
-            ctx.enqueueClipPlan(new LongLongImmutablePair(ctx.getProgress(), progress));
+            ctx.enqueueClipPlan(ctx.getProgress(), progress);
         }
         ctx.setProgress(progress);
         ctx.setLastUpdateTime(currentNanos);
         return this;
     }
 
+    /**
+     * Wraps a progress around the loop, adding the ranges covered from the current progress to the buffer
+     * in the same way as {@link #update(IAnimationContext)} enqueues them.
+     *
+     * @param from the current progress in nanoseconds, within {@code [0, maxProgress)}
+     * @param to the unwrapped target progress in nanoseconds
+     * @param maxProgress the length of the loop in nanoseconds, must be positive
+     * @param plans the buffer receiving the covered ranges
+     * @return the wrapped target progress
+     */
+    static long wrap(long from, long to, long maxProgress, ClipPlanBuffer plans) {
+        if (to >= maxProgress) {
+            long fullLoops = to / maxProgress - 1;
+            plans.add(from, Long.MAX_VALUE);
+            if (fullLoops > 0) {
+                plans.add(0, Long.MAX_VALUE, fullLoops);
+            }
+            to %= maxProgress;
+            plans.add(0, to);
+        } else if (to < 0) {
+            long fullLoops = (-to - 1) / maxProgress;
+            plans.add(from, -Long.MAX_VALUE);
+            if (fullLoops > 0) {
+                plans.add(maxProgress, -Long.MAX_VALUE, fullLoops);
+            }
+            to = Math.floorMod(to, maxProgress);
+            plans.add(maxProgress, to);
+        } else if (to != from) {
+            plans.add(from, to);
+        }
+        return to;
+    }
+
     @Override
     public void onEnter(IAnimationContext ctx) {
         ctx.setLastUpdateTime(currentNanosSupplier.getAsLong());
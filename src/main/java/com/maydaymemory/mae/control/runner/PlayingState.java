@@ -1,7 +1,6 @@
 package com.maydaymemory.mae.control.runner;
 
 import com.maydaymemory.mae.util.LongSupplier;
-import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
 
 import java.util.function.Supplier;
 
@@ -80,7 +79,7 @@ public class PlayingState implements IAnimationState, IAdjustableSpeedState {
             flag = true;
         }
 
-        ctx.enqueueClipPlan(new LongLongImmutablePair(ctx.getProgress(), progress == maxProgress ? Long.MAX_VALUE : progress));
+        ctx.enqueueClipPlan(ctx.getProgress(), progress == maxProgress ? Long.MAX_VALUE : progress);
         ctx.setProgress(progress);
         ctx.setLastUpdateTime(currentNanos);
 
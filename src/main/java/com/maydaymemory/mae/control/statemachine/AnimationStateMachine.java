@@ -1,12 +1,19 @@
 package com.maydaymemory.mae.control.statemachine;
 
+import com.maydaymemory.mae.basic.DensePoseView;
 import com.maydaymemory.mae.basic.DummyPose;
 import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.control.NotifyPolicy;
 import com.maydaymemory.mae.control.OutputPort;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
 import com.maydaymemory.mae.control.Tickable;
 import com.maydaymemory.mae.util.LongSupplier;
+import com.maydaymemory.mae.util.MathUtil;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.function.Supplier;
 
 /**
@@ -21,13 +28,34 @@ import java.util.function.Supplier;
  * interruption handling, smooth pose interpolation, and flexible state
  * management. It can handle both active states and transitions in progress,
  * providing seamless animation control.</p>
+ *
+ * <p>In headless mode (see {@link #setHeadless(boolean)}) the state machine only advances
+ * states and transitions. No pose is ever evaluated, which suits servers that need the
+ * callbacks of states and transitions but never the bone poses.</p>
+ *
+ * <p>With a {@link ParameterBlackboard} (see {@link #setParameterBlackboard(ParameterBlackboard)}),
+ * the conditions of {@link IParameterDrivenTransition}s are only evaluated again when one of
+ * their parameters changed. Other transitions are polled every tick.</p>
+ *
+ * <p>With an {@link Inertializer} (see {@link #setInertializer(Inertializer)}), {@link IInertializedTransition}s
+ * switch to their target state immediately and decay the offset from the source pose instead of crossfading,
+ * so only the target state is evaluated during the transition.</p>
+ *
+ * <p>A snapshot of the state machine holds the current state, or the running transition with its
+ * cached pose and timing, and the offsets of the inertializer if there is one. The context is not part of it.</p>
+ *
+ * <p>The graph is walked live: the transitions of a state, their durations, curves and target states are read
+ * whenever they are checked or triggered, so changes to them are observed on the next tick. A pose cached when a
+ * transition starts must not change afterwards, so a {@link DensePoseView} is copied. To share one design between
+ * many characters and skip the per-tick graph walk, compile it with {@link StateMachineDefinition#compile(IAnimationState)}
+ * and run {@link StateMachineInstance}s of it instead; those read the graph only once.</p>
  * 
  * @param <T> the type of context used by the states and transitions. If it is {@link Tickable},
  *           statemachine will also automatically tick it when statemachine itself is ticked.
  * @author MaydayMemory
  * @since 1.0.1
  */
-public class AnimationStateMachine<T> implements Tickable {
+public class AnimationStateMachine<T> implements Tickable, Snapshotable {
     /** The current active state, or null if a transition is in progress */
     private IAnimationState<T> state;
     
@@ -46,6 +74,34 @@ public class AnimationStateMachine<T> implements Tickable {
     /** Output port for pose evaluation */
     private final OutputPort<Pose> outputPort = this::getPose;
 
+    /** Whether pose evaluation is skipped entirely */
+    private boolean headless = false;
+
+    /** Blackboard whose change stamps drive parameter-driven transitions, or null to poll every transition */
+    @Nullable
+    private ParameterBlackboard parameterBlackboard;
+
+    /**
+     * Cache slot of each parameter-driven transition evaluated since the last triggered transition. Cleared
+     * on every trigger, since the transitions checked afterwards belong to other states, so transitions
+     * removed from the graph are never kept longer than that.
+     */
+    private final Reference2IntOpenHashMap<IAnimationTransition<T>> transitionSlots = new Reference2IntOpenHashMap<>();
+
+    /** Blackboard change count at the last evaluation, by cache slot */
+    private long[] evaluatedStamps = new long[8];
+
+    /** Result of the last evaluation, by cache slot */
+    private boolean[] cachedResults = new boolean[8];
+
+    /** Inertializer of inertialized transitions, or null to crossfade every transition */
+    @Nullable
+    private Inertializer inertializer;
+
+    /** The running transition if it is inertialized, otherwise null */
+    @Nullable
+    private TransitionControlBlock<T> inertializedTransition;
+
     /**
      * Constructs a new AnimationStateMachine with the specified initial state and context.
      * 
@@ -57,6 +113,7 @@ public class AnimationStateMachine<T> implements Tickable {
         this.state = initialState;
         this.context = context;
         this.currentNanosSupplier = currentNanosSupplier;
+        this.transitionSlots.defaultReturnValue(-1);
     }
 
     @Override
@@ -64,6 +121,43 @@ public class AnimationStateMachine<T> implements Tickable {
         if (context instanceof Tickable) {
             ((Tickable)context).tick();
         }
+        update();
+    }
+
+    /**
+     * Skips the given amount of time, handling the skipped span according to the policy.
+     *
+     * <p>A state machine has no timeline of its own, so the seek target is expressed as the time to
+     * skip. A transition in progress is advanced by that time. The state machine has no notifies
+     * either: with {@link NotifyPolicy#SILENT} a transition which has finished is completed without
+     * updating any state or checking transitions, while the other policies run one regular update
+     * at the target, which also completes it. The context is not ticked; seek the runners and montage
+     * runners it holds with their own seek methods.</p>
+     *
+     * @param skipNanos the time to skip in nanoseconds, cannot be negative
+     * @param policy how the skipped span is handled
+     */
+    public void seek(long skipNanos, NotifyPolicy policy) {
+        if (transitionControlBlock != null) {
+            transitionControlBlock.getController().advance(skipNanos);
+        } else if (skipNanos < 0) {
+            throw new IllegalArgumentException("Cannot seek a state machine backwards: " + skipNanos);
+        }
+        if (policy != NotifyPolicy.SILENT) {
+            update();
+        } else if (state == null && transitionControlBlock != null
+                && transitionControlBlock.getController().isFinished()) {
+            IAnimationState<T> targetState = transitionControlBlock.getTransition().targetState();
+            targetState.onEnter(context, transitionControlBlock.getFromState());
+            this.state = targetState;
+            transitionControlBlock = null;
+        }
+    }
+
+    /**
+     * Updates the current state or transition, and triggers transitions. This is an internal method.
+     */
+    private void update() {
         if (state != null) {
             state.onUpdate(context);
             TransitionControlBlock<T> tcb = tryTransfer(state, () -> state.evaluatePose(context));
@@ -92,12 +186,7 @@ public class AnimationStateMachine<T> implements Tickable {
             IAnimationTransition<T> transition = transitionControlBlock.getTransition();
             IAnimationState<T> fromState = transitionControlBlock.getFromState();
             IAnimationState<T> targetState = transition.targetState();
-            Supplier<Pose> cachedPoseSupplier = () -> transition.getInterpolatedPose(
-                    context,
-                    transitionControlBlock.getCachedPose(),
-                    targetState.evaluatePose(context),
-                    transitionControlBlock.getController().getTransitionProgress()
-            );
+            Supplier<Pose> cachedPoseSupplier = this::evaluateTransitionPose;
             TransitionControlBlock<T> tcb = null;
             switch (transition.transferOutStrategy()) {
                 case NONE:
@@ -128,6 +217,125 @@ public class AnimationStateMachine<T> implements Tickable {
         }
     }
 
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeReference(state);
+        // Control blocks are immutable apart from the timing of their controller.
+        buffer.writeReference(transitionControlBlock);
+        TransitionController controller = transitionControlBlock == null ? null : transitionControlBlock.getController();
+        if (controller != null) {
+            buffer.writeLong(controller.getStartNanos());
+            buffer.writeBoolean(controller.isStarted());
+        }
+        buffer.writeReference(inertializedTransition);
+        if (inertializer != null) {
+            inertializer.writeSnapshot(buffer);
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        state = buffer.readReference();
+        transitionControlBlock = buffer.readReference();
+        TransitionController controller = transitionControlBlock == null ? null : transitionControlBlock.getController();
+        if (controller != null) {
+            long startNanos = buffer.readLong();
+            controller.restore(startNanos, buffer.readBoolean());
+        }
+        inertializedTransition = buffer.readReference();
+        if (inertializer != null) {
+            inertializer.readSnapshot(buffer);
+        }
+        // Blackboard stamps may have been restored too, so cached results cannot be trusted anymore.
+        invalidateTransitionCache();
+    }
+
+    /**
+     * Checks whether this state machine is in headless mode.
+     *
+     * @return true if pose evaluation is skipped
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Enables or disables headless mode.
+     *
+     * <p>In headless mode, ticking still updates states, triggers transitions and invokes all
+     * callbacks, but the pose of the source state is not cached when a transition starts, and
+     * {@link #getPose()} returns {@link DummyPose#INSTANCE} without evaluating any state.
+     * Transitions started in headless mode have an empty cached pose, so if headless mode is
+     * disabled during such a transition, the transition blends from an empty pose.</p>
+     *
+     * @param headless true to skip all pose evaluation
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Gets the blackboard driving parameter-driven transitions.
+     *
+     * @return the blackboard, or null if every transition is polled
+     */
+    public @Nullable ParameterBlackboard getParameterBlackboard() {
+        return parameterBlackboard;
+    }
+
+    /**
+     * Sets the blackboard driving parameter-driven transitions.
+     *
+     * <p>The conditions of {@link IParameterDrivenTransition}s are then only evaluated when one of
+     * their declared parameters of this blackboard changed since their last evaluation, otherwise
+     * the previous result is reused. Since transitions fire as soon as their condition holds, in
+     * steady state this means most transitions are not evaluated at all. Transitions which are not
+     * parameter-driven are still evaluated on every tick.</p>
+     *
+     * @param parameterBlackboard the blackboard, or null to evaluate every transition on every tick
+     */
+    public void setParameterBlackboard(@Nullable ParameterBlackboard parameterBlackboard) {
+        if (this.parameterBlackboard != parameterBlackboard) {
+            this.parameterBlackboard = parameterBlackboard;
+            invalidateTransitionCache();
+        }
+    }
+
+    /**
+     * Forgets the cached results of parameter-driven transitions, so that each of them is evaluated
+     * again the next time its state is checked. Call this after changing anything their conditions
+     * read besides blackboard parameters, e.g. when reusing a transition with other dependencies.
+     */
+    public void invalidateTransitionCache() {
+        transitionSlots.clear();
+    }
+
+    /**
+     * Gets the inertializer of inertialized transitions.
+     *
+     * @return the inertializer, or null if every transition crossfades
+     */
+    public @Nullable Inertializer getInertializer() {
+        return inertializer;
+    }
+
+    /**
+     * Sets the inertializer of {@link IInertializedTransition}s.
+     *
+     * <p>While an inertializer is set, every evaluated output pose is recorded to estimate velocities, and
+     * inertialized transitions starting afterwards decay offsets on top of their target pose. Without one,
+     * they crossfade like other transitions. Must be set before snapshots are written or read, since the
+     * offsets of the inertializer are part of them.</p>
+     *
+     * @param inertializer the inertializer, owned by this state machine only, or null
+     */
+    public void setInertializer(@Nullable Inertializer inertializer) {
+        if (this.inertializer != inertializer) {
+            this.inertializer = inertializer;
+            this.inertializedTransition = null;
+        }
+    }
+
     /**
      * Gets the current active state.
      * 
@@ -153,20 +361,39 @@ public class AnimationStateMachine<T> implements Tickable {
      * machine is in an active state or transitioning between states. During
      * transitions, it interpolates between the source and target poses.</p>
      * 
-     * @return the evaluated pose
+     * @return the evaluated pose, or {@link DummyPose#INSTANCE} in headless mode
      */
     public Pose getPose() {
+        if (headless) {
+            return DummyPose.INSTANCE;
+        }
+        Pose pose;
         if (state != null) {
-            return state.evaluatePose(context);
+            pose = state.evaluatePose(context);
         } else if (transitionControlBlock != null) {
-            IAnimationTransition<T> transition = transitionControlBlock.getTransition();
-            Pose fromPose = transitionControlBlock.getCachedPose();
-            Pose toPose = transition.targetState().evaluatePose(context);
-            float progress = transitionControlBlock.getController().getTransitionProgress();
-            return transition.getInterpolatedPose(context, fromPose, toPose, progress);
+            pose = evaluateTransitionPose();
+        } else {
+            // This should not be reached.
+            return DummyPose.INSTANCE;
+        }
+        if (inertializer != null) {
+            inertializer.record(pose, currentNanosSupplier.getAsLong());
+        }
+        return pose;
+    }
+
+    /**
+     * Evaluates the pose of the running transition. This is an internal method.
+     */
+    private Pose evaluateTransitionPose() {
+        IAnimationTransition<T> transition = transitionControlBlock.getTransition();
+        Pose toPose = transition.targetState().evaluatePose(context);
+        TransitionController controller = transitionControlBlock.getController();
+        if (inertializer != null && inertializedTransition == transitionControlBlock) {
+            return inertializer.apply(toPose, currentNanosSupplier.getAsLong() - controller.getStartNanos());
         }
-        // This should not be reached.
-        return DummyPose.INSTANCE;
+        Pose fromPose = transitionControlBlock.getCachedPose();
+        return transition.getInterpolatedPose(context, fromPose, toPose, controller.getTransitionProgress());
     }
 
     /**
@@ -195,20 +422,65 @@ public class AnimationStateMachine<T> implements Tickable {
      * can be triggered.</p>
      * 
      * @param state the state to check for transitions
-     * @param cachedPoseSupplier supplier for the pose to cache from the current state
+     * @param cachedPoseSupplier supplier for the pose to cache from the current state, not called in headless mode
      * @return a transition control block if a transition was triggered, null otherwise
      */
     private TransitionControlBlock<T> tryTransfer(IAnimationState<T> state, Supplier<Pose> cachedPoseSupplier) {
         for (IAnimationTransition<T> transition : state.transitions()) {
-            if (transition.canTrigger(context)) {
-                TransitionControlBlock<T> tcb = new TransitionControlBlock<>(state, transition, cachedPoseSupplier.get(), currentNanosSupplier);
+            if (canTrigger(transition)) {
+                transitionSlots.clear();
+                TransitionControlBlock<T> tcb = new TransitionControlBlock<>(state, transition,
+                        headless ? DummyPose.INSTANCE : cachePose(cachedPoseSupplier.get()), currentNanosSupplier);
                 TransitionController transitionController = tcb.getController();
                 if (transitionController != null) {
                     transitionController.start();
+                    if (!headless && inertializer != null && transition instanceof IInertializedTransition) {
+                        inertializer.begin(tcb.getCachedPose(), transition.targetState().evaluatePose(context),
+                                Math.max(1, MathUtil.toNanos(transition.duration())),
+                                ((IInertializedTransition<T>) transition).decay(),
+                                currentNanosSupplier.getAsLong());
+                        inertializedTransition = tcb;
+                    }
                 }
                 return tcb;
             }
         }
         return null;
     }
+
+    /**
+     * Makes a pose safe to keep for the whole transition. This is an internal method.
+     */
+    private static Pose cachePose(Pose pose) {
+        // Dense views are overwritten by their source on the next evaluation.
+        return pose instanceof DensePoseView ? ((DensePoseView) pose).copy() : pose;
+    }
+
+    /**
+     * Evaluates the condition of a transition, or reuses its previous result if it is parameter-driven
+     * and none of its parameters changed since. This is an internal method.
+     */
+    private boolean canTrigger(IAnimationTransition<T> transition) {
+        ParameterBlackboard blackboard = parameterBlackboard;
+        if (blackboard == null || !(transition instanceof IParameterDrivenTransition)) {
+            return transition.canTrigger(context);
+        }
+        int slot = transitionSlots.getInt(transition);
+        if (slot < 0) {
+            slot = transitionSlots.size();
+            if (slot == evaluatedStamps.length) {
+                evaluatedStamps = Arrays.copyOf(evaluatedStamps, slot * 2);
+                cachedResults = Arrays.copyOf(cachedResults, slot * 2);
+            }
+            transitionSlots.put(transition, slot);
+        } else if (!blackboard.changedSince(((IParameterDrivenTransition<T>) transition).dependencies(),
+                evaluatedStamps[slot])) {
+            return cachedResults[slot];
+        }
+        // Stamp before evaluating, so that changes made by the condition itself are seen next time.
+        evaluatedStamps[slot] = blackboard.getChangeCount();
+        boolean result = transition.canTrigger(context);
+        cachedResults[slot] = result;
+        return result;
+    }
 }
@@ -76,6 +76,9 @@ public interface IAnimationState<T> {
      * All data required for pose evaluation (such as animation runners, etc.) should be accessed via the <code>context</code> parameter.
      * State instances should not store any internal state.</p>
      *
+     * <p>State machines keep the returned pose as the source of a transition, possibly in snapshots, so it
+     * must not change afterwards. A {@link com.maydaymemory.mae.basic.DensePoseView} is copied when kept.</p>
+     *
      * @param context the context containing state information
      * @return the evaluated pose for this state, used for rendering or transition interpolation.
      */
@@ -0,0 +1,28 @@
+package com.maydaymemory.mae.control.statemachine;
+
+/**
+ * Transition blended by inertialization instead of a crossfade.
+ *
+ * <p>A crossfade evaluates both the source and the target every frame. An inertialized transition switches
+ * to the target immediately: when it starts, the per-bone offset between the source pose and the target pose,
+ * and the velocity of that offset, are recorded by an {@link Inertializer}. The offset is then added to the
+ * target pose and decays to zero over the duration of the transition, so only the target pose is evaluated
+ * per frame.</p>
+ *
+ * <p>Inertialization requires an inertializer on the state machine, see
+ * {@link AnimationStateMachine#setInertializer(Inertializer)}. Without one, the transition falls back to
+ * a crossfade through {@link #getInterpolatedPose}. The {@link #curve()} of the transition is not used by
+ * inertialization.</p>
+ *
+ * @param <T> the type of context used by this transition
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public interface IInertializedTransition<T> extends IAnimationTransition<T> {
+    /**
+     * Gets how the offset decays over the duration of the transition.
+     *
+     * @return the decay model
+     */
+    InertializationDecay decay();
+}
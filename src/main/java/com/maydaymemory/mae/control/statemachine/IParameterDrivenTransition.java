@@ -0,0 +1,25 @@
+package com.maydaymemory.mae.control.statemachine;
+
+/**
+ * Transition whose trigger condition depends only on parameters of a {@link ParameterBlackboard}.
+ *
+ * <p>A state machine with a blackboard (see {@link AnimationStateMachine#setParameterBlackboard(ParameterBlackboard)})
+ * only calls {@link #canTrigger(Object)} of such a transition when one of its declared parameters changed since
+ * the last call, and reuses the previous result otherwise. The declaration must therefore be complete: a
+ * condition which also reads time, progress or anything else outside the declared parameters must be a plain
+ * {@link IAnimationTransition}, which is polled every tick.</p>
+ *
+ * @param <T> the type of context used by this transition
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public interface IParameterDrivenTransition<T> extends IAnimationTransition<T> {
+    /**
+     * Gets the IDs of the blackboard parameters the trigger condition reads.
+     *
+     * <p>The returned array must not change during the lifetime of the transition.</p>
+     *
+     * @return the parameter IDs
+     */
+    int[] dependencies();
+}
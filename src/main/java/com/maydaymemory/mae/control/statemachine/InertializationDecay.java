@@ -0,0 +1,25 @@
+package com.maydaymemory.mae.control.statemachine;
+
+/**
+ * How the offset of an {@link IInertializedTransition} decays to zero.
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public enum InertializationDecay {
+    /**
+     * Quintic polynomial matching the initial offset, velocity and acceleration, reaching zero offset,
+     * velocity and acceleration exactly at the end of the transition.
+     *
+     * <p>The initial velocity is clamped so that the offset never overshoots, and the transition ends
+     * earlier for a bone moving fast enough toward the target.</p>
+     */
+    POLYNOMIAL,
+
+    /**
+     * Critically damped spring, which decays smoothly without overshooting. The stiffness is derived
+     * from the duration, so that less than 1% of the offset remains when the transition ends and the
+     * target pose is used as is.
+     */
+    CRITICALLY_DAMPED
+}
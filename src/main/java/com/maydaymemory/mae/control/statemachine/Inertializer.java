@@ -0,0 +1,429 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.BoneTransform;
+import com.maydaymemory.mae.basic.BoneTransformFactory;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.PoseBuilder;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
+import com.maydaymemory.mae.util.MathUtil;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Per-bone offset decay for {@link IInertializedTransition}s.
+ *
+ * <p>{@link #begin} records, for every bone of both the source and the target pose, the offset from the
+ * target to the source: translation and scale differences, and the rotation difference as a quaternion
+ * logarithm. The velocity of the offset is estimated from the last pose passed to {@link #record} before the
+ * transition. Each of the nine offset components then decays independently, see {@link InertializationDecay}.
+ * {@link #apply} adds the decayed offsets to the target pose, which is all that is evaluated per frame.</p>
+ *
+ * <p>All storage is preallocated and grows with the number of bones only, so starting a transition does not
+ * allocate once the storage is large enough, however often transitions interrupt each other. Interrupting a
+ * transition simply begins again from the current output pose, which already contains the remaining
+ * offsets.</p>
+ *
+ * <p>An inertializer belongs to one state machine and is not thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class Inertializer implements Snapshotable {
+    /** Offset components per bone: translation (3), rotation logarithm (3), scale (3) */
+    private static final int COMPONENTS = 9;
+
+    /** Floats per offset component: the decay coefficients, see {@link #evaluate(int, float)} */
+    private static final int COEFFICIENTS = 7;
+
+    /** Floats per bone of a recorded pose: translation (3), rotation quaternion (4), scale (3) */
+    private static final int SAMPLE_STRIDE = 10;
+
+    /** Spring stiffness times duration, (1 + 8) * e^-8 of the offset remains at the end */
+    private static final float SPRING_STIFFNESS = 8f;
+
+    /** Offsets smaller than this are treated as zero */
+    private static final float EPSILON = 1e-6f;
+
+    private final BoneTransformFactory boneTransformFactory;
+    private final Supplier<PoseBuilder> poseBuilderSupplier;
+
+    /** Decay model of the running transition */
+    private InertializationDecay decay = InertializationDecay.POLYNOMIAL;
+
+    /** Duration of the running transition in seconds */
+    private float duration;
+
+    /** Bones with an offset, in ascending order */
+    private int offsetCount;
+    private int[] offsetBones = new int[0];
+
+    /** Decay coefficients, {@link #COMPONENTS} * {@link #COEFFICIENTS} floats per bone */
+    private float[] coefficients = new float[0];
+
+    /** Last two recorded poses, to estimate velocities */
+    private final Sample lastSample = new Sample();
+    private final Sample previousSample = new Sample();
+
+    /** Scratch storage */
+    private final Quaternionf sourceRotation = new Quaternionf();
+    private final Quaternionf targetInverse = new Quaternionf();
+    private final Vector3f rotationOffset = new Vector3f();
+    private final Vector3f previousRotationOffset = new Vector3f();
+    private final float[] componentOffsets = new float[COMPONENTS];
+    private final float[] componentVelocities = new float[COMPONENTS];
+
+    /**
+     * Constructs an inertializer.
+     *
+     * @param boneTransformFactory factory for the bone transforms of output poses
+     * @param poseBuilderSupplier supplier for the builders of output poses
+     */
+    public Inertializer(BoneTransformFactory boneTransformFactory, Supplier<PoseBuilder> poseBuilderSupplier) {
+        this.boneTransformFactory = boneTransformFactory;
+        this.poseBuilderSupplier = poseBuilderSupplier;
+    }
+
+    /**
+     * Records an output pose, so that the velocity of the source can be estimated when a transition begins.
+     * Recording again at the same time replaces the previous record of that time.
+     *
+     * @param pose the output pose
+     * @param timeNanos the time of the pose in nanoseconds
+     */
+    public void record(Pose pose, long timeNanos) {
+        if (lastSample.valid && lastSample.timeNanos != timeNanos) {
+            previousSample.copyFrom(lastSample);
+        }
+        lastSample.set(pose, timeNanos);
+    }
+
+    /**
+     * Begins a transition, replacing the offsets of any running transition.
+     *
+     * @param sourcePose the pose at the start of the transition, usually the current output
+     * @param targetPose the pose of the target state at the start of the transition
+     * @param durationNanos the duration of the transition in nanoseconds, must be positive
+     * @param decay how the offsets decay
+     * @param timeNanos the current time in nanoseconds
+     */
+    public void begin(Pose sourcePose, Pose targetPose, long durationNanos, InertializationDecay decay, long timeNanos) {
+        if (durationNanos <= 0) {
+            throw new IllegalArgumentException("Inertialization duration must be positive: " + durationNanos);
+        }
+        this.decay = decay;
+        this.duration = MathUtil.toSecond(durationNanos);
+        this.offsetCount = 0;
+        // The velocity comes from the latest record before now; a record at the current time is the source itself.
+        Sample reference = lastSample.valid && lastSample.timeNanos < timeNanos ? lastSample
+                : previousSample.valid && previousSample.timeNanos < timeNanos ? previousSample : null;
+        float deltaTime = reference == null ? 0 : MathUtil.toSecond(timeNanos - reference.timeNanos);
+        int referenceCursor = 0;
+
+        Iterator<BoneTransform> sources = sourcePose.getBoneTransforms().iterator();
+        Iterator<BoneTransform> targets = targetPose.getBoneTransforms().iterator();
+        BoneTransform source = sources.hasNext() ? sources.next() : null;
+        BoneTransform target = targets.hasNext() ? targets.next() : null;
+        while (source != null && target != null) {
+            int cmp = Integer.compare(source.boneIndex(), target.boneIndex());
+            if (cmp < 0) {
+                source = sources.hasNext() ? sources.next() : null;
+                continue;
+            }
+            if (cmp > 0) {
+                target = targets.hasNext() ? targets.next() : null;
+                continue;
+            }
+            int bone = source.boneIndex();
+            Vector3fc targetTranslation = target.translation();
+            Vector3fc targetScale = target.scale();
+            target.rotation().asQuaternion().conjugate(targetInverse);
+            logOffset(sourceRotation.set(source.rotation().asQuaternion()), rotationOffset);
+            componentOffsets[0] = source.translation().x() - targetTranslation.x();
+            componentOffsets[1] = source.translation().y() - targetTranslation.y();
+            componentOffsets[2] = source.translation().z() - targetTranslation.z();
+            componentOffsets[3] = rotationOffset.x;
+            componentOffsets[4] = rotationOffset.y;
+            componentOffsets[5] = rotationOffset.z;
+            componentOffsets[6] = source.scale().x() - targetScale.x();
+            componentOffsets[7] = source.scale().y() - targetScale.y();
+            componentOffsets[8] = source.scale().z() - targetScale.z();
+
+            Arrays.fill(componentVelocities, 0);
+            if (reference != null && deltaTime > 0) {
+                while (referenceCursor < reference.size && reference.bones[referenceCursor] < bone) {
+                    referenceCursor++;
+                }
+                if (referenceCursor < reference.size && reference.bones[referenceCursor] == bone) {
+                    // Offset of the previous source pose to the same target pose, as if the target had not moved.
+                    float[] data = reference.data;
+                    int offset = referenceCursor * SAMPLE_STRIDE;
+                    sourceRotation.set(data[offset + 3], data[offset + 4], data[offset + 5], data[offset + 6]);
+                    logOffset(sourceRotation, previousRotationOffset);
+                    componentVelocities[0] = componentOffsets[0] - (data[offset] - targetTranslation.x());
+                    componentVelocities[1] = componentOffsets[1] - (data[offset + 1] - targetTranslation.y());
+                    componentVelocities[2] = componentOffsets[2] - (data[offset + 2] - targetTranslation.z());
+                    componentVelocities[3] = componentOffsets[3] - previousRotationOffset.x;
+                    componentVelocities[4] = componentOffsets[4] - previousRotationOffset.y;
+                    componentVelocities[5] = componentOffsets[5] - previousRotationOffset.z;
+                    componentVelocities[6] = componentOffsets[6] - (data[offset + 7] - targetScale.x());
+                    componentVelocities[7] = componentOffsets[7] - (data[offset + 8] - targetScale.y());
+                    componentVelocities[8] = componentOffsets[8] - (data[offset + 9] - targetScale.z());
+                    for (int c = 0; c < COMPONENTS; c++) {
+                        componentVelocities[c] /= deltaTime;
+                    }
+                }
+            }
+            addOffset(bone);
+
+            source = sources.hasNext() ? sources.next() : null;
+            target = targets.hasNext() ? targets.next() : null;
+        }
+    }
+
+    /**
+     * Adds the decayed offsets to the target pose.
+     *
+     * @param targetPose the current pose of the target state
+     * @param elapsedNanos the time since the transition began, in nanoseconds
+     * @return the inertialized pose
+     */
+    public Pose apply(Pose targetPose, long elapsedNanos) {
+        if (offsetCount == 0 || targetPose == DummyPose.INSTANCE) {
+            return targetPose;
+        }
+        float time = MathUtil.toSecond(Math.max(0, elapsedNanos));
+        PoseBuilder builder = poseBuilderSupplier.get();
+        int cursor = 0;
+        for (BoneTransform target : targetPose.getBoneTransforms()) {
+            int bone = target.boneIndex();
+            while (cursor < offsetCount && offsetBones[cursor] < bone) {
+                cursor++;
+            }
+            if (cursor == offsetCount || offsetBones[cursor] != bone) {
+                builder.addBoneTransform(target);
+                continue;
+            }
+            int base = cursor * COMPONENTS;
+            Vector3fc translation = target.translation();
+            Vector3fc scale = target.scale();
+            Vector3f rotationVector = new Vector3f(evaluate(base + 3, time), evaluate(base + 4, time), evaluate(base + 5, time));
+            Quaternionf rotation = MathUtil.exp(rotationVector).mul(target.rotation().asQuaternion());
+            builder.addBoneTransform(boneTransformFactory.createBoneTransform(bone,
+                    new Vector3f(translation.x() + evaluate(base, time),
+                            translation.y() + evaluate(base + 1, time),
+                            translation.z() + evaluate(base + 2, time)),
+                    rotation,
+                    new Vector3f(scale.x() + evaluate(base + 6, time),
+                            scale.y() + evaluate(base + 7, time),
+                            scale.z() + evaluate(base + 8, time))));
+        }
+        return builder.toPose();
+    }
+
+    /**
+     * Removes all offsets and recorded poses, keeping the allocated storage.
+     */
+    public void clear() {
+        offsetCount = 0;
+        lastSample.valid = false;
+        previousSample.valid = false;
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeInt(decay.ordinal());
+        buffer.writeFloat(duration);
+        buffer.writeInt(offsetCount);
+        for (int i = 0; i < offsetCount; i++) {
+            buffer.writeInt(offsetBones[i]);
+            for (int j = i * COMPONENTS * COEFFICIENTS, end = j + COMPONENTS * COEFFICIENTS; j < end; j++) {
+                buffer.writeFloat(coefficients[j]);
+            }
+        }
+        lastSample.writeSnapshot(buffer);
+        previousSample.writeSnapshot(buffer);
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        decay = InertializationDecay.values()[buffer.readInt()];
+        duration = buffer.readFloat();
+        offsetCount = 0;
+        for (int count = buffer.readInt(); count > 0; count--) {
+            int slot = reserveOffset(buffer.readInt());
+            for (int j = slot * COMPONENTS * COEFFICIENTS, end = j + COMPONENTS * COEFFICIENTS; j < end; j++) {
+                coefficients[j] = buffer.readFloat();
+            }
+        }
+        lastSample.readSnapshot(buffer);
+        previousSample.readSnapshot(buffer);
+    }
+
+    /**
+     * Computes the rotation offset {@code log(q * targetInverse)} along the shortest path.
+     */
+    private void logOffset(Quaternionf rotation, Vector3f dest) {
+        rotation.mul(targetInverse);
+        if (rotation.w < 0) {
+            rotation.set(-rotation.x, -rotation.y, -rotation.z, -rotation.w);
+        }
+        MathUtil.logUnit(rotation, dest);
+    }
+
+    private int reserveOffset(int bone) {
+        if (offsetCount == offsetBones.length) {
+            int capacity = Math.max(16, offsetCount * 2);
+            offsetBones = Arrays.copyOf(offsetBones, capacity);
+            coefficients = Arrays.copyOf(coefficients, capacity * COMPONENTS * COEFFICIENTS);
+        }
+        offsetBones[offsetCount] = bone;
+        return offsetCount++;
+    }
+
+    /**
+     * Stores the decay coefficients of the offsets in {@link #componentOffsets} and {@link #componentVelocities}.
+     */
+    private void addOffset(int bone) {
+        int slot = reserveOffset(bone);
+        for (int c = 0; c < COMPONENTS; c++) {
+            int offset = (slot * COMPONENTS + c) * COEFFICIENTS;
+            float x0 = componentOffsets[c];
+            float v0 = componentVelocities[c];
+            if (decay == InertializationDecay.CRITICALLY_DAMPED) {
+                // x(t) = (x0 + (v0 + w * x0) * t) * e^(-w * t)
+                float omega = SPRING_STIFFNESS / duration;
+                coefficients[offset] = x0;
+                coefficients[offset + 1] = v0 + omega * x0;
+                coefficients[offset + 2] = omega;
+                continue;
+            }
+            if (Math.abs(x0) < EPSILON) {
+                Arrays.fill(coefficients, offset, offset + COEFFICIENTS, 0);
+                continue;
+            }
+            // Solved for a positive offset, then mirrored.
+            float sign = Math.signum(x0);
+            float x = x0 * sign;
+            float v = v0 * sign;
+            if (v > 0) {
+                // Moving away from the target would overshoot, so start at rest.
+                v = 0;
+            }
+            float t1 = duration;
+            if (v < 0) {
+                // Moving fast toward the target: finish earlier, when the current speed gets there.
+                t1 = Math.min(t1, -5 * x / v);
+            }
+            float t12 = t1 * t1;
+            float a = Math.max(0, (-8 * v * t1 - 20 * x) / t12);
+            coefficients[offset] = sign * -(a * t12 + 6 * v * t1 + 12 * x) / (2 * t12 * t12 * t1);
+            coefficients[offset + 1] = sign * (3 * a * t12 + 16 * v * t1 + 30 * x) / (2 * t12 * t12);
+            coefficients[offset + 2] = sign * -(3 * a * t12 + 12 * v * t1 + 20 * x) / (2 * t12 * t1);
+            coefficients[offset + 3] = sign * a * 0.5f;
+            coefficients[offset + 4] = sign * v;
+            coefficients[offset + 5] = x0;
+            coefficients[offset + 6] = t1;
+        }
+    }
+
+    /**
+     * Evaluates one offset component at a time since the transition began.
+     */
+    private float evaluate(int component, float time) {
+        int offset = component * COEFFICIENTS;
+        float[] c = coefficients;
+        if (decay == InertializationDecay.CRITICALLY_DAMPED) {
+            return (c[offset] + c[offset + 1] * time) * (float) Math.exp(-c[offset + 2] * time);
+        }
+        if (time >= c[offset + 6]) {
+            return 0;
+        }
+        return ((((c[offset] * time + c[offset + 1]) * time + c[offset + 2]) * time + c[offset + 3]) * time
+                + c[offset + 4]) * time + c[offset + 5];
+    }
+
+    /**
+     * Dense copy of a recorded pose.
+     */
+    private static final class Sample {
+        boolean valid;
+        long timeNanos;
+        int size;
+        int[] bones = new int[0];
+        float[] data = new float[0];
+
+        void set(Pose pose, long timeNanos) {
+            this.timeNanos = timeNanos;
+            this.size = 0;
+            this.valid = true;
+            for (BoneTransform transform : pose.getBoneTransforms()) {
+                int offset = reserve(transform.boneIndex());
+                Vector3fc translation = transform.translation();
+                Quaternionfc rotation = transform.rotation().asQuaternion();
+                Vector3fc scale = transform.scale();
+                data[offset] = translation.x();
+                data[offset + 1] = translation.y();
+                data[offset + 2] = translation.z();
+                data[offset + 3] = rotation.x();
+                data[offset + 4] = rotation.y();
+                data[offset + 5] = rotation.z();
+                data[offset + 6] = rotation.w();
+                data[offset + 7] = scale.x();
+                data[offset + 8] = scale.y();
+                data[offset + 9] = scale.z();
+            }
+        }
+
+        void copyFrom(Sample other) {
+            this.valid = other.valid;
+            this.timeNanos = other.timeNanos;
+            this.size = 0;
+            for (int i = 0; i < other.size; i++) {
+                int offset = reserve(other.bones[i]);
+                System.arraycopy(other.data, i * SAMPLE_STRIDE, data, offset, SAMPLE_STRIDE);
+            }
+        }
+
+        private int reserve(int bone) {
+            if (size == bones.length) {
+                int capacity = Math.max(16, size * 2);
+                bones = Arrays.copyOf(bones, capacity);
+                data = Arrays.copyOf(data, capacity * SAMPLE_STRIDE);
+            }
+            bones[size] = bone;
+            return size++ * SAMPLE_STRIDE;
+        }
+
+        void writeSnapshot(SnapshotBuffer buffer) {
+            buffer.writeBoolean(valid);
+            buffer.writeLong(timeNanos);
+            buffer.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                buffer.writeInt(bones[i]);
+                for (int j = i * SAMPLE_STRIDE, end = j + SAMPLE_STRIDE; j < end; j++) {
+                    buffer.writeFloat(data[j]);
+                }
+            }
+        }
+
+        void readSnapshot(SnapshotBuffer buffer) {
+            valid = buffer.readBoolean();
+            timeNanos = buffer.readLong();
+            size = 0;
+            for (int count = buffer.readInt(); count > 0; count--) {
+                int offset = reserve(buffer.readInt());
+                for (int j = offset, end = offset + SAMPLE_STRIDE; j < end; j++) {
+                    data[j] = buffer.readFloat();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Store of named animation parameters which tracks when each parameter last changed.
+ *
+ * <p>Parameters are registered once by name and then accessed by their integer ID. Every change of a
+ * value gets a stamp from a counter shared by all parameters of the blackboard, so that consumers can tell
+ * whether anything they depend on changed since they last looked with a few integer comparisons. Setting
+ * a parameter to its current value is not a change.</p>
+ *
+ * <p>State machines use these stamps to skip transitions whose inputs did not change, see
+ * {@link IParameterDrivenTransition} and {@link AnimationStateMachine#setParameterBlackboard(ParameterBlackboard)}.
+ * Other consumers can register a {@link Listener} to be told about every change.</p>
+ *
+ * <p>A snapshot of the blackboard holds the values and change stamps of all parameters, object values by
+ * reference. Restoring it does not notify listeners. Parameters must not be registered in between.</p>
+ *
+ * <p>A blackboard is typically part of the state machine context. It is not thread-safe; set parameters
+ * from other threads through {@link com.maydaymemory.mae.control.command.AnimationCommandQueue#run(Runnable)}.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class ParameterBlackboard implements Snapshotable {
+    /** Stamp of parameters which never changed */
+    public static final long NEVER_CHANGED = 0;
+
+    private final Object2IntOpenHashMap<String> ids = new Object2IntOpenHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private float[] floats = new float[8];
+    private int[] ints = new int[8];
+    private Object[] objects = new Object[8];
+
+    /** Stamp of the last change of each parameter */
+    private long[] stamps = new long[8];
+
+    /** Stamp of the latest change of any parameter */
+    private long changeCount = NEVER_CHANGED;
+
+    /**
+     * Construct an empty blackboard.
+     */
+    public ParameterBlackboard() {
+        ids.defaultReturnValue(-1);
+    }
+
+    /**
+     * Register a parameter, or get its ID if it is already registered.
+     *
+     * @param name Parameter name
+     * @return Parameter ID
+     */
+    public int register(String name) {
+        int id = ids.getInt(name);
+        if (id >= 0) {
+            return id;
+        }
+        id = names.size();
+        if (id == stamps.length) {
+            int capacity = id * 2;
+            floats = Arrays.copyOf(floats, capacity);
+            ints = Arrays.copyOf(ints, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+        }
+        names.add(name);
+        ids.put(name, id);
+        return id;
+    }
+
+    /**
+     * Get the ID of a registered parameter.
+     *
+     * @param name Parameter name
+     * @return Parameter ID, or -1 if not registered
+     */
+    public int getId(String name) {
+        return ids.getInt(name);
+    }
+
+    /**
+     * Get the name of a parameter.
+     *
+     * @param id Parameter ID
+     * @return Parameter name
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Get the number of registered parameters.
+     *
+     * @return Number of parameters
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Get the float value of a parameter.
+     *
+     * @param id Parameter ID
+     * @return Float value, 0 if never set
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public float getFloat(int id) {
+        checkId(id);
+        return floats[id];
+    }
+
+    /**
+     * Set the float value of a parameter. The parameter changes unless the value is bitwise equal to the current one.
+     *
+     * @param id Parameter ID
+     * @param value Float value
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public void setFloat(int id, float value) {
+        checkId(id);
+        if (Float.floatToIntBits(floats[id]) != Float.floatToIntBits(value)) {
+            floats[id] = value;
+            changed(id);
+        }
+    }
+
+    /**
+     * Get the int value of a parameter.
+     *
+     * @param id Parameter ID
+     * @return Int value, 0 if never set
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public int getInt(int id) {
+        checkId(id);
+        return ints[id];
+    }
+
+    /**
+     * Set the int value of a parameter. The parameter changes unless the value equals the current one.
+     *
+     * @param id Parameter ID
+     * @param value Int value
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public void setInt(int id, int value) {
+        checkId(id);
+        if (ints[id] != value) {
+            ints[id] = value;
+            changed(id);
+        }
+    }
+
+    /**
+     * Get the boolean value of a parameter, stored as its int value.
+     *
+     * @param id Parameter ID
+     * @return Returns true if the int value is not 0
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public boolean getBoolean(int id) {
+        return getInt(id) != 0;
+    }
+
+    /**
+     * Set the boolean value of a parameter, stored as its int value 1 or 0.
+     *
+     * @param id Parameter ID
+     * @param value Boolean value
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public void setBoolean(int id, boolean value) {
+        setInt(id, value ? 1 : 0);
+    }
+
+    /**
+     * Get the object value of a parameter.
+     *
+     * @param id Parameter ID
+     * @param <E> Expected value type, not checked
+     * @return Object value, null if never set
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <E> E getObject(int id) {
+        checkId(id);
+        return (E) objects[id];
+    }
+
+    /**
+     * Set the object value of a parameter. The parameter changes unless the value equals the current one
+     * according to {@link Object#equals(Object)}.
+     *
+     * @param id Parameter ID
+     * @param value Object value, can be null
+     * @throws IllegalArgumentException if the parameter is not registered
+     */
+    public void setObject(int id, @Nullable Object value) {
+        checkId(id);
+        if (!Objects.equals(objects[id], value)) {
+            objects[id] = value;
+            changed(id);
+        }
+    }
+
+    /**
+     * Get the stamp of the last change of a parameter.
+     *
+     * @param id Parameter ID
+     * @return Change stamp, or {@link #NEVER_CHANGED}
+     */
+    public long getStamp(int id) {
+        checkId(id);
+        return stamps[id];
+    }
+
+    /**
+     * Get the stamp of the latest change of any parameter.
+     *
+     * @return Change stamp, or {@link #NEVER_CHANGED}
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Check whether any of the given parameters changed after the given stamp.
+     *
+     * @param ids Parameter IDs
+     * @param sinceStamp Stamp to compare with, e.g. {@link #getChangeCount()} at the time of the last check
+     * @return Returns true if at least one parameter changed after the stamp
+     */
+    public boolean changedSince(int[] ids, long sinceStamp) {
+        if (sinceStamp >= changeCount) {
+            // Nothing at all changed since then.
+            return false;
+        }
+        for (int id : ids) {
+            if (getStamp(id) > sinceStamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Register a listener told about every change.
+     *
+     * @param listener Change listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a change listener.
+     *
+     * @param listener Change listener
+     * @return Returns true if the listener was registered
+     */
+    public boolean removeListener(Listener listener) {
+        return listeners.remove(listener);
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        int size = names.size();
+        buffer.writeInt(size);
+        buffer.writeLong(changeCount);
+        for (int id = 0; id < size; id++) {
+            buffer.writeFloat(floats[id]);
+            buffer.writeInt(ints[id]);
+            buffer.writeReference(objects[id]);
+            buffer.writeLong(stamps[id]);
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        int size = buffer.readInt();
+        if (size != names.size()) {
+            throw new IllegalStateException("Snapshot has " + size + " parameters, blackboard has " + names.size());
+        }
+        changeCount = buffer.readLong();
+        for (int id = 0; id < size; id++) {
+            floats[id] = buffer.readFloat();
+            ints[id] = buffer.readInt();
+            objects[id] = buffer.readReference();
+            stamps[id] = buffer.readLong();
+        }
+    }
+
+    private void changed(int id) {
+        stamps[id] = ++changeCount;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onParameterChanged(this, id);
+        }
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= names.size()) {
+            throw new IllegalArgumentException("Unknown parameter ID: " + id);
+        }
+    }
+
+    /**
+     * Listener of parameter changes.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called after a parameter changed.
+         *
+         * @param blackboard Blackboard holding the parameter
+         * @param id Parameter ID
+         */
+        void onParameterChanged(ParameterBlackboard blackboard, int id);
+    }
+}
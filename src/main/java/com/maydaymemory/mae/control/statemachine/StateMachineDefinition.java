@@ -0,0 +1,241 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.control.blend.IBlendCurve;
+import com.maydaymemory.mae.util.LongSupplier;
+import com.maydaymemory.mae.util.MathUtil;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable, shareable compiled form of a state machine design.
+ *
+ * <p>The states and transitions of an {@link AnimationStateMachine} are usually the same for every
+ * character using the same design. A definition compiles them once into flat arrays: every state and
+ * every transition gets a dense index, and the target state, duration, blend curve and parameter
+ * dependencies of each transition are resolved up front. Any number of {@link StateMachineInstance}s
+ * can then run on one definition, each holding only a few indices, a start time and a cached pose.</p>
+ *
+ * <p>Sharing a definition requires that its states and transitions keep their per-character data in
+ * the context rather than in fields, as recommended by {@link IAnimationTransition}. The transitions
+ * of each state, their durations, curves and dependencies are read once at compile time; later changes
+ * to them are not observed.</p>
+ *
+ * @param <T> the type of context used by the states and transitions
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public final class StateMachineDefinition<T> {
+    /** States, by index */
+    private final IAnimationState<T>[] states;
+
+    /** Index of each state */
+    private final Reference2IntOpenHashMap<IAnimationState<T>> stateIndexMap;
+
+    /** Transitions of state i are {@code [transitionOffsets[i], transitionOffsets[i + 1])} */
+    private final int[] transitionOffsets;
+
+    /** Transitions, grouped by source state in their original order */
+    private final IAnimationTransition<T>[] transitions;
+
+    /** Target state index of each transition */
+    private final int[] targetStates;
+
+    /** Duration of each transition in nanoseconds, 0 for instant transitions */
+    private final long[] durations;
+
+    /** Blend curve of each transition */
+    private final IBlendCurve[] curves;
+
+    /** Blackboard parameters of each parameter-driven transition, or null for polled transitions */
+    private final int[][] dependencies;
+
+    @SuppressWarnings("unchecked")
+    private StateMachineDefinition(List<IAnimationState<T>> states,
+                                   Reference2IntOpenHashMap<IAnimationState<T>> stateIndexMap,
+                                   int[] transitionOffsets, List<IAnimationTransition<T>> transitions) {
+        this.states = (IAnimationState<T>[]) states.toArray(new IAnimationState<?>[0]);
+        this.stateIndexMap = stateIndexMap;
+        this.transitionOffsets = transitionOffsets;
+        this.transitions = (IAnimationTransition<T>[]) transitions.toArray(new IAnimationTransition<?>[0]);
+        int size = transitions.size();
+        this.targetStates = new int[size];
+        this.durations = new long[size];
+        this.curves = new IBlendCurve[size];
+        this.dependencies = new int[size][];
+        for (int i = 0; i < size; i++) {
+            IAnimationTransition<T> transition = transitions.get(i);
+            targetStates[i] = stateIndexMap.getInt(transition.targetState());
+            float duration = transition.duration();
+            // Same rule as TransitionControlBlock: non-positive durations switch instantly.
+            durations[i] = duration <= 0 ? 0 : Math.max(1, MathUtil.toNanos(duration));
+            curves[i] = transition.curve();
+            if (transition instanceof IParameterDrivenTransition) {
+                dependencies[i] = ((IParameterDrivenTransition<T>) transition).dependencies().clone();
+            }
+        }
+    }
+
+    /**
+     * Compile the states reachable from an initial state through their transitions.
+     *
+     * @param initialState Initial state, gets index 0
+     * @param <T> Context type
+     * @return Compiled definition
+     */
+    public static <T> StateMachineDefinition<T> compile(IAnimationState<T> initialState) {
+        if (initialState == null) {
+            throw new IllegalArgumentException("Initial state cannot be null");
+        }
+        List<IAnimationState<T>> states = new ArrayList<>();
+        Reference2IntOpenHashMap<IAnimationState<T>> stateIndexMap = new Reference2IntOpenHashMap<>();
+        stateIndexMap.defaultReturnValue(-1);
+        List<IAnimationTransition<T>> transitions = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        states.add(initialState);
+        stateIndexMap.put(initialState, 0);
+        // Breadth-first, so that states are numbered in the order they are discovered.
+        for (int i = 0; i < states.size(); i++) {
+            offsets.add(transitions.size());
+            for (IAnimationTransition<T> transition : states.get(i).transitions()) {
+                IAnimationState<T> target = transition.targetState();
+                if (target == null) {
+                    throw new IllegalArgumentException("Transition without target state: " + transition);
+                }
+                if (stateIndexMap.getInt(target) < 0) {
+                    stateIndexMap.put(target, states.size());
+                    states.add(target);
+                }
+                transitions.add(transition);
+            }
+        }
+        offsets.add(transitions.size());
+        int[] transitionOffsets = new int[offsets.size()];
+        for (int i = 0; i < transitionOffsets.length; i++) {
+            transitionOffsets[i] = offsets.get(i);
+        }
+        return new StateMachineDefinition<>(states, stateIndexMap, transitionOffsets, transitions);
+    }
+
+    /**
+     * Create a runtime instance of this definition, starting in the initial state.
+     *
+     * @param context Context of the instance
+     * @param currentNanosSupplier Supplier for current time in nanoseconds
+     * @return New instance
+     */
+    public StateMachineInstance<T> instantiate(T context, LongSupplier currentNanosSupplier) {
+        return new StateMachineInstance<>(this, context, currentNanosSupplier);
+    }
+
+    /**
+     * Get the number of states.
+     *
+     * @return Number of states
+     */
+    public int getStateCount() {
+        return states.length;
+    }
+
+    /**
+     * Get a state by index. The initial state has index 0.
+     *
+     * @param stateIndex State index
+     * @return State
+     */
+    public IAnimationState<T> getState(int stateIndex) {
+        return states[stateIndex];
+    }
+
+    /**
+     * Get the index of a state.
+     *
+     * @param state State
+     * @return State index, or -1 if the state is not part of this definition
+     */
+    public int indexOf(@Nullable IAnimationState<T> state) {
+        return stateIndexMap.getInt(state);
+    }
+
+    /**
+     * Get the number of transitions of all states.
+     *
+     * @return Number of transitions
+     */
+    public int getTransitionCount() {
+        return transitions.length;
+    }
+
+    /**
+     * Get the index of the first transition of a state.
+     *
+     * @param stateIndex State index
+     * @return Transition index
+     */
+    public int getFirstTransition(int stateIndex) {
+        return transitionOffsets[stateIndex];
+    }
+
+    /**
+     * Get the index after the last transition of a state.
+     *
+     * @param stateIndex State index
+     * @return Transition index (exclusive)
+     */
+    public int getTransitionEnd(int stateIndex) {
+        return transitionOffsets[stateIndex + 1];
+    }
+
+    /**
+     * Get a transition by index.
+     *
+     * @param transitionIndex Transition index
+     * @return Transition
+     */
+    public IAnimationTransition<T> getTransition(int transitionIndex) {
+        return transitions[transitionIndex];
+    }
+
+    /**
+     * Get the target state index of a transition.
+     *
+     * @param transitionIndex Transition index
+     * @return Target state index
+     */
+    public int getTargetState(int transitionIndex) {
+        return targetStates[transitionIndex];
+    }
+
+    /**
+     * Get the duration of a transition.
+     *
+     * @param transitionIndex Transition index
+     * @return Duration in nanoseconds, 0 if the transition switches instantly
+     */
+    public long getDuration(int transitionIndex) {
+        return durations[transitionIndex];
+    }
+
+    /**
+     * Get the blend curve of a transition.
+     *
+     * @param transitionIndex Transition index
+     * @return Blend curve
+     */
+    public IBlendCurve getCurve(int transitionIndex) {
+        return curves[transitionIndex];
+    }
+
+    /**
+     * Get the blackboard parameters a transition depends on.
+     *
+     * @param transitionIndex Transition index
+     * @return Parameter IDs, or null if the transition is not parameter-driven. Must not be modified
+     */
+    @Nullable
+    public int[] getDependencies(int transitionIndex) {
+        return dependencies[transitionIndex];
+    }
+}
@@ -0,0 +1,493 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.DensePoseView;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.control.NotifyPolicy;
+import com.maydaymemory.mae.control.OutputPort;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Snapshotable;
+import com.maydaymemory.mae.control.Tickable;
+import com.maydaymemory.mae.util.LongSupplier;
+import org.joml.Math;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Lightweight runtime of a shared {@link StateMachineDefinition}.
+ *
+ * <p>An instance behaves like an {@link AnimationStateMachine} built from the same states, but
+ * refers to states and transitions by their index in the definition. Its whole runtime state is the
+ * current state index, the running transition and its source state index, the transition start time
+ * and the pose cached when the transition started. No controller or control block is allocated when
+ * a transition starts, so instances are cheap to create and to keep around in large numbers.</p>
+ *
+ * <p>Headless mode, parameter blackboards and inertialization work as for {@link AnimationStateMachine}, see
+ * {@link #setHeadless(boolean)}, {@link #setParameterBlackboard(ParameterBlackboard)} and
+ * {@link #setInertializer(Inertializer)}.</p>
+ *
+ * <p>A snapshot of an instance is a few indices, the transition start time and a reference to the
+ * cached pose. The context is not part of it.</p>
+ *
+ * <p>The cached pose is kept by reference, both during the transition and in snapshots, so poses evaluated
+ * by states and transitions must not change afterwards. The library's one pose type which does change,
+ * {@link DensePoseView}, is copied when it is cached.</p>
+ *
+ * @param <T> the type of context used by the states and transitions. If it is {@link Tickable},
+ *           the instance will also automatically tick it when itself is ticked.
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class StateMachineInstance<T> implements Tickable, Snapshotable {
+    /** Shared definition */
+    private final StateMachineDefinition<T> definition;
+
+    /** The context used by states and transitions */
+    private final T context;
+
+    /** Supplier for current time in nanoseconds */
+    private final LongSupplier currentNanosSupplier;
+
+    /** Output port for pose evaluation */
+    private final OutputPort<Pose> outputPort = this::getPose;
+
+    /** Index of the current active state, or -1 if a transition is in progress */
+    private int state;
+
+    /** Index of the running transition, or -1 if no transition is active */
+    private int transition = -1;
+
+    /** Index of the state the running transition comes from */
+    private int fromState = -1;
+
+    /** Start time of the running transition in nanoseconds */
+    private long transitionStartNanos;
+
+    /** The pose cached from the source of the running transition, never changed afterwards */
+    @Nullable
+    private Pose cachedPose;
+
+    /** Whether pose evaluation is skipped entirely */
+    private boolean headless = false;
+
+    /** Blackboard whose change stamps drive parameter-driven transitions, or null to poll every transition */
+    @Nullable
+    private ParameterBlackboard parameterBlackboard;
+
+    /** Blackboard change count at the last evaluation by transition index, -1 if never evaluated */
+    @Nullable
+    private long[] evaluatedStamps;
+
+    /** Result of the last evaluation, by transition index */
+    @Nullable
+    private boolean[] cachedResults;
+
+    /** Inertializer of inertialized transitions, or null to crossfade every transition */
+    @Nullable
+    private Inertializer inertializer;
+
+    /** Whether the running transition is inertialized */
+    private boolean inertialized;
+
+    /**
+     * Constructs a new instance of a definition, starting in its initial state.
+     *
+     * @param definition the shared definition
+     * @param context the context to be used by states and transitions
+     * @param currentNanosSupplier supplier for current time in nanoseconds
+     */
+    public StateMachineInstance(StateMachineDefinition<T> definition, T context, LongSupplier currentNanosSupplier) {
+        this.definition = definition;
+        this.context = context;
+        this.currentNanosSupplier = currentNanosSupplier;
+        this.state = 0;
+    }
+
+    @Override
+    public void tick() {
+        if (context instanceof Tickable) {
+            ((Tickable) context).tick();
+        }
+        update();
+    }
+
+    /**
+     * Skips the given amount of time, like {@link AnimationStateMachine#seek(long, NotifyPolicy)}.
+     *
+     * @param skipNanos the time to skip in nanoseconds, cannot be negative
+     * @param policy how the skipped span is handled
+     */
+    public void seek(long skipNanos, NotifyPolicy policy) {
+        if (skipNanos < 0) {
+            throw new IllegalArgumentException("Cannot seek a state machine backwards: " + skipNanos);
+        }
+        if (transition >= 0) {
+            transitionStartNanos -= skipNanos;
+        }
+        if (policy != NotifyPolicy.SILENT) {
+            update();
+        } else if (transition >= 0 && isTransitionFinished()) {
+            finishTransition();
+        }
+    }
+
+    /**
+     * Updates the current state or transition, and triggers transitions. This is an internal method.
+     */
+    private void update() {
+        if (transition < 0) {
+            IAnimationState<T> current = definition.getState(state);
+            current.onUpdate(context);
+            int triggered = tryTransfer(state);
+            if (triggered >= 0) {
+                Pose pose = cachePose(triggered);
+                IAnimationTransition<T> triggeredTransition = definition.getTransition(triggered);
+                current.onExit(context, triggeredTransition);
+                triggeredTransition.afterTrigger(context);
+                begin(triggered, state, pose);
+            }
+            return;
+        }
+        if (isTransitionFinished()) {
+            finishTransition();
+            return;
+        }
+        int targetState = definition.getTargetState(transition);
+        int triggered = -1;
+        int triggeredFrom = -1;
+        switch (definition.getTransition(transition).transferOutStrategy()) {
+            case NONE:
+                break;
+            case ANY_STATE:
+                if ((triggered = tryTransfer(fromState)) >= 0) {
+                    triggeredFrom = fromState;
+                } else if ((triggered = tryTransfer(targetState)) >= 0) {
+                    triggeredFrom = targetState;
+                }
+                break;
+            case FROM_STATE:
+                triggered = tryTransfer(fromState);
+                triggeredFrom = fromState;
+                break;
+            case TO_STATE:
+                triggered = tryTransfer(targetState);
+                triggeredFrom = targetState;
+                break;
+        }
+        if (triggered >= 0) {
+            Pose pose = cachePose(triggered);
+            definition.getTransition(triggered).afterTrigger(context);
+            begin(triggered, triggeredFrom, pose);
+        }
+    }
+
+    /**
+     * Finds the first transition of a state which can be triggered. This is an internal method.
+     *
+     * @return the transition index, or -1 if none can be triggered
+     */
+    private int tryTransfer(int stateIndex) {
+        int end = definition.getTransitionEnd(stateIndex);
+        for (int i = definition.getFirstTransition(stateIndex); i < end; i++) {
+            if (canTrigger(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Evaluates the condition of a transition, or reuses its previous result if it is parameter-driven
+     * and none of its parameters changed since. This is an internal method.
+     */
+    private boolean canTrigger(int transitionIndex) {
+        IAnimationTransition<T> candidate = definition.getTransition(transitionIndex);
+        int[] dependencies = definition.getDependencies(transitionIndex);
+        ParameterBlackboard blackboard = parameterBlackboard;
+        if (blackboard == null || dependencies == null) {
+            return candidate.canTrigger(context);
+        }
+        if (!blackboard.changedSince(dependencies, evaluatedStamps[transitionIndex])) {
+            return cachedResults[transitionIndex];
+        }
+        // Stamp before evaluating, so that changes made by the condition itself are seen next time.
+        evaluatedStamps[transitionIndex] = blackboard.getChangeCount();
+        boolean result = candidate.canTrigger(context);
+        cachedResults[transitionIndex] = result;
+        return result;
+    }
+
+    /**
+     * Captures the pose to blend from before a triggered transition starts. This is an internal method.
+     */
+    private Pose cachePose(int triggered) {
+        if (headless || definition.getDuration(triggered) == 0) {
+            return DummyPose.INSTANCE;
+        }
+        Pose pose = getPose();
+        // A view changes with its source, so it is copied to stay valid until the transition ends.
+        return pose instanceof DensePoseView ? ((DensePoseView) pose).copy() : pose;
+    }
+
+    private void begin(int triggered, int from, Pose pose) {
+        if (definition.getDuration(triggered) == 0) {
+            // This special case handles the situation where the transition duration is 0.
+            int targetState = definition.getTargetState(triggered);
+            definition.getState(targetState).onEnter(context, definition.getState(from));
+            this.state = targetState;
+            this.transition = -1;
+            this.fromState = -1;
+            this.cachedPose = null;
+            this.inertialized = false;
+            return;
+        }
+        this.state = -1;
+        this.transition = triggered;
+        this.fromState = from;
+        this.cachedPose = pose;
+        this.transitionStartNanos = currentNanosSupplier.getAsLong();
+        IAnimationTransition<T> started = definition.getTransition(triggered);
+        this.inertialized = !headless && inertializer != null && started instanceof IInertializedTransition;
+        if (inertialized) {
+            Pose targetPose = definition.getState(definition.getTargetState(triggered)).evaluatePose(context);
+            inertializer.begin(pose, targetPose, definition.getDuration(triggered),
+                    ((IInertializedTransition<T>) started).decay(), transitionStartNanos);
+        }
+    }
+
+    private void finishTransition() {
+        int targetState = definition.getTargetState(transition);
+        definition.getState(targetState).onEnter(context, definition.getState(fromState));
+        this.state = targetState;
+        this.transition = -1;
+        this.fromState = -1;
+        this.cachedPose = null;
+        this.inertialized = false;
+    }
+
+    private boolean isTransitionFinished() {
+        return currentNanosSupplier.getAsLong() - transitionStartNanos >= definition.getDuration(transition);
+    }
+
+    /**
+     * Gets the progress of the running transition, after applying its blend curve.
+     *
+     * @return the transition progress, or 0 if no transition is active
+     */
+    public float getTransitionProgress() {
+        if (transition < 0) {
+            return 0f;
+        }
+        long elapsed = currentNanosSupplier.getAsLong() - transitionStartNanos;
+        float alpha = (float) ((double) elapsed / (double) definition.getDuration(transition));
+        return definition.getCurve(transition).evaluate(Math.clamp(0, 1, alpha));
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotBuffer buffer) {
+        buffer.writeInt(state);
+        buffer.writeInt(transition);
+        if (transition >= 0) {
+            buffer.writeInt(fromState);
+            buffer.writeLong(transitionStartNanos);
+            buffer.writeReference(cachedPose);
+            buffer.writeBoolean(inertialized);
+        }
+        if (inertializer != null) {
+            inertializer.writeSnapshot(buffer);
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotBuffer buffer) {
+        state = buffer.readInt();
+        transition = buffer.readInt();
+        if (transition >= 0) {
+            fromState = buffer.readInt();
+            transitionStartNanos = buffer.readLong();
+            cachedPose = buffer.readReference();
+            inertialized = buffer.readBoolean();
+        } else {
+            fromState = -1;
+            cachedPose = null;
+            inertialized = false;
+        }
+        if (inertializer != null) {
+            inertializer.readSnapshot(buffer);
+        }
+        // Blackboard stamps may have been restored too, so cached results cannot be trusted anymore.
+        invalidateTransitionCache();
+    }
+
+    /**
+     * Checks whether this instance is in headless mode.
+     *
+     * @return true if pose evaluation is skipped
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Enables or disables headless mode, see {@link AnimationStateMachine#setHeadless(boolean)}.
+     *
+     * @param headless true to skip all pose evaluation
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Gets the blackboard driving parameter-driven transitions.
+     *
+     * @return the blackboard, or null if every transition is polled
+     */
+    public @Nullable ParameterBlackboard getParameterBlackboard() {
+        return parameterBlackboard;
+    }
+
+    /**
+     * Sets the blackboard driving parameter-driven transitions, see
+     * {@link AnimationStateMachine#setParameterBlackboard(ParameterBlackboard)}.
+     *
+     * @param parameterBlackboard the blackboard, or null to evaluate every transition on every tick
+     */
+    public void setParameterBlackboard(@Nullable ParameterBlackboard parameterBlackboard) {
+        if (this.parameterBlackboard == parameterBlackboard) {
+            return;
+        }
+        this.parameterBlackboard = parameterBlackboard;
+        if (parameterBlackboard == null) {
+            evaluatedStamps = null;
+            cachedResults = null;
+        } else {
+            // Allocated only for instances which use a blackboard.
+            evaluatedStamps = new long[definition.getTransitionCount()];
+            cachedResults = new boolean[definition.getTransitionCount()];
+            invalidateTransitionCache();
+        }
+    }
+
+    /**
+     * Forgets the cached results of parameter-driven transitions, so that each of them is evaluated
+     * again the next time its state is checked.
+     */
+    public void invalidateTransitionCache() {
+        if (evaluatedStamps != null) {
+            Arrays.fill(evaluatedStamps, -1);
+        }
+    }
+
+    /**
+     * Gets the inertializer of inertialized transitions.
+     *
+     * @return the inertializer, or null if every transition crossfades
+     */
+    public @Nullable Inertializer getInertializer() {
+        return inertializer;
+    }
+
+    /**
+     * Sets the inertializer of {@link IInertializedTransition}s, see
+     * {@link AnimationStateMachine#setInertializer(Inertializer)}.
+     *
+     * @param inertializer the inertializer, owned by this instance only, or null
+     */
+    public void setInertializer(@Nullable Inertializer inertializer) {
+        if (this.inertializer != inertializer) {
+            this.inertializer = inertializer;
+            this.inertialized = false;
+        }
+    }
+
+    /**
+     * Gets the shared definition.
+     *
+     * @return the definition
+     */
+    public StateMachineDefinition<T> getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Gets the index of the current active state.
+     *
+     * @return the state index, or -1 if a transition is in progress
+     */
+    public int getCurrentStateIndex() {
+        return state;
+    }
+
+    /**
+     * Gets the current active state.
+     *
+     * @return the current state, or null if a transition is in progress
+     */
+    public @Nullable IAnimationState<T> getCurrentState() {
+        return state < 0 ? null : definition.getState(state);
+    }
+
+    /**
+     * Gets the index of the running transition.
+     *
+     * @return the transition index, or -1 if no transition is active
+     */
+    public int getCurrentTransitionIndex() {
+        return transition;
+    }
+
+    /**
+     * Gets the index of the state the running transition comes from.
+     *
+     * @return the state index, or -1 if no transition is active
+     */
+    public int getFromStateIndex() {
+        return fromState;
+    }
+
+    /**
+     * Evaluates the current pose, like {@link AnimationStateMachine#getPose()}.
+     *
+     * @return the evaluated pose, or {@link DummyPose#INSTANCE} in headless mode
+     */
+    public Pose getPose() {
+        if (headless) {
+            return DummyPose.INSTANCE;
+        }
+        Pose pose;
+        if (transition < 0) {
+            pose = definition.getState(state).evaluatePose(context);
+        } else {
+            Pose toPose = definition.getState(definition.getTargetState(transition)).evaluatePose(context);
+            if (inertialized) {
+                pose = inertializer.apply(toPose, currentNanosSupplier.getAsLong() - transitionStartNanos);
+            } else {
+                IAnimationTransition<T> running = definition.getTransition(transition);
+                pose = running.getInterpolatedPose(context, cachedPose, toPose, getTransitionProgress());
+            }
+        }
+        if (inertializer != null) {
+            inertializer.record(pose, currentNanosSupplier.getAsLong());
+        }
+        return pose;
+    }
+
+    /**
+     * Gets the output port for pose evaluation.
+     *
+     * @return the output port that provides evaluated poses
+     */
+    public OutputPort<Pose> getOutputPort() {
+        return outputPort;
+    }
+
+    /**
+     * Gets context instance combined with this state machine instance.
+     *
+     * @return the context
+     */
+    public T getContext() {
+        return context;
+    }
+}
@@ -49,7 +49,9 @@ public class TransitionControlBlock<T> {
             // Duration less than 0 is meaningless, thus treated as equal to 0.
             this.controller = null;
         } else {
-            this.controller = new TransitionController(currentNanosSupplier, MathUtil.toNanos(transition.duration()), transition.curve());
+            // Durations too short to be represented in nanoseconds still take 1 nanosecond, like in StateMachineDefinition.
+            this.controller = new TransitionController(currentNanosSupplier,
+                    Math.max(1, MathUtil.toNanos(transition.duration())), transition.curve());
         }
         this.cachedPose = cachedPose;
     }
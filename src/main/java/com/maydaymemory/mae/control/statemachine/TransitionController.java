@@ -54,6 +54,23 @@ public class TransitionController {
         this.isStarted = true;
     }
 
+    /**
+     * Advances the transition as if the given amount of time had already elapsed.
+     *
+     * <p>Used when seeking, so that a transition in progress ends up where it would be after
+     * the skipped time. Has no effect if the transition has not started.</p>
+     *
+     * @param nanos the time to skip in nanoseconds, cannot be negative
+     */
+    public void advance(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Cannot advance a transition backwards: " + nanos);
+        }
+        if (isStarted) {
+            this.startNanos -= nanos;
+        }
+    }
+
     /**
      * Gets the current progress of the transition.
      * 
@@ -87,4 +104,20 @@ public class TransitionController {
         long currentNanos = currentNanosSupplier.getAsLong();
         return (currentNanos - startNanos) >= duration;
     }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    boolean isStarted() {
+        return isStarted;
+    }
+
+    /**
+     * Restores the timing state, see {@link AnimationStateMachine#readSnapshot(com.maydaymemory.mae.control.SnapshotBuffer)}.
+     */
+    void restore(long startNanos, boolean isStarted) {
+        this.startNanos = startNanos;
+        this.isStarted = isStarted;
+    }
 }
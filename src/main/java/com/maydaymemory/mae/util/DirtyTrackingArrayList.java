@@ -6,6 +6,7 @@ import java.util.*;
 public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess{
     protected final ArrayList<T> innerList;
     private boolean dirty = false;
+    private int modificationCount = 0;
 
     public DirtyTrackingArrayList(@Nonnull ArrayList<T> initialList) {
         innerList = initialList;
@@ -26,6 +27,8 @@ public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess
     public void refresh() {
         if (dirty) {
             dirty = !this.onRefresh();
+            // Refreshing may reorder the elements.
+            modificationCount++;
         }
     }
 
@@ -39,6 +42,21 @@ public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess
         return dirty;
     }
 
+    /**
+     * Returns the number of times this list has been modified through its methods, including refreshes.
+     * Structures compiled from the list can compare it to detect that they are out of date.
+     *
+     * @return the modification count
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    private void markModified() {
+        dirty = true;
+        modificationCount++;
+    }
+
     @Override
     public int size() {
         return innerList.size();
@@ -74,14 +92,16 @@ public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess
 
     @Override
     public boolean add(T item) {
-        dirty = true;
+        markModified();
         return innerList.add(item);
     }
 
     @Override
     public boolean remove(Object o) {
         boolean removed = innerList.remove(o);
-        dirty = dirty || removed;
+        if (removed) {
+            markModified();
+        }
         return removed;
     }
 
@@ -93,28 +113,36 @@ public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess
     @Override
     public boolean addAll(@Nonnull Collection<? extends T> collection) {
         boolean added = innerList.addAll(collection);
-        dirty = dirty || added;
+        if (added) {
+            markModified();
+        }
         return added;
     }
 
     @Override
     public boolean addAll(int i, @Nonnull Collection<? extends T> collection) {
         boolean added = innerList.addAll(i, collection);
-        dirty = dirty || added;
+        if (added) {
+            markModified();
+        }
         return added;
     }
 
     @Override
     public boolean removeAll(@Nonnull Collection<?> collection) {
         boolean removed = innerList.removeAll(collection);
-        dirty = dirty || removed;
+        if (removed) {
+            markModified();
+        }
         return removed;
     }
 
     @Override
     public boolean retainAll(@Nonnull Collection<?> collection) {
         boolean retained = innerList.retainAll(collection);
-        dirty = dirty || retained;
+        if (retained) {
+            markModified();
+        }
         return retained;
     }
 
@@ -122,6 +150,7 @@ public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess
     public void clear() {
         innerList.clear();
         dirty = false;
+        modificationCount++;
     }
 
     @Override
@@ -133,20 +162,20 @@ public abstract class DirtyTrackingArrayList<T> implements List<T>, RandomAccess
     public T set(int i, T keyframe) {
         T oldOne = innerList.set(i, keyframe);
         if (!Objects.equals(oldOne, keyframe)) {
-            dirty = true;
+            markModified();
         }
         return oldOne;
     }
 
     @Override
     public void add(int i, T item) {
-        dirty = true;
+        markModified();
         innerList.add(i, item);
     }
 
     @Override
     public T remove(int i) {
-        dirty = true;
+        markModified();
         return innerList.remove(i);
     }
 
@@ -1,6 +1,7 @@
 package com.maydaymemory.mae.util;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 public class Iterables {
@@ -29,4 +30,41 @@ public class Iterables {
             }
         };
     }
+
+    /**
+     * Concatenates any number of iterables into one, iterated in the order of the list.
+     *
+     * <p>The list and the iterables are read lazily, each time the result is iterated. Unlike nested two-way
+     * concatenations, every element is returned through a single level of delegation.</p>
+     *
+     * @param iterables the iterables to concatenate
+     * @param <T> the type of elements
+     * @return an iterable over the elements of every iterable in turn
+     * @since 1.1.4
+     */
+    public static <T> Iterable<T> concat(final List<? extends Iterable<? extends T>> iterables) {
+        return () -> new Iterator<T>() {
+            int index = 0;
+            Iterator<? extends T> current = null;
+
+            @Override
+            public boolean hasNext() {
+                while (current == null || !current.hasNext()) {
+                    if (index >= iterables.size()) {
+                        return false;
+                    }
+                    current = iterables.get(index++).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (hasNext()) {
+                    return current.next();
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
 }
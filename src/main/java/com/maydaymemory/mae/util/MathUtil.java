@@ -25,26 +25,34 @@ public class MathUtil {
     }
 
     public static Vector3f logUnit(Quaternionfc q) {
+        return logUnit(q, new Vector3f());
+    }
+
+    public static Vector3f logUnit(Quaternionfc q, Vector3f dest) {
         float x = q.x();
         float y = q.y();
         float z = q.z();
         float w = q.w();
         double vLenSq = x * x + y * y + z * z;
 
-        // 避免精度误差导致 w > 1
-        double clampedW = Math.max(-1.0, Math.min(1.0, w));
-        double theta = Math.acos(clampedW); // w = cos(θ)
-
         // 如果没有旋转（theta ≈ 0）
         if (vLenSq < 1e-12) {
-            return new Vector3f(0, 0, 0);
+            return dest.set(0, 0, 0);
         }
 
-        double scale = theta / Math.sqrt(vLenSq);
-        return new Vector3f((float) (x * scale), (float) (y * scale), (float) (z * scale));
+        // w = cos(θ), |v| = sin(θ)；atan2 在 θ 很小时仍然精确，acos 会因 float 精度把 w 舍入为 1
+        double vLen = Math.sqrt(vLenSq);
+        double theta = Math.atan2(vLen, w);
+
+        double scale = theta / vLen;
+        return dest.set((float) (x * scale), (float) (y * scale), (float) (z * scale));
     }
 
     public static Quaternionf exp(Vector3fc v) {
+        return exp(v, new Quaternionf());
+    }
+
+    public static Quaternionf exp(Vector3fc v, Quaternionf dest) {
         float x = v.x();
         float y = v.y();
         float z = v.z();
@@ -53,12 +61,12 @@ public class MathUtil {
 
         if (theta < 1e-12) {
             // 没有旋转，返回单位四元数
-            return new Quaternionf(0, 0, 0, 1);
+            return dest.set(0, 0, 0, 1);
         }
 
         double sinTheta = Math.sin(theta);
         double scale = sinTheta / theta;
-        return new Quaternionf(x * scale, y * scale, z * scale, Math.cos(theta));
+        return dest.set((float) (x * scale), (float) (y * scale), (float) (z * scale), (float) Math.cos(theta));
     }
 
     private static final double a1 =  0.254829592;
@@ -1,23 +1,32 @@
 package com.maydaymemory.mae.util.triangulation;
 
-import org.joml.Vector2f;
 import org.joml.Vector2fc;
 import org.joml.Vector3f;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 /**
  * A Java implementation of an incremental 2D Delaunay triangulation algorithm.
  * <p>
- * Open source on: <a href="https://github.com/jdiemke/delaunay-triangulator">Github</a> (MIT license)
+ * Originally based on: <a href="https://github.com/jdiemke/delaunay-triangulator">Github</a> (MIT license)
+ *
+ * <p>Points are inserted into an {@link IncrementalDelaunay} in the order of a Hilbert curve, so that
+ * consecutive points are close and the walks locating them are short, which makes the whole triangulation
+ * O(n log n) in practice, dominated by the sort. The result is exactly the Delaunay triangulation of the
+ * points, convex and without triangles to remove. Duplicate points are inserted once.</p>
  *
  * @author Johannes Diemke
+ * @author MaydayMemory
  */
 public class DelaunayTriangulator<T extends SamplerPoint> {
+    /** Grid resolution of the Hilbert curve used to order insertions */
+    private static final int HILBERT_ORDER = 16;
 
     private final Collection<? extends SamplerPoint> pointSet;
     private TriangleSoup triangleSoup;
+    private TriangleLocator locator;
 
     /**
      * Constructor of the SimpleDelaunayTriangulator class used to create a new
@@ -28,211 +37,74 @@ public class DelaunayTriangulator<T extends SamplerPoint> {
     public DelaunayTriangulator(Collection<T> pointSet) {
         this.pointSet = pointSet;
         this.triangleSoup = new TriangleSoup();
+        this.locator = new TriangleLocator(triangleSoup.getTriangles());
     }
 
     /**
      * This method generates a Delaunay triangulation from the specified point
      * set.
      *
-     * @throws NotEnoughPointsException Thrown when the point set contains less than three points
+     * @throws NotEnoughPointsException Thrown when the point set contains less than three points, or all of
+     *                                  its points are collinear
      */
     public void triangulate() throws NotEnoughPointsException {
         triangleSoup = new TriangleSoup();
+        locator = new TriangleLocator(triangleSoup.getTriangles());
 
         if (pointSet == null || pointSet.size() < 3) {
             throw new NotEnoughPointsException("Less than three points in point set. total: " + (pointSet == null ? 0 : pointSet.size()));
         }
 
-        /*
-         * In order for the in circumcircle test to not consider the vertices of
-         * the super triangle we have to start out with a big triangle
-         * containing the whole point set. We have to scale the super triangle
-         * to be very large. Otherwise, the triangulation is not convex.
-         */
-        float maxOfAnyCoordinate = 0.0f;
-
-        for (SamplerPoint point : getPointSet()) {
-            maxOfAnyCoordinate = Math.max(Math.max(point.x(), point.y()), maxOfAnyCoordinate);
+        SamplerPoint[] points = pointSet.toArray(new SamplerPoint[0]);
+        IncrementalDelaunay delaunay = new IncrementalDelaunay(points.length);
+        for (int point : hilbertOrder(points)) {
+            delaunay.insert(points[point].x(), points[point].y(), point);
         }
-
-        maxOfAnyCoordinate *= 16.0f;
-
-        DummySamplerPoint p1 = new DummySamplerPoint(0.0f, 3.0f * maxOfAnyCoordinate);
-        DummySamplerPoint p2 = new DummySamplerPoint(3.0f * maxOfAnyCoordinate, 0.0f);
-        DummySamplerPoint p3 = new DummySamplerPoint(-3.0f * maxOfAnyCoordinate, -3.0f * maxOfAnyCoordinate);
-
-        Triangle superTriangle = new Triangle(p1, p2, p3);
-
-        triangleSoup.add(superTriangle);
-
-        for (SamplerPoint currentPoint : pointSet) {
-            Triangle triangle = triangleSoup.findContainingTriangle(currentPoint.position());
-
-            if (triangle == null) {
-                /*
-                 * If no containing triangle exists, then the vertex is not
-                 * inside a triangle (this can also happen due to numerical
-                 * errors) and lies on an edge. In order to find this edge we
-                 * search all edges of the triangle soup and select the one
-                 * which is nearest to the point we try to add. This edge is
-                 * removed and four new edges are added.
-                 */
-                Edge edge = triangleSoup.findNearestEdge(currentPoint.position());
-
-                Triangle first = triangleSoup.findOneTriangleSharing(edge);
-                Triangle second = triangleSoup.findNeighbour(first, edge);
-
-                SamplerPoint firstNoneEdgeVertex = first.getNoneEdgeVertex(edge);
-                SamplerPoint secondNoneEdgeVertex = second.getNoneEdgeVertex(edge);
-
-                triangleSoup.remove(first);
-                triangleSoup.remove(second);
-
-                Triangle triangle1 = new Triangle(edge.getA(), firstNoneEdgeVertex, currentPoint);
-                Triangle triangle2 = new Triangle(edge.getB(), firstNoneEdgeVertex, currentPoint);
-                Triangle triangle3 = new Triangle(edge.getA(), secondNoneEdgeVertex, currentPoint);
-                Triangle triangle4 = new Triangle(edge.getB(), secondNoneEdgeVertex, currentPoint);
-
-                triangleSoup.add(triangle1);
-                triangleSoup.add(triangle2);
-                triangleSoup.add(triangle3);
-                triangleSoup.add(triangle4);
-
-                legalizeEdge(triangle1, new Edge(edge.getA(), firstNoneEdgeVertex), currentPoint);
-                legalizeEdge(triangle2, new Edge(edge.getB(), firstNoneEdgeVertex), currentPoint);
-                legalizeEdge(triangle3, new Edge(edge.getA(), secondNoneEdgeVertex), currentPoint);
-                legalizeEdge(triangle4, new Edge(edge.getB(), secondNoneEdgeVertex), currentPoint);
-            } else {
-                /*
-                 * The vertex is inside a triangle.
-                 */
-                SamplerPoint a = triangle.getA();
-                SamplerPoint b = triangle.getB();
-                SamplerPoint c = triangle.getC();
-
-                triangleSoup.remove(triangle);
-
-                Triangle first = new Triangle(a, b, currentPoint);
-                Triangle second = new Triangle(b, c, currentPoint);
-                Triangle third = new Triangle(c, a, currentPoint);
-
-                triangleSoup.add(first);
-                triangleSoup.add(second);
-                triangleSoup.add(third);
-
-                legalizeEdge(first, new Edge(a, b), currentPoint);
-                legalizeEdge(second, new Edge(b, c), currentPoint);
-                legalizeEdge(third, new Edge(c, a), currentPoint);
-            }
+        if (!delaunay.isTriangulated()) {
+            throw new NotEnoughPointsException("All points of the point set are collinear. total: " + points.length);
         }
-
-        /*
-         * Remove all triangles that contain vertices of the super triangle.
-         */
-        triangleSoup.removeTrianglesUsing(superTriangle.getA());
-        triangleSoup.removeTrianglesUsing(superTriangle.getB());
-        triangleSoup.removeTrianglesUsing(superTriangle.getC());
-    }
-
-    public Triangle findContainingTriangle(Vector2fc point) {
-        return triangleSoup.findContainingTriangle(point);
-    }
-
-    @SuppressWarnings("unchecked")
-    public WeightCalculatingResult<T> calculateWeightsClampToEdge(Vector2fc point) {
-        Triangle bestTriangle = null;
-        Vector3f bestBarycentric = new Vector3f();
-        float bestDist = Float.POSITIVE_INFINITY;
-
-        Vector3f weights = new Vector3f();
-        // In actual use, point changes continuously most of the time.
-        // Caching the last matched triangle can avoid many full table scans.
-//        if (lastContainedTriangle != null) {
-//            lastContainedTriangle.computeBarycentricCoordinates(point, weights);
-//            if (weights.x >= 0 && weights.y >= 0 && weights.z >= 0 &&
-//                    weights.x <= 1 && weights.y <= 1 && weights.z <= 1) {
-//                return new WeightCalculatingResult<>(
-//                        (T)lastContainedTriangle.getA(), (T)lastContainedTriangle.getB(), (T)lastContainedTriangle.getC(),
-//                        weights.x, weights.y, weights.z
-//                );
-//            }
-//        }
-        for (Triangle tri : triangleSoup.getTriangles()) {
-            tri.computeBarycentricCoordinates(point, weights);
-            if (weights.x >= 0 && weights.y >= 0 && weights.z >= 0 &&
-                    weights.x <= 1 && weights.y <= 1 && weights.z <= 1) {
-                return new WeightCalculatingResult<>(
-                        (T)tri.getA(), (T)tri.getB(), (T)tri.getC(),
-                        weights.x, weights.y, weights.z
-                );
-            }
-
-            Vector2f centroid = new Vector2f();
-            centroid.set(tri.getA().position()).add(tri.getB().position()).add(tri.getC().position()).div(3f);
-            float dist = point.distanceSquared(centroid);
-            if (dist < bestDist) {
-                bestDist = dist;
-                bestTriangle = tri;
-                bestBarycentric.set(weights);
+        for (int t = 0; t < delaunay.getTriangleSlots(); t++) {
+            if (delaunay.isRealTriangle(t)) {
+                triangleSoup.add(new Triangle(points[delaunay.getTag(delaunay.getTriangleVertex(t, 0))],
+                        points[delaunay.getTag(delaunay.getTriangleVertex(t, 1))],
+                        points[delaunay.getTag(delaunay.getTriangleVertex(t, 2))]));
             }
         }
 
-        if (bestTriangle == null) {
-            throw new IllegalStateException("No triangle found in this triangulation");
-        }
-
-        clampBarycentric(bestBarycentric);
-        return new WeightCalculatingResult<T>(
-                (T)bestTriangle.getA(), (T)bestTriangle.getB(), (T)bestTriangle.getC(),
-                bestBarycentric.x, bestBarycentric.y, bestBarycentric.z
-        );
+        locator = new TriangleLocator(triangleSoup.getTriangles());
     }
 
     /**
-     * ClampToEdge 策略：将 barycenter 限制在 [0, 1] 范围
+     * Returns the point locator over the triangles of the last triangulation.
+     *
+     * @return the point locator
      */
-    private static void clampBarycentric(Vector3f bary) {
-        bary.x = clamp01(bary.x);
-        bary.y = clamp01(bary.y);
-        bary.z = clamp01(bary.z);
-        float sum = bary.x + bary.y + bary.z;
-        if (sum != 0) bary.div(sum); // normalization
+    public TriangleLocator getLocator() {
+        return locator;
     }
 
-    private static float clamp01(float n) {
-        return Math.max(0f, Math.min(1f, n));
+    public Triangle findContainingTriangle(Vector2fc point) {
+        int triangle = locator.findContaining(point.x(), point.y(), -1, new Vector3f());
+        return triangle < 0 ? null : locator.getTriangle(triangle);
     }
 
     /**
-     * This method legalizes edges by recursively flipping all illegal edges.
+     * Calculates the barycentric weights of a point, clamped to the nearest edge of the triangulation if no
+     * triangle contains the point. See {@link TriangleLocator#locate} for an allocation-free variant which
+     * also takes the previous result as a hint.
      *
-     * @param triangle  The triangle
-     * @param edge      The edge to be legalized
-     * @param newVertex The new vertex
+     * @param point the point
+     * @return the vertices of the triangle found and their weights
+     * @throws IllegalStateException if the triangulation has no triangle
      */
-    private void legalizeEdge(Triangle triangle, Edge edge, SamplerPoint newVertex) {
-        Triangle neighbourTriangle = triangleSoup.findNeighbour(triangle, edge);
-
-        /*
-         * If the triangle has a neighbor, then legalize the edge
-         */
-        if (neighbourTriangle != null) {
-            if (neighbourTriangle.isPointInCircumcircle(newVertex.position())) {
-                triangleSoup.remove(triangle);
-                triangleSoup.remove(neighbourTriangle);
-
-                SamplerPoint noneEdgeVertex = neighbourTriangle.getNoneEdgeVertex(edge);
-
-                Triangle firstTriangle = new Triangle(noneEdgeVertex, edge.getA(), newVertex);
-                Triangle secondTriangle = new Triangle(noneEdgeVertex, edge.getB(), newVertex);
-
-                triangleSoup.add(firstTriangle);
-                triangleSoup.add(secondTriangle);
-
-                legalizeEdge(firstTriangle, new Edge(noneEdgeVertex, edge.getA()), newVertex);
-                legalizeEdge(secondTriangle, new Edge(noneEdgeVertex, edge.getB()), newVertex);
-            }
-        }
+    @SuppressWarnings("unchecked")
+    public WeightCalculatingResult<T> calculateWeightsClampToEdge(Vector2fc point) {
+        Vector3f weights = new Vector3f();
+        int triangle = locator.locate(point.x(), point.y(), -1, weights);
+        return new WeightCalculatingResult<>(
+                (T) locator.getVertex(triangle, 0), (T) locator.getVertex(triangle, 1), (T) locator.getVertex(triangle, 2),
+                weights.x, weights.y, weights.z
+        );
     }
 
     /**
@@ -254,26 +126,54 @@ public class DelaunayTriangulator<T extends SamplerPoint> {
         return triangleSoup.getTriangles();
     }
 
-    private static class DummySamplerPoint implements SamplerPoint {
-        private final Vector2f point;
-
-        public DummySamplerPoint(float x, float y) {
-            this.point = new Vector2f(x, y);
+    /**
+     * Sorts the points along a Hilbert curve over their bounding box.
+     */
+    private static int[] hilbertOrder(SamplerPoint[] points) {
+        int n = points.length;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, points[i].x());
+            minY = Math.min(minY, points[i].y());
+            maxX = Math.max(maxX, points[i].x());
+            maxY = Math.max(maxY, points[i].y());
         }
-
-        @Override
-        public float x() {
-            return point.x;
+        int side = (1 << HILBERT_ORDER) - 1;
+        double scaleX = maxX > minX ? side / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? side / (maxY - minY) : 0;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int x = (int) ((points[i].x() - minX) * scaleX);
+            int y = (int) ((points[i].y() - minY) * scaleY);
+            keys[i] = hilbertIndex(x, y) << 32 | i;
         }
-
-        @Override
-        public float y() {
-            return point.y;
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) keys[i];
         }
+        return order;
+    }
 
-        @Override
-        public Vector2fc position() {
-            return point;
+    private static long hilbertIndex(int x, int y) {
+        long index = 0;
+        for (int s = 1 << (HILBERT_ORDER - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int swap = x;
+                x = y;
+                y = swap;
+            }
         }
+        return index;
     }
-}
\ No newline at end of file
+}
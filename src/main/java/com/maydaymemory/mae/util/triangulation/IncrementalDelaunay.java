@@ -0,0 +1,1065 @@
+package com.maydaymemory.mae.util.triangulation;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.joml.Vector3f;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * A 2D Delaunay triangulation supporting the insertion and removal of vertices.
+ *
+ * <p>Triangles are stored in flat arrays of vertex and neighbour indices, listing vertices in counter-clockwise
+ * order. The convex hull is closed by ghost triangles, which share the vertex {@link #GHOST} at infinity, so
+ * every edge has a triangle on both sides and the triangulation is exactly the Delaunay triangulation of its
+ * vertices.</p>
+ *
+ * <p>A vertex is inserted with the Bowyer-Watson algorithm: the triangles whose circumcircle contains it are
+ * found by walking from the triangle of the previous operation, then collecting neighbours, and replaced by
+ * a fan around the vertex. A vertex is removed by re-triangulating the polygon formed by its neighbours,
+ * clipping ears whose circumcircle contains no other vertex of the polygon. Both only touch the triangles
+ * around the vertex, and reuse the storage of removed triangles.</p>
+ *
+ * <p>Orientation and circumcircle tests are exact: they are evaluated in floating point with an error bound, as
+ * in Shewchuk's adaptive predicates, and only evaluated again in exact arithmetic when the bound cannot
+ * decide the sign. Nearly collinear or cocircular vertices, such as points of a polar grid, therefore never
+ * produce flat or overlapping triangles. Coordinates are assumed not to overflow or underflow when multiplied.</p>
+ *
+ * <p>Until three vertices which are not collinear have been inserted, vertices are kept aside and no
+ * triangle exists, see {@link #isTriangulated()}. Each vertex carries an integer tag, for example the index
+ * of the sampler it stands for. {@link #snapshot()} copies the triangulation into an immutable
+ * {@link Snapshot}, on which points can be located from any thread.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class IncrementalDelaunay {
+    /** The vertex at infinity of ghost triangles */
+    public static final int GHOST = 0;
+
+    /** Relative rounding error of doubles, 2^-53 */
+    private static final double ROUNDING = 0x1p-53;
+
+    /** Error bound of the floating-point orientation, relative to the sum of the magnitudes of its products */
+    private static final double ORIENT_ERROR_BOUND = (3 + 16 * ROUNDING) * ROUNDING;
+
+    /** Error bound of the floating-point circumcircle test, relative to the permanent of its determinant */
+    private static final double INCIRCLE_ERROR_BOUND = (10 + 96 * ROUNDING) * ROUNDING;
+
+    /** Vertex coordinates and tags; vertex 0 is the ghost vertex */
+    private double[] xs;
+    private double[] ys;
+    private int[] tags;
+    private boolean[] vertexAlive;
+
+    /** A triangle containing each vertex */
+    private int[] vertexTriangles;
+
+    private int vertexSlots = 1;
+    private int vertexCount;
+    private final IntArrayList freeVertices = new IntArrayList();
+
+    /** Vertices inserted before the triangulation could start, all collinear */
+    private final IntArrayList pending = new IntArrayList();
+    private boolean triangulated;
+
+    /** Vertices of the triangles in counter-clockwise order, 3 per triangle, -1 for removed triangles */
+    private int[] triangleVertices;
+
+    /** Triangle across the edge opposite to each vertex, 3 per triangle */
+    private int[] triangleNeighbours;
+
+    private int triangleSlots;
+    private int realTriangleCount;
+    private final IntArrayList freeTriangles = new IntArrayList();
+
+    /** Real triangle to start the next search from */
+    private int lastTriangle = -1;
+
+    /** Per triangle stamp of the insertion which tested it, and whether it conflicted */
+    private int[] visitStamps;
+    private boolean[] conflicts;
+    private int stamp;
+
+    /** Scratch of an insertion */
+    private final IntArrayList cavity = new IntArrayList();
+    private final IntArrayList cavityBoundary = new IntArrayList();
+    private int[] fanTriangles;
+    private int[] fanStamps;
+
+    /** Scratch of a removal */
+    private final IntArrayList star = new IntArrayList();
+    private final IntArrayList polygon = new IntArrayList();
+    private final IntArrayList outerTriangles = new IntArrayList();
+    private final IntArrayList openEdges = new IntArrayList();
+
+    /**
+     * Constructs an empty triangulation.
+     */
+    public IncrementalDelaunay() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty triangulation with storage for a number of vertices.
+     *
+     * @param expectedVertices the expected number of vertices
+     */
+    public IncrementalDelaunay(int expectedVertices) {
+        int vertexCapacity = Math.max(4, expectedVertices + 1);
+        int triangleCapacity = 2 * vertexCapacity + 4;
+        xs = new double[vertexCapacity];
+        ys = new double[vertexCapacity];
+        tags = new int[vertexCapacity];
+        vertexAlive = new boolean[vertexCapacity];
+        vertexTriangles = new int[vertexCapacity];
+        fanTriangles = new int[vertexCapacity];
+        fanStamps = new int[vertexCapacity];
+        triangleVertices = new int[triangleCapacity * 3];
+        triangleNeighbours = new int[triangleCapacity * 3];
+        visitStamps = new int[triangleCapacity];
+        conflicts = new boolean[triangleCapacity];
+    }
+
+    /**
+     * Inserts a vertex.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param tag the tag of the vertex
+     * @return the id of the vertex, or -1 if a vertex exists at the same coordinates already
+     * @throws IllegalArgumentException if a coordinate is NaN
+     */
+    public int insert(double x, double y, int tag) {
+        if (Double.isNaN(x) || Double.isNaN(y)) {
+            throw new IllegalArgumentException("Vertex coordinates cannot be NaN");
+        }
+        int vertex = allocateVertex(x, y, tag);
+        if (!place(vertex)) {
+            releaseVertex(vertex);
+            return -1;
+        }
+        return vertex;
+    }
+
+    /**
+     * Removes a vertex.
+     *
+     * @param vertex the id of the vertex
+     * @throws IllegalArgumentException if there is no such vertex
+     */
+    public void remove(int vertex) {
+        if (!isVertexAlive(vertex)) {
+            throw new IllegalArgumentException("No vertex " + vertex);
+        }
+        if (!triangulated) {
+            pending.rem(vertex);
+            releaseVertex(vertex);
+            return;
+        }
+
+        // Collect the triangles around the vertex in counter-clockwise order, each (vertex, p, q).
+        star.clear();
+        polygon.clear();
+        outerTriangles.clear();
+        int realStarTriangles = 0;
+        int first = vertexTriangles[vertex];
+        int triangle = first;
+        do {
+            int i = indexOf(triangle, vertex);
+            star.add(triangle);
+            polygon.add(triangleVertices[triangle * 3 + (i + 1) % 3]);
+            outerTriangles.add(triangleNeighbours[triangle * 3 + i]);
+            if (!isGhost(triangle)) {
+                realStarTriangles++;
+            }
+            triangle = triangleNeighbours[triangle * 3 + (i + 1) % 3];
+        } while (triangle != first);
+
+        if (realStarTriangles == realTriangleCount) {
+            // No triangle would be left, the remaining vertices may be collinear.
+            rebuildWithout(vertex);
+            return;
+        }
+
+        // The outer triangles wait for the new triangles on the edges of the polygon.
+        openEdges.clear();
+        int size = polygon.size();
+        for (int m = 0; m < size; m++) {
+            int p = polygon.getInt(m);
+            int q = polygon.getInt((m + 1) % size);
+            int outer = outerTriangles.getInt(m);
+            addOpenEdge(q, p, outer * 3 + edgeIndex(outer, q, p));
+        }
+        for (int m = 0; m < star.size(); m++) {
+            freeTriangle(star.getInt(m));
+        }
+        releaseVertex(vertex);
+
+        int ghostPosition = polygon.indexOf(GHOST);
+        if (ghostPosition < 0) {
+            fillPolygon();
+        } else {
+            // On the hull: the polygon is a chain from the vertex after the ghost to the one before it.
+            IntArrayList chain = new IntArrayList(size - 1);
+            for (int m = 1; m < size; m++) {
+                chain.add(polygon.getInt((ghostPosition + m) % size));
+            }
+            polygon.clear();
+            polygon.addAll(chain);
+            fillChain();
+        }
+        if (!openEdges.isEmpty()) {
+            throw new IllegalStateException("Broken triangle adjacency");
+        }
+    }
+
+    /**
+     * Tests whether the triangulation has started, which takes three vertices that are not collinear.
+     *
+     * @return true if there are triangles
+     */
+    public boolean isTriangulated() {
+        return triangulated;
+    }
+
+    /**
+     * Gets the number of vertices.
+     *
+     * @return the number of vertices, ghost excluded
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Tests whether a vertex exists.
+     *
+     * @param vertex the id of the vertex
+     * @return true if the vertex has been inserted and not removed
+     */
+    public boolean isVertexAlive(int vertex) {
+        return vertex > GHOST && vertex < vertexSlots && vertexAlive[vertex];
+    }
+
+    /**
+     * Gets the X coordinate of a vertex.
+     *
+     * @param vertex the id of the vertex
+     * @return the X coordinate, meaningless for removed vertices and the ghost vertex
+     */
+    public double getX(int vertex) {
+        return xs[vertex];
+    }
+
+    /**
+     * Gets the Y coordinate of a vertex.
+     *
+     * @param vertex the id of the vertex
+     * @return the Y coordinate, meaningless for removed vertices and the ghost vertex
+     */
+    public double getY(int vertex) {
+        return ys[vertex];
+    }
+
+    /**
+     * Gets the tag a vertex was inserted with.
+     *
+     * @param vertex the id of the vertex
+     * @return the tag, meaningless for removed vertices and the ghost vertex
+     */
+    public int getTag(int vertex) {
+        return tags[vertex];
+    }
+
+    /**
+     * Gets the number of triangle slots, the bound of triangle indices.
+     *
+     * @return the number of triangle slots, including removed and ghost triangles
+     */
+    public int getTriangleSlots() {
+        return triangleSlots;
+    }
+
+    /**
+     * Tests whether a triangle slot holds a triangle which is not a ghost triangle.
+     *
+     * @param triangle the index of the triangle
+     * @return true for a real triangle
+     */
+    public boolean isRealTriangle(int triangle) {
+        return isAlive(triangle) && !isGhost(triangle);
+    }
+
+    /**
+     * Gets a vertex of a triangle. Vertices are in counter-clockwise order.
+     *
+     * @param triangle the index of the triangle
+     * @param vertex 0, 1 or 2
+     * @return the id of the vertex, {@link #GHOST} for the vertex at infinity
+     */
+    public int getTriangleVertex(int triangle, int vertex) {
+        return triangleVertices[triangle * 3 + vertex];
+    }
+
+    /**
+     * Gets the triangle across the edge opposite to a vertex of a triangle.
+     *
+     * @param triangle the index of the triangle
+     * @param vertex 0, 1 or 2
+     * @return the index of the neighbour triangle
+     */
+    public int getNeighbour(int triangle, int vertex) {
+        return triangleNeighbours[triangle * 3 + vertex];
+    }
+
+    /**
+     * Copies the current triangulation into an immutable snapshot.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Inserts an allocated vertex, returning false if it duplicates another one.
+     */
+    private boolean place(int vertex) {
+        if (triangulated) {
+            return insertIntoTriangulation(vertex);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            int other = pending.getInt(i);
+            if (xs[other] == xs[vertex] && ys[other] == ys[vertex]) {
+                return false;
+            }
+        }
+        pending.add(vertex);
+        startTriangulation();
+        return true;
+    }
+
+    /**
+     * Starts the triangulation if the pending vertices are not all collinear.
+     */
+    private void startTriangulation() {
+        if (pending.size() < 3) {
+            return;
+        }
+        int a = pending.getInt(0);
+        int b = pending.getInt(1);
+        int c = -1;
+        for (int i = 2; i < pending.size() && c < 0; i++) {
+            if (orient(a, b, pending.getInt(i)) != 0) {
+                c = pending.getInt(i);
+            }
+        }
+        if (c < 0) {
+            return;
+        }
+        createInitialTriangles(a, b, c);
+        triangulated = true;
+        for (int i = 0; i < pending.size(); i++) {
+            int vertex = pending.getInt(i);
+            if (vertex != a && vertex != b && vertex != c) {
+                insertIntoTriangulation(vertex);
+            }
+        }
+        pending.clear();
+    }
+
+    private void rebuildWithout(int removed) {
+        triangleSlots = 0;
+        realTriangleCount = 0;
+        freeTriangles.clear();
+        lastTriangle = -1;
+        triangulated = false;
+        releaseVertex(removed);
+        pending.clear();
+        for (int vertex = GHOST + 1; vertex < vertexSlots; vertex++) {
+            if (vertexAlive[vertex]) {
+                pending.add(vertex);
+            }
+        }
+        startTriangulation();
+    }
+
+    /**
+     * Creates the first triangle and the three ghost triangles around it.
+     */
+    private void createInitialTriangles(int a, int b, int c) {
+        if (orient(a, b, c) < 0) {
+            int swap = b;
+            b = c;
+            c = swap;
+        }
+        int triangle = newTriangle(a, b, c);
+        // The ghost of each edge of the triangle, with the edge reversed so the ghost vertex lies outside.
+        int ghostAB = newTriangle(b, a, GHOST);
+        int ghostBC = newTriangle(c, b, GHOST);
+        int ghostCA = newTriangle(a, c, GHOST);
+        setNeighbours(triangle, ghostBC, ghostCA, ghostAB);
+        setNeighbours(ghostAB, ghostCA, ghostBC, triangle);
+        setNeighbours(ghostBC, ghostAB, ghostCA, triangle);
+        setNeighbours(ghostCA, ghostBC, ghostAB, triangle);
+        lastTriangle = triangle;
+    }
+
+    /**
+     * Inserts a vertex with the Bowyer-Watson algorithm, returning false if it duplicates another one.
+     */
+    private boolean insertIntoTriangulation(int vertex) {
+        int seed = locate(vertex);
+        if (seed < 0) {
+            return false;
+        }
+
+        // Collect the triangles whose circumcircle contains the vertex.
+        stamp++;
+        cavity.clear();
+        cavityBoundary.clear();
+        cavity.add(seed);
+        visitStamps[seed] = stamp;
+        conflicts[seed] = true;
+        for (int i = 0; i < cavity.size(); i++) {
+            int triangle = cavity.getInt(i);
+            for (int edge = 0; edge < 3; edge++) {
+                int neighbour = triangleNeighbours[triangle * 3 + edge];
+                if (visitStamps[neighbour] != stamp) {
+                    visitStamps[neighbour] = stamp;
+                    conflicts[neighbour] = isInCircumcircle(neighbour, vertex);
+                    if (conflicts[neighbour]) {
+                        cavity.add(neighbour);
+                    }
+                }
+                if (!conflicts[neighbour]) {
+                    cavityBoundary.add(triangle * 3 + edge);
+                }
+            }
+        }
+
+        // Replace the cavity by a fan of triangles around the vertex, each on one boundary edge. The cavity
+        // triangles are freed afterwards, so the boundary can still be read from them.
+        int result = -1;
+        for (int i = 0; i < cavityBoundary.size(); i++) {
+            int slot = cavityBoundary.getInt(i);
+            int triangle = slot / 3;
+            int edge = slot % 3;
+            int from = triangleVertices[triangle * 3 + (edge + 1) % 3];
+            int to = triangleVertices[triangle * 3 + (edge + 2) % 3];
+            int neighbour = triangleNeighbours[slot];
+            int fan = newTriangle(from, to, vertex);
+            triangleNeighbours[fan * 3 + 2] = neighbour;
+            triangleNeighbours[neighbour * 3 + edgeIndex(neighbour, to, from)] = fan;
+            // Fan triangles sharing the edge from the vertex to another one are linked through that vertex.
+            linkFan(fan, 1, from);
+            linkFan(fan, 0, to);
+            if (result < 0 && from != GHOST && to != GHOST) {
+                result = fan;
+            }
+        }
+        for (int i = 0; i < cavity.size(); i++) {
+            freeTriangle(cavity.getInt(i));
+        }
+        lastTriangle = result;
+        return true;
+    }
+
+    private void linkFan(int triangle, int edge, int vertex) {
+        if (fanStamps[vertex] != stamp) {
+            fanStamps[vertex] = stamp;
+            fanTriangles[vertex] = triangle * 3 + edge;
+        } else {
+            int other = fanTriangles[vertex];
+            triangleNeighbours[triangle * 3 + edge] = other / 3;
+            triangleNeighbours[other] = triangle;
+        }
+    }
+
+    /**
+     * Walks toward a vertex from the last triangle, returning the real triangle containing it, the ghost
+     * triangle of the hull edge it is outside of, or -1 if a vertex exists at the same coordinates.
+     */
+    private int locate(int vertex) {
+        int triangle = isRealTriangle(lastTriangle) ? lastTriangle : firstRealTriangle();
+        for (int step = 0; step <= triangleSlots; step++) {
+            int next = -1;
+            for (int i = 0; i < 3; i++) {
+                // Start from a varying edge so that the walk cannot cycle.
+                int edge = (i + step) % 3;
+                int a = triangleVertices[triangle * 3 + (edge + 1) % 3];
+                int b = triangleVertices[triangle * 3 + (edge + 2) % 3];
+                if (orient(a, b, vertex) < 0) {
+                    next = triangleNeighbours[triangle * 3 + edge];
+                    break;
+                }
+            }
+            if (next < 0) {
+                return hasVertexAt(triangle, vertex) ? -1 : triangle;
+            }
+            if (isGhost(next)) {
+                return next;
+            }
+            triangle = next;
+        }
+        // Rounding may make the walk cycle, search all triangles instead.
+        for (int t = 0; t < triangleSlots; t++) {
+            if (isAlive(t) && isInCircumcircle(t, vertex)) {
+                return isGhost(t) || !hasVertexAt(t, vertex) ? t : -1;
+            }
+        }
+        throw new IllegalStateException("No triangle found for vertex " + vertex);
+    }
+
+    /**
+     * Triangulates the polygon around a removed inner vertex.
+     */
+    private void fillPolygon() {
+        while (polygon.size() > 3) {
+            int ear = findEar(0, polygon.size(), true);
+            int size = polygon.size();
+            createLinkedTriangle(polygon.getInt((ear + size - 1) % size), polygon.getInt(ear), polygon.getInt((ear + 1) % size));
+            polygon.removeInt(ear);
+        }
+        lastTriangle = createLinkedTriangle(polygon.getInt(0), polygon.getInt(1), polygon.getInt(2));
+    }
+
+    /**
+     * Triangulates the chain around a removed hull vertex, then closes the new hull with ghost triangles.
+     */
+    private void fillChain() {
+        int ear;
+        while (polygon.size() > 2 && (ear = findEar(1, polygon.size() - 1, false)) >= 0) {
+            lastTriangle = createLinkedTriangle(polygon.getInt(ear - 1), polygon.getInt(ear), polygon.getInt(ear + 1));
+            polygon.removeInt(ear);
+        }
+        int hullTriangle = -1;
+        for (int i = 0; i + 1 < polygon.size(); i++) {
+            hullTriangle = createLinkedTriangle(polygon.getInt(i), polygon.getInt(i + 1), GHOST);
+        }
+        if (!isRealTriangle(lastTriangle)) {
+            lastTriangle = triangleNeighbours[hullTriangle * 3 + 2];
+        }
+    }
+
+    /**
+     * Finds a convex vertex of the polygon whose triangle with its neighbours has no other vertex of the polygon
+     * in its circumcircle. Falls back to any convex vertex, which only happens through rounding.
+     *
+     * @return the position of the ear, or -1 if no vertex is convex
+     */
+    private int findEar(int from, int to, boolean cyclic) {
+        int size = polygon.size();
+        int fallback = -1;
+        for (int i = from; i < to; i++) {
+            int a = polygon.getInt((i + size - 1) % size);
+            int b = polygon.getInt(i);
+            int c = polygon.getInt((i + 1) % size);
+            if (orient(a, b, c) <= 0) {
+                continue;
+            }
+            if (fallback < 0) {
+                fallback = i;
+            }
+            boolean empty = true;
+            for (int j = 0; j < size && empty; j++) {
+                int d = polygon.getInt(j);
+                if (d != a && d != b && d != c && incircle(a, b, c, d) > 0) {
+                    empty = false;
+                }
+            }
+            if (empty) {
+                return i;
+            }
+        }
+        return cyclic && fallback < 0 ? from : fallback;
+    }
+
+    /**
+     * Creates a triangle and links it with the open edges it closes, leaving its other edges open.
+     */
+    private int createLinkedTriangle(int a, int b, int c) {
+        int triangle = newTriangle(a, b, c);
+        for (int edge = 0; edge < 3; edge++) {
+            int from = triangleVertices[triangle * 3 + (edge + 1) % 3];
+            int to = triangleVertices[triangle * 3 + (edge + 2) % 3];
+            int twin = -1;
+            for (int i = 0; i < openEdges.size(); i += 3) {
+                if (openEdges.getInt(i) == to && openEdges.getInt(i + 1) == from) {
+                    twin = i;
+                    break;
+                }
+            }
+            if (twin >= 0) {
+                int slot = openEdges.getInt(twin + 2);
+                triangleNeighbours[triangle * 3 + edge] = slot / 3;
+                triangleNeighbours[slot] = triangle;
+                openEdges.removeElements(twin, twin + 3);
+            } else {
+                addOpenEdge(from, to, triangle * 3 + edge);
+            }
+        }
+        return triangle;
+    }
+
+    private void addOpenEdge(int from, int to, int slot) {
+        openEdges.add(from);
+        openEdges.add(to);
+        openEdges.add(slot);
+    }
+
+    private boolean isInCircumcircle(int triangle, int vertex) {
+        int offset = triangle * 3;
+        int g = ghostIndex(triangle);
+        if (g >= 0) {
+            int a = triangleVertices[offset + (g + 1) % 3];
+            int b = triangleVertices[offset + (g + 2) % 3];
+            double orientation = orient(a, b, vertex);
+            if (orientation != 0) {
+                return orientation > 0;
+            }
+            // On the line of the hull edge: in conflict when strictly between its vertices, which compares
+            // exactly along an axis the edge is not perpendicular to.
+            if (xs[a] != xs[b]) {
+                return Math.min(xs[a], xs[b]) < xs[vertex] && xs[vertex] < Math.max(xs[a], xs[b]);
+            }
+            return Math.min(ys[a], ys[b]) < ys[vertex] && ys[vertex] < Math.max(ys[a], ys[b]);
+        }
+        return incircle(triangleVertices[offset], triangleVertices[offset + 1], triangleVertices[offset + 2], vertex) > 0;
+    }
+
+    /**
+     * Positive if d is inside the circumcircle of the counter-clockwise triangle abc, zero if on it. The sign is
+     * exact, the magnitude is not.
+     */
+    private double incircle(int a, int b, int c, int d) {
+        double adx = xs[a] - xs[d];
+        double ady = ys[a] - ys[d];
+        double bdx = xs[b] - xs[d];
+        double bdy = ys[b] - ys[d];
+        double cdx = xs[c] - xs[d];
+        double cdy = ys[c] - ys[d];
+        double bdxcdy = bdx * cdy;
+        double cdxbdy = cdx * bdy;
+        double cdxady = cdx * ady;
+        double adxcdy = adx * cdy;
+        double adxbdy = adx * bdy;
+        double bdxady = bdx * ady;
+        double alift = adx * adx + ady * ady;
+        double blift = bdx * bdx + bdy * bdy;
+        double clift = cdx * cdx + cdy * cdy;
+        double det = alift * (bdxcdy - cdxbdy) + blift * (cdxady - adxcdy) + clift * (adxbdy - bdxady);
+        double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+                + (Math.abs(cdxady) + Math.abs(adxcdy)) * blift
+                + (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+        if (Math.abs(det) > INCIRCLE_ERROR_BOUND * permanent) {
+            return det;
+        }
+        return exactIncircle(a, b, c, d);
+    }
+
+    /**
+     * Twice the signed area of the triangle abc, positive if counter-clockwise, zero if collinear. The sign is
+     * exact, the magnitude is not.
+     */
+    private double orient(int a, int b, int c) {
+        double left = (xs[b] - xs[a]) * (ys[c] - ys[a]);
+        double right = (ys[b] - ys[a]) * (xs[c] - xs[a]);
+        double det = left - right;
+        if (Math.abs(det) > ORIENT_ERROR_BOUND * (Math.abs(left) + Math.abs(right))) {
+            return det;
+        }
+        return exactOrient(a, b, c);
+    }
+
+    /**
+     * The sign of {@link #orient(int, int, int)} in exact arithmetic, for the rare cases rounding cannot decide.
+     */
+    private double exactOrient(int a, int b, int c) {
+        BigDecimal ax = new BigDecimal(xs[a]);
+        BigDecimal ay = new BigDecimal(ys[a]);
+        BigDecimal abx = new BigDecimal(xs[b]).subtract(ax);
+        BigDecimal aby = new BigDecimal(ys[b]).subtract(ay);
+        BigDecimal acx = new BigDecimal(xs[c]).subtract(ax);
+        BigDecimal acy = new BigDecimal(ys[c]).subtract(ay);
+        return abx.multiply(acy).subtract(aby.multiply(acx)).signum();
+    }
+
+    /**
+     * The sign of {@link #incircle(int, int, int, int)} in exact arithmetic, for the rare cases rounding cannot
+     * decide.
+     */
+    private double exactIncircle(int a, int b, int c, int d) {
+        BigDecimal dx = new BigDecimal(xs[d]);
+        BigDecimal dy = new BigDecimal(ys[d]);
+        BigDecimal adx = new BigDecimal(xs[a]).subtract(dx);
+        BigDecimal ady = new BigDecimal(ys[a]).subtract(dy);
+        BigDecimal bdx = new BigDecimal(xs[b]).subtract(dx);
+        BigDecimal bdy = new BigDecimal(ys[b]).subtract(dy);
+        BigDecimal cdx = new BigDecimal(xs[c]).subtract(dx);
+        BigDecimal cdy = new BigDecimal(ys[c]).subtract(dy);
+        BigDecimal alift = adx.multiply(adx).add(ady.multiply(ady));
+        BigDecimal blift = bdx.multiply(bdx).add(bdy.multiply(bdy));
+        BigDecimal clift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+        return alift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+                .add(blift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+                .add(clift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))))
+                .signum();
+    }
+
+    private boolean hasVertexAt(int triangle, int vertex) {
+        for (int i = 0; i < 3; i++) {
+            int other = triangleVertices[triangle * 3 + i];
+            if (other != GHOST && xs[other] == xs[vertex] && ys[other] == ys[vertex]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isGhost(int triangle) {
+        return ghostIndex(triangle) >= 0;
+    }
+
+    private int ghostIndex(int triangle) {
+        return ghostIndex(triangleVertices, triangle);
+    }
+
+    private static int ghostIndex(int[] triangleVertices, int triangle) {
+        for (int i = 0; i < 3; i++) {
+            if (triangleVertices[triangle * 3 + i] == GHOST) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isAlive(int triangle) {
+        return triangle >= 0 && triangle < triangleSlots && triangleVertices[triangle * 3] >= 0;
+    }
+
+    private int firstRealTriangle() {
+        for (int t = 0; t < triangleSlots; t++) {
+            if (isRealTriangle(t)) {
+                return t;
+            }
+        }
+        throw new IllegalStateException("No triangle in this triangulation");
+    }
+
+    private int indexOf(int triangle, int vertex) {
+        for (int i = 0; i < 3; i++) {
+            if (triangleVertices[triangle * 3 + i] == vertex) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Broken triangle adjacency");
+    }
+
+    private int edgeIndex(int triangle, int from, int to) {
+        for (int i = 0; i < 3; i++) {
+            if (triangleVertices[triangle * 3 + (i + 1) % 3] == from && triangleVertices[triangle * 3 + (i + 2) % 3] == to) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Broken triangle adjacency");
+    }
+
+    private void setNeighbours(int triangle, int oppositeA, int oppositeB, int oppositeC) {
+        triangleNeighbours[triangle * 3] = oppositeA;
+        triangleNeighbours[triangle * 3 + 1] = oppositeB;
+        triangleNeighbours[triangle * 3 + 2] = oppositeC;
+    }
+
+    private int newTriangle(int a, int b, int c) {
+        int triangle;
+        if (!freeTriangles.isEmpty()) {
+            triangle = freeTriangles.popInt();
+        } else {
+            triangle = triangleSlots++;
+            if (triangleSlots > visitStamps.length) {
+                int capacity = visitStamps.length * 2;
+                triangleVertices = Arrays.copyOf(triangleVertices, capacity * 3);
+                triangleNeighbours = Arrays.copyOf(triangleNeighbours, capacity * 3);
+                visitStamps = Arrays.copyOf(visitStamps, capacity);
+                conflicts = Arrays.copyOf(conflicts, capacity);
+            }
+        }
+        triangleVertices[triangle * 3] = a;
+        triangleVertices[triangle * 3 + 1] = b;
+        triangleVertices[triangle * 3 + 2] = c;
+        visitStamps[triangle] = 0;
+        vertexTriangles[a] = triangle;
+        vertexTriangles[b] = triangle;
+        vertexTriangles[c] = triangle;
+        if (a != GHOST && b != GHOST && c != GHOST) {
+            realTriangleCount++;
+        }
+        return triangle;
+    }
+
+    private void freeTriangle(int triangle) {
+        if (!isGhost(triangle)) {
+            realTriangleCount--;
+        }
+        triangleVertices[triangle * 3] = -1;
+        freeTriangles.add(triangle);
+    }
+
+    private int allocateVertex(double x, double y, int tag) {
+        int vertex;
+        if (!freeVertices.isEmpty()) {
+            vertex = freeVertices.popInt();
+        } else {
+            vertex = vertexSlots++;
+            if (vertexSlots > xs.length) {
+                int capacity = xs.length * 2;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                tags = Arrays.copyOf(tags, capacity);
+                vertexAlive = Arrays.copyOf(vertexAlive, capacity);
+                vertexTriangles = Arrays.copyOf(vertexTriangles, capacity);
+                fanTriangles = Arrays.copyOf(fanTriangles, capacity);
+                fanStamps = Arrays.copyOf(fanStamps, capacity);
+            }
+        }
+        xs[vertex] = x;
+        ys[vertex] = y;
+        tags[vertex] = tag;
+        vertexAlive[vertex] = true;
+        fanStamps[vertex] = 0;
+        vertexCount++;
+        return vertex;
+    }
+
+    private void releaseVertex(int vertex) {
+        vertexAlive[vertex] = false;
+        vertexCount--;
+        freeVertices.add(vertex);
+    }
+
+    /**
+     * An immutable copy of a triangulation, on which points are located.
+     *
+     * <p>Snapshots can be shared between threads. While the triangulation has not started, points are located
+     * on the line of its collinear vertices.</p>
+     */
+    public static final class Snapshot {
+        /** Tolerance of barycentric coordinates in the fallback search */
+        private static final double EPSILON = 1e-9;
+
+        private final double[] xs;
+        private final double[] ys;
+        private final int[] tags;
+        private final int[] triangleVertices;
+        private final int[] triangleNeighbours;
+        private final int triangleSlots;
+
+        /** A real triangle, or -1 if the triangulation has not started */
+        private final int startTriangle;
+
+        /** Vertices sorted along their line if the triangulation has not started */
+        private final int[] line;
+
+        private Snapshot(IncrementalDelaunay source) {
+            this.xs = Arrays.copyOf(source.xs, source.vertexSlots);
+            this.ys = Arrays.copyOf(source.ys, source.vertexSlots);
+            this.tags = Arrays.copyOf(source.tags, source.vertexSlots);
+            this.triangleSlots = source.triangleSlots;
+            this.triangleVertices = Arrays.copyOf(source.triangleVertices, source.triangleSlots * 3);
+            this.triangleNeighbours = Arrays.copyOf(source.triangleNeighbours, source.triangleSlots * 3);
+            if (source.triangulated) {
+                this.startTriangle = source.isRealTriangle(source.lastTriangle) ? source.lastTriangle : source.firstRealTriangle();
+                this.line = null;
+            } else {
+                this.startTriangle = -1;
+                this.line = source.pending.toIntArray();
+                sortAlongLine(line);
+            }
+        }
+
+        /**
+         * Tests whether the snapshot has no vertex.
+         *
+         * @return true if there is no vertex
+         */
+        public boolean isEmpty() {
+            return line != null && line.length == 0;
+        }
+
+        /**
+         * Locates a point, clamping it to the nearest point of the hull if no triangle contains it.
+         *
+         * @param x the X coordinate of the point
+         * @param y the Y coordinate of the point
+         * @param hint the result of the previous query on this snapshot, or -1
+         * @param tagsDest receives the tags of the three vertices weighted, which may repeat with zero weights
+         * @param weightsDest receives the weights of the three vertices, in [0, 1] and summing to 1
+         * @return the hint for the next query on this snapshot
+         * @throws IllegalStateException if the snapshot has no vertex
+         */
+        public int locate(float x, float y, int hint, int[] tagsDest, Vector3f weightsDest) {
+            if (startTriangle < 0) {
+                locateOnLine(x, y, tagsDest, weightsDest);
+                return -1;
+            }
+            int triangle = isRealTriangle(hint) ? hint : startTriangle;
+            for (int step = 0; step <= triangleSlots; step++) {
+                int next = -1;
+                for (int i = 0; i < 3; i++) {
+                    int edge = (i + step) % 3;
+                    int a = triangleVertices[triangle * 3 + (edge + 1) % 3];
+                    int b = triangleVertices[triangle * 3 + (edge + 2) % 3];
+                    if (orient(a, b, x, y) < 0) {
+                        next = triangleNeighbours[triangle * 3 + edge];
+                        break;
+                    }
+                }
+                if (next < 0) {
+                    return barycentric(triangle, x, y, tagsDest, weightsDest);
+                }
+                if (ghostIndex(triangleVertices, next) >= 0) {
+                    return clampToHull(next, x, y, tagsDest, weightsDest);
+                }
+                triangle = next;
+            }
+            // Rounding may make the walk cycle, search all triangles instead.
+            int ghost = -1;
+            for (int t = 0; t < triangleSlots; t++) {
+                if (triangleVertices[t * 3] < 0) {
+                    continue;
+                }
+                if (ghostIndex(triangleVertices, t) >= 0) {
+                    ghost = t;
+                    continue;
+                }
+                int a = triangleVertices[t * 3];
+                int b = triangleVertices[t * 3 + 1];
+                int c = triangleVertices[t * 3 + 2];
+                double area = orient(a, b, xs[c], ys[c]);
+                if (orient(b, c, x, y) >= -EPSILON * area && orient(c, a, x, y) >= -EPSILON * area
+                        && orient(a, b, x, y) >= -EPSILON * area) {
+                    return barycentric(t, x, y, tagsDest, weightsDest);
+                }
+            }
+            return clampToHull(ghost, x, y, tagsDest, weightsDest);
+        }
+
+        private int barycentric(int triangle, float x, float y, int[] tagsDest, Vector3f weightsDest) {
+            int a = triangleVertices[triangle * 3];
+            int b = triangleVertices[triangle * 3 + 1];
+            int c = triangleVertices[triangle * 3 + 2];
+            double wa = Math.max(0, orient(b, c, x, y));
+            double wb = Math.max(0, orient(c, a, x, y));
+            double wc = Math.max(0, orient(a, b, x, y));
+            double sum = wa + wb + wc;
+            tagsDest[0] = tags[a];
+            tagsDest[1] = tags[b];
+            tagsDest[2] = tags[c];
+            weightsDest.set((float) (wa / sum), (float) (wb / sum), (float) (wc / sum));
+            return triangle;
+        }
+
+        /**
+         * Projects a point outside the hull on the nearest hull edge, going around the ring of ghost triangles.
+         */
+        private int clampToHull(int start, float x, float y, int[] tagsDest, Vector3f weightsDest) {
+            int best = start;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            double bestParameter = 0;
+            int ghost = start;
+            do {
+                int g = ghostIndex(triangleVertices, ghost);
+                int u = triangleVertices[ghost * 3 + (g + 1) % 3];
+                int w = triangleVertices[ghost * 3 + (g + 2) % 3];
+                double dx = xs[w] - xs[u];
+                double dy = ys[w] - ys[u];
+                double lengthSquared = dx * dx + dy * dy;
+                double s = lengthSquared > 0 ? ((x - xs[u]) * dx + (y - ys[u]) * dy) / lengthSquared : 0;
+                s = Math.max(0, Math.min(1, s));
+                double ex = xs[u] + dx * s - x;
+                double ey = ys[u] + dy * s - y;
+                double distance = ex * ex + ey * ey;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = ghost;
+                    bestParameter = s;
+                }
+                // The next ghost triangle shares the edge from w to the ghost vertex.
+                ghost = triangleNeighbours[ghost * 3 + (g + 1) % 3];
+            } while (ghost != start);
+
+            int g = ghostIndex(triangleVertices, best);
+            int u = triangleVertices[best * 3 + (g + 1) % 3];
+            int w = triangleVertices[best * 3 + (g + 2) % 3];
+            int triangle = triangleNeighbours[best * 3 + g];
+            tagsDest[0] = tags[u];
+            tagsDest[1] = tags[w];
+            tagsDest[2] = tags[w];
+            weightsDest.set((float) (1 - bestParameter), (float) bestParameter, 0);
+            return triangle;
+        }
+
+        private void locateOnLine(float x, float y, int[] tagsDest, Vector3f weightsDest) {
+            if (line.length == 0) {
+                throw new IllegalStateException("There is no sample point");
+            }
+            int bestStart = 0;
+            double bestParameter = 0;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < Math.max(1, line.length - 1); i++) {
+                int u = line[i];
+                int w = line[Math.min(i + 1, line.length - 1)];
+                double dx = xs[w] - xs[u];
+                double dy = ys[w] - ys[u];
+                double lengthSquared = dx * dx + dy * dy;
+                double s = lengthSquared > 0 ? Math.max(0, Math.min(1, ((x - xs[u]) * dx + (y - ys[u]) * dy) / lengthSquared)) : 0;
+                double ex = xs[u] + dx * s - x;
+                double ey = ys[u] + dy * s - y;
+                double distance = ex * ex + ey * ey;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestStart = i;
+                    bestParameter = s;
+                }
+            }
+            int u = line[bestStart];
+            int w = line[Math.min(bestStart + 1, line.length - 1)];
+            tagsDest[0] = tags[u];
+            tagsDest[1] = tags[w];
+            tagsDest[2] = tags[w];
+            weightsDest.set((float) (1 - bestParameter), (float) bestParameter, 0);
+        }
+
+        private void sortAlongLine(int[] vertices) {
+            if (vertices.length < 2) {
+                return;
+            }
+            double dx = xs[vertices[1]] - xs[vertices[0]];
+            double dy = ys[vertices[1]] - ys[vertices[0]];
+            // Few vertices are collinear before the triangulation starts, insertion sort is enough.
+            for (int i = 1; i < vertices.length; i++) {
+                int vertex = vertices[i];
+                double key = xs[vertex] * dx + ys[vertex] * dy;
+                int j = i - 1;
+                while (j >= 0 && xs[vertices[j]] * dx + ys[vertices[j]] * dy > key) {
+                    vertices[j + 1] = vertices[j];
+                    j--;
+                }
+                vertices[j + 1] = vertex;
+            }
+        }
+
+        private boolean isRealTriangle(int triangle) {
+            return triangle >= 0 && triangle < triangleSlots && triangleVertices[triangle * 3] >= 0
+                    && ghostIndex(triangleVertices, triangle) < 0;
+        }
+
+        private double orient(int a, int b, double x, double y) {
+            return (xs[b] - xs[a]) * (y - ys[a]) - (ys[b] - ys[a]) * (x - xs[a]);
+        }
+    }
+}
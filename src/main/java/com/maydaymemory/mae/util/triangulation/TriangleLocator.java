@@ -0,0 +1,385 @@
+package com.maydaymemory.mae.util.triangulation;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Point location over the triangles of a triangulation.
+ *
+ * <p>The triangles are flattened into arrays of vertex coordinates and neighbour indices when the locator
+ * is built. A query starting from a hint, usually the triangle found by the previous query, walks toward
+ * the point across the edge with the most negative barycentric coordinate, which takes a few steps when
+ * the point moves continuously. Queries without a hint, or whose walk leaves the triangulation, look the
+ * point up in a uniform grid of triangle bounding boxes. Points outside every triangle are clamped to the
+ * nearest point of the boundary edges, which are listed once at build time.</p>
+ *
+ * <p>Degenerate triangles, whose vertices are collinear, contain no point and are left out, unless all
+ * triangles are degenerate, in which case every edge is a boundary edge. A locator is immutable and
+ * queries do not allocate, so it can be shared between threads.</p>
+ *
+ * @author MaydayMemory
+ * @since 1.1.4
+ */
+public class TriangleLocator {
+    /** Tolerance of barycentric coordinates, so that points on shared edges are found in either triangle */
+    private static final float EPSILON = 1e-5f;
+
+    private final Triangle[] triangles;
+
+    /** Vertices of the triangles, 3 per triangle in the order a, b, c */
+    private final SamplerPoint[] vertices;
+
+    /** Vertex coordinates, 6 floats per triangle */
+    private final float[] coordinates;
+
+    /** Inverse of the barycentric determinant per triangle */
+    private final float[] inverseDeterminants;
+
+    /** Triangle across the edge opposite to each vertex, 3 per triangle, -1 on the boundary */
+    private final int[] neighbours;
+
+    /** Boundary edges as triangle * 3 + the vertex opposite to the edge */
+    private final int[] boundaryEdges;
+
+    /** Whether any triangle can contain a point */
+    private final boolean searchable;
+
+    /** Uniform grid of triangle bounding boxes, in compressed rows */
+    private final float gridMinX;
+    private final float gridMinY;
+    private final float gridMaxX;
+    private final float gridMaxY;
+    private final float inverseCellWidth;
+    private final float inverseCellHeight;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStarts;
+    private final int[] cellTriangles;
+
+    /**
+     * Builds a locator over the given triangles.
+     *
+     * @param source the triangles of a triangulation
+     */
+    public TriangleLocator(Collection<Triangle> source) {
+        List<Triangle> kept = new ArrayList<>(source.size());
+        for (Triangle triangle : source) {
+            if (determinant(triangle) != 0) {
+                kept.add(triangle);
+            }
+        }
+        this.searchable = !kept.isEmpty();
+        if (!searchable) {
+            kept.addAll(source);
+        }
+
+        int count = kept.size();
+        this.triangles = kept.toArray(new Triangle[0]);
+        this.vertices = new SamplerPoint[count * 3];
+        this.coordinates = new float[count * 6];
+        this.inverseDeterminants = new float[count];
+        this.neighbours = new int[count * 3];
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int t = 0; t < count; t++) {
+            Triangle triangle = triangles[t];
+            vertices[t * 3] = triangle.getA();
+            vertices[t * 3 + 1] = triangle.getB();
+            vertices[t * 3 + 2] = triangle.getC();
+            for (int v = 0; v < 3; v++) {
+                SamplerPoint vertex = vertices[t * 3 + v];
+                coordinates[t * 6 + v * 2] = vertex.x();
+                coordinates[t * 6 + v * 2 + 1] = vertex.y();
+                minX = Math.min(minX, vertex.x());
+                minY = Math.min(minY, vertex.y());
+                maxX = Math.max(maxX, vertex.x());
+                maxY = Math.max(maxY, vertex.y());
+            }
+            float determinant = determinant(triangle);
+            inverseDeterminants[t] = determinant == 0 ? 0 : 1 / determinant;
+        }
+
+        // Neighbours, by matching the vertex pairs of edges.
+        Reference2IntOpenHashMap<SamplerPoint> vertexIds = new Reference2IntOpenHashMap<>();
+        vertexIds.defaultReturnValue(-1);
+        Long2IntOpenHashMap openEdges = new Long2IntOpenHashMap();
+        openEdges.defaultReturnValue(-1);
+        Arrays.fill(neighbours, -1);
+        for (int slot = 0; slot < count * 3; slot++) {
+            int t = slot / 3;
+            int first = vertexId(vertexIds, vertices[t * 3 + (slot + 1) % 3]);
+            int second = vertexId(vertexIds, vertices[t * 3 + (slot + 2) % 3]);
+            long key = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+            int other = openEdges.remove(key);
+            if (other >= 0 && searchable) {
+                neighbours[slot] = other / 3;
+                neighbours[other] = t;
+            } else {
+                openEdges.put(key, slot);
+            }
+        }
+        IntArrayList boundary = new IntArrayList();
+        for (int slot = 0; slot < count * 3; slot++) {
+            if (neighbours[slot] < 0) {
+                boundary.add(slot);
+            }
+        }
+        this.boundaryEdges = boundary.toIntArray();
+
+        // Grid of about one triangle per cell.
+        int side = searchable ? Math.max(1, (int) Math.ceil(Math.sqrt(count))) : 0;
+        this.columns = side;
+        this.rows = side;
+        this.gridMinX = minX;
+        this.gridMinY = minY;
+        this.gridMaxX = maxX;
+        this.gridMaxY = maxY;
+        this.inverseCellWidth = maxX > minX ? side / (maxX - minX) : 0;
+        this.inverseCellHeight = maxY > minY ? side / (maxY - minY) : 0;
+        this.cellStarts = new int[side * side + 1];
+        int[] cellBounds = new int[4];
+        for (int t = 0; searchable && t < count; t++) {
+            cellBounds(t, cellBounds);
+            for (int row = cellBounds[1]; row <= cellBounds[3]; row++) {
+                for (int column = cellBounds[0]; column <= cellBounds[2]; column++) {
+                    cellStarts[row * side + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < side * side; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        this.cellTriangles = new int[cellStarts[side * side]];
+        int[] cursors = Arrays.copyOf(cellStarts, side * side);
+        for (int t = 0; searchable && t < count; t++) {
+            cellBounds(t, cellBounds);
+            for (int row = cellBounds[1]; row <= cellBounds[3]; row++) {
+                for (int column = cellBounds[0]; column <= cellBounds[2]; column++) {
+                    cellTriangles[cursors[row * side + column]++] = t;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of triangles of this locator.
+     *
+     * @return the number of triangles
+     */
+    public int getTriangleCount() {
+        return triangles.length;
+    }
+
+    /**
+     * Gets a triangle of this locator.
+     *
+     * @param triangle the index of the triangle
+     * @return the triangle
+     */
+    public Triangle getTriangle(int triangle) {
+        return triangles[triangle];
+    }
+
+    /**
+     * Gets a vertex of a triangle of this locator.
+     *
+     * @param triangle the index of the triangle
+     * @param vertex 0, 1 or 2 for the vertex a, b or c of the triangle
+     * @return the vertex
+     */
+    public SamplerPoint getVertex(int triangle, int vertex) {
+        return vertices[triangle * 3 + vertex];
+    }
+
+    /**
+     * Locates a point, clamping it to the nearest boundary edge if no triangle contains it.
+     *
+     * @param x the X coordinate of the point
+     * @param y the Y coordinate of the point
+     * @param hint the triangle to start the search from, usually the result of the previous query, or -1
+     * @param dest receives the barycentric weights of the vertices a, b and c of the triangle, in [0, 1] and
+     *             summing to 1
+     * @return the index of the triangle
+     * @throws IllegalStateException if this locator has no triangle
+     */
+    public int locate(float x, float y, int hint, Vector3f dest) {
+        int triangle = findContaining(x, y, hint, dest);
+        if (triangle >= 0) {
+            normalize(dest);
+            return triangle;
+        }
+        return clampToBoundary(x, y, dest);
+    }
+
+    /**
+     * Finds the triangle containing a point.
+     *
+     * @param x the X coordinate of the point
+     * @param y the Y coordinate of the point
+     * @param hint the triangle to start the search from, usually the result of the previous query, or -1
+     * @param dest receives the barycentric coordinates of the point in the triangle found
+     * @return the index of the triangle, or -1 if no triangle contains the point
+     */
+    public int findContaining(float x, float y, int hint, Vector3f dest) {
+        if (searchable && hint >= 0 && hint < triangles.length) {
+            int triangle = walk(x, y, hint, dest);
+            if (triangle >= 0) {
+                return triangle;
+            }
+        }
+        return searchGrid(x, y, dest);
+    }
+
+    private int walk(float x, float y, int start, Vector3f dest) {
+        int current = start;
+        for (int step = 0; step < triangles.length; step++) {
+            barycentric(current, x, y, dest);
+            int edge = 0;
+            float min = dest.x;
+            if (dest.y < min) {
+                edge = 1;
+                min = dest.y;
+            }
+            if (dest.z < min) {
+                edge = 2;
+                min = dest.z;
+            }
+            if (min >= -EPSILON) {
+                return current;
+            }
+            current = neighbours[current * 3 + edge];
+            if (current < 0) {
+                // Left through the boundary. It is convex for Delaunay triangulations, but the grid confirms it.
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private int searchGrid(float x, float y, Vector3f dest) {
+        if (!searchable) {
+            return -1;
+        }
+        float tolerance = EPSILON * Math.max(gridMaxX - gridMinX, gridMaxY - gridMinY);
+        if (x < gridMinX - tolerance || x > gridMaxX + tolerance || y < gridMinY - tolerance || y > gridMaxY + tolerance) {
+            return -1;
+        }
+        int cell = cellRow(y) * columns + cellColumn(x);
+        for (int i = cellStarts[cell], end = cellStarts[cell + 1]; i < end; i++) {
+            int triangle = cellTriangles[i];
+            barycentric(triangle, x, y, dest);
+            if (dest.x >= -EPSILON && dest.y >= -EPSILON && dest.z >= -EPSILON) {
+                return triangle;
+            }
+        }
+        return -1;
+    }
+
+    private int clampToBoundary(float x, float y, Vector3f dest) {
+        int bestSlot = -1;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        float bestParameter = 0;
+        for (int slot : boundaryEdges) {
+            int offset = slot / 3 * 6;
+            int p = (slot + 1) % 3;
+            int q = (slot + 2) % 3;
+            float px = coordinates[offset + p * 2];
+            float py = coordinates[offset + p * 2 + 1];
+            float dx = coordinates[offset + q * 2] - px;
+            float dy = coordinates[offset + q * 2 + 1] - py;
+            float lengthSquared = dx * dx + dy * dy;
+            float s = lengthSquared > 0 ? clamp01(((x - px) * dx + (y - py) * dy) / lengthSquared) : 0;
+            float ex = px + dx * s - x;
+            float ey = py + dy * s - y;
+            float distance = ex * ex + ey * ey;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestSlot = slot;
+                bestParameter = s;
+            }
+        }
+        if (bestSlot < 0) {
+            throw new IllegalStateException("No triangle found in this triangulation");
+        }
+        dest.set(0, 0, 0);
+        dest.setComponent((bestSlot + 1) % 3, 1 - bestParameter);
+        dest.setComponent((bestSlot + 2) % 3, bestParameter);
+        return bestSlot / 3;
+    }
+
+    /**
+     * Same as {@link Triangle#computeBarycentricCoordinates}, on the flattened coordinates.
+     */
+    private void barycentric(int triangle, float x, float y, Vector3f dest) {
+        int offset = triangle * 6;
+        float ax = coordinates[offset];
+        float ay = coordinates[offset + 1];
+        float bx = coordinates[offset + 2];
+        float by = coordinates[offset + 3];
+        float cx = coordinates[offset + 4];
+        float cy = coordinates[offset + 5];
+        float inverse = inverseDeterminants[triangle];
+        float alpha = ((by - cy) * (x - cx) + (cx - bx) * (y - cy)) * inverse;
+        float beta = ((cy - ay) * (x - cx) + (ax - cx) * (y - cy)) * inverse;
+        dest.set(alpha, beta, 1 - alpha - beta);
+    }
+
+    private void cellBounds(int triangle, int[] dest) {
+        int offset = triangle * 6;
+        float minX = Math.min(coordinates[offset], Math.min(coordinates[offset + 2], coordinates[offset + 4]));
+        float maxX = Math.max(coordinates[offset], Math.max(coordinates[offset + 2], coordinates[offset + 4]));
+        float minY = Math.min(coordinates[offset + 1], Math.min(coordinates[offset + 3], coordinates[offset + 5]));
+        float maxY = Math.max(coordinates[offset + 1], Math.max(coordinates[offset + 3], coordinates[offset + 5]));
+        dest[0] = cellColumn(minX);
+        dest[1] = cellRow(minY);
+        dest[2] = cellColumn(maxX);
+        dest[3] = cellRow(maxY);
+    }
+
+    private int cellColumn(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - gridMinX) * inverseCellWidth)));
+    }
+
+    private int cellRow(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - gridMinY) * inverseCellHeight)));
+    }
+
+    private static int vertexId(Reference2IntOpenHashMap<SamplerPoint> vertexIds, SamplerPoint vertex) {
+        int id = vertexIds.getInt(vertex);
+        if (id < 0) {
+            id = vertexIds.size();
+            vertexIds.put(vertex, id);
+        }
+        return id;
+    }
+
+    private static float determinant(Triangle triangle) {
+        SamplerPoint a = triangle.getA();
+        SamplerPoint b = triangle.getB();
+        SamplerPoint c = triangle.getC();
+        return (b.y() - c.y()) * (a.x() - c.x()) + (c.x() - b.x()) * (a.y() - c.y());
+    }
+
+    private static void normalize(Vector3f weights) {
+        weights.x = clamp01(weights.x);
+        weights.y = clamp01(weights.y);
+        weights.z = clamp01(weights.z);
+        float sum = weights.x + weights.y + weights.z;
+        if (sum != 0) {
+            weights.div(sum);
+        }
+    }
+
+    private static float clamp01(float n) {
+        return Math.max(0f, Math.min(1f, n));
+    }
+}
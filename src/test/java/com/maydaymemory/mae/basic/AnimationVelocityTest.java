@@ -0,0 +1,91 @@
+package com.maydaymemory.mae.basic;
+
+import com.maydaymemory.mae.util.MathUtil;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class AnimationVelocityTest {
+    private static final float STEP = 1e-3f;
+
+    private static InterpolatableChannel<Vector3fc> vectorChannel(Interpolator<Vector3fc> interpolator, float... xs) {
+        ArrayList<InterpolatableKeyframe<Vector3fc>> keyframes = new ArrayList<>();
+        for (int i = 0; i < xs.length; i++) {
+            Vector3f value = new Vector3f(xs[i], -xs[i], 2 * xs[i]);
+            keyframes.add(new Vector3fKeyframe(i * 0.5f, value, value, interpolator));
+        }
+        return new ArrayInterpolatableChannel<>(keyframes);
+    }
+
+    private static InterpolatableChannel<Rotation> rotationChannel(boolean euler, float... angles) {
+        ArrayList<InterpolatableKeyframe<Rotation>> keyframes = new ArrayList<>();
+        Interpolator<Rotation> interpolator = euler
+                ? new EulerAnglesRotationInterpolator(Vector3fLinearInterpolator.INSTANCE)
+                : new QuaternionRotationInterpolator();
+        for (int i = 0; i < angles.length; i++) {
+            Rotation rotation = euler
+                    ? new Rotation(new Vector3f(0.2f * angles[i], angles[i], 0))
+                    : new Rotation(new Quaternionf().rotateXYZ(0.2f * angles[i], angles[i], 0));
+            keyframes.add(new RotationKeyframe(i * 0.5f, rotation, rotation, interpolator));
+        }
+        return new ArrayInterpolatableChannel<>(keyframes);
+    }
+
+    @Test
+    public void testMatchesFiniteDifferences() {
+        BasicAnimation animation = new BasicAnimation("test", new ZYXBoneTransformFactory(), ArrayPoseBuilder::new);
+        animation.setTranslationChannel(0, vectorChannel(Vector3fLinearInterpolator.INSTANCE, 0, 1, 3));
+        animation.setRotationChannel(0, rotationChannel(false, 0, 0.5f, 2f));
+        animation.setTranslationChannel(1, vectorChannel(Vector3fCubicSplineInterpolator.INSTANCE, 0, 1, 3, 2));
+        animation.setScaleChannel(1, vectorChannel(Vector3fLinearInterpolator.INSTANCE, 1, 2));
+        animation.setRotationChannel(1, rotationChannel(true, 0, 0.5f, 2f));
+
+        for (float time : new float[]{0.1f, 0.3f, 0.7f, 1.2f}) {
+            Pose velocity = animation.evaluateVelocity(time);
+            Assertions.assertNotNull(velocity);
+            Iterator<BoneTransform> expected = differentiate(animation.evaluate(time), animation.evaluate(time + STEP)).iterator();
+            for (BoneTransform actual : velocity.getBoneTransforms()) {
+                BoneTransform reference = expected.next();
+                Assertions.assertEquals(reference.boneIndex(), actual.boneIndex());
+                assertClose(reference.translation(), actual.translation());
+                assertClose(reference.rotation().asEulerAngle(), actual.rotation().asEulerAngle());
+                assertClose(reference.scale(), actual.scale());
+            }
+            Assertions.assertFalse(expected.hasNext());
+        }
+
+        // Held after the last keyframe.
+        Pose held = animation.evaluateVelocity(5f);
+        Assertions.assertNotNull(held);
+        for (BoneTransform transform : held.getBoneTransforms()) {
+            assertClose(new Vector3f(), transform.translation());
+            assertClose(new Vector3f(), transform.rotation().asEulerAngle());
+        }
+    }
+
+    private static ArrayPose differentiate(Pose p0, Pose p1) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        Iterator<BoneTransform> i1 = p1.getBoneTransforms().iterator();
+        for (BoneTransform t0 : p0.getBoneTransforms()) {
+            BoneTransform t1 = i1.next();
+            Quaternionf relative = new Quaternionf(t1.rotation().asQuaternion())
+                    .mul(t0.rotation().asQuaternion().conjugate(new Quaternionf()));
+            transforms.add(new BoneTransform(t0.boneIndex(),
+                    t1.translation().sub(t0.translation(), new Vector3f()).div(STEP),
+                    new RotationVelocityRotationView(MathUtil.logUnit(relative).div(STEP)),
+                    t1.scale().sub(t0.scale(), new Vector3f()).div(STEP)));
+        }
+        return new ArrayPose(transforms);
+    }
+
+    private static void assertClose(Vector3fc expected, Vector3fc actual) {
+        Assertions.assertEquals(expected.x(), actual.x(), 2e-2f);
+        Assertions.assertEquals(expected.y(), actual.y(), 2e-2f);
+        Assertions.assertEquals(expected.z(), actual.z(), 2e-2f);
+    }
+}
@@ -0,0 +1,293 @@
+package com.maydaymemory.mae.basic;
+
+import com.maydaymemory.mae.control.montage.AnimationMontage;
+import com.maydaymemory.mae.control.montage.AnimationMontageRunner;
+import com.maydaymemory.mae.control.montage.AnimationMontageSection;
+import com.maydaymemory.mae.control.montage.AnimationMontageTrack;
+import com.maydaymemory.mae.control.montage.AnimationSegment;
+import com.maydaymemory.mae.control.montage.AnimationSegmentKeyframe;
+import com.maydaymemory.mae.control.runner.AnimationContext;
+import com.maydaymemory.mae.control.runner.AnimationRunner;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Supplier;
+
+public class BoneMaskTest {
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+
+    @Test
+    public void testContains() {
+        BoneMask mask = BoneMask.of(1, 70);
+        Assertions.assertTrue(mask.contains(1));
+        Assertions.assertTrue(mask.contains(70));
+        Assertions.assertFalse(mask.contains(0));
+        Assertions.assertFalse(mask.contains(6));
+        Assertions.assertFalse(mask.contains(500));
+        Assertions.assertFalse(mask.isAll());
+        Assertions.assertEquals(mask, BoneMask.of(Arrays.asList(70, 1)));
+
+        BoneMask except = BoneMask.allExcept(2);
+        Assertions.assertTrue(except.contains(1));
+        Assertions.assertTrue(except.contains(500));
+        Assertions.assertFalse(except.contains(2));
+        Assertions.assertFalse(except.isAll());
+        Assertions.assertTrue(BoneMask.allExcept().isAll());
+        Assertions.assertTrue(BoneMask.ALL.contains(1000));
+        Assertions.assertFalse(BoneMask.NONE.contains(0));
+        // The identity transform has no bone index and only belongs to inverted masks.
+        Assertions.assertTrue(except.contains(-1));
+        Assertions.assertFalse(mask.contains(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BoneMask.of(-1));
+    }
+
+    @Test
+    public void testWithoutSubtrees() {
+        // 0 -> 1 -> (2, 3), 0 -> 4
+        Skeleton skeleton = new TreeSkeleton(new int[]{-1, 0, 1, 1, 0});
+        BoneMask mask = BoneMask.of(0, 1, 2, 3, 4).withoutSubtrees(skeleton, 1);
+        Assertions.assertEquals(BoneMask.of(0, 4), mask);
+        Assertions.assertEquals(BoneMask.of(0, 4).hashCode(), mask.hashCode());
+
+        BoneMask inverted = BoneMask.ALL.withoutSubtrees(skeleton, 1);
+        Assertions.assertEquals(BoneMask.allExcept(1, 2, 3), inverted);
+        Assertions.assertTrue(inverted.contains(4));
+        Assertions.assertTrue(inverted.contains(100));
+        Assertions.assertFalse(inverted.contains(3));
+    }
+
+    @Test
+    public void testFilter() {
+        Pose pose = pose(0, 1, 2);
+        Assertions.assertSame(pose, BoneMask.ALL.filter(pose, ArrayPoseBuilder::new));
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{0, 2}), bones(BoneMask.allExcept(1).filter(pose, ArrayPoseBuilder::new)));
+        Assertions.assertEquals(new IntArrayList(), bones(BoneMask.NONE.filter(pose, ArrayPoseBuilder::new)));
+    }
+
+    @Test
+    public void testBasicAnimationSkipsExcludedChannels() {
+        BasicAnimation animation = new BasicAnimation("test", factory, ArrayPoseBuilder::new);
+        Set<Integer> sampledBones = new HashSet<>();
+        for (int bone = 0; bone < 4; bone++) {
+            animation.setTranslationChannel(bone, new RecordingChannel(bone, sampledBones));
+        }
+        int[] suppliedBuilders = {0};
+        Supplier<PoseBuilder> supplier = () -> {
+            suppliedBuilders[0]++;
+            return new ArrayPoseBuilder();
+        };
+        Pose pose = animation.evaluate(0.5f, BoneMask.of(1, 3), supplier);
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{1, 3}), bones(pose));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(1, 3)), sampledBones);
+        Assertions.assertEquals(0.5f, pose.getBoneTransforms().iterator().next().translation().x());
+        // The animation builds its own poses, the supplier is for filtering after sampling.
+        Assertions.assertEquals(0, suppliedBuilders[0]);
+    }
+
+    @Test
+    public void testDefaultEvaluateUsesCallerBuilder() {
+        Animation animation = new PoseAnimation(pose(0, 1, 2));
+        int[] suppliedBuilders = {0};
+        Supplier<PoseBuilder> supplier = () -> {
+            suppliedBuilders[0]++;
+            return new ArrayPoseBuilder();
+        };
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{0, 2}), bones(animation.evaluate(0, BoneMask.allExcept(1), supplier)));
+        Assertions.assertEquals(1, suppliedBuilders[0]);
+        animation.evaluate(0, BoneMask.ALL, supplier);
+        Assertions.assertEquals(1, suppliedBuilders[0]);
+    }
+
+    @Test
+    public void testMaskedRunner() {
+        int[] suppliedBuilders = {0};
+        AnimationRunner runner = new AnimationRunner(new PoseAnimation(pose(0, 1, 2)), new AnimationContext(1f), () -> {
+            suppliedBuilders[0]++;
+            return new ArrayPoseBuilder();
+        });
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{0, 1, 2}), bones(runner.evaluate()));
+        runner.setBoneMask(BoneMask.of(1));
+        Assertions.assertEquals(BoneMask.of(1), runner.getBoneMask());
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{1}), bones(runner.evaluate()));
+        Assertions.assertEquals(1, suppliedBuilders[0]);
+    }
+
+    @Test
+    public void testMaskedMontageRunner() {
+        AnimationMontageTrack track = new AnimationMontageTrack();
+        track.add(new AnimationSegmentKeyframe(0f, new AnimationSegment(new PoseAnimation(pose(1, 2, 3)), 0f, 1f)));
+        track.refresh();
+        AnimationMontage<Object> montage = new AnimationMontage<>();
+        montage.setTracks(Collections.singletonList(track));
+        Map<String, AnimationMontageSection> sections = new HashMap<>();
+        sections.put("main", new AnimationMontageSection("main", 0f, 1f, null));
+        montage.setSections(sections);
+        int[] suppliedBuilders = {0};
+        AnimationMontageRunner<Object> runner = new AnimationMontageRunner<>(montage, new Object(), factory, () -> {
+            suppliedBuilders[0]++;
+            return new ArrayPoseBuilder();
+        }, () -> 0L);
+        runner.getBasePoseSlot().setDefaultValue(pose(0, 1, 4));
+        runner.start("main");
+
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{0, 1, 2, 3, 4}), bones(runner.getPose()));
+        runner.setBoneMask(BoneMask.allExcept(2, 4));
+        int builders = suppliedBuilders[0];
+        // Excluded bones are neither sampled from the track nor blended from the base pose.
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{0, 1, 3}), bones(runner.getPose()));
+        Assertions.assertTrue(suppliedBuilders[0] > builders);
+        Assertions.assertEquals(IntArrayList.wrap(new int[]{1, 3}), bones(track.evaluate(0.5f, BoneMask.allExcept(2), ArrayPoseBuilder::new)));
+    }
+
+    private Pose pose(int... boneIndices) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        for (int boneIndex : boneIndices) {
+            transforms.add(factory.createBoneTransform(boneIndex, new Vector3f(boneIndex, 0, 0), new Vector3f(), new Vector3f(1)));
+        }
+        return new ArrayPose(transforms);
+    }
+
+    private static IntArrayList bones(Pose pose) {
+        IntArrayList bones = new IntArrayList();
+        for (BoneTransform transform : pose.getBoneTransforms()) {
+            bones.add(transform.boneIndex());
+        }
+        return bones;
+    }
+
+    /**
+     * A skeleton given by the parent of every bone.
+     */
+    private static class TreeSkeleton implements Skeleton {
+        private final int[] parents;
+
+        TreeSkeleton(int[] parents) {
+            this.parents = parents;
+        }
+
+        @Override
+        public Collection<Integer> getChildren(int i) {
+            List<Integer> children = new ArrayList<>();
+            for (int bone = 0; bone < parents.length; bone++) {
+                if (parents[bone] == i) {
+                    children.add(bone);
+                }
+            }
+            return children;
+        }
+
+        @Override
+        public int getFather(int i) {
+            return parents[i];
+        }
+
+        @Override
+        public void applyPose(Pose pose) {
+        }
+
+        @Override
+        public Pose getPose() {
+            return DummyPose.INSTANCE;
+        }
+
+        @Override
+        public Pose getBindPose() {
+            return DummyPose.INSTANCE;
+        }
+    }
+
+    /**
+     * A translation channel recording the bones it is sampled for, whose value is the sampled time.
+     */
+    private static class RecordingChannel implements InterpolatableChannel<Vector3fc> {
+        private final int boneIndex;
+        private final Set<Integer> sampledBones;
+
+        RecordingChannel(int boneIndex, Set<Integer> sampledBones) {
+            this.boneIndex = boneIndex;
+            this.sampledBones = sampledBones;
+        }
+
+        @Override
+        public Vector3fc compute(float timeS) {
+            sampledBones.add(boneIndex);
+            return new Vector3f(timeS, 0, 0);
+        }
+
+        @Override
+        public InterpolatableKeyframe<Vector3fc> getKeyFrame(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public int getKeyFrameCount() {
+            return 0;
+        }
+
+        @Override
+        public float getEndTimeS() {
+            return 1;
+        }
+    }
+
+    /**
+     * An animation always evaluating to the same pose, relying on the default masked evaluation.
+     */
+    private static class PoseAnimation implements Animation {
+        private final Pose pose;
+
+        PoseAnimation(Pose pose) {
+            this.pose = pose;
+        }
+
+        @Override
+        public String getName() {
+            return "pose";
+        }
+
+        @Override
+        public void setTranslationChannel(int boneIndex, @Nullable InterpolatableChannel<? extends Vector3fc> channel) {
+        }
+
+        @Override
+        public void setScaleChannel(int boneIndex, @Nullable InterpolatableChannel<? extends Vector3fc> channel) {
+        }
+
+        @Override
+        public void setRotationChannel(int boneIndex, @Nullable InterpolatableChannel<? extends Rotation> channel) {
+        }
+
+        @Override
+        public Pose evaluate(float timeS) {
+            return pose;
+        }
+
+        @Override
+        public void setClipChannel(String channelName, @Nullable ClipChannel<?> channel) {
+        }
+
+        @Override
+        public <T> @Nullable Iterable<Keyframe<T>> clip(String channelName, float fromTimeS, float toTimeS) {
+            return null;
+        }
+
+        @Override
+        public void setCurve(String curveName, @Nullable InterpolatableChannel<?> curve) {
+        }
+
+        @Override
+        public <T> @Nullable T evaluateCurve(String curveName, float timeS) {
+            return null;
+        }
+
+        @Override
+        public float getEndTimeS() {
+            return 1;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.maydaymemory.mae.blend;
 
 import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.control.blend.BlendSpace1DNode;
+import com.maydaymemory.mae.control.blend.BlendSpace2DNode;
 import com.maydaymemory.mae.util.MathUtil;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
@@ -8,6 +10,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.*;
+import java.util.function.BiFunction;
 
 public class BlenderTest {
     @Test
@@ -133,6 +136,67 @@ public class BlenderTest {
     }
 
 
+    @Test
+    public void testArrayBlendSpace1D() {
+        BoneTransformFactory transformFactory = new ZYXBoneTransformFactory();
+        SimpleBlendSpace1D reference = new SimpleBlendSpace1D(transformFactory, ArrayPoseBuilder::new);
+        ArrayBlendSpace1D blendSpace = new ArrayBlendSpace1D(transformFactory, ArrayPoseBuilder::new);
+        float[] positions = {0.5f, -1f, 2f, 0f, 1f};
+        for (int i = 0; i < positions.length; i++) {
+            BoneTransform bone0 = transformFactory.createBoneTransform(0, new Vector3f(positions[i], 1, 0),
+                    new Vector3f(0, positions[i], 0), new Vector3f(1));
+            BoneTransform bone2 = transformFactory.createBoneTransform(2, new Vector3f(0, positions[i] * 2, 0),
+                    new Vector3f(positions[i], 0, 0), new Vector3f(1 + positions[i]));
+            // Sampler 3 lacks bone 2.
+            Pose pose = new ArrayPose(new ArrayList<>(i == 3 ? Collections.singletonList(bone0) : Arrays.asList(bone0, bone2)));
+            // Poses before positions, and a moved sampler.
+            blendSpace.setSamplerPose(i, pose);
+            blendSpace.setSamplerPosition(i, i == 4 ? 3f : positions[i]);
+            reference.setSamplerPosition(i, positions[i]);
+            reference.setSamplerPose(i, pose);
+        }
+        blendSpace.setSamplerPosition(4, 1f);
+
+        // Sweeps back and forth through the cached segment, plus jumps.
+        float[] sweep = {-2f, -1f, -0.6f, -0.2f, 0f, 0.3f, 0.5f, 0.9f, 1.4f, 2f, 2.5f, 1.2f, -0.7f, 0.7f};
+        DensePose result = new DensePose(1);
+        for (float position : sweep) {
+            Iterator<BoneTransform> expected = reference.blend(position).getBoneTransforms().iterator();
+            blendSpace.blendInto(position, result);
+            Pose actual = blendSpace.blend(position);
+            int entry = 0;
+            for (BoneTransform transform : actual.getBoneTransforms()) {
+                BoneTransform reference1 = expected.next();
+                Assertions.assertEquals(reference1.boneIndex(), transform.boneIndex());
+                Assertions.assertTrue(reference1.translation().equals(transform.translation(), 1e-5f));
+                Assertions.assertTrue(reference1.scale().equals(transform.scale(), 1e-5f));
+                Quaternionf rotation = new Quaternionf(transform.rotation().asQuaternion());
+                Assertions.assertTrue(Math.abs(rotation.dot(new Quaternionf(reference1.rotation().asQuaternion()))) > 1 - 1e-5f);
+                if (result.size() > 0) {
+                    Assertions.assertEquals(transform.boneIndex(), result.getBoneIndex(entry));
+                    Assertions.assertTrue(result.getTranslation(entry, new Vector3f()).equals(transform.translation(), 1e-5f));
+                }
+                entry++;
+            }
+            Assertions.assertFalse(expected.hasNext());
+        }
+
+        // Smoothing blends more than two samplers and keeps linear data linear inside the sampler range.
+        blendSpace.setSmoothingRadius(0.8f);
+        SamplerWeights weights = new SamplerWeights();
+        blendSpace.computeWeights(0.5f, weights);
+        Assertions.assertTrue(weights.size() > 2);
+        float sum = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            sum += weights.getWeight(i);
+        }
+        Assertions.assertEquals(1f, sum, 1e-5f);
+        for (float position : new float[]{-0.2f, 0.5f, 0.75f, 1.2f}) {
+            BoneTransform transform = blendSpace.blend(position).getBoneTransforms().iterator().next();
+            Assertions.assertEquals(position, transform.translation().x(), 1e-5f);
+        }
+    }
+
     @Test
     public void testClampBlendSpace2D() {
         BoneTransformFactory transformFactory = new ZYXBoneTransformFactory();
@@ -191,6 +255,13 @@ public class BlenderTest {
         BoneTransform outputTransform2 = output2.get(0);
         // System.out.println(outputTransform2);
         Assertions.assertEquals(outputTransform2.translation(), translationB.lerp(translationC, 0.5f, new Vector3f()));
+
+        // Weights computed for a position are reused by the blend at the same position, and refreshed when it moves.
+        SamplerWeights weights = new SamplerWeights();
+        blendSpace.computeWeights(1, 1, weights);
+        Assertions.assertEquals(outputTransform2.translation(), ((ArrayPose) blendSpace.blend(1, 1)).get(0).translation());
+        blendSpace.computeWeights(0, 1, weights);
+        Assertions.assertEquals(translationB, ((ArrayPose) blendSpace.blend(0, 1)).get(0).translation());
     }
 
     @Test
@@ -263,4 +334,198 @@ public class BlenderTest {
         InterpolatorBlender blender = new SimpleInterpolatorBlender(transformFactory, () -> new ArrayPoseBuilder(10000));
         blender.blend(builder1.toPose(), builder2.toPose(), 0.5f);
     }
+
+    @Test
+    public void testCubicHermiteFusedBlend() {
+        BoneTransformFactory transformFactory = new ZYXBoneTransformFactory();
+        Pose base = new ArrayPose(new ArrayList<>(Arrays.asList(
+                transformFactory.createBoneTransform(0, new Vector3f(0, 1, 0), new Quaternionf().rotateY(0.2f), new Vector3f(1)),
+                transformFactory.createBoneTransform(2, new Vector3f(1, 0, 0), new Quaternionf(), new Vector3f(1)))));
+        Pose baseVelocity = new ArrayPose(new ArrayList<>(Collections.singletonList(
+                new BoneTransform(0, new Vector3f(1, 0, 0), new RotationVelocityRotationView(new Vector3f(0, 0.5f, 0)), new Vector3f()))));
+        Pose target = new ArrayPose(new ArrayList<>(Arrays.asList(
+                transformFactory.createBoneTransform(0, new Vector3f(2, 1, 0), new Quaternionf().rotateX(0.8f), new Vector3f(2)),
+                transformFactory.createBoneTransform(3, new Vector3f(0, 0, 3), new Quaternionf().rotateZ(0.4f), new Vector3f(1)))));
+        Pose targetVelocity = new ArrayPose(new ArrayList<>(Collections.singletonList(
+                new BoneTransform(3, new Vector3f(0, 0, -1), new RotationVelocityRotationView(new Vector3f()), new Vector3f()))));
+
+        CubicHermiteInterpolatorBlender blender = new CubicHermiteInterpolatorBlender(transformFactory, ArrayPoseBuilder::new);
+        CubicHermiteInterpolatorBlender.Result result = new CubicHermiteInterpolatorBlender.Result(1);
+        float time = 0.3f;
+        float duration = 0.5f;
+        float step = 1e-3f;
+        blender.blendFused(base, baseVelocity, target, targetVelocity, time, duration, result);
+        Assertions.assertEquals(3, result.size());
+
+        Iterator<BoneTransform> positions = blender.blend(base, baseVelocity, target, targetVelocity, time, duration).getBoneTransforms().iterator();
+        Iterator<BoneTransform> next = blender.blend(base, baseVelocity, target, targetVelocity, time + step, duration).getBoneTransforms().iterator();
+        Iterator<BoneTransform> velocities = blender.blendVelocity(base, baseVelocity, target, targetVelocity, time, duration).getBoneTransforms().iterator();
+        Vector3f vector = new Vector3f();
+        Quaternionf rotation = new Quaternionf();
+        for (int i = 0; i < result.size(); i++) {
+            BoneTransform position = positions.next();
+            BoneTransform nextPosition = next.next();
+            BoneTransform velocity = velocities.next();
+            Assertions.assertEquals(position.boneIndex(), result.getBoneIndex(i));
+            Assertions.assertEquals(velocity.boneIndex(), result.getBoneIndex(i));
+            Assertions.assertEquals(position.translation(), result.getTranslation(i, vector));
+            Assertions.assertEquals(position.scale(), result.getScale(i, vector));
+            Assertions.assertEquals(new Quaternionf(position.rotation().asQuaternion()), result.getRotation(i, rotation));
+            Assertions.assertEquals(velocity.translation(), result.getTranslationVelocity(i, vector));
+            Assertions.assertEquals(velocity.rotation().asEulerAngle(), result.getRotationVelocity(i, vector));
+
+            // The velocity is the derivative of the position.
+            Vector3f difference = nextPosition.translation().sub(position.translation(), new Vector3f()).div(step);
+            Assertions.assertEquals(difference.x, velocity.translation().x(), 1e-2f);
+            Assertions.assertEquals(difference.z, velocity.translation().z(), 1e-2f);
+            Quaternionf relative = new Quaternionf(nextPosition.rotation().asQuaternion())
+                    .mul(position.rotation().asQuaternion().conjugate(new Quaternionf()));
+            Vector3f rotationDifference = MathUtil.logUnit(relative).div(step);
+            Assertions.assertEquals(rotationDifference.length(), velocity.rotation().asEulerAngle().length(), 2e-2f);
+        }
+    }
+
+    @Test
+    public void testDynamicBlendSpace2D() throws InterruptedException {
+        BoneTransformFactory transformFactory = new ZYXBoneTransformFactory();
+        DynamicBlendSpace2D blendSpace = new DynamicBlendSpace2D(transformFactory, ArrayPoseBuilder::new);
+        // Sampler poses are linear in their position, so blends reproduce the clamped position.
+        BiFunction<Float, Float, Pose> pose = (x, y) -> new ArrayPose(new ArrayList<>(Collections.singletonList(
+                transformFactory.createBoneTransform(0, new Vector3f(x, y, 0), new Vector3f(), new Vector3f(1)))));
+        blendSpace.setSamplerPosition(0, 0, 0);
+        blendSpace.setSamplerPose(0, pose.apply(0f, 0f));
+        Assertions.assertEquals(new Vector3f(), blendSpace.blend(3, 4).getBoneTransforms().iterator().next().translation());
+        blendSpace.setSamplerPosition(1, 2, 0);
+        blendSpace.setSamplerPose(1, pose.apply(2f, 0f));
+        Assertions.assertEquals(new Vector3f(1.5f, 0, 0), blendSpace.blend(1.5f, 4).getBoneTransforms().iterator().next().translation());
+
+        int index = 2;
+        for (int x = 0; x <= 2; x++) {
+            for (int y = 1; y <= 2; y++) {
+                blendSpace.setSamplerPosition(index, x, y);
+                blendSpace.setSamplerPose(index++, pose.apply((float) x, (float) y));
+            }
+        }
+        Assertions.assertEquals(1.2f, blendSpace.blend(1.2f, 0.7f).getBoneTransforms().iterator().next().translation().x(), 1e-5f);
+        Assertions.assertEquals(2f, blendSpace.blend(3f, 0.5f).getBoneTransforms().iterator().next().translation().x(), 1e-5f);
+
+        // Removing the corner (2, 2) cuts it off the hull, moving the sampler at (0, 0) extends the hull.
+        DynamicBlendSpace2D shared = blendSpace.share();
+        blendSpace.removeSampler(index - 1);
+        blendSpace.setSamplerPosition(0, -1, -1);
+        blendSpace.setSamplerPose(0, pose.apply(-1f, -1f));
+        Vector3f clamped = new Vector3f(blendSpace.blend(2, 2).getBoneTransforms().iterator().next().translation());
+        Assertions.assertEquals(1.5f, clamped.x, 1e-5f);
+        Assertions.assertEquals(1.5f, clamped.y, 1e-5f);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> blendSpace.setSamplerPosition(1, 0, 1));
+        Assertions.assertEquals(-0.5f, blendSpace.blend(-0.5f, -0.5f).getBoneTransforms().iterator().next().translation().x(), 1e-5f);
+
+        // Blends on another thread see each edit either entirely or not at all.
+        for (int i = 0; i < 8; i++) {
+            shared.setSamplerPose(i, pose.apply(0f, 0f));
+        }
+        Thread editor = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                blendSpace.setSamplerPosition(100, 1 + (i % 7) * 0.1f, 0.5f + (i % 5) * 0.1f);
+                if (i % 3 == 0) {
+                    blendSpace.removeSampler(100);
+                }
+            }
+        });
+        Throwable[] editorFailure = new Throwable[1];
+        editor.setUncaughtExceptionHandler((thread, throwable) -> editorFailure[0] = throwable);
+        editor.start();
+        SamplerWeights weights = new SamplerWeights();
+        for (int blends = 0; blends < 100_000 && editor.isAlive(); blends++) {
+            Assertions.assertTrue(shared.computeWeights(1.1f, 0.6f, weights));
+            float sum = 0;
+            for (int i = 0; i < weights.size(); i++) {
+                sum += weights.getWeight(i);
+            }
+            Assertions.assertEquals(1f, sum, 1e-5f);
+            shared.blend(1.1f, 0.6f);
+        }
+        editor.join(10_000);
+        Assertions.assertFalse(editor.isAlive(), "Editor thread did not finish");
+        if (editorFailure[0] != null) {
+            Assertions.fail("Editor thread failed", editorFailure[0]);
+        }
+    }
+
+    @Test
+    public void testBoneMask() {
+        BoneTransformFactory transformFactory = new ZYXBoneTransformFactory();
+        BoneMask mask = BoneMask.allExcept(1);
+        List<Pose> poses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ArrayList<BoneTransform> transforms = new ArrayList<>();
+            for (int bone = 0; bone < 3; bone++) {
+                transforms.add(transformFactory.createBoneTransform(bone, new Vector3f(i, bone, 0), new Vector3f(), new Vector3f(1)));
+            }
+            poses.add(new ArrayPose(transforms));
+        }
+        List<Integer> expected = Arrays.asList(0, 2);
+
+        CubicHermiteInterpolatorBlender hermite = new CubicHermiteInterpolatorBlender(transformFactory, ArrayPoseBuilder::new);
+        hermite.setBoneMask(mask);
+        Assertions.assertEquals(expected, bones(hermite.blend(poses.get(0), DummyPose.INSTANCE, poses.get(1), DummyPose.INSTANCE, 0.5f, 1f)));
+        Assertions.assertEquals(expected, bones(hermite.blendVelocity(poses.get(0), DummyPose.INSTANCE, poses.get(1), DummyPose.INSTANCE, 0.5f, 1f)));
+
+        List<BlendSpace1D> blendSpaces1D = Arrays.asList(new SimpleBlendSpace1D(transformFactory, ArrayPoseBuilder::new),
+                new ArrayBlendSpace1D(transformFactory, ArrayPoseBuilder::new));
+        for (BlendSpace1D blendSpace : blendSpaces1D) {
+            for (int i = 0; i < 2; i++) {
+                blendSpace.setSamplerPosition(i, i);
+                blendSpace.setSamplerPose(i, poses.get(i));
+            }
+            blendSpace.setBoneMask(mask);
+            Assertions.assertEquals(expected, bones(blendSpace.blend(0.5f)));
+            // A single sampler is passed through filtered.
+            Assertions.assertEquals(expected, bones(blendSpace.blend(2f)));
+            Assertions.assertEquals(0.5f, blendSpace.blend(0.5f).getBoneTransforms().iterator().next().translation().x(), 1e-6f);
+        }
+
+        ClampToEdgeBlendSpace2D clampToEdge = new ClampToEdgeBlendSpace2D(transformFactory, ArrayPoseBuilder::new);
+        DynamicBlendSpace2D dynamic = new DynamicBlendSpace2D(transformFactory, ArrayPoseBuilder::new);
+        for (BlendSpace2D blendSpace : Arrays.<BlendSpace2D>asList(clampToEdge, dynamic)) {
+            blendSpace.setSamplerPosition(0, 0, 0);
+            blendSpace.setSamplerPosition(1, 1, 0);
+            blendSpace.setSamplerPosition(2, 0, 1);
+            for (int i = 0; i < 3; i++) {
+                blendSpace.setSamplerPose(i, poses.get(i));
+            }
+        }
+        clampToEdge.triangulate();
+        BlendSpace2DNode node = new BlendSpace2DNode(clampToEdge);
+        node.setBoneMask(mask);
+        Assertions.assertEquals(expected, bones(clampToEdge.blend(0.2f, 0.2f)));
+        dynamic.setBoneMask(mask);
+        Assertions.assertEquals(expected, bones(dynamic.blend(0.2f, 0.2f)));
+        Assertions.assertEquals(0.6f, dynamic.blend(0.2f, 0.2f).getBoneTransforms().iterator().next().translation().x(), 1e-6f);
+
+        BlendSpace1D custom = new BlendSpace1D() {
+            @Override
+            public void setSamplerPose(int index, Pose pose) {
+            }
+
+            @Override
+            public void setSamplerPosition(int index, float position) {
+            }
+
+            @Override
+            public Pose blend(float position) {
+                return DummyPose.INSTANCE;
+            }
+        };
+        custom.setBoneMask(BoneMask.ALL);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> new BlendSpace1DNode(custom).setBoneMask(mask));
+    }
+
+    private static List<Integer> bones(Pose pose) {
+        List<Integer> bones = new ArrayList<>();
+        for (BoneTransform transform : pose.getBoneTransforms()) {
+            bones.add(transform.boneIndex());
+        }
+        return bones;
+    }
 }
@@ -0,0 +1,101 @@
+package com.maydaymemory.mae.control;
+
+import com.maydaymemory.mae.control.runner.AnimationContext;
+import com.maydaymemory.mae.control.runner.LoopingState;
+import com.maydaymemory.mae.control.statemachine.ParameterBlackboard;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotBufferTest {
+    @Test
+    public void testPrimitivesAndReferences() {
+        SnapshotBuffer buffer = new SnapshotBuffer(32, 2);
+        Object reference = new Object();
+        buffer.beginWrite();
+        buffer.writeLong(42L);
+        buffer.writeInt(-7);
+        buffer.writeFloat(0.5f);
+        buffer.writeBoolean(true);
+        buffer.writeReference(reference);
+        buffer.writeReference(null);
+        Assertions.assertThrows(IllegalStateException.class, () -> buffer.writeReference(reference));
+        Assertions.assertThrows(IllegalStateException.class, buffer::readLong);
+
+        for (int pass = 0; pass < 2; pass++) {
+            buffer.beginRead();
+            Assertions.assertEquals(42L, buffer.readLong());
+            Assertions.assertEquals(-7, buffer.readInt());
+            Assertions.assertEquals(0.5f, buffer.readFloat());
+            Assertions.assertTrue(buffer.readBoolean());
+            Assertions.assertSame(reference, buffer.readReference());
+            Assertions.assertNull(buffer.readReference());
+            Assertions.assertThrows(IllegalStateException.class, buffer::readBoolean);
+        }
+        Assertions.assertEquals(17, buffer.getDataSize());
+        Assertions.assertThrows(IllegalStateException.class, () -> buffer.writeInt(1));
+
+        buffer.beginWrite();
+        buffer.writeLong(1L);
+        buffer.writeLong(2L);
+        buffer.writeLong(3L);
+        buffer.writeLong(4L);
+        Assertions.assertThrows(IllegalStateException.class, () -> buffer.writeInt(5));
+    }
+
+    @Test
+    public void testRestoreRewindsContext() {
+        long[] time = {0L};
+        AnimationContext context = new AnimationContext(1_000_000_000L);
+        LoopingState state = new LoopingState(() -> time[0]);
+        context.setState(state);
+        state.setSpeed(2f);
+        time[0] = 100_000_000L;
+        context.update();
+
+        SnapshotBuffer snapshot = new SnapshotBuffer(256, 4);
+        snapshot.beginWrite();
+        context.writeSnapshot(snapshot);
+        long progress = context.getProgress();
+        int planCount = context.getClipPlans().size();
+
+        time[0] = 700_000_000L;
+        state.setSpeed(1f);
+        context.update();
+        Assertions.assertNotEquals(progress, context.getProgress());
+
+        snapshot.beginRead();
+        context.readSnapshot(snapshot);
+        Assertions.assertEquals(progress, context.getProgress());
+        Assertions.assertEquals(planCount, context.getClipPlans().size());
+        Assertions.assertSame(state, context.getState());
+        Assertions.assertEquals(2f, state.getSpeed());
+
+        // Re-simulating from the snapshot gives the same result as the first simulation.
+        time[0] = 200_000_000L;
+        context.update();
+        long resimulated = context.getProgress();
+        snapshot.beginRead();
+        context.readSnapshot(snapshot);
+        context.update();
+        Assertions.assertEquals(resimulated, context.getProgress());
+    }
+
+    @Test
+    public void testRestoreBlackboard() {
+        ParameterBlackboard blackboard = new ParameterBlackboard();
+        int speed = blackboard.register("speed");
+        int target = blackboard.register("target");
+        blackboard.setFloat(speed, 1f);
+        SnapshotBuffer snapshot = new SnapshotBuffer(64, 2);
+        snapshot.beginWrite();
+        blackboard.writeSnapshot(snapshot);
+
+        blackboard.setFloat(speed, 3f);
+        blackboard.setObject(target, "enemy");
+        snapshot.beginRead();
+        blackboard.readSnapshot(snapshot);
+        Assertions.assertEquals(1f, blackboard.getFloat(speed));
+        Assertions.assertNull(blackboard.getObject(target));
+        Assertions.assertEquals(1, blackboard.getChangeCount());
+    }
+}
@@ -0,0 +1,82 @@
+package com.maydaymemory.mae.control.blend;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.blend.ClampToEdgeBlendSpace2D;
+import com.maydaymemory.mae.blend.SimpleBlendSpace1D;
+import com.maydaymemory.mae.control.Slot;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+public class BlendSpaceNodeTest {
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+    private int evaluations;
+
+    private Pose pose(float x, float y) {
+        evaluations++;
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        transforms.add(factory.createBoneTransform(0, new Vector3f(x, y, 0), new Vector3f(), new Vector3f(1)));
+        return new ArrayPose(transforms);
+    }
+
+    private static Vector3fc translation(Pose pose) {
+        return pose.getBoneTransforms().iterator().next().translation();
+    }
+
+    private static Slot<BlendSpace1DNode.PoseSampler> samplerSlot(BlendSpace1DNode.PoseSampler sampler) {
+        Slot<BlendSpace1DNode.PoseSampler> slot = new Slot<>();
+        slot.setDefaultValue(sampler);
+        return slot;
+    }
+
+    @Test
+    public void testBlendSpace2DEvaluatesTriangleOnly() {
+        ClampToEdgeBlendSpace2D blendSpace = new ClampToEdgeBlendSpace2D(factory, ArrayPoseBuilder::new);
+        BlendSpace2DNode node = new BlendSpace2DNode(blendSpace);
+        int index = 0;
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                blendSpace.setSamplerPosition(index, x, y);
+                float px = x;
+                float py = y;
+                node.getSamplerSlots().add(samplerSlot(BlendSpace1DNode.PoseSampler.lazy(index++, () -> pose(px, py))));
+            }
+        }
+        blendSpace.triangulate();
+
+        for (float[] position : new float[][]{{0.3f, 0.4f}, {-0.6f, 0.2f}, {2f, -3f}}) {
+            node.getPositionXSlot().setDefaultValue(position[0]);
+            node.getPositionYSlot().setDefaultValue(position[1]);
+            evaluations = 0;
+            Vector3fc result = translation(node.getPose());
+            Assertions.assertEquals(3, evaluations);
+            // The samplers are linear in the position, so the blend reproduces the clamped position.
+            Assertions.assertEquals(Math.max(-1, Math.min(1, position[0])), result.x(), 1e-5f);
+            Assertions.assertEquals(Math.max(-1, Math.min(1, position[1])), result.y(), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testBlendSpace1DEvaluatesNeighboursOnly() {
+        SimpleBlendSpace1D blendSpace = new SimpleBlendSpace1D(factory, ArrayPoseBuilder::new);
+        BlendSpace1DNode node = new BlendSpace1DNode(blendSpace);
+        for (int i = 0; i < 5; i++) {
+            blendSpace.setSamplerPosition(i, i);
+            float x = i;
+            node.getSamplerSlots().add(samplerSlot(BlendSpace1DNode.PoseSampler.lazy(i, () -> pose(x, 0))));
+        }
+
+        node.getPositionSlot().setDefaultValue(2.25f);
+        evaluations = 0;
+        Assertions.assertEquals(2.25f, translation(node.getPose()).x(), 1e-5f);
+        Assertions.assertEquals(2, evaluations);
+
+        node.getPositionSlot().setDefaultValue(-1f);
+        evaluations = 0;
+        Assertions.assertEquals(0f, translation(node.getPose()).x(), 1e-5f);
+        Assertions.assertEquals(1, evaluations);
+    }
+}
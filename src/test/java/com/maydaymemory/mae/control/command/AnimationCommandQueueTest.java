@@ -0,0 +1,65 @@
+package com.maydaymemory.mae.control.command;
+
+import com.maydaymemory.mae.control.runner.AnimationContext;
+import com.maydaymemory.mae.control.runner.LoopingState;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AnimationCommandQueueTest {
+    @Test
+    public void testCommandsAppliedInOrder() {
+        AnimationCommandQueue queue = new AnimationCommandQueue(4);
+        AnimationContext context = new AnimationContext(1000L);
+        LoopingState state = new LoopingState(() -> 0L);
+
+        Assertions.assertTrue(queue.setState(context, state));
+        Assertions.assertTrue(queue.setProgress(context, 100L));
+        Assertions.assertTrue(queue.setSpeed(state, 2f));
+        Assertions.assertTrue(queue.setProgress(context, 200L));
+        // capacity reached
+        Assertions.assertFalse(queue.setProgress(context, 300L));
+        Assertions.assertNull(context.getState());
+
+        Assertions.assertEquals(4, queue.drain());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertSame(state, context.getState());
+        Assertions.assertEquals(200L, context.getProgress());
+        Assertions.assertEquals(2f, state.getSpeed());
+
+        // slots are reusable after draining
+        Assertions.assertTrue(queue.setProgress(context, 300L));
+        Assertions.assertEquals(1, queue.drain());
+        Assertions.assertEquals(300L, context.getProgress());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        AnimationCommandQueue queue = new AnimationCommandQueue(64);
+        AtomicInteger counter = new AtomicInteger();
+        Runnable increment = counter::incrementAndGet;
+        int producers = 4;
+        int perProducer = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < perProducer; j++) {
+                    while (!queue.run(increment)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        int drained = 0;
+        while (drained < producers * perProducer) {
+            drained += queue.drain();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(producers * perProducer, counter.get());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,34 @@
+package com.maydaymemory.mae.control.graph;
+
+/**
+ * Prints how many graphs per second {@link AnimationGraphTemplate#instantiate(Object)} creates, with the
+ * blend space graph of {@link AnimationGraphTemplateTest}.
+ *
+ * <p>Not a test, since timings depend on the machine: run {@link #main(String[])} by hand. Spawning should
+ * reach well over 10k graphs per second.</p>
+ */
+public class AnimationGraphTemplateBenchmark {
+    public static void main(String[] args) {
+        AnimationGraphTemplate<AnimationGraphTemplateTest.Character> template = new AnimationGraphTemplateTest().createTemplate();
+        int count = 100_000;
+        // Warm up before measuring.
+        instantiate(template, count);
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            int created = instantiate(template, count);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d graphs: %.4fs, %.0f graphs/s%n", created, seconds, created / seconds);
+        }
+    }
+
+    private static int instantiate(AnimationGraphTemplate<AnimationGraphTemplateTest.Character> template, int count) {
+        // Consume the graphs so that instantiation cannot be optimized away.
+        int created = 0;
+        for (int i = 0; i < count; i++) {
+            if (template.instantiate(new AnimationGraphTemplateTest.Character()).getNode(0) != null) {
+                created++;
+            }
+        }
+        return created;
+    }
+}
@@ -0,0 +1,161 @@
+package com.maydaymemory.mae.control.graph;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.blend.ClampToEdgeBlendSpace2D;
+import com.maydaymemory.mae.blend.SimpleInterpolatorBlender;
+import com.maydaymemory.mae.control.Slot;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.control.Tickable;
+import com.maydaymemory.mae.control.blend.BlendSpace1DNode;
+import com.maydaymemory.mae.control.blend.BlendSpace2DNode;
+import com.maydaymemory.mae.control.blend.InterpolatorBlenderNode;
+import com.maydaymemory.mae.control.misc.RealtimeVelocityEstimatorNode;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+public class AnimationGraphTemplateTest {
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+
+    private Pose pose(float x, float y) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        transforms.add(factory.createBoneTransform(0, new Vector3f(x, y, 0), new Vector3f(), new Vector3f(1)));
+        return new ArrayPose(transforms);
+    }
+
+    private static Vector3fc translation(Pose pose) {
+        return pose.getBoneTransforms().iterator().next().translation();
+    }
+
+    static class Character {
+        float x;
+        float y;
+        int ticks;
+    }
+
+    AnimationGraphTemplate<Character> createTemplate() {
+        ClampToEdgeBlendSpace2D blendSpace = new ClampToEdgeBlendSpace2D(factory, ArrayPoseBuilder::new);
+        blendSpace.setSamplerPosition(0, 0, 0);
+        blendSpace.setSamplerPosition(1, 1, 0);
+        blendSpace.setSamplerPosition(2, 0, 1);
+        blendSpace.triangulate();
+        BlendSpace1DNode.PoseSampler[] samplers = {
+                new BlendSpace1DNode.PoseSampler(0, pose(0, 0)),
+                new BlendSpace1DNode.PoseSampler(1, pose(1, 0)),
+                new BlendSpace1DNode.PoseSampler(2, pose(0, 1))
+        };
+        SimpleInterpolatorBlender blender = new SimpleInterpolatorBlender(factory, ArrayPoseBuilder::new);
+        Pose offset = pose(10, 10);
+
+        AnimationGraphTemplate.Builder<Character> builder = AnimationGraphTemplate.builder();
+        AnimationGraphTemplate.Node<BlendSpace2DNode> locomotion = builder.add("locomotion", c -> {
+            BlendSpace2DNode node = new BlendSpace2DNode(blendSpace.share());
+            for (BlendSpace1DNode.PoseSampler sampler : samplers) {
+                Slot<BlendSpace1DNode.PoseSampler> slot = new Slot<>();
+                slot.setDefaultValue(sampler);
+                node.getSamplerSlots().add(slot);
+            }
+            return node;
+        });
+        AnimationGraphTemplate.Node<InterpolatorBlenderNode> blend = builder.add("blend", c -> new InterpolatorBlenderNode(blender));
+        builder.add("clock", c -> (Tickable) () -> c.ticks++);
+        return builder
+                .connectContext(c -> () -> c.x, locomotion, BlendSpace2DNode::getPositionXSlot)
+                .connectContext(c -> () -> c.y, locomotion, BlendSpace2DNode::getPositionYSlot)
+                .connect(locomotion, BlendSpace2DNode::getOutputPort, blend, InterpolatorBlenderNode::getBasePoseSlot)
+                .setDefault(blend, InterpolatorBlenderNode::getInputPoseSlot, offset)
+                .setDefault(blend, InterpolatorBlenderNode::getWeightSlot, 0f)
+                .output(blend, InterpolatorBlenderNode::getOutputPort)
+                .build();
+    }
+
+    @Test
+    public void testInstancesAreIndependent() {
+        AnimationGraphTemplate<Character> template = createTemplate();
+        Character first = new Character();
+        Character second = new Character();
+        AnimationGraph<Character> a = template.instantiate(first);
+        AnimationGraph<Character> b = template.instantiate(second);
+        Assertions.assertEquals(3, template.getNodeCount());
+        Assertions.assertEquals(1, template.indexOf("blend"));
+
+        first.x = 0.5f;
+        second.y = 0.25f;
+        Vector3fc translationA = translation(a.getPose());
+        Vector3fc translationB = translation(b.getPose());
+        Assertions.assertEquals(0.5f, translationA.x(), 1e-5f);
+        Assertions.assertEquals(0f, translationA.y(), 1e-5f);
+        Assertions.assertEquals(0f, translationB.x(), 1e-5f);
+        Assertions.assertEquals(0.25f, translationB.y(), 1e-5f);
+
+        a.tick();
+        a.tick();
+        b.tick();
+        Assertions.assertEquals(2, first.ticks);
+        Assertions.assertEquals(1, second.ticks);
+        Assertions.assertNotSame(a.getNode(0), b.getNode(0));
+    }
+
+    @Test
+    public void testRejectsForeignNodes() {
+        AnimationGraphTemplate.Builder<Character> builder = AnimationGraphTemplate.builder();
+        AnimationGraphTemplate.Node<Object> node = builder.add("node", c -> new Object());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> builder.add("node", c -> new Object()));
+        AnimationGraph<Character> graph = createTemplate().instantiate(new Character());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> graph.getNode(node));
+    }
+
+    @Test
+    public void testRepeatedInstantiation() {
+        AnimationGraphTemplate<Character> template = createTemplate();
+        Character character = new Character();
+        AnimationGraph<Character> previous = null;
+        for (int i = 0; i < 1_000; i++) {
+            AnimationGraph<Character> graph = template.instantiate(character);
+            Assertions.assertSame(template, graph.getTemplate());
+            if (previous != null) {
+                Assertions.assertNotSame(previous.getNode(1), graph.getNode(1));
+            }
+            previous = graph;
+        }
+        character.x = 1f;
+        Assertions.assertEquals(1f, translation(previous.getPose()).x(), 1e-5f);
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() {
+        AnimationGraphTemplate.Builder<Character> builder = AnimationGraphTemplate.builder();
+        builder.add("clock", c -> (Tickable) () -> c.ticks++);
+        AnimationGraphTemplate.Node<RealtimeVelocityEstimatorNode> velocity = builder.add("velocity",
+                c -> new RealtimeVelocityEstimatorNode(ArrayPoseBuilder::new, () -> c.ticks * 10_000_000L, 4));
+        AnimationGraphTemplate<Character> template = builder
+                .connectContext(c -> () -> pose(c.x, 0), velocity, RealtimeVelocityEstimatorNode::getPoseSlot)
+                .output(velocity, RealtimeVelocityEstimatorNode::getOutputPort)
+                .build();
+        Character character = new Character();
+        AnimationGraph<Character> graph = template.instantiate(character);
+        for (int frame = 0; frame < 5; frame++) {
+            character.x = frame * 0.01f;
+            graph.tick();
+        }
+        SnapshotBuffer buffer = new SnapshotBuffer(1024, 0);
+        buffer.beginWrite();
+        graph.writeSnapshot(buffer);
+        int savedTicks = character.ticks;
+        float expected = translation(graph.getPose()).x();
+        Assertions.assertEquals(1f, expected, 1e-3f);
+
+        character.x = 100f;
+        graph.tick();
+        Assertions.assertNotEquals(expected, translation(graph.getPose()).x(), 1e-3f);
+
+        // The context is not part of the snapshot and is restored by its owner.
+        buffer.beginRead();
+        graph.readSnapshot(buffer);
+        character.ticks = savedTicks;
+        Assertions.assertEquals(expected, translation(graph.getPose()).x(), 1e-6f);
+    }
+}
@@ -0,0 +1,214 @@
+package com.maydaymemory.mae.control.lod;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class LodPoseNodeTest {
+    private static final long FRAME_NANOS = 10_000_000L;
+
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+    private final long[] time = {0L};
+    /** Number of times the upstream pose was pulled */
+    private final int[] evaluations = {0};
+
+    private LodPoseNode createNode(LodUpdateRate updateRate, LodPoseNode.FillMode fillMode) {
+        LodPoseNode node = new LodPoseNode(factory, () -> time[0]);
+        node.setUpdateRate(updateRate);
+        node.setFillMode(fillMode);
+        // The upstream pose moves bone 0 by 1 unit per second along X.
+        node.getPoseSlot().connect(() -> {
+            evaluations[0]++;
+            return pose(time[0] / 1e9f);
+        });
+        return node;
+    }
+
+    private Pose pose(float x) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        transforms.add(factory.createBoneTransform(0, new Vector3f(x, 0, 0), new Quaternionf(), new Vector3f(1)));
+        transforms.add(factory.createBoneTransform(3, new Vector3f(0, 1, 0), new Quaternionf(), new Vector3f(1)));
+        return new ArrayPose(transforms);
+    }
+
+    private Pose velocity(float x, float rotationY) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        Vector3f rotationVelocity = new Vector3f(0, rotationY, 0);
+        transforms.add(new BoneTransform(0, new Vector3f(x, 0, 0), new RotationView() {
+            @Override
+            public Vector3fc asEulerAngle() {
+                return rotationVelocity;
+            }
+
+            @Override
+            public Quaternionfc asQuaternion() {
+                return new Quaternionf();
+            }
+        }, new Vector3f()));
+        return new ArrayPose(transforms);
+    }
+
+    private void advance(LodPoseNode node) {
+        node.tick();
+        time[0] += FRAME_NANOS;
+    }
+
+    private static BoneTransform bone(Pose pose, int boneIndex) {
+        for (BoneTransform transform : pose.getBoneTransforms()) {
+            if (transform.boneIndex() == boneIndex) {
+                return transform;
+            }
+        }
+        throw new AssertionError("Missing bone " + boneIndex);
+    }
+
+    @Test
+    public void testSkippedFramesExtrapolate() {
+        LodPoseNode node = createNode(LodUpdateRate.EVERY_4_FRAMES, LodPoseNode.FillMode.EXTRAPOLATE);
+        int[] velocityPulls = {0};
+        node.getVelocitySlot().connect(() -> {
+            velocityPulls[0]++;
+            return velocity(2, 0.5f);
+        });
+
+        for (int frame = 0; frame < 8; frame++) {
+            node.tick();
+            Assertions.assertEquals(frame % 4 == 0, node.isFullEvaluationFrame());
+            float seconds = (frame % 4) * FRAME_NANOS / 1e9f;
+            BoneTransform root = bone(node.getPose(), 0);
+            Assertions.assertEquals((frame - frame % 4) * FRAME_NANOS / 1e9f + 2 * seconds, root.translation().x(), 1e-5f);
+            Assertions.assertEquals(1, root.scale().x(), 1e-6f);
+            // Rotation velocity is the quaternion logarithm per second, i.e. half the angular velocity.
+            Quaternionf expected = new Quaternionf().rotateY(seconds);
+            Assertions.assertEquals(expected.y, root.rotation().asQuaternion().y(), 1e-5f);
+            Assertions.assertEquals(expected.w, root.rotation().asQuaternion().w(), 1e-5f);
+            // Bones without velocity are held.
+            Assertions.assertEquals(1, bone(node.getPose(), 3).translation().y(), 1e-6f);
+            time[0] += FRAME_NANOS;
+        }
+        Assertions.assertEquals(2, evaluations[0]);
+        // The velocity is pulled once per sample, on the first extrapolated frame.
+        Assertions.assertEquals(2, velocityPulls[0]);
+    }
+
+    @Test
+    public void testExtrapolateWithoutVelocityHolds() {
+        LodPoseNode node = createNode(LodUpdateRate.EVERY_2_FRAMES, LodPoseNode.FillMode.EXTRAPOLATE);
+        advance(node);
+        node.tick();
+        Assertions.assertFalse(node.isFullEvaluationFrame());
+        Assertions.assertEquals(0, bone(node.getPose(), 0).translation().x(), 1e-6f);
+    }
+
+    @Test
+    public void testHold() {
+        LodPoseNode node = createNode(LodUpdateRate.EVERY_4_FRAMES, LodPoseNode.FillMode.HOLD);
+        Assertions.assertSame(DummyPose.INSTANCE, node.getPose());
+        for (int frame = 0; frame < 6; frame++) {
+            node.tick();
+            float sampleSeconds = (frame < 4 ? 0 : 4) * FRAME_NANOS / 1e9f;
+            Assertions.assertEquals(sampleSeconds, bone(node.getPose(), 0).translation().x(), 1e-6f);
+            Assertions.assertEquals(sampleSeconds, bone(node.getLastSample(), 0).translation().x(), 1e-6f);
+            time[0] += FRAME_NANOS;
+        }
+        Assertions.assertEquals(2, evaluations[0]);
+    }
+
+    @Test
+    public void testInterpolate() {
+        LodPoseNode node = createNode(LodUpdateRate.EVERY_2_FRAMES, LodPoseNode.FillMode.INTERPOLATE);
+        // Without a previous sample, the latest one is held.
+        advance(node);
+        node.tick();
+        Assertions.assertEquals(0, bone(node.getPose(), 0).translation().x(), 1e-6f);
+        time[0] += FRAME_NANOS;
+
+        advance(node);
+        // Halfway through the interval, halfway between the samples at 0 and 2 frames.
+        node.tick();
+        Assertions.assertFalse(node.isFullEvaluationFrame());
+        Assertions.assertEquals(FRAME_NANOS / 1e9f, bone(node.getPose(), 0).translation().x(), 1e-6f);
+        Assertions.assertEquals(1, bone(node.getPose(), 3).translation().y(), 1e-6f);
+        Assertions.assertEquals(1, bone(node.getPose(), 3).rotation().asQuaternion().w(), 1e-6f);
+    }
+
+    @Test
+    public void testPhaseStaggering() {
+        LodPoseNode first = createNode(LodUpdateRate.EVERY_2_FRAMES, LodPoseNode.FillMode.HOLD);
+        LodPoseNode second = createNode(LodUpdateRate.EVERY_2_FRAMES, LodPoseNode.FillMode.HOLD);
+        second.setPhase(1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> second.setPhase(-1));
+
+        // The first tick always evaluates, then the phases alternate.
+        boolean[] expectedFirst = {true, false, true, false, true};
+        boolean[] expectedSecond = {true, true, false, true, false};
+        for (int frame = 0; frame < expectedFirst.length; frame++) {
+            first.tick();
+            second.tick();
+            Assertions.assertEquals(expectedFirst[frame], first.isFullEvaluationFrame());
+            Assertions.assertEquals(expectedSecond[frame], second.isFullEvaluationFrame());
+            if (frame > 0) {
+                Assertions.assertNotEquals(first.isFullEvaluationFrame(), second.isFullEvaluationFrame());
+            }
+        }
+    }
+
+    @Test
+    public void testMetrics() {
+        LodMetrics shared = new LodMetrics();
+        Assertions.assertEquals(0, shared.getSavingRatio());
+        LodPoseNode first = createNode(LodUpdateRate.EVERY_4_FRAMES, LodPoseNode.FillMode.HOLD);
+        LodPoseNode second = createNode(LodUpdateRate.EVERY_FRAME, LodPoseNode.FillMode.HOLD);
+        first.setMetrics(shared);
+        second.setMetrics(shared);
+        Assertions.assertSame(shared, first.getMetrics());
+        for (int frame = 0; frame < 8; frame++) {
+            first.tick();
+            second.tick();
+        }
+        Assertions.assertEquals(2 + 8, shared.getEvaluatedFrames());
+        Assertions.assertEquals(6, shared.getSkippedFrames());
+        Assertions.assertEquals(6f / 16, shared.getSavingRatio(), 1e-6f);
+        Assertions.assertEquals(10, evaluations[0]);
+
+        shared.reset();
+        Assertions.assertEquals(0, shared.getEvaluatedFrames());
+        Assertions.assertEquals(0, shared.getSkippedFrames());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() {
+        LodPoseNode node = createNode(LodUpdateRate.EVERY_4_FRAMES, LodPoseNode.FillMode.INTERPOLATE);
+        for (int frame = 0; frame < 6; frame++) {
+            advance(node);
+        }
+        SnapshotBuffer buffer = new SnapshotBuffer(1024, 16);
+        buffer.beginWrite();
+        node.writeSnapshot(buffer);
+        long savedTime = time[0];
+        node.tick();
+        float expected = bone(node.getPose(), 0).translation().x();
+
+        for (int frame = 0; frame < 9; frame++) {
+            advance(node);
+        }
+        buffer.beginRead();
+        node.readSnapshot(buffer);
+        time[0] = savedTime;
+        node.tick();
+        Assertions.assertFalse(node.isFullEvaluationFrame());
+        Assertions.assertEquals(expected, bone(node.getPose(), 0).translation().x(), 1e-6f);
+        Iterator<BoneTransform> iterator = node.getLastSample().getBoneTransforms().iterator();
+        Assertions.assertEquals(4 * FRAME_NANOS / 1e9f, iterator.next().translation().x(), 1e-6f);
+        Assertions.assertEquals(3, iterator.next().boneIndex());
+        Assertions.assertFalse(iterator.hasNext());
+    }
+}
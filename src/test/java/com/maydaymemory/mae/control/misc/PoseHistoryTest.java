@@ -0,0 +1,76 @@
+package com.maydaymemory.mae.control.misc;
+
+import com.maydaymemory.mae.basic.*;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class PoseHistoryTest {
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+
+    private Pose pose(float x, float angle) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        for (int bone = 0; bone < 3; bone++) {
+            transforms.add(factory.createBoneTransform(bone, new Vector3f(x + bone, 0, 0),
+                    new Quaternionf().rotateY(angle), new Vector3f(1)));
+        }
+        return new ArrayPose(transforms);
+    }
+
+    @Test
+    public void testInterpolatesBetweenSamples() {
+        long[] time = {0L};
+        PoseHistory history = new PoseHistory(3, 4, factory, ArrayPoseBuilder::new, () -> time[0]);
+        Assertions.assertSame(DummyPose.INSTANCE, history.getPose(0L));
+
+        history.getPoseSlot().setDefaultValue(pose(0, 0));
+        history.tick();
+        time[0] = 100L;
+        history.getPoseSlot().setDefaultValue(pose(1, 1f));
+        history.tick();
+
+        Vector3f translation = new Vector3f();
+        Quaternionf rotation = new Quaternionf();
+        Vector3f scale = new Vector3f();
+        Assertions.assertTrue(history.sampleBone(25L, 1, translation, rotation, scale));
+        Assertions.assertEquals(1.25f, translation.x, 1e-6f);
+        Assertions.assertEquals(0.25f, rotation.angle(), 1e-3f);
+        Assertions.assertEquals(1f, scale.y, 1e-6f);
+
+        // Clamped outside the recorded span.
+        Assertions.assertTrue(history.sampleBone(500L, 0, translation, rotation, scale));
+        Assertions.assertEquals(1f, translation.x, 1e-6f);
+        Assertions.assertFalse(history.sampleBone(50L, 3, translation, rotation, scale));
+
+        Pose subset = history.getPose(50L, 0, 2);
+        Iterator<BoneTransform> iterator = subset.getBoneTransforms().iterator();
+        Assertions.assertEquals(0, iterator.next().boneIndex());
+        BoneTransform last = iterator.next();
+        Assertions.assertEquals(2, last.boneIndex());
+        Assertions.assertEquals(2.5f, last.translation().x(), 1e-6f);
+        Assertions.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testOverwritesOldestAndRewinds() {
+        PoseHistory history = new PoseHistory(3, 3, factory, ArrayPoseBuilder::new, () -> 0L);
+        for (int i = 0; i < 5; i++) {
+            history.record(pose(i, 0), i * 10L);
+        }
+        Assertions.assertEquals(3, history.size());
+        Assertions.assertEquals(20L, history.getOldestTime());
+        Assertions.assertEquals(40L, history.getNewestTime());
+
+        // Re-recording after a rollback drops the samples after that time.
+        history.record(pose(9, 0), 25L);
+        Assertions.assertEquals(2, history.size());
+        Assertions.assertEquals(25L, history.getNewestTime());
+        Vector3f translation = new Vector3f();
+        history.sampleBone(30L, 0, translation, new Quaternionf(), new Vector3f());
+        Assertions.assertEquals(9f, translation.x, 1e-6f);
+    }
+}
@@ -0,0 +1,133 @@
+package com.maydaymemory.mae.control.misc;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+public class RealtimeVelocityEstimatorNodeTest {
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+
+    private Pose pose(float seconds, boolean withExtraBone) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        transforms.add(factory.createBoneTransform(0, new Vector3f(2 * seconds, 0, 0),
+                new Quaternionf().rotateY(1.5f * seconds), new Vector3f(1 + seconds)));
+        if (withExtraBone) {
+            transforms.add(factory.createBoneTransform(5, new Vector3f(0, -seconds, 0),
+                    new Quaternionf(), new Vector3f(1)));
+        }
+        return new ArrayPose(transforms);
+    }
+
+    @Test
+    public void testConstantVelocity() {
+        long[] time = {0L};
+        RealtimeVelocityEstimatorNode node = new RealtimeVelocityEstimatorNode(ArrayPoseBuilder::new, () -> time[0], 6);
+        Assertions.assertSame(DummyPose.INSTANCE, node.getVelocityPose());
+
+        for (int frame = 0; frame < 20; frame++) {
+            time[0] = frame * FRAME_NANOS;
+            node.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, frame >= 14));
+            node.tick();
+        }
+
+        Iterator<BoneTransform> iterator = node.getVelocityPose().getBoneTransforms().iterator();
+        BoneTransform root = iterator.next();
+        Assertions.assertEquals(0, root.boneIndex());
+        Assertions.assertEquals(2f, root.translation().x(), 1e-2f);
+        // Rotation velocity is the quaternion logarithm per second, i.e. half the angular velocity.
+        Assertions.assertEquals(0.75f, root.rotation().asEulerAngle().y(), 1e-2f);
+        Assertions.assertEquals(1f, root.scale().x(), 1e-2f);
+        BoneTransform extra = iterator.next();
+        Assertions.assertEquals(5, extra.boneIndex());
+        Assertions.assertEquals(-1f, extra.translation().y(), 1e-2f);
+        Assertions.assertFalse(iterator.hasNext());
+
+        // Once the history no longer holds the bone, it leaves the output.
+        for (int frame = 20; frame < 30; frame++) {
+            time[0] = frame * FRAME_NANOS;
+            node.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, false));
+            node.tick();
+        }
+        iterator = node.getVelocityPose().getBoneTransforms().iterator();
+        Assertions.assertEquals(0, iterator.next().boneIndex());
+        Assertions.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testSnapshotRestoresHistory() {
+        long[] time = {0L};
+        RealtimeVelocityEstimatorNode node = new RealtimeVelocityEstimatorNode(ArrayPoseBuilder::new, () -> time[0], 4);
+        for (int frame = 0; frame < 6; frame++) {
+            time[0] = frame * FRAME_NANOS;
+            node.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, true));
+            node.tick();
+        }
+        SnapshotBuffer buffer = new SnapshotBuffer(1024, 0);
+        buffer.beginWrite();
+        node.writeSnapshot(buffer);
+        float expected = node.getVelocityPose().getBoneTransforms().iterator().next().translation().x();
+
+        // Diverge with a jump, then roll back.
+        time[0] += FRAME_NANOS;
+        node.getPoseSlot().setDefaultValue(pose(10f, true));
+        node.tick();
+        Assertions.assertNotEquals(expected, node.getVelocityPose().getBoneTransforms().iterator().next().translation().x(), 1e-2f);
+
+        buffer.beginRead();
+        node.readSnapshot(buffer);
+        Assertions.assertEquals(expected, node.getVelocityPose().getBoneTransforms().iterator().next().translation().x(), 1e-6f);
+    }
+
+    @Test
+    public void testSnapshotRoundTripResimulates() {
+        long[] time = {0L};
+        RealtimeVelocityEstimatorNode node = new RealtimeVelocityEstimatorNode(ArrayPoseBuilder::new, () -> time[0], 4);
+        RealtimeVelocityEstimatorNode reference = new RealtimeVelocityEstimatorNode(ArrayPoseBuilder::new, () -> time[0], 4);
+        SnapshotBuffer buffer = new SnapshotBuffer(1024, 0);
+        for (int frame = 0; frame < 5; frame++) {
+            time[0] = frame * FRAME_NANOS;
+            node.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, true));
+            node.tick();
+            reference.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, true));
+            reference.tick();
+        }
+        buffer.beginWrite();
+        node.writeSnapshot(buffer);
+
+        // Mispredicted frames, rolled back and simulated again with the right input.
+        for (int frame = 5; frame < 8; frame++) {
+            time[0] = frame * FRAME_NANOS;
+            node.getPoseSlot().setDefaultValue(pose(-frame, false));
+            node.tick();
+        }
+        buffer.beginRead();
+        node.readSnapshot(buffer);
+        for (int frame = 5; frame < 8; frame++) {
+            time[0] = frame * FRAME_NANOS;
+            node.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, true));
+            node.tick();
+            reference.getPoseSlot().setDefaultValue(pose(time[0] / 1e9f, true));
+            reference.tick();
+        }
+
+        Iterator<BoneTransform> expected = reference.getVelocityPose().getBoneTransforms().iterator();
+        Iterator<BoneTransform> actual = node.getVelocityPose().getBoneTransforms().iterator();
+        while (expected.hasNext()) {
+            BoneTransform expectedBone = expected.next();
+            BoneTransform actualBone = actual.next();
+            Assertions.assertEquals(expectedBone.boneIndex(), actualBone.boneIndex());
+            Assertions.assertEquals(expectedBone.translation().x(), actualBone.translation().x(), 1e-6f);
+            Assertions.assertEquals(expectedBone.translation().y(), actualBone.translation().y(), 1e-6f);
+            Assertions.assertEquals(expectedBone.scale().x(), actualBone.scale().x(), 1e-6f);
+        }
+        Assertions.assertFalse(actual.hasNext());
+    }
+}
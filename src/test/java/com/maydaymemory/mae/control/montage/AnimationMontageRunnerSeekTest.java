@@ -0,0 +1,168 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.ArrayClipChannel;
+import com.maydaymemory.mae.basic.ArrayPoseBuilder;
+import com.maydaymemory.mae.basic.ZYXBoneTransformFactory;
+import com.maydaymemory.mae.control.NotifyPolicy;
+import com.maydaymemory.mae.util.MathUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AnimationMontageRunnerSeekTest {
+    private final List<String> events = new ArrayList<>();
+
+    private final IAnimationNotify<Object> hit = context -> events.add("hit");
+    private final IAnimationNotify<Object> step = context -> events.add("step");
+    private final IAnimationNotifyState<Object> windup = new LoggingState("windup");
+    private final IAnimationNotifyState<Object> swing = new LoggingState("swing");
+
+    private AnimationMontageRunner<Object> createRunner() {
+        ArrayClipChannel<IAnimationNotify<Object>> notifies = new ArrayClipChannel<>();
+        notifies.add(new AnimationNotifyKeyframe<>(0.5f, hit));
+        notifies.add(new AnimationNotifyKeyframe<>(1.5f, step));
+        notifies.refresh();
+        ArrayClipChannel<AnimationNotifyStateMarker<Object>> markers = new ArrayClipChannel<>();
+        markers.add(marker(0.2f, windup, AnimationNotifyStateMarker.MarkerType.START));
+        markers.add(marker(0.4f, windup, AnimationNotifyStateMarker.MarkerType.END));
+        markers.add(marker(1.2f, swing, AnimationNotifyStateMarker.MarkerType.START));
+        markers.add(marker(1.8f, swing, AnimationNotifyStateMarker.MarkerType.END));
+        markers.refresh();
+        Map<String, AnimationMontageSection> sections = new HashMap<>();
+        sections.put("intro", new AnimationMontageSection("intro", 0f, 1f, "loop"));
+        sections.put("loop", new AnimationMontageSection("loop", 1f, 2f, "loop"));
+        AnimationMontage<Object> montage = new AnimationMontage<>();
+        montage.setNotifyChannels(Collections.singletonList(notifies));
+        montage.setNotifyStateChannels(Collections.singletonList(markers));
+        montage.setSections(sections);
+        AnimationMontageRunner<Object> runner = new AnimationMontageRunner<>(montage, new Object(),
+                new ZYXBoneTransformFactory(), ArrayPoseBuilder::new, () -> 0L);
+        runner.start("intro");
+        return runner;
+    }
+
+    private static AnimationNotifyStateMarkerKeyframe<Object> marker(float timeS, IAnimationNotifyState<Object> state,
+                                                                     AnimationNotifyStateMarker.MarkerType type) {
+        return new AnimationNotifyStateMarkerKeyframe<>(timeS, new AnimationNotifyStateMarker<>(state, type));
+    }
+
+    @Test
+    public void testFireAllMatchesTick() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        runner.seek(MathUtil.toNanos(1.9f), NotifyPolicy.FIRE_ALL);
+        Assertions.assertEquals(Arrays.asList("hit", "windup:start", "windup:update", "windup:end",
+                "step", "swing:start", "swing:update", "swing:end"), filterUpdates(events));
+        Assertions.assertEquals(1.9f, runner.getProgress(), 1e-4f);
+    }
+
+    @Test
+    public void testSummarize() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        SeekSummary<Object> summary = runner.seek(MathUtil.toNanos(1.9f), NotifyPolicy.SUMMARIZE);
+        Assertions.assertEquals(Collections.emptyList(), events);
+        Assertions.assertEquals(1, summary.getNotifyCounts().getInt(hit));
+        Assertions.assertEquals(1, summary.getNotifyCounts().getInt(step));
+        Assertions.assertEquals(1, summary.getCompletedStateCounts().getInt(windup));
+        Assertions.assertEquals(1, summary.getCompletedStateCounts().getInt(swing));
+
+        // Seeking behind the progress of a looping section wraps around the loop.
+        runner.seek(MathUtil.toNanos(1.3f), NotifyPolicy.SILENT);
+        events.clear();
+        summary = runner.seek(MathUtil.toNanos(1.25f), NotifyPolicy.SUMMARIZE);
+        Assertions.assertEquals(Arrays.asList("swing:start", "swing:update"), events);
+        Assertions.assertEquals(1, summary.getNotifyCounts().getInt(step));
+        Assertions.assertTrue(summary.getCompletedStateCounts().isEmpty());
+
+        // Started before the seek and ended within it: the end still fires.
+        events.clear();
+        runner.seek(MathUtil.toNanos(1.1f), NotifyPolicy.SILENT);
+        runner.seek(MathUtil.toNanos(1.3f), NotifyPolicy.SUMMARIZE);
+        Assertions.assertEquals(Arrays.asList("swing:start", "swing:update"), events);
+        events.clear();
+        runner.seek(MathUtil.toNanos(1.9f), NotifyPolicy.SUMMARIZE);
+        Assertions.assertEquals(Arrays.asList("swing:end"), events);
+    }
+
+    @Test
+    public void testBackwardSeekTeleports() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        runner.seek(MathUtil.toNanos(1.3f), NotifyPolicy.FIRE_ALL);
+        events.clear();
+        runner.seek(MathUtil.toNanos(0.1f), NotifyPolicy.FIRE_ALL);
+        Assertions.assertEquals(Arrays.asList("swing:end"), events);
+        Assertions.assertEquals(0.1f, runner.getProgress(), 1e-4f);
+        Assertions.assertTrue(runner.isPlaying());
+    }
+
+    @Test
+    public void testSeekOutsideSections() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        // The chain loops forever, so a target after every section can never be reached.
+        Assertions.assertThrows(IllegalArgumentException.class, () -> runner.seek(MathUtil.toNanos(5f), NotifyPolicy.FIRE_ALL));
+        Assertions.assertEquals(0f, runner.getProgress(), 1e-4f);
+        Assertions.assertTrue(runner.isPlaying());
+
+        runner.getMontage().getSections().put("loop", new AnimationMontageSection("loop", 1f, 2f, null));
+        runner.seek(MathUtil.toNanos(5f), NotifyPolicy.FIRE_ALL);
+        Assertions.assertFalse(runner.isPlaying());
+        Assertions.assertEquals(Arrays.asList("hit", "windup:start", "windup:update", "windup:end",
+                "step", "swing:start", "swing:update", "swing:end"), filterUpdates(events));
+
+        // A stopped runner only selects the section containing the target.
+        runner.seek(MathUtil.toNanos(1.5f), NotifyPolicy.FIRE_ALL);
+        Assertions.assertFalse(runner.isPlaying());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> runner.seek(MathUtil.toNanos(-1f), NotifyPolicy.FIRE_ALL));
+    }
+
+    @Test
+    public void testSeekToChainEnd() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        runner.getMontage().getSections().put("intro", new AnimationMontageSection("intro", 0f, 1f, null));
+        runner.stop();
+        runner.start("intro");
+        // Exactly the end of the last section is reached the same way a tick would reach it.
+        runner.seek(MathUtil.toNanos(1f), NotifyPolicy.FIRE_ALL);
+        Assertions.assertEquals(Arrays.asList("hit", "windup:start", "windup:update", "windup:end"),
+                filterUpdates(events));
+        Assertions.assertFalse(runner.isPlaying());
+    }
+
+    private static List<String> filterUpdates(List<String> events) {
+        List<String> result = new ArrayList<>();
+        for (String event : events) {
+            if (!event.endsWith(":update") || result.isEmpty() || !result.get(result.size() - 1).equals(event)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private class LoggingState implements IAnimationNotifyState<Object> {
+        private final String name;
+
+        LoggingState(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onStart(Object context) {
+            events.add(name + ":start");
+        }
+
+        @Override
+        public void onEnd(Object context) {
+            events.add(name + ":end");
+        }
+
+        @Override
+        public void onUpdate(Object context) {
+            events.add(name + ":update");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.ArrayClipChannel;
+import com.maydaymemory.mae.basic.ArrayPoseBuilder;
+import com.maydaymemory.mae.basic.BasicAnimation;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.InterpolatableChannel;
+import com.maydaymemory.mae.basic.InterpolatableKeyframe;
+import com.maydaymemory.mae.basic.ZYXBoneTransformFactory;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import com.maydaymemory.mae.util.MathUtil;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AnimationMontageRunnerTest {
+    private final List<String> events = new ArrayList<>();
+    /** Number of times the animation of the track was sampled */
+    private final int[] samples = {0};
+
+    private AnimationMontageRunner<Object> createRunner() {
+        BasicAnimation animation = new BasicAnimation("test", new ZYXBoneTransformFactory(), ArrayPoseBuilder::new);
+        animation.setTranslationChannel(0, new InterpolatableChannel<Vector3fc>() {
+            @Override
+            public Vector3fc compute(float timeS) {
+                samples[0]++;
+                return new Vector3f(timeS, 0, 0);
+            }
+
+            @Override
+            public InterpolatableKeyframe<Vector3fc> getKeyFrame(int index) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            @Override
+            public int getKeyFrameCount() {
+                return 0;
+            }
+
+            @Override
+            public float getEndTimeS() {
+                return 2;
+            }
+        });
+        AnimationMontageTrack track = new AnimationMontageTrack();
+        track.add(new AnimationSegmentKeyframe(0f, new AnimationSegment(animation, 0f, 2f)));
+        track.refresh();
+        ArrayClipChannel<IAnimationNotify<Object>> notifies = new ArrayClipChannel<>();
+        notifies.add(new AnimationNotifyKeyframe<>(0.5f, context -> events.add("hit")));
+        notifies.add(new AnimationNotifyKeyframe<>(1.5f, context -> events.add("step")));
+        notifies.refresh();
+        Map<String, AnimationMontageSection> sections = new HashMap<>();
+        sections.put("intro", new AnimationMontageSection("intro", 0f, 1f, "outro"));
+        sections.put("outro", new AnimationMontageSection("outro", 1f, 2f, null));
+        AnimationMontage<Object> montage = new AnimationMontage<>();
+        montage.setTracks(Collections.singletonList(track));
+        montage.setNotifyChannels(Collections.singletonList(notifies));
+        montage.setSections(sections);
+        AnimationMontageRunner<Object> runner = new AnimationMontageRunner<>(montage, new Object(),
+                new ZYXBoneTransformFactory(), ArrayPoseBuilder::new, () -> 0L);
+        runner.start("intro");
+        return runner;
+    }
+
+    @Test
+    public void testHeadlessAdvancesWithoutSampling() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        runner.setHeadless(true);
+        Assertions.assertTrue(runner.isHeadless());
+
+        runner.tickForward(MathUtil.toNanos(0.75f));
+        Assertions.assertEquals(Collections.singletonList("hit"), events);
+        Assertions.assertSame(DummyPose.INSTANCE, runner.getPose());
+        Assertions.assertSame(DummyPose.INSTANCE, runner.getOutputPort().get());
+
+        // The section chain is followed while headless.
+        runner.tickForward(MathUtil.toNanos(1f));
+        Assertions.assertEquals(Arrays.asList("hit", "step"), events);
+        Assertions.assertEquals(1.75f, runner.getProgress(), 1e-4f);
+        Assertions.assertTrue(runner.isPlaying());
+        Assertions.assertEquals(0, samples[0]);
+
+        runner.setHeadless(false);
+        Assertions.assertEquals(1.75f, runner.getPose().getBoneTransforms().iterator().next().translation().x(), 1e-4f);
+        Assertions.assertEquals(1, samples[0]);
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() {
+        AnimationMontageRunner<Object> runner = createRunner();
+        runner.tickForward(MathUtil.toNanos(0.75f));
+        SnapshotBuffer buffer = new SnapshotBuffer(256, 16);
+        buffer.beginWrite();
+        runner.writeSnapshot(buffer);
+
+        runner.tickForward(MathUtil.toNanos(1f));
+        Assertions.assertEquals(Arrays.asList("hit", "step"), events);
+
+        buffer.beginRead();
+        runner.readSnapshot(buffer);
+        Assertions.assertEquals(0.75f, runner.getProgress(), 1e-4f);
+        Assertions.assertTrue(runner.isPlaying());
+        Assertions.assertEquals(0.75f, runner.getPose().getBoneTransforms().iterator().next().translation().x(), 1e-4f);
+
+        // Re-simulating crosses into the next section and fires its notify again.
+        runner.tickForward(MathUtil.toNanos(1f));
+        Assertions.assertEquals(Arrays.asList("hit", "step", "step"), events);
+        Assertions.assertEquals(1.75f, runner.getProgress(), 1e-4f);
+    }
+}
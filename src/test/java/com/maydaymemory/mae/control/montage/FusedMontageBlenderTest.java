@@ -0,0 +1,75 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.*;
+import com.maydaymemory.mae.blend.*;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public class FusedMontageBlenderTest {
+    private final BoneTransformFactory factory = new ZYXBoneTransformFactory();
+    private final Random random = new Random(7);
+
+    private Pose randomPose(int boneCount) {
+        ArrayList<BoneTransform> transforms = new ArrayList<>();
+        for (int bone = 0; bone < boneCount; bone++) {
+            if (random.nextInt(3) == 0) {
+                continue;
+            }
+            transforms.add(factory.createBoneTransform(bone,
+                    new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()),
+                    new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()),
+                    new Vector3f(1 + random.nextFloat(), 1, 1)));
+        }
+        return new ArrayPose(transforms);
+    }
+
+    @Test
+    public void testMatchesReferenceComposition() {
+        SimpleLayeredBlender layeredBlender = new SimpleLayeredBlender(factory, ArrayPoseBuilder::new);
+        SimpleAdditiveBlender additiveBlender = new SimpleAdditiveBlender(factory, ArrayPoseBuilder::new);
+        MergeBlender mergeBlender = new NoAllocMergeBlender();
+        FusedMontageBlender fusedBlender = new FusedMontageBlender(factory, ArrayPoseBuilder::new);
+        for (int round = 0; round < 50; round++) {
+            BoneMask mask = round % 2 == 0 ? BoneMask.ALL : BoneMask.allExcept(3, 7);
+            layeredBlender.setBoneMask(mask);
+            additiveBlender.setBoneMask(mask);
+            fusedBlender.setBoneMask(mask);
+
+            Pose basePose = randomPose(12);
+            fusedBlender.begin(basePose);
+            List<Pose> blendedPoses = new ArrayList<>();
+            int trackCount = 1 + random.nextInt(4);
+            for (int t = 0; t < trackCount; t++) {
+                Pose trackPose = randomPose(12);
+                float weight = random.nextFloat();
+                LayerBlend layer = boneIndex -> boneIndex % 2 == 0 ? weight : 1 - weight;
+                boolean isAdditive = random.nextBoolean();
+                if (isAdditive) {
+                    Pose additivePose = layeredBlender.blend(DummyPose.INSTANCE, trackPose, layer);
+                    blendedPoses.add(additiveBlender.blend(basePose, additivePose));
+                } else {
+                    blendedPoses.add(layeredBlender.blend(basePose, trackPose, layer));
+                }
+                fusedBlender.addTrack(trackPose, layer, isAdditive);
+            }
+            Iterator<BoneTransform> expected = mergeBlender.blend(blendedPoses).getBoneTransforms().iterator();
+            Iterator<BoneTransform> actual = fusedBlender.finish().getBoneTransforms().iterator();
+            while (expected.hasNext()) {
+                Assertions.assertTrue(actual.hasNext());
+                BoneTransform e = expected.next();
+                BoneTransform a = actual.next();
+                Assertions.assertEquals(e.boneIndex(), a.boneIndex());
+                Assertions.assertEquals(e.translation(), a.translation());
+                Assertions.assertEquals(e.rotation().asQuaternion(), a.rotation().asQuaternion());
+                Assertions.assertEquals(e.scale(), a.scale());
+            }
+            Assertions.assertFalse(actual.hasNext());
+        }
+    }
+}
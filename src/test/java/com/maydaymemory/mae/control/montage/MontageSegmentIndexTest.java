@@ -0,0 +1,73 @@
+package com.maydaymemory.mae.control.montage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MontageSegmentIndexTest {
+    @Test
+    public void testCursorMatchesTrackLookup() {
+        Random random = new Random(42);
+        List<AnimationMontageTrack> tracks = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            AnimationMontageTrack track = new AnimationMontageTrack();
+            float time = random.nextFloat();
+            for (int s = 0; s < 20; s++) {
+                float length = 0.1f + random.nextFloat();
+                // Segments only use their length here, the animation is never evaluated.
+                track.add(new AnimationSegmentKeyframe(time, new AnimationSegment(null, 0f, length)));
+                time += length + (random.nextBoolean() ? 0f : random.nextFloat());
+            }
+            track.refresh();
+            tracks.add(track);
+        }
+        MontageSegmentIndex index = MontageSegmentIndex.compile(tracks);
+        MontageSegmentIndex.Cursor cursor = new MontageSegmentIndex.Cursor();
+        float time = 0f;
+        for (int step = 0; step < 2000; step++) {
+            // Mostly forward playback, with an occasional jump backwards.
+            time = step % 300 == 299 ? random.nextFloat() * 10f : time + random.nextFloat() * 0.05f;
+            cursor.moveTo(index, time);
+            int active = 0;
+            for (int t = 0; t < tracks.size(); t++) {
+                int expected = tracks.get(t).getSegmentIndex(time);
+                if (expected == -1) {
+                    continue;
+                }
+                Assertions.assertTrue(active < cursor.size(), "missing segment at " + time);
+                Assertions.assertEquals(t, cursor.getTrackIndex(active));
+                Assertions.assertEquals(expected, cursor.getSegmentIndex(active));
+                active++;
+            }
+            Assertions.assertEquals(active, cursor.size(), "extra segment at " + time);
+        }
+    }
+
+    @Test
+    public void testMontageRecompilesChangedTracks() {
+        AnimationMontageTrack track = new AnimationMontageTrack();
+        track.add(new AnimationSegmentKeyframe(0f, new AnimationSegment(null, 0f, 1f)));
+        track.refresh();
+        List<AnimationMontageTrack> tracks = new ArrayList<>();
+        tracks.add(track);
+        AnimationMontage<Object> montage = new AnimationMontage<>();
+        montage.setTracks(tracks);
+        MontageSegmentIndex index = montage.getSegmentIndex();
+        Assertions.assertSame(index, montage.getSegmentIndex());
+        MontageSegmentIndex.Cursor cursor = new MontageSegmentIndex.Cursor();
+        Assertions.assertEquals(0, cursor.moveTo(index, 1.5f).size());
+
+        // Segments added to a track in place.
+        track.add(new AnimationSegmentKeyframe(1f, new AnimationSegment(null, 0f, 1f)));
+        track.refresh();
+        Assertions.assertEquals(1, cursor.moveTo(montage.getSegmentIndex(), 1.5f).size());
+        Assertions.assertEquals(1, cursor.getSegmentIndex(0));
+
+        // Tracks added to the list in place.
+        tracks.add(track);
+        Assertions.assertEquals(2, cursor.moveTo(montage.getSegmentIndex(), 1.5f).size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.maydaymemory.mae.control.montage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class NotifyEventBufferTest {
+    @Test
+    public void testDrainKeepsOrderAndGrows() {
+        List<Integer> fired = new ArrayList<>();
+        NotifyEventBuffer<List<Integer>> buffer = new NotifyEventBuffer<>(1, 2);
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            buffer.record(NotifyEventType.NOTIFY, (IAnimationNotify<List<Integer>>) context -> context.add(value), fired, i);
+        }
+        Assertions.assertTrue(fired.isEmpty());
+        Assertions.assertEquals(8, buffer.getCapacity());
+        Assertions.assertEquals(5, buffer.drain());
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 4), fired);
+        Assertions.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testParallelDrainKeepsPerCharacterOrder() {
+        Map<Long, List<Integer>> fired = new ConcurrentHashMap<>();
+        NotifyEventDispatcher dispatcher = new NotifyEventDispatcher();
+        for (long character = 0; character < 16; character++) {
+            List<Integer> events = Collections.synchronizedList(new ArrayList<>());
+            fired.put(character, events);
+            NotifyEventBuffer<List<Integer>> buffer = new NotifyEventBuffer<>(character);
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                buffer.record(NotifyEventType.NOTIFY, (IAnimationNotify<List<Integer>>) context -> context.add(value), events, i);
+            }
+            dispatcher.register(buffer);
+        }
+        Assertions.assertEquals(1600, dispatcher.drainParallel());
+        for (List<Integer> events : fired.values()) {
+            Assertions.assertEquals(100, events.size());
+            for (int i = 0; i < 100; i++) {
+                Assertions.assertEquals(i, events.get(i));
+            }
+        }
+        Assertions.assertEquals(0, dispatcher.drain());
+    }
+}
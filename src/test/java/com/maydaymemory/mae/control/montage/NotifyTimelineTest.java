@@ -0,0 +1,80 @@
+package com.maydaymemory.mae.control.montage;
+
+import com.maydaymemory.mae.basic.ArrayClipChannel;
+import com.maydaymemory.mae.basic.ClipChannel;
+import com.maydaymemory.mae.basic.Keyframe;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class NotifyTimelineTest {
+    @Test
+    public void testMatchesClipNotify() {
+        List<ClipChannel<IAnimationNotify<Object>>> channels = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            ArrayClipChannel<IAnimationNotify<Object>> channel = new ArrayClipChannel<>();
+            for (int k = 0; k < 10; k++) {
+                channel.add(new AnimationNotifyKeyframe<>(0.1f * k + 0.03f * c, context -> { }));
+            }
+            channel.refresh();
+            channels.add(channel);
+        }
+        AnimationMontage<Object> montage = new AnimationMontage<>();
+        montage.setNotifyChannels(channels);
+        NotifyTimeline<Object> timeline = montage.getNotifyTimeline();
+        Assertions.assertEquals(30, timeline.size());
+
+        NotifyTimeline.Cursor cursor = new NotifyTimeline.Cursor();
+        float[][] ranges = {{0f, 1f}, {0.13f, 0.5f}, {0.2f, 0.2f}, {0.95f, 2f}, {0.5f, 0.13f}};
+        for (float[] range : ranges) {
+            List<IAnimationNotify<Object>> expected = new ArrayList<>();
+            for (Keyframe<IAnimationNotify<Object>> keyframe : montage.clipNotify(range[0], range[1])) {
+                expected.add(keyframe.getValue());
+            }
+            List<IAnimationNotify<Object>> actual = new ArrayList<>();
+            cursor.reset(timeline, range[0], range[1]);
+            while (cursor.hasNext()) {
+                actual.add(timeline.getNotify(cursor.nextIndex()));
+            }
+            if (range[0] > range[1]) {
+                // Merged clips of backward ranges are not ordered, only compare the contents.
+                Assertions.assertEquals(expected.size(), actual.size(), Arrays.toString(range));
+                Assertions.assertTrue(actual.containsAll(expected), Arrays.toString(range));
+            } else {
+                Assertions.assertEquals(expected, actual, Arrays.toString(range));
+            }
+        }
+    }
+
+    @Test
+    public void testRecompiledWhenChannelsChange() {
+        ArrayClipChannel<IAnimationNotify<Object>> channel = new ArrayClipChannel<>();
+        channel.add(new AnimationNotifyKeyframe<>(0.5f, context -> { }));
+        channel.refresh();
+        List<ClipChannel<IAnimationNotify<Object>>> channels = new ArrayList<>();
+        channels.add(channel);
+        AnimationMontage<Object> montage = new AnimationMontage<>();
+        montage.setNotifyChannels(channels);
+        NotifyTimeline<Object> timeline = montage.getNotifyTimeline();
+        Assertions.assertSame(timeline, montage.getNotifyTimeline());
+
+        // Keyframes added to a channel in place.
+        channel.add(new AnimationNotifyKeyframe<>(0.2f, context -> { }));
+        channel.refresh();
+        timeline = montage.getNotifyTimeline();
+        Assertions.assertEquals(2, timeline.size());
+        Assertions.assertSame(timeline, montage.getNotifyTimeline());
+
+        // Channels added to the list in place.
+        ArrayClipChannel<IAnimationNotify<Object>> other = new ArrayClipChannel<>();
+        other.add(new AnimationNotifyKeyframe<>(0.7f, context -> { }));
+        other.refresh();
+        channels.add(other);
+        Assertions.assertEquals(3, montage.getNotifyTimeline().size());
+        channels.set(1, new ArrayClipChannel<>());
+        Assertions.assertEquals(2, montage.getNotifyTimeline().size());
+    }
+}
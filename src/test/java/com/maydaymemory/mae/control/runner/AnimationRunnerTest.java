@@ -0,0 +1,118 @@
+package com.maydaymemory.mae.control.runner;
+
+import com.maydaymemory.mae.basic.ArrayClipChannel;
+import com.maydaymemory.mae.basic.ArrayPoseBuilder;
+import com.maydaymemory.mae.basic.BasicAnimation;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.InterpolatableChannel;
+import com.maydaymemory.mae.basic.InterpolatableKeyframe;
+import com.maydaymemory.mae.basic.StringKeyFrame;
+import com.maydaymemory.mae.basic.ZYXBoneTransformFactory;
+import com.maydaymemory.mae.control.NotifyPolicy;
+import com.maydaymemory.mae.util.MathUtil;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AnimationRunnerTest {
+    @Test
+    public void testHeadlessAdvancesWithoutSampling() {
+        int[] samples = {0};
+        BasicAnimation animation = new BasicAnimation("test", new ZYXBoneTransformFactory(), ArrayPoseBuilder::new);
+        animation.setTranslationChannel(0, new InterpolatableChannel<Vector3fc>() {
+            @Override
+            public Vector3fc compute(float timeS) {
+                samples[0]++;
+                return new Vector3f(timeS, 0, 0);
+            }
+
+            @Override
+            public InterpolatableKeyframe<Vector3fc> getKeyFrame(int index) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            @Override
+            public int getKeyFrameCount() {
+                return 0;
+            }
+
+            @Override
+            public float getEndTimeS() {
+                return 1;
+            }
+        });
+        ArrayClipChannel<String> events = new ArrayClipChannel<>();
+        events.add(new StringKeyFrame("hit", 0.25f));
+        events.refresh();
+        animation.setClipChannel("events", events);
+
+        long[] time = {0};
+        AnimationContext context = new AnimationContext(1f);
+        context.setState(new PlayingState(() -> time[0], () -> null));
+        AnimationRunner runner = new AnimationRunner(animation, context);
+        runner.setHeadless(true);
+        Assertions.assertTrue(runner.isHeadless());
+
+        time[0] = 500_000_000L;
+        runner.tick();
+        Assertions.assertEquals(500_000_000L, context.getProgress());
+        Assertions.assertSame(DummyPose.INSTANCE, runner.evaluate());
+        Assertions.assertSame(DummyPose.INSTANCE, runner.getOutputPort().get());
+        ClipCursor<String> cursor = new ClipCursor<>();
+        Assertions.assertTrue(runner.clip("events", cursor));
+        Assertions.assertTrue(cursor.hasNext());
+        Assertions.assertEquals("hit", cursor.next().getValue());
+        Assertions.assertEquals(0, samples[0]);
+
+        runner.setHeadless(false);
+        Assertions.assertEquals(0.5f, runner.evaluate().getBoneTransforms().iterator().next().translation().x(), 1e-6f);
+        Assertions.assertEquals(1, samples[0]);
+    }
+
+    @Test
+    public void testSeekWrapsLoopingContext() {
+        long[] time = {0};
+        AnimationContext context = new AnimationContext(1000L);
+        context.setState(new LoopingState(() -> time[0]));
+        context.setProgress(300L);
+
+        Assertions.assertTrue(context.seek(2500L, NotifyPolicy.FIRE_ALL).isEmpty());
+        Assertions.assertEquals(500L, context.getProgress());
+        ClipPlanBuffer plans = context.getClipPlans();
+        Assertions.assertEquals(3, plans.size());
+        Assertions.assertEquals(300L, plans.getFrom(0));
+        Assertions.assertEquals(1, plans.getRepeat(1));
+        Assertions.assertEquals(500L, plans.getTo(2));
+
+        context.seek(-1200L, NotifyPolicy.SILENT);
+        Assertions.assertEquals(800L, context.getProgress());
+        Assertions.assertEquals(3, plans.size());
+
+        // Other states clamp.
+        context.setState(new PauseState());
+        context.seek(2500L, NotifyPolicy.SILENT);
+        Assertions.assertEquals(1000L, context.getProgress());
+    }
+
+    @Test
+    public void testSeekSummarize() {
+        ArrayClipChannel<String> events = new ArrayClipChannel<>();
+        events.add(new StringKeyFrame("step", MathUtil.toSecond(700L)));
+        events.refresh();
+        AnimationContext context = new AnimationContext(1000L);
+        context.setState(new LoopingState(() -> 0L));
+
+        ClipPlanBuffer skipped = context.seek(10_500L, NotifyPolicy.SUMMARIZE);
+        Assertions.assertEquals(500L, context.getProgress());
+        // The skipped span is returned instead of being enqueued.
+        Assertions.assertTrue(context.getClipPlans().isEmpty());
+        ClipCursor<String> cursor = new ClipCursor<String>().reset(events, skipped);
+        long passes = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            passes += cursor.getRepeatCount();
+        }
+        Assertions.assertEquals(10, passes);
+    }
+}
@@ -0,0 +1,86 @@
+package com.maydaymemory.mae.control.runner;
+
+import com.maydaymemory.mae.basic.ArrayClipChannel;
+import com.maydaymemory.mae.basic.Keyframe;
+import com.maydaymemory.mae.basic.StringKeyFrame;
+import com.maydaymemory.mae.util.MathUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClipCursorTest {
+    @Test
+    public void testMatchesClipChannel() {
+        ArrayClipChannel<String> channel = new ArrayClipChannel<>();
+        channel.add(new StringKeyFrame("a", 0.1f));
+        channel.add(new StringKeyFrame("b", 0.2f));
+        channel.add(new StringKeyFrame("c", 0.3f));
+        channel.add(new StringKeyFrame("d", 0.4f));
+        channel.refresh();
+
+        float[][] ranges = {{0.15f, 0.5f}, {0f, 0.2f}, {0.4f, 0.1f}, {0.3f, 0.3f}, {0.2f, 0f}};
+        ClipPlanBuffer plans = new ClipPlanBuffer(1);
+        List<String> expected = new ArrayList<>();
+        for (float[] range : ranges) {
+            plans.add(MathUtil.toNanos(range[0]), MathUtil.toNanos(range[1]));
+            for (Keyframe<String> keyframe : channel.clip(MathUtil.toSecond(MathUtil.toNanos(range[0])),
+                    MathUtil.toSecond(MathUtil.toNanos(range[1])))) {
+                expected.add(keyframe.getValue());
+            }
+        }
+
+        ClipCursor<String> cursor = new ClipCursor<>();
+        for (int round = 0; round < 2; round++) {
+            cursor.reset(channel, plans);
+            List<String> actual = new ArrayList<>();
+            while (cursor.hasNext()) {
+                actual.add(cursor.next().getValue());
+            }
+            Assertions.assertEquals(expected, actual);
+        }
+
+        cursor.reset(null, plans);
+        Assertions.assertFalse(cursor.hasNext());
+    }
+
+    @Test
+    public void testLoopingStateCollapsesFullLoops() {
+        long[] now = {0};
+        AnimationContext context = new AnimationContext(1000L);
+        context.setState(new LoopingState(() -> now[0]));
+        now[0] = 10_500L;
+        context.update();
+
+        ClipPlanBuffer plans = context.getClipPlans();
+        Assertions.assertEquals(3, plans.size());
+        Assertions.assertEquals(9, plans.getRepeat(1));
+        Assertions.assertEquals(500L, context.getProgress());
+
+        ArrayClipChannel<String> channel = new ArrayClipChannel<>();
+        channel.add(new StringKeyFrame("a", MathUtil.toSecond(700L)));
+        channel.refresh();
+
+        ClipCursor<String> cursor = new ClipCursor<>();
+        cursor.reset(channel, plans);
+        long passes = 0;
+        int returned = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            passes += cursor.getRepeatCount();
+            returned++;
+        }
+        Assertions.assertEquals(2, returned);
+        Assertions.assertEquals(10, passes);
+
+        cursor.setRepeatPolicy(ClipCursor.RepeatPolicy.EXPAND);
+        cursor.reset(channel, plans);
+        returned = 0;
+        while (cursor.hasNext()) {
+            cursor.next();
+            returned++;
+        }
+        Assertions.assertEquals(10, returned);
+    }
+}
@@ -0,0 +1,155 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.ArrayPoseBuilder;
+import com.maydaymemory.mae.basic.DensePose;
+import com.maydaymemory.mae.basic.DensePoseView;
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.ZYXBoneTransformFactory;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AnimationStateMachineTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private static Pose pose(float x) {
+        ArrayPoseBuilder builder = new ArrayPoseBuilder();
+        builder.addBoneTransform(new ZYXBoneTransformFactory().createBoneTransform(0,
+                new Vector3f(x, 0, 0), new Vector3f(), new Vector3f(1)));
+        return builder.toPose();
+    }
+
+    @Test
+    public void testHeadlessAdvancesWithoutEvaluating() {
+        Pose walkPose = pose(1);
+        TestState<int[]> idle = new TestState<>(pose(0));
+        TestState<int[]> walk = new TestState<>(walkPose);
+        TestTransition<int[]> toWalk = new TestTransition<>(walk, 1f, c -> c[0] > 0);
+        idle.transitions.add(toWalk);
+        int[] speed = {0};
+        long[] time = {0};
+        AnimationStateMachine<int[]> stateMachine = new AnimationStateMachine<>(idle, speed, () -> time[0]);
+        stateMachine.setHeadless(true);
+        Assertions.assertTrue(stateMachine.isHeadless());
+
+        stateMachine.tick();
+        speed[0] = 1;
+        stateMachine.tick();
+        Assertions.assertSame(DummyPose.INSTANCE, stateMachine.getPose());
+        Assertions.assertNotNull(stateMachine.getCurrentTransition());
+        Assertions.assertEquals(2, idle.updates);
+        Assertions.assertEquals(1, idle.exits);
+        Assertions.assertEquals(1, toWalk.triggers);
+
+        time[0] = SECOND;
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+        Assertions.assertEquals(1, walk.enters);
+        stateMachine.tick();
+        Assertions.assertEquals(1, walk.updates);
+        Assertions.assertSame(DummyPose.INSTANCE, stateMachine.getPose());
+        Assertions.assertEquals(0, idle.evaluations);
+        Assertions.assertEquals(0, walk.evaluations);
+
+        stateMachine.setHeadless(false);
+        Assertions.assertSame(walkPose, stateMachine.getPose());
+        Assertions.assertEquals(1, walk.evaluations);
+    }
+
+    @Test
+    public void testLeaveHeadlessDuringTransition() {
+        Pose walkPose = pose(1);
+        TestState<Object> idle = new TestState<>(pose(0));
+        TestState<Object> walk = new TestState<>(walkPose);
+        idle.transitions.add(new TestTransition<>(walk, 1f, c -> true));
+        long[] time = {0};
+        AnimationStateMachine<Object> stateMachine = new AnimationStateMachine<>(idle, new Object(), () -> time[0]);
+        stateMachine.setHeadless(true);
+        stateMachine.tick();
+        Assertions.assertNotNull(stateMachine.getCurrentTransition());
+
+        // The transition keeps running and blends toward the target pose once poses are evaluated again.
+        stateMachine.setHeadless(false);
+        time[0] = SECOND / 2;
+        Assertions.assertSame(walkPose, stateMachine.getPose());
+        Assertions.assertEquals(0, idle.evaluations);
+        time[0] = SECOND;
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+        Assertions.assertSame(walkPose, stateMachine.getPose());
+    }
+
+    @Test
+    public void testGraphIsWalkedLive() {
+        TestState<Object> idle = new TestState<>(pose(0));
+        TestState<Object> walk = new TestState<>(pose(1));
+        long[] time = {0};
+        AnimationStateMachine<Object> stateMachine = new AnimationStateMachine<>(idle, new Object(), () -> time[0]);
+        stateMachine.tick();
+        Assertions.assertSame(idle, stateMachine.getCurrentState());
+
+        // Transitions added after construction are checked on the next tick.
+        idle.transitions.add(new TestTransition<>(walk, 1f, c -> true));
+        stateMachine.tick();
+        TransitionControlBlock<Object> transition = stateMachine.getCurrentTransition();
+        Assertions.assertNotNull(transition);
+
+        // The controller of the control block is the one driving the state machine.
+        transition.getController().advance(SECOND);
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() {
+        TestState<Object> idle = new TestState<>(pose(0));
+        TestState<Object> walk = new TestState<>(pose(1));
+        idle.transitions.add(new TestTransition<>(walk, 1f, c -> true));
+        long[] time = {0};
+        AnimationStateMachine<Object> stateMachine = new AnimationStateMachine<>(idle, new Object(), () -> time[0]);
+        stateMachine.tick();
+        time[0] = SECOND / 4;
+        SnapshotBuffer buffer = new SnapshotBuffer(64, 4);
+        buffer.beginWrite();
+        stateMachine.writeSnapshot(buffer);
+
+        time[0] = SECOND;
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+
+        buffer.beginRead();
+        stateMachine.readSnapshot(buffer);
+        time[0] = SECOND / 4;
+        Assertions.assertNull(stateMachine.getCurrentState());
+        TransitionControlBlock<Object> transition = stateMachine.getCurrentTransition();
+        Assertions.assertNotNull(transition);
+        Assertions.assertSame(idle, transition.getFromState());
+        Assertions.assertEquals(0.25f, transition.getController().getTransitionProgress(), 1e-6f);
+
+        // Re-simulating after the rollback enters the target again.
+        time[0] = SECOND;
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+        Assertions.assertEquals(2, walk.enters);
+    }
+
+    @Test
+    public void testCachedDenseViewIsCopied() {
+        DensePose dense = new DensePose();
+        dense.add(0, new Vector3f(1, 0, 0), new Quaternionf(), new Vector3f(1));
+        TestState<Object> idle = new TestState<>(new DensePoseView(dense, new ZYXBoneTransformFactory()));
+        TestState<Object> walk = new TestState<>(pose(0));
+        idle.transitions.add(new TestTransition<>(walk, 1f, c -> true));
+        AnimationStateMachine<Object> stateMachine = new AnimationStateMachine<>(idle, new Object(), () -> 0L);
+        stateMachine.tick();
+
+        // The source is overwritten for the next frame, the cached pose of the transition is not.
+        dense.clear();
+        dense.add(0, new Vector3f(5, 0, 0), new Quaternionf(), new Vector3f(1));
+        Pose cached = stateMachine.getCurrentTransition().getCachedPose();
+        Assertions.assertEquals(1f, cached.getBoneTransforms().iterator().next().translation().x(), 1e-6f);
+    }
+}
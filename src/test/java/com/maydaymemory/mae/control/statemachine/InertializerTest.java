@@ -0,0 +1,127 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.ArrayPoseBuilder;
+import com.maydaymemory.mae.basic.BoneTransform;
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.basic.ZYXBoneTransformFactory;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Predicate;
+
+public class InertializerTest {
+    private static final long DURATION = 500_000_000L;
+
+    private static Pose pose(float x, float angle) {
+        ArrayPoseBuilder builder = new ArrayPoseBuilder();
+        builder.addBoneTransform(new ZYXBoneTransformFactory().createBoneTransform(3,
+                new Vector3f(x, 0, 0), new Quaternionf().rotateY(angle), new Vector3f(1)));
+        return builder.toPose();
+    }
+
+    private static BoneTransform bone(Pose pose) {
+        return pose.getBoneTransforms().iterator().next();
+    }
+
+    private static Inertializer inertializer() {
+        return new Inertializer(new ZYXBoneTransformFactory(), ArrayPoseBuilder::new);
+    }
+
+    @Test
+    public void testPolynomialDecay() {
+        Inertializer inertializer = inertializer();
+        // The source moves toward the target at 1 unit per second.
+        inertializer.record(pose(1.1f, 0.4f), -100_000_000L);
+        inertializer.begin(pose(1f, 0.4f), pose(0, 0), DURATION, InertializationDecay.POLYNOMIAL, 0);
+
+        BoneTransform start = bone(inertializer.apply(pose(0, 0), 0));
+        Assertions.assertEquals(1f, start.translation().x(), 1e-5f);
+        Assertions.assertEquals(0.4f, new Quaternionf(start.rotation().asQuaternion()).angle(), 1e-4f);
+
+        float previous = 1f;
+        for (long t = 50_000_000L; t < DURATION; t += 50_000_000L) {
+            float x = bone(inertializer.apply(pose(0, 0), t)).translation().x();
+            Assertions.assertTrue(x <= previous && x >= 0, "offset must decay without overshooting");
+            previous = x;
+        }
+        BoneTransform end = bone(inertializer.apply(pose(2f, 0), DURATION));
+        Assertions.assertEquals(2f, end.translation().x(), 1e-6f);
+        Assertions.assertEquals(0f, new Quaternionf(end.rotation().asQuaternion()).angle(), 1e-4f);
+    }
+
+    @Test
+    public void testCriticallyDampedDecay() {
+        Inertializer inertializer = inertializer();
+        inertializer.begin(pose(1f, 0), pose(0, 0), DURATION, InertializationDecay.CRITICALLY_DAMPED, 0);
+        Assertions.assertEquals(1f, bone(inertializer.apply(pose(0, 0), 0)).translation().x(), 1e-5f);
+        float end = bone(inertializer.apply(pose(0, 0), DURATION)).translation().x();
+        Assertions.assertTrue(end > 0 && end < 0.01f);
+    }
+
+    @Test
+    public void testStateMachineEvaluatesTargetOnly() {
+        TestState<Object> idle = new TestState<>(pose(1f, 0));
+        TestState<Object> walk = new TestState<>(pose(0, 0));
+        boolean[] trigger = new boolean[1];
+        idle.transitions.add(new Transition(walk, context -> trigger[0]));
+
+        long[] time = new long[1];
+        AnimationStateMachine<Object> stateMachine = new AnimationStateMachine<>(idle, new Object(), () -> time[0]);
+        stateMachine.setInertializer(inertializer());
+        stateMachine.getPose();
+
+        trigger[0] = true;
+        stateMachine.tick();
+        Assertions.assertNotNull(stateMachine.getCurrentTransition());
+        int idleEvaluations = idle.evaluations;
+        time[0] = DURATION / 2;
+        float x = bone(stateMachine.getPose()).translation().x();
+        Assertions.assertTrue(x > 0 && x < 1f);
+        Assertions.assertEquals(idleEvaluations, idle.evaluations);
+
+        time[0] = DURATION;
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+        Assertions.assertEquals(0f, bone(stateMachine.getPose()).translation().x(), 1e-6f);
+    }
+
+    @Test
+    public void testSubNanosecondDuration() {
+        TestState<Object> idle = new TestState<>(pose(1f, 0));
+        TestState<Object> walk = new TestState<>(pose(0, 0));
+        idle.transitions.add(new Transition(walk, 1e-12f, context -> true));
+        long[] time = new long[1];
+        AnimationStateMachine<Object> stateMachine = new AnimationStateMachine<>(idle, new Object(), () -> time[0]);
+        stateMachine.setInertializer(inertializer());
+        stateMachine.getPose();
+
+        // Too short to be represented in nanoseconds, but still a transition rather than a failure.
+        stateMachine.tick();
+        Assertions.assertNotNull(stateMachine.getCurrentTransition());
+        time[0] = 1;
+        stateMachine.tick();
+        Assertions.assertSame(walk, stateMachine.getCurrentState());
+    }
+
+    private static class Transition extends TestTransition<Object> implements IInertializedTransition<Object> {
+        Transition(IAnimationState<Object> target, Predicate<Object> condition) {
+            this(target, 0.5f, condition);
+        }
+
+        Transition(IAnimationState<Object> target, float duration, Predicate<Object> condition) {
+            super(target, duration, condition);
+        }
+
+        @Override
+        public InertializationDecay decay() {
+            return InertializationDecay.POLYNOMIAL;
+        }
+
+        @Override
+        public Pose getInterpolatedPose(Object context, Pose fromPose, Pose toPose, float alpha) {
+            throw new AssertionError("inertialized transitions must not crossfade");
+        }
+    }
+}
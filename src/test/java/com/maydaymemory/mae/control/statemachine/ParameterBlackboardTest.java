@@ -0,0 +1,95 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+public class ParameterBlackboardTest {
+    @Test
+    public void testStampsOnlyBumpOnChange() {
+        ParameterBlackboard blackboard = new ParameterBlackboard();
+        int speed = blackboard.register("speed");
+        int grounded = blackboard.register("grounded");
+        Assertions.assertEquals(speed, blackboard.register("speed"));
+        Assertions.assertEquals(-1, blackboard.getId("missing"));
+
+        List<Integer> changes = new ArrayList<>();
+        blackboard.addListener((board, id) -> changes.add(id));
+        blackboard.setFloat(speed, 0f);
+        Assertions.assertEquals(ParameterBlackboard.NEVER_CHANGED, blackboard.getChangeCount());
+        blackboard.setFloat(speed, 2f);
+        blackboard.setBoolean(grounded, true);
+        blackboard.setBoolean(grounded, true);
+        Assertions.assertEquals(2, blackboard.getChangeCount());
+        Assertions.assertEquals(1, blackboard.getStamp(speed));
+        Assertions.assertEquals(2, blackboard.getStamp(grounded));
+        Assertions.assertTrue(blackboard.changedSince(new int[]{grounded}, 1));
+        Assertions.assertFalse(blackboard.changedSince(new int[]{speed}, 1));
+        Assertions.assertEquals(2, changes.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> blackboard.getFloat(5));
+    }
+
+    @Test
+    public void testTransitionsOnlyReevaluatedOnChange() {
+        ParameterBlackboard blackboard = new ParameterBlackboard();
+        int speed = blackboard.register("speed");
+        int[] evaluations = new int[2];
+        TestState<ParameterBlackboard> idle = new TestState<>();
+        TestState<ParameterBlackboard> run = new TestState<>();
+        TestTransition<ParameterBlackboard> driven = new DrivenTransition(run, new int[]{speed}, context -> {
+            evaluations[0]++;
+            return context.getFloat(speed) > 1f;
+        });
+        TestTransition<ParameterBlackboard> polled = new TestTransition<>(run, 0, context -> {
+            evaluations[1]++;
+            return false;
+        });
+        idle.transitions.add(polled);
+        idle.transitions.add(driven);
+        AnimationStateMachine<ParameterBlackboard> stateMachine = new AnimationStateMachine<>(idle, blackboard, () -> 0L);
+        stateMachine.setParameterBlackboard(blackboard);
+
+        for (int i = 0; i < 5; i++) {
+            stateMachine.tick();
+        }
+        Assertions.assertEquals(1, evaluations[0]);
+        Assertions.assertEquals(5, evaluations[1]);
+        Assertions.assertSame(idle, stateMachine.getCurrentState());
+
+        blackboard.setFloat(speed, 0.5f);
+        stateMachine.tick();
+        Assertions.assertEquals(2, evaluations[0]);
+        Assertions.assertSame(idle, stateMachine.getCurrentState());
+
+        blackboard.setFloat(speed, 3f);
+        stateMachine.tick();
+        Assertions.assertEquals(3, evaluations[0]);
+        Assertions.assertSame(run, stateMachine.getCurrentState());
+
+        // Without a blackboard every transition is polled.
+        stateMachine = new AnimationStateMachine<>(idle, blackboard, () -> 0L);
+        blackboard.setFloat(speed, 0f);
+        stateMachine.tick();
+        stateMachine.tick();
+        Assertions.assertEquals(5, evaluations[0]);
+    }
+
+    private static class DrivenTransition extends TestTransition<ParameterBlackboard>
+            implements IParameterDrivenTransition<ParameterBlackboard> {
+        private final int[] dependencies;
+
+        DrivenTransition(IAnimationState<ParameterBlackboard> target, int[] dependencies,
+                         Predicate<ParameterBlackboard> condition) {
+            super(target, 0, condition);
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public int[] dependencies() {
+            return dependencies;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.control.SnapshotBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class StateMachineDefinitionTest {
+    @Test
+    public void testCompileIndexesReachableStates() {
+        TestState<Context> idle = new TestState<>();
+        TestState<Context> walk = new TestState<>();
+        TestState<Context> run = new TestState<>();
+        TestState<Context> unreachable = new TestState<>();
+        idle.transitions.add(new TestTransition<>(walk, 0.5f, c -> c.speed > 0));
+        idle.transitions.add(new TestTransition<>(run, 0f, c -> c.speed > 2));
+        walk.transitions.add(new TestTransition<>(idle, 0.5f, c -> c.speed == 0));
+        unreachable.transitions.add(new TestTransition<>(idle, 0f, c -> true));
+
+        StateMachineDefinition<Context> definition = StateMachineDefinition.compile(idle);
+        Assertions.assertEquals(3, definition.getStateCount());
+        Assertions.assertEquals(0, definition.indexOf(idle));
+        Assertions.assertEquals(-1, definition.indexOf(unreachable));
+        Assertions.assertEquals(3, definition.getTransitionCount());
+        Assertions.assertEquals(0, definition.getFirstTransition(0));
+        Assertions.assertEquals(2, definition.getTransitionEnd(0));
+        Assertions.assertEquals(definition.indexOf(run), definition.getTargetState(1));
+        Assertions.assertEquals(500_000_000L, definition.getDuration(0));
+        Assertions.assertEquals(0L, definition.getDuration(1));
+        Assertions.assertEquals(0, definition.getFirstTransition(definition.indexOf(run))
+                - definition.getTransitionEnd(definition.indexOf(run)));
+    }
+
+    @Test
+    public void testInstancesRunIndependently() {
+        TestState<Context> idle = new TestState<>();
+        TestState<Context> walk = new TestState<>();
+        idle.transitions.add(new TestTransition<>(walk, 1f, c -> c.speed > 0));
+        walk.transitions.add(new TestTransition<>(idle, 0f, c -> c.speed == 0));
+        StateMachineDefinition<Context> definition = StateMachineDefinition.compile(idle);
+
+        long[] time = new long[1];
+        Context first = new Context();
+        Context second = new Context();
+        StateMachineInstance<Context> a = definition.instantiate(first, () -> time[0]);
+        StateMachineInstance<Context> b = definition.instantiate(second, () -> time[0]);
+
+        first.speed = 1;
+        a.tick();
+        b.tick();
+        Assertions.assertNull(a.getCurrentState());
+        Assertions.assertEquals(0, a.getCurrentTransitionIndex());
+        Assertions.assertEquals(0, a.getFromStateIndex());
+        Assertions.assertSame(idle, b.getCurrentState());
+        Assertions.assertEquals(1, idle.exits);
+
+        time[0] = 250_000_000L;
+        Assertions.assertEquals(0.25f, a.getTransitionProgress(), 1e-6f);
+        Assertions.assertSame(DummyPose.INSTANCE, a.getPose());
+
+        time[0] = 1_000_000_000L;
+        a.tick();
+        Assertions.assertSame(walk, a.getCurrentState());
+        Assertions.assertEquals(1, walk.enters);
+
+        // Instant transition back.
+        first.speed = 0;
+        a.tick();
+        Assertions.assertSame(idle, a.getCurrentState());
+        Assertions.assertEquals(-1, a.getCurrentTransitionIndex());
+    }
+
+    @Test
+    public void testInstanceSnapshotRoundTrip() {
+        TestState<Context> idle = new TestState<>();
+        TestState<Context> walk = new TestState<>();
+        idle.transitions.add(new TestTransition<>(walk, 1f, c -> c.speed > 0));
+        long[] time = new long[1];
+        Context context = new Context();
+        StateMachineInstance<Context> instance = StateMachineDefinition.compile(idle).instantiate(context, () -> time[0]);
+        context.speed = 1;
+        instance.tick();
+        time[0] = 500_000_000L;
+        SnapshotBuffer buffer = new SnapshotBuffer(64, 4);
+        buffer.beginWrite();
+        instance.writeSnapshot(buffer);
+
+        time[0] = 1_000_000_000L;
+        instance.tick();
+        Assertions.assertEquals(1, instance.getCurrentStateIndex());
+
+        buffer.beginRead();
+        instance.readSnapshot(buffer);
+        time[0] = 500_000_000L;
+        Assertions.assertEquals(-1, instance.getCurrentStateIndex());
+        Assertions.assertEquals(0, instance.getCurrentTransitionIndex());
+        Assertions.assertEquals(0, instance.getFromStateIndex());
+        Assertions.assertEquals(0.5f, instance.getTransitionProgress(), 1e-6f);
+
+        time[0] = 1_000_000_000L;
+        instance.tick();
+        Assertions.assertSame(walk, instance.getCurrentState());
+        Assertions.assertEquals(2, walk.enters);
+    }
+
+    private static class Context {
+        int speed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.DummyPose;
+import com.maydaymemory.mae.basic.Pose;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A state with a fixed pose, counting the calls of its callbacks.
+ */
+class TestState<T> implements IAnimationState<T> {
+    final List<IAnimationTransition<T>> transitions = new ArrayList<>();
+    private final Pose pose;
+    int enters;
+    int exits;
+    int updates;
+    int evaluations;
+
+    TestState() {
+        this(DummyPose.INSTANCE);
+    }
+
+    TestState(Pose pose) {
+        this.pose = pose;
+    }
+
+    @Override
+    public Iterable<IAnimationTransition<T>> transitions() {
+        return transitions;
+    }
+
+    @Override
+    public void onEnter(T context, IAnimationState<T> fromState) {
+        enters++;
+    }
+
+    @Override
+    public void onExit(T context, IAnimationTransition<T> triggeredTransition) {
+        exits++;
+    }
+
+    @Override
+    public void onUpdate(T context) {
+        updates++;
+    }
+
+    @Override
+    public Pose evaluatePose(T context) {
+        evaluations++;
+        return pose;
+    }
+}
@@ -0,0 +1,59 @@
+package com.maydaymemory.mae.control.statemachine;
+
+import com.maydaymemory.mae.basic.Pose;
+import com.maydaymemory.mae.control.blend.IBlendCurve;
+
+import java.util.function.Predicate;
+
+/**
+ * A linear transition triggered by a condition on the context, counting its triggers.
+ * Its interpolated pose is the target pose.
+ */
+class TestTransition<T> implements IAnimationTransition<T> {
+    private final IAnimationState<T> target;
+    private final float duration;
+    private final Predicate<T> condition;
+    TransferOutStrategy transferOutStrategy = TransferOutStrategy.NONE;
+    int triggers;
+
+    TestTransition(IAnimationState<T> target, float duration, Predicate<T> condition) {
+        this.target = target;
+        this.duration = duration;
+        this.condition = condition;
+    }
+
+    @Override
+    public IAnimationState<T> targetState() {
+        return target;
+    }
+
+    @Override
+    public IBlendCurve curve() {
+        return alpha -> alpha;
+    }
+
+    @Override
+    public float duration() {
+        return duration;
+    }
+
+    @Override
+    public TransferOutStrategy transferOutStrategy() {
+        return transferOutStrategy;
+    }
+
+    @Override
+    public boolean canTrigger(T context) {
+        return condition.test(context);
+    }
+
+    @Override
+    public void afterTrigger(T context) {
+        triggers++;
+    }
+
+    @Override
+    public Pose getInterpolatedPose(T context, Pose fromPose, Pose toPose, float alpha) {
+        return toPose;
+    }
+}
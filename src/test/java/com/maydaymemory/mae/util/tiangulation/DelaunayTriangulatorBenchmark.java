@@ -0,0 +1,32 @@
+package com.maydaymemory.mae.util.tiangulation;
+
+import com.maydaymemory.mae.util.triangulation.DelaunayTriangulator;
+import com.maydaymemory.mae.util.triangulation.NotEnoughPointsException;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Prints how long triangulating grows with the number of points, from 10 to 100k.
+ *
+ * <p>Not a test, since timings depend on the machine: run {@link #main(String[])} by hand. Each decade
+ * should take a bit more than 10 times longer than the previous one; quadratic growth would take 100 times.</p>
+ */
+public class DelaunayTriangulatorBenchmark {
+    public static void main(String[] args) throws NotEnoughPointsException {
+        Random random = new Random(3);
+        double previousSeconds = 0;
+        for (int count = 10; count <= 100_000; count *= 10) {
+            List<DelaunayTriangulatorTest.TestSamplerPoint> points = DelaunayTriangulatorTest.randomPoints(random, count);
+            DelaunayTriangulator<DelaunayTriangulatorTest.TestSamplerPoint> triangulator = new DelaunayTriangulator<>(points);
+            // Warm up before measuring.
+            triangulator.triangulate();
+            long start = System.nanoTime();
+            triangulator.triangulate();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%7d points: %.4fs, %d triangles%s%n", count, seconds, triangulator.getTriangles().size(),
+                    previousSeconds > 0 ? String.format(", %.1fx the previous decade", seconds / previousSeconds) : "");
+            previousSeconds = seconds;
+        }
+    }
+}
@@ -3,11 +3,17 @@ package com.maydaymemory.mae.util.tiangulation;
 import com.maydaymemory.mae.util.triangulation.*;
 import org.joml.Vector2f;
 import org.joml.Vector2fc;
+import org.joml.Vector3f;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -25,8 +31,9 @@ public class DelaunayTriangulatorTest {
         DelaunayTriangulator<TestSamplerPoint> triangulator = new DelaunayTriangulator<>(points);
         triangulator.triangulate();
 
+        // The duplicate point and the point on the hull edge add no degenerate triangle.
         List<Triangle> triangles = triangulator.getTriangles();
-        Assertions.assertEquals(4, triangles.size());
+        Assertions.assertEquals(2, triangles.size());
 
         // The special case of testing point on the common edges of triangles
         WeightCalculatingResult<TestSamplerPoint> result = triangulator.calculateWeightsClampToEdge(new Vector2f(0f, 0.5f));
@@ -38,7 +45,136 @@ public class DelaunayTriangulatorTest {
         //System.out.println(result1);
     }
 
-    private static class TestSamplerPoint implements SamplerPoint {
+    @Test
+    public void testLocatorMatchesFullScan() throws NotEnoughPointsException {
+        Random random = new Random(7);
+        List<TestSamplerPoint> points = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            points.add(new TestSamplerPoint(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2));
+        }
+        DelaunayTriangulator<TestSamplerPoint> triangulator = new DelaunayTriangulator<>(points);
+        triangulator.triangulate();
+        TriangleLocator locator = triangulator.getLocator();
+
+        Vector3f weights = new Vector3f();
+        Vector3f expected = new Vector3f();
+        int hint = -1;
+        float angle = 0;
+        for (int i = 0; i < 500; i++) {
+            // A continuous path leaving and entering the triangulation, with a few jumps.
+            angle += 0.05f;
+            float radius = i % 97 == 0 ? random.nextFloat() * 4 : 1.5f + (float) Math.sin(angle * 3);
+            float x = radius * (float) Math.cos(angle);
+            float y = radius * (float) Math.sin(angle);
+            hint = locator.locate(x, y, hint, weights);
+            Assertions.assertEquals(1f, weights.x + weights.y + weights.z, 1e-5f);
+
+            boolean inside = false;
+            for (Triangle triangle : triangulator.getTriangles()) {
+                triangle.computeBarycentricCoordinates(new Vector2f(x, y), expected);
+                if (expected.x >= 1e-4f && expected.y >= 1e-4f && expected.z >= 1e-4f) {
+                    inside = true;
+                    Assertions.assertSame(triangle, locator.getTriangle(hint));
+                    Assertions.assertEquals(expected.x, weights.x, 1e-4f);
+                    Assertions.assertEquals(expected.y, weights.y, 1e-4f);
+                }
+            }
+            if (!inside) {
+                // The weighted position is on the triangulation, closer than any sampler point.
+                float px = 0;
+                float py = 0;
+                for (int v = 0; v < 3; v++) {
+                    px += locator.getVertex(hint, v).x() * weights.get(v);
+                    py += locator.getVertex(hint, v).y() * weights.get(v);
+                }
+                float distance = new Vector2f(px, py).distance(x, y);
+                for (TestSamplerPoint point : points) {
+                    Assertions.assertTrue(distance <= point.position().distance(x, y) + 1e-4f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTriangulationIsDelaunay() throws NotEnoughPointsException {
+        Random random = new Random(11);
+        List<TestSamplerPoint> points = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Snapped to a coarse grid, for duplicates and collinear points.
+            points.add(new TestSamplerPoint(random.nextInt(40) * 0.25f, random.nextInt(40) * 0.25f));
+        }
+        DelaunayTriangulator<TestSamplerPoint> triangulator = new DelaunayTriangulator<>(points);
+        triangulator.triangulate();
+
+        float area = 0;
+        for (Triangle triangle : triangulator.getTriangles()) {
+            Vector2fc a = triangle.getA().position();
+            Vector2fc b = triangle.getB().position();
+            Vector2fc c = triangle.getC().position();
+            float signedArea = ((b.x() - a.x()) * (c.y() - a.y()) - (b.y() - a.y()) * (c.x() - a.x())) / 2;
+            Assertions.assertTrue(signedArea > 0, "Triangles are counter-clockwise and not degenerate");
+            area += signedArea;
+            for (TestSamplerPoint point : points) {
+                if (!triangle.hasVertex(point)) {
+                    Assertions.assertFalse(strictlyInCircumcircle(triangle, point.position()), "Empty circumcircle");
+                }
+            }
+        }
+        // The triangulation covers the convex hull, whose area the extreme grid points bound from below.
+        Assertions.assertTrue(area > 0.8f * 9.75f * 9.75f);
+    }
+
+    @Test
+    public void testTriangulationCoversAllPoints() throws NotEnoughPointsException {
+        List<TestSamplerPoint> points = randomPoints(new Random(3), 2_000);
+        DelaunayTriangulator<TestSamplerPoint> triangulator = new DelaunayTriangulator<>(points);
+        triangulator.triangulate();
+        int firstCount = triangulator.getTriangles().size();
+        // Triangulating again gives the same result.
+        triangulator.triangulate();
+
+        // 2n - 2 - h triangles for points in general position, with h points on the hull.
+        List<Triangle> triangles = triangulator.getTriangles();
+        Assertions.assertEquals(firstCount, triangles.size());
+        Assertions.assertTrue(triangles.size() > points.size() && triangles.size() < 2 * points.size(),
+                triangles.size() + " triangles");
+        Set<SamplerPoint> vertices = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Triangle triangle : triangles) {
+            vertices.add(triangle.getA());
+            vertices.add(triangle.getB());
+            vertices.add(triangle.getC());
+        }
+        Assertions.assertEquals(points.size(), vertices.size());
+    }
+
+    /**
+     * Points uniformly distributed in {@code [0, 100)^2}, shared with {@link DelaunayTriangulatorBenchmark}.
+     */
+    static List<TestSamplerPoint> randomPoints(Random random, int count) {
+        List<TestSamplerPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(new TestSamplerPoint(random.nextFloat() * 100, random.nextFloat() * 100));
+        }
+        return points;
+    }
+
+    private static boolean strictlyInCircumcircle(Triangle triangle, Vector2fc point) {
+        double[] m = new double[9];
+        SamplerPoint[] vertices = {triangle.getA(), triangle.getB(), triangle.getC()};
+        for (int i = 0; i < 3; i++) {
+            double dx = vertices[i].x() - point.x();
+            double dy = vertices[i].y() - point.y();
+            m[i * 3] = dx;
+            m[i * 3 + 1] = dy;
+            m[i * 3 + 2] = dx * dx + dy * dy;
+        }
+        double determinant = m[0] * (m[4] * m[8] - m[5] * m[7])
+                - m[1] * (m[3] * m[8] - m[5] * m[6])
+                + m[2] * (m[3] * m[7] - m[4] * m[6]);
+        return determinant > 1e-9;
+    }
+
+    static class TestSamplerPoint implements SamplerPoint {
         private final Vector2f point;
 
         public TestSamplerPoint(float x, float y) {
@@ -0,0 +1,237 @@
+package com.maydaymemory.mae.util.tiangulation;
+
+import com.maydaymemory.mae.util.triangulation.IncrementalDelaunay;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+public class IncrementalDelaunayTest {
+
+    @Test
+    public void testInsertAndRemoveKeepDelaunay() {
+        Random random = new Random(7);
+        IncrementalDelaunay delaunay = new IncrementalDelaunay();
+        IntArrayList vertices = new IntArrayList();
+        for (int round = 0; round < 6; round++) {
+            for (int i = 0; i < 60; i++) {
+                // Grid points give many cocircular and collinear vertices.
+                double x = round % 2 == 0 ? random.nextInt(12) : random.nextDouble() * 12;
+                double y = round % 2 == 0 ? random.nextInt(12) : random.nextDouble() * 12;
+                int vertex = delaunay.insert(x, y, vertices.size());
+                if (vertex >= 0) {
+                    vertices.add(vertex);
+                }
+            }
+            checkDelaunay(delaunay);
+            for (int i = 0; i < 40 && vertices.size() > 3; i++) {
+                delaunay.remove(vertices.removeInt(random.nextInt(vertices.size())));
+                checkDelaunay(delaunay);
+            }
+        }
+        while (!vertices.isEmpty()) {
+            delaunay.remove(vertices.popInt());
+            if (delaunay.isTriangulated()) {
+                checkDelaunay(delaunay);
+            }
+        }
+        Assertions.assertEquals(0, delaunay.getVertexCount());
+        Assertions.assertTrue(delaunay.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testNearlyCollinearHullVertex() {
+        IncrementalDelaunay delaunay = new IncrementalDelaunay();
+        // Points of a polar grid: the last one lies on a hull edge up to rounding, just outside of it.
+        delaunay.insert(2 * Math.cos(Math.PI), 2 * Math.sin(Math.PI), 0);
+        delaunay.insert(2 * Math.cos(Math.PI / 3), 2 * Math.sin(Math.PI / 3), 1);
+        delaunay.insert(2 * Math.cos(Math.PI / 2), 2 * Math.sin(Math.PI / 2), 2);
+        delaunay.insert(Math.cos(2 * Math.PI / 3), Math.sin(2 * Math.PI / 3), 3);
+        checkDelaunay(delaunay);
+        Assertions.assertEquals(2, countRealTriangles(delaunay));
+    }
+
+    @Test
+    public void testPolarGrid() {
+        Random random = new Random(11);
+        double[][] points = new double[48][];
+        for (int i = 0; i < points.length; i++) {
+            // Rings of cocircular vertices, whose chords pass through vertices of other rings up to rounding.
+            double radius = 1 + i / 12;
+            double angle = Math.PI * (i % 12) / 6;
+            points[i] = new double[]{radius * Math.cos(angle), radius * Math.sin(angle)};
+        }
+        IncrementalDelaunay delaunay = new IncrementalDelaunay();
+        IntArrayList vertices = new IntArrayList();
+        for (int round = 0; round < 200; round++) {
+            double[] point = points[random.nextInt(points.length)];
+            int vertex = delaunay.insert(point[0], point[1], 0);
+            if (vertex >= 0) {
+                vertices.add(vertex);
+            }
+            if (vertices.size() > 4 && random.nextInt(3) == 0) {
+                delaunay.remove(vertices.removeInt(random.nextInt(vertices.size())));
+            }
+            if (delaunay.isTriangulated()) {
+                checkDelaunay(delaunay);
+            }
+        }
+    }
+
+    @Test
+    public void testCollinearVertices() {
+        IncrementalDelaunay delaunay = new IncrementalDelaunay();
+        int a = delaunay.insert(0, 0, 10);
+        delaunay.insert(2, 0, 11);
+        delaunay.insert(1, 0, 12);
+        Assertions.assertEquals(-1, delaunay.insert(1, 0, 13));
+        Assertions.assertFalse(delaunay.isTriangulated());
+
+        int[] tags = new int[3];
+        Vector3f weights = new Vector3f();
+        delaunay.snapshot().locate(1.5f, 4f, -1, tags, weights);
+        Assertions.assertEquals(12, tags[0]);
+        Assertions.assertEquals(11, tags[1]);
+        Assertions.assertEquals(0.5f, weights.y, 1e-6f);
+
+        int apex = delaunay.insert(1, 1, 14);
+        Assertions.assertTrue(delaunay.isTriangulated());
+        checkDelaunay(delaunay);
+        delaunay.remove(apex);
+        Assertions.assertFalse(delaunay.isTriangulated());
+        delaunay.remove(a);
+        delaunay.snapshot().locate(-1f, 0f, -1, tags, weights);
+        Assertions.assertEquals(1f, weights.get(Arrays.asList(tags[0], tags[1], tags[2]).indexOf(12)), 1e-6f);
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        IncrementalDelaunay delaunay = new IncrementalDelaunay();
+        delaunay.insert(0, 0, 0);
+        delaunay.insert(1, 0, 1);
+        delaunay.insert(0, 1, 2);
+        int moving = delaunay.insert(1, 1, 3);
+        IncrementalDelaunay.Snapshot snapshot = delaunay.snapshot();
+        delaunay.remove(moving);
+        delaunay.insert(5, 5, 4);
+
+        int[] tags = new int[3];
+        Vector3f weights = new Vector3f();
+        snapshot.locate(1f, 1f, -1, tags, weights);
+        int[] used = tags.clone();
+        Arrays.sort(used);
+        Assertions.assertEquals(3, used[2]);
+        Assertions.assertEquals(1f, weights.get(Arrays.asList(tags[0], tags[1], tags[2]).indexOf(3)), 1e-5f);
+        delaunay.snapshot().locate(1f, 1f, -1, tags, weights);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(tags[i] != 3 || weights.get(i) == 0);
+        }
+    }
+
+    private static void checkDelaunay(IncrementalDelaunay delaunay) {
+        IntArrayList alive = new IntArrayList();
+        for (int vertex = 1; alive.size() < delaunay.getVertexCount(); vertex++) {
+            if (delaunay.isVertexAlive(vertex)) {
+                alive.add(vertex);
+            }
+        }
+        double area = 0;
+        for (int t = 0; t < delaunay.getTriangleSlots(); t++) {
+            if (delaunay.getTriangleVertex(t, 0) < 0) {
+                continue;
+            }
+            for (int i = 0; i < 3; i++) {
+                int neighbour = delaunay.getNeighbour(t, i);
+                boolean linked = false;
+                for (int j = 0; j < 3; j++) {
+                    linked |= delaunay.getNeighbour(neighbour, j) == t;
+                }
+                Assertions.assertTrue(linked, "Neighbours must be symmetric");
+            }
+            if (!delaunay.isRealTriangle(t)) {
+                continue;
+            }
+            int a = delaunay.getTriangleVertex(t, 0);
+            int b = delaunay.getTriangleVertex(t, 1);
+            int c = delaunay.getTriangleVertex(t, 2);
+            double orientation = (delaunay.getX(b) - delaunay.getX(a)) * (delaunay.getY(c) - delaunay.getY(a))
+                    - (delaunay.getY(b) - delaunay.getY(a)) * (delaunay.getX(c) - delaunay.getX(a));
+            Assertions.assertTrue(exactOrientation(delaunay, a, b, c) > 0, "Triangles must be counter-clockwise");
+            area += orientation / 2;
+            for (int d : alive) {
+                if (d != a && d != b && d != c) {
+                    Assertions.assertTrue(incircle(delaunay, a, b, c, d) <= 1e-9, "Circumcircles must be empty");
+                }
+            }
+        }
+        Assertions.assertEquals(hullArea(delaunay, alive), area, 1e-9);
+    }
+
+    private static int countRealTriangles(IncrementalDelaunay delaunay) {
+        int count = 0;
+        for (int t = 0; t < delaunay.getTriangleSlots(); t++) {
+            if (delaunay.isRealTriangle(t)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int exactOrientation(IncrementalDelaunay delaunay, int a, int b, int c) {
+        BigDecimal ax = new BigDecimal(delaunay.getX(a));
+        BigDecimal ay = new BigDecimal(delaunay.getY(a));
+        BigDecimal abx = new BigDecimal(delaunay.getX(b)).subtract(ax);
+        BigDecimal aby = new BigDecimal(delaunay.getY(b)).subtract(ay);
+        BigDecimal acx = new BigDecimal(delaunay.getX(c)).subtract(ax);
+        BigDecimal acy = new BigDecimal(delaunay.getY(c)).subtract(ay);
+        return abx.multiply(acy).subtract(aby.multiply(acx)).signum();
+    }
+
+    private static double incircle(IncrementalDelaunay delaunay, int a, int b, int c, int d) {
+        double adx = delaunay.getX(a) - delaunay.getX(d);
+        double ady = delaunay.getY(a) - delaunay.getY(d);
+        double bdx = delaunay.getX(b) - delaunay.getX(d);
+        double bdy = delaunay.getY(b) - delaunay.getY(d);
+        double cdx = delaunay.getX(c) - delaunay.getX(d);
+        double cdy = delaunay.getY(c) - delaunay.getY(d);
+        return (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy)
+                + (bdx * bdx + bdy * bdy) * (cdx * ady - adx * cdy)
+                + (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+    }
+
+    private static double hullArea(IncrementalDelaunay delaunay, IntArrayList vertices) {
+        double[][] points = new double[vertices.size()][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[]{delaunay.getX(vertices.getInt(i)), delaunay.getY(vertices.getInt(i))};
+        }
+        Arrays.sort(points, (p, q) -> p[0] != q[0] ? Double.compare(p[0], q[0]) : Double.compare(p[1], q[1]));
+        double[][] hull = new double[points.length * 2][];
+        int size = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int start = size;
+            for (int i = 0; i < points.length; i++) {
+                double[] p = points[pass == 0 ? i : points.length - 1 - i];
+                while (size >= start + 2 && cross(hull[size - 2], hull[size - 1], p) <= 0) {
+                    size--;
+                }
+                hull[size++] = p;
+            }
+            size--;
+        }
+        double area = 0;
+        for (int i = 0; i < size; i++) {
+            double[] p = hull[i];
+            double[] q = hull[(i + 1) % size];
+            area += p[0] * q[1] - q[0] * p[1];
+        }
+        return area / 2;
+    }
+
+    private static double cross(double[] o, double[] a, double[] b) {
+        return (a[0] - o[0]) * (b[1] - o[1]) - (a[1] - o[1]) * (b[0] - o[0]);
+    }
+}